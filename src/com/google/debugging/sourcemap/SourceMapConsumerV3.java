@@ -19,7 +19,6 @@ package com.google.debugging.sourcemap;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterables;
 import com.google.debugging.sourcemap.Base64VLQ.CharIterator;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping.Builder;
@@ -30,28 +29,59 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Class for parsing version 3 of the SourceMap format, as produced by the
  * Closure Compiler, etc.
  * http://code.google.com/p/closure-compiler/wiki/SourceMaps
+ *
+ * <p>The mappings are kept in their encoded form and each line is only
+ * decoded the first time it is needed, into an array of packed entries.
+ *
  * @author johnlenz@google.com (John Lenz)
  */
 public final class SourceMapConsumerV3 implements SourceMapConsumer,
     SourceMappingReversable {
   static final int UNMAPPED = -1;
 
+  // The layout of a decoded line, which is an array of consecutive entries
+  // of ENTRY_SIZE values each.
+  private static final int ENTRY_SIZE = 5;
+  private static final int GENERATED_COLUMN = 0;
+  private static final int SOURCE_FILE_ID = 1;
+  private static final int SOURCE_LINE = 2;
+  private static final int SOURCE_COLUMN = 3;
+  private static final int NAME_ID = 4;
+
+  // The number of relative values that carry over from one line to the next.
+  private static final int STATE_SIZE = 4;
+
+  private static final int[] EMPTY_LINE = new int[0];
+
   private String[] sources;
   private String[] names;
   private int lineCount;
-  // Slots in the lines list will be null if the line does not have any entries.
-  private ArrayList<ArrayList<Entry>> lines = null;
-  /** originalFile path ==> original line ==> target mappings */
-  private Map<String, Map<Integer, Collection<OriginalMapping>>>
-      reverseSourceMapping;
+  /** The encoded "mappings" field. */
+  private String mappings;
+  /** The number of lines in the mappings. */
+  private int mappedLineCount;
+  /** The offset in the mappings of the first entry of each line. */
+  private int[] lineStarts;
+  /**
+   * The source file id, source line, source column and name id of the last
+   * entry before each line, which the relative values of the line are based on.
+   */
+  private int[] lineStates;
+  /** The lines decoded so far; slots are null for lines not yet decoded. */
+  private int[][] decodedLines;
+  /** originalFile path ==> original line ==> target mappings, built on first use */
+  private ReverseMapping reverseSourceMapping;
   private String sourceRoot;
   private final Map<String, Object> extensions = new LinkedHashMap<>();
+  /** Whether the consumer may no longer be parsed, because it is shared. */
+  private volatile boolean frozen = false;
 
   static class DefaultSourceMapSupplier implements SourceMapSupplier {
     @Override
@@ -74,6 +104,7 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
    */
   void parse(SourceMapObject sourceMapObject, SourceMapSupplier sectionSupplier)
       throws SourceMapParseException {
+    checkState(!frozen, "The source map was frozen and can't be parsed again");
     if (sourceMapObject.getVersion() != 3) {
       throw new SourceMapParseException("Unknown version: " + sourceMapObject.getVersion());
     }
@@ -93,17 +124,13 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     sourceRoot = sourceMapObject.getSourceRoot();
     sources = sourceMapObject.getSources();
     names = sourceMapObject.getNames();
-
-    if (lineCount >= 0) {
-      lines = new ArrayList<>(lineCount);
-    } else {
-      lines = new ArrayList<>();
-    }
+    mappings = sourceMapObject.getMappings();
+    reverseSourceMapping = null;
 
     // The value type of each extension is the native JSON type (e.g. JsonObject, or JSONObject
     // when compiled with GWT).
     extensions.putAll(sourceMapObject.getExtensions());
-    new MappingBuilder(sourceMapObject.getMappings()).build();
+    indexLines();
   }
 
   /**
@@ -157,7 +184,7 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     lineNumber--;
     column--;
 
-    if (lineNumber < 0 || lineNumber >= lines.size()) {
+    if (lineNumber < 0 || lineNumber >= mappedLineCount) {
       return null;
     }
 
@@ -165,20 +192,20 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     checkState(column >= 0);
 
     // If the line is empty return the previous mapping.
-    if (lines.get(lineNumber) == null) {
+    if (isEmptyLine(lineNumber)) {
       return getPreviousMapping(lineNumber);
     }
 
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    // No empty lists.
-    checkState(!entries.isEmpty());
-    if (entries.get(0).getGeneratedColumn() > column) {
+    int[] entries = getLine(lineNumber);
+    // No empty lines.
+    checkState(entries.length > 0);
+    if (entries[GENERATED_COLUMN] > column) {
       return getPreviousMapping(lineNumber);
     }
 
-    int index = search(entries, column, 0, entries.size() - 1);
+    int index = search(entries, column, 0, entries.length / ENTRY_SIZE - 1);
     Preconditions.checkState(index >= 0, "unexpected:%s", index);
-    return getOriginalMappingForEntry(entries.get(index));
+    return getOriginalMappingForEntry(entries, index * ENTRY_SIZE);
   }
 
   @Override
@@ -192,26 +219,23 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     // TODO(user): This implementation currently does not make use of the column
     // parameter.
 
-    // Synchronization needs to be handled by callers.
-    if (reverseSourceMapping == null) {
-      createReverseMapping();
-    }
-
-    Map<Integer, Collection<OriginalMapping>> sourceLineToCollectionMap =
-        reverseSourceMapping.get(originalFile);
-
-    if (sourceLineToCollectionMap == null) {
-      return Collections.emptyList();
-    } else {
-      Collection<OriginalMapping> mappings =
-          sourceLineToCollectionMap.get(line);
-
-      if (mappings == null) {
-        return Collections.emptyList();
-      } else {
-        return mappings;
+    ReverseMapping reverseMapping;
+    // Built under the lock, since the consumer may be shared between threads.
+    synchronized (this) {
+      if (reverseSourceMapping == null) {
+        reverseSourceMapping = createReverseMapping();
       }
+      reverseMapping = reverseSourceMapping;
     }
+    return reverseMapping.get(originalFile, line);
+  }
+
+  /**
+   * Prevents the source map from being parsed again, so that the consumer can be shared, e.g.
+   * between compilations. Lookups are thread-safe, but parsing replaces the whole source map.
+   */
+  public void freeze() {
+    frozen = true;
   }
 
   public String getSourceRoot(){
@@ -228,86 +252,186 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     return this.extensions;
   }
 
+  /**
+   * Finds the start of each line in the mappings and the values needed to
+   * decode it, and validates all the entries without storing them.
+   */
+  private void indexLines() throws SourceMapParseException {
+    int capacity = Math.max(lineCount, 1);
+    int[] starts = new int[capacity];
+    int[] states = new int[capacity * STATE_SIZE];
+    MappingDecoder decoder = new MappingDecoder();
+    int line = 0;
+    while (decoder.hasNext()) {
+      if (line == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * line);
+        states = Arrays.copyOf(states, 2 * line * STATE_SIZE);
+      }
+      starts[line] = decoder.getPosition();
+      decoder.saveState(states, line * STATE_SIZE);
+      decoder.decodeLine(false);
+      line++;
+    }
+
+    mappedLineCount = line;
+    lineStarts = (line == starts.length) ? starts : Arrays.copyOf(starts, line);
+    lineStates = (line == starts.length) ? states : Arrays.copyOf(states, line * STATE_SIZE);
+    decodedLines = new int[line][];
+  }
 
-  private class MappingBuilder {
+  /**
+   * Returns whether the line has no entries. This doesn't require decoding the line.
+   */
+  private boolean isEmptyLine(int line) {
+    int start = lineStarts[line];
+    return start == mappings.length() || mappings.charAt(start) == ';';
+  }
+
+  /**
+   * Returns the entries of the line, decoding and keeping them the first time
+   * the line is needed.
+   */
+  private synchronized int[] getLine(int line) {
+    int[] entries = decodedLines[line];
+    if (entries == null) {
+      entries = decodeLine(line);
+      decodedLines[line] = entries;
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the entries of the line, without keeping them if the line has not
+   * been decoded before. Used when visiting all the lines once.
+   */
+  private int[] getLineTransiently(int line) {
+    synchronized (this) {
+      if (decodedLines[line] != null) {
+        return decodedLines[line];
+      }
+    }
+    return decodeLine(line);
+  }
+
+  private int[] decodeLine(int line) {
+    if (isEmptyLine(line)) {
+      return EMPTY_LINE;
+    }
+    try {
+      return new MappingDecoder(line).decodeLine(true);
+    } catch (SourceMapParseException e) {
+      // Can't happen, the mappings were validated when they were parsed.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Decodes the entries of the mappings one line at a time, using the
+   * previous encountered values to decode the relative values.
+   */
+  private class MappingDecoder {
     private static final int MAX_ENTRY_VALUES = 5;
+    private final int[] temp = new int[MAX_ENTRY_VALUES];
+    private final int[] entry = new int[ENTRY_SIZE];
     private final StringCharIterator content;
-    private int line = 0;
+    private int line;
     private int previousCol = 0;
     private int previousSrcId = 0;
     private int previousSrcLine = 0;
     private int previousSrcColumn = 0;
     private int previousNameId = 0;
 
-    MappingBuilder(String lineMap) {
-      this.content = new StringCharIterator(lineMap);
-    }
-
-    void build() throws SourceMapParseException {
-      int [] temp = new int[MAX_ENTRY_VALUES];
-      ArrayList<Entry> entries = new ArrayList<>();
-      while (content.hasNext()) {
-        // ';' denotes a new line.
-        if (tryConsumeToken(';')) {
-          // The line is complete, store the result
-          completeLine(entries);
-          if (!entries.isEmpty()) {
-            // A new array list for the next line.
-            entries = new ArrayList<>();
-          }
-        } else {
-          // grab the next entry for the current line.
-          int entryValues = 0;
-          while (!entryComplete()) {
-            temp[entryValues] = nextValue();
-            entryValues++;
-          }
-          Entry entry = decodeEntry(temp, entryValues);
+    /** Creates a decoder for the mappings starting from the first line. */
+    MappingDecoder() {
+      this.content = new StringCharIterator(mappings, 0);
+      this.line = 0;
+    }
 
-          validateEntry(entry);
-          entries.add(entry);
+    /** Creates a decoder for the mappings starting from the given line. */
+    MappingDecoder(int line) {
+      this.content = new StringCharIterator(mappings, lineStarts[line]);
+      this.line = line;
+      int state = line * STATE_SIZE;
+      previousSrcId = lineStates[state];
+      previousSrcLine = lineStates[state + 1];
+      previousSrcColumn = lineStates[state + 2];
+      previousNameId = lineStates[state + 3];
+    }
 
-          // Consume the separating token, if there is one.
-          tryConsumeToken(',');
-        }
-      }
+    boolean hasNext() {
+      return content.hasNext();
+    }
 
-      // Some source map generator (e.g.UglifyJS) generates lines without
-      // a trailing line separator. So add the rest of the content.
-      if (!entries.isEmpty()) {
-        completeLine(entries);
-      }
+    int getPosition() {
+      return content.current;
     }
 
-    private void completeLine(ArrayList<Entry> entries) {
-      // The line is complete, store the result for the line,
-      // null if the line is empty.
-      if (!entries.isEmpty()) {
-        lines.add(entries);
-      } else {
-        lines.add(null);
+    /** Saves the values the next line is relative to. */
+    void saveState(int[] states, int offset) {
+      states[offset] = previousSrcId;
+      states[offset + 1] = previousSrcLine;
+      states[offset + 2] = previousSrcColumn;
+      states[offset + 3] = previousNameId;
+    }
+
+    /**
+     * Decodes the entries of the current line and moves to the next line.
+     *
+     * @param store Whether to return the decoded entries.
+     * @return The entries of the line, or null if they are not stored.
+     */
+    int[] decodeLine(boolean store) throws SourceMapParseException {
+      int[] entries = store ? new int[4 * ENTRY_SIZE] : null;
+      int size = 0;
+      // The previous column value for the generated file is reset to '0'
+      // at the start of each line.
+      previousCol = 0;
+      // ';' denotes a new line.
+      while (content.hasNext() && content.peek() != ';') {
+        // grab the next entry for the current line.
+        int entryValues = 0;
+        while (!entryComplete()) {
+          temp[entryValues] = nextValue();
+          entryValues++;
+        }
+        decodeEntry(temp, entryValues);
+
+        validateEntry();
+        if (store) {
+          if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+          }
+          System.arraycopy(entry, 0, entries, size, ENTRY_SIZE);
+          size += ENTRY_SIZE;
+        }
+
+        // Consume the separating token, if there is one.
+        tryConsumeToken(',');
       }
+      tryConsumeToken(';');
       line++;
-      previousCol = 0;
+
+      if (!store) {
+        return null;
+      }
+      return size == 0 ? EMPTY_LINE : Arrays.copyOf(entries, size);
     }
 
-    private void validateEntry(Entry entry) {
+    private void validateEntry() {
       Preconditions.checkState((lineCount < 0) || (line < lineCount),
           "line=%s, lineCount=%s", line, lineCount);
-      checkState(entry.getSourceFileId() == UNMAPPED || entry.getSourceFileId() < sources.length);
-      checkState(entry.getNameId() == UNMAPPED || entry.getNameId() < names.length);
+      checkState(entry[SOURCE_FILE_ID] == UNMAPPED || entry[SOURCE_FILE_ID] < sources.length);
+      checkState(entry[NAME_ID] == UNMAPPED || entry[NAME_ID] < names.length);
     }
 
     /**
-     * Decodes the next entry, using the previous encountered values to
-     * decode the relative values.
+     * Decodes the next entry into {@link #entry}, using the previous
+     * encountered values to decode the relative values.
      *
      * @param vals An array of integers that represent values in the entry.
      * @param entryValues The number of entries in the array.
-     * @return The entry object.
      */
-    private Entry decodeEntry(int[] vals, int entryValues) throws SourceMapParseException {
-      Entry entry;
+    private void decodeEntry(int[] vals, int entryValues) throws SourceMapParseException {
       switch (entryValues) {
         // The first values, if present are in the following order:
         //   0: the starting column in the current line of the generated file
@@ -316,48 +440,44 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
         //   3: the starting column in the original source
         //   4: the id of the original symbol name
         // The values are relative to the last encountered value for that field.
-        // Note: the previously column value for the generated file is reset
-        // to '0' when a new line is encountered.  This is done in the 'build'
-        // method.
 
         case 1:
           // An unmapped section of the generated file.
-          entry = new UnmappedEntry(
-              vals[0] + previousCol);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          return entry;
+          previousCol += vals[0];
+          entry[GENERATED_COLUMN] = previousCol;
+          entry[SOURCE_FILE_ID] = UNMAPPED;
+          entry[SOURCE_LINE] = UNMAPPED;
+          entry[SOURCE_COLUMN] = UNMAPPED;
+          entry[NAME_ID] = UNMAPPED;
+          return;
 
         case 4:
           // A mapped section of the generated file.
-          entry = new UnnamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          return entry;
+          previousCol += vals[0];
+          previousSrcId += vals[1];
+          previousSrcLine += vals[2];
+          previousSrcColumn += vals[3];
+          entry[GENERATED_COLUMN] = previousCol;
+          entry[SOURCE_FILE_ID] = previousSrcId;
+          entry[SOURCE_LINE] = previousSrcLine;
+          entry[SOURCE_COLUMN] = previousSrcColumn;
+          entry[NAME_ID] = UNMAPPED;
+          return;
 
         case 5:
           // A mapped section of the generated file, that has an associated
           // name.
-          entry = new NamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn,
-              vals[4] + previousNameId);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          previousNameId = entry.getNameId();
-          return entry;
+          previousCol += vals[0];
+          previousSrcId += vals[1];
+          previousSrcLine += vals[2];
+          previousSrcColumn += vals[3];
+          previousNameId += vals[4];
+          entry[GENERATED_COLUMN] = previousCol;
+          entry[SOURCE_FILE_ID] = previousSrcId;
+          entry[SOURCE_LINE] = previousSrcLine;
+          entry[SOURCE_COLUMN] = previousSrcColumn;
+          entry[NAME_ID] = previousNameId;
+          return;
 
         default:
           throw new SourceMapParseException(
@@ -392,7 +512,7 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
    * Perform a binary search on the array to find a section that covers
    * the target column.
    */
-  private static int search(ArrayList<Entry> entries, int target, int start, int end) {
+  private static int search(int[] entries, int target, int start, int end) {
     while (true) {
       int mid = ((end - start) / 2) + start;
       int compare = compareEntry(entries, mid, target);
@@ -417,8 +537,8 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
   /**
    * Compare an array entry's column value to the target column value.
    */
-  private static int compareEntry(ArrayList<Entry> entries, int entry, int target) {
-    return entries.get(entry).getGeneratedColumn() - target;
+  private static int compareEntry(int[] entries, int entry, int target) {
+    return entries[entry * ENTRY_SIZE + GENERATED_COLUMN] - target;
   }
 
   /**
@@ -431,25 +551,25 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
         return null;
       }
       lineNumber--;
-    } while (lines.get(lineNumber) == null);
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    return getOriginalMappingForEntry(Iterables.getLast(entries));
+    } while (isEmptyLine(lineNumber));
+    int[] entries = getLine(lineNumber);
+    return getOriginalMappingForEntry(entries, entries.length - ENTRY_SIZE);
   }
 
   /**
-   * Creates an "OriginalMapping" object for the given entry object.
+   * Creates an "OriginalMapping" object for the entry at the given offset.
    */
-  private OriginalMapping getOriginalMappingForEntry(Entry entry) {
-    if (entry.getSourceFileId() == UNMAPPED) {
+  private OriginalMapping getOriginalMappingForEntry(int[] entries, int entry) {
+    if (entries[entry + SOURCE_FILE_ID] == UNMAPPED) {
       return null;
     } else {
       // Adjust the line/column here to be start at 1.
       Builder x = OriginalMapping.newBuilder()
-        .setOriginalFile(sources[entry.getSourceFileId()])
-        .setLineNumber(entry.getSourceLine() + 1)
-        .setColumnPosition(entry.getSourceColumn() + 1);
-      if (entry.getNameId() != UNMAPPED) {
-        x.setIdentifier(names[entry.getNameId()]);
+        .setOriginalFile(sources[entries[entry + SOURCE_FILE_ID]])
+        .setLineNumber(entries[entry + SOURCE_LINE] + 1)
+        .setColumnPosition(entries[entry + SOURCE_COLUMN] + 1);
+      if (entries[entry + NAME_ID] != UNMAPPED) {
+        x.setIdentifier(names[entries[entry + NAME_ID]]);
       }
       return x.build();
     }
@@ -460,43 +580,126 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
    * from a source file and line number to a collection of target
    * OriginalMappings.
    */
-  private void createReverseMapping() {
-    reverseSourceMapping = new HashMap<>();
-
-    for (int targetLine = 0; targetLine < lines.size(); targetLine++) {
-      ArrayList<Entry> entries = lines.get(targetLine);
-
-      if (entries != null) {
-        for (Entry entry : entries) {
-          if (entry.getSourceFileId() != UNMAPPED
-              && entry.getSourceLine() != UNMAPPED) {
-            String originalFile = sources[entry.getSourceFileId()];
-
-            if (!reverseSourceMapping.containsKey(originalFile)) {
-              reverseSourceMapping.put(originalFile,
-                  new HashMap<Integer, Collection<OriginalMapping>>());
-            }
-
-            Map<Integer, Collection<OriginalMapping>> lineToCollectionMap =
-                reverseSourceMapping.get(originalFile);
+  private ReverseMapping createReverseMapping() {
+    // Sources with the same name share the id of the first of them.
+    Map<String, Integer> sourceIds = new HashMap<>();
+    int[] canonicalIds = new int[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      Integer id = sourceIds.get(sources[i]);
+      if (id == null) {
+        id = i;
+        sourceIds.put(sources[i], id);
+      }
+      canonicalIds[i] = id;
+    }
+
+    // Collect the mapped entries in the order of the generated file.
+    int count = 0;
+    int[] sourceFileIds = new int[16];
+    int[] sourceLines = new int[16];
+    int[] targetLines = new int[16];
+    int[] targetColumns = new int[16];
+    for (int targetLine = 0; targetLine < mappedLineCount; targetLine++) {
+      int[] entries = getLineTransiently(targetLine);
+      for (int entry = 0; entry < entries.length; entry += ENTRY_SIZE) {
+        if (entries[entry + SOURCE_FILE_ID] != UNMAPPED
+            && entries[entry + SOURCE_LINE] != UNMAPPED) {
+          if (count == sourceFileIds.length) {
+            sourceFileIds = Arrays.copyOf(sourceFileIds, 2 * count);
+            sourceLines = Arrays.copyOf(sourceLines, 2 * count);
+            targetLines = Arrays.copyOf(targetLines, 2 * count);
+            targetColumns = Arrays.copyOf(targetColumns, 2 * count);
+          }
+          sourceFileIds[count] = canonicalIds[entries[entry + SOURCE_FILE_ID]];
+          sourceLines[count] = entries[entry + SOURCE_LINE];
+          targetLines[count] = targetLine;
+          targetColumns[count] = entries[entry + GENERATED_COLUMN];
+          count++;
+        }
+      }
+    }
 
-            int sourceLine = entry.getSourceLine();
+    // Group the entries by source file, and then sort them by source line,
+    // keeping the entries of each line in the order of the generated file.
+    int[] sourceStarts = new int[sources.length + 1];
+    for (int i = 0; i < count; i++) {
+      sourceStarts[sourceFileIds[i] + 1]++;
+    }
+    for (int i = 0; i < sources.length; i++) {
+      sourceStarts[i + 1] += sourceStarts[i];
+    }
+    int[] next = Arrays.copyOf(sourceStarts, sources.length);
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[next[sourceFileIds[i]]++] = ((long) sourceLines[i] << 32) | i;
+    }
+    for (int i = 0; i < sources.length; i++) {
+      Arrays.sort(keys, sourceStarts[i], sourceStarts[i + 1]);
+    }
 
-            if (!lineToCollectionMap.containsKey(sourceLine)) {
-              lineToCollectionMap.put(sourceLine,
-                  new ArrayList<OriginalMapping>(1));
-            }
+    int[] sortedSourceLines = new int[count];
+    int[] sortedTargetLines = new int[count];
+    int[] sortedTargetColumns = new int[count];
+    for (int i = 0; i < count; i++) {
+      int index = (int) keys[i];
+      sortedSourceLines[i] = sourceLines[index];
+      sortedTargetLines[i] = targetLines[index];
+      sortedTargetColumns[i] = targetColumns[index];
+    }
+    return new ReverseMapping(
+        sourceIds, sourceStarts, sortedSourceLines, sortedTargetLines, sortedTargetColumns);
+  }
 
-            Collection<OriginalMapping> mappings =
-                lineToCollectionMap.get(sourceLine);
+  /**
+   * The target positions of the mapped entries, grouped by source file and
+   * sorted by source line.
+   */
+  private static final class ReverseMapping {
+    private final Map<String, Integer> sourceIds;
+    /** The index of the first entry of each source id in the entry arrays. */
+    private final int[] sourceStarts;
+    private final int[] sourceLines;
+    private final int[] targetLines;
+    private final int[] targetColumns;
+
+    ReverseMapping(Map<String, Integer> sourceIds, int[] sourceStarts,
+        int[] sourceLines, int[] targetLines, int[] targetColumns) {
+      this.sourceIds = sourceIds;
+      this.sourceStarts = sourceStarts;
+      this.sourceLines = sourceLines;
+      this.targetLines = targetLines;
+      this.targetColumns = targetColumns;
+    }
+
+    Collection<OriginalMapping> get(String originalFile, int line) {
+      Integer id = sourceIds.get(originalFile);
+      if (id == null) {
+        return Collections.emptyList();
+      }
 
-            Builder builder = OriginalMapping.newBuilder().setLineNumber(
-                targetLine).setColumnPosition(entry.getGeneratedColumn());
+      // Find the first entry for the line.
+      int start = sourceStarts[id];
+      int end = sourceStarts[id + 1];
+      while (start < end) {
+        int mid = (start + end) >>> 1;
+        if (sourceLines[mid] < line) {
+          start = mid + 1;
+        } else {
+          end = mid;
+        }
+      }
 
-            mappings.add(builder.build());
-          }
+      List<OriginalMapping> mappings = null;
+      for (int i = start; i < sourceStarts[id + 1] && sourceLines[i] == line; i++) {
+        if (mappings == null) {
+          mappings = new ArrayList<>(1);
         }
+        mappings.add(OriginalMapping.newBuilder()
+            .setLineNumber(targetLines[i])
+            .setColumnPosition(targetColumns[i])
+            .build());
       }
+      return mappings == null ? Collections.<OriginalMapping>emptyList() : mappings;
     }
   }
 
@@ -507,11 +710,12 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
   private static class StringCharIterator implements CharIterator {
     final String content;
     final int length;
-    int current = 0;
+    int current;
 
-    StringCharIterator(String content) {
+    StringCharIterator(String content, int start) {
       this.content = content;
       this.length = content.length();
+      this.current = start;
     }
 
     @Override
@@ -529,109 +733,6 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     }
   }
 
-  /**
-   * Represents a mapping entry in the source map.
-   */
-  private interface Entry {
-    int getGeneratedColumn();
-    int getSourceFileId();
-    int getSourceLine();
-    int getSourceColumn();
-    int getNameId();
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is not mapped
-   * to a section in the original source.
-   */
-  private static class UnmappedEntry implements Entry {
-    private final int column;
-
-    UnmappedEntry(int column) {
-      this.column = column;
-    }
-
-    @Override
-    public int getGeneratedColumn() {
-      return column;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source.
-   */
-  private static class UnnamedEntry extends UnmappedEntry {
-    private final int srcFile;
-    private final int srcLine;
-    private final int srcColumn;
-
-    UnnamedEntry(int column, int srcFile, int srcLine, int srcColumn) {
-      super(column);
-      this.srcFile = srcFile;
-      this.srcLine = srcLine;
-      this.srcColumn = srcColumn;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return srcFile;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return srcLine;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return srcColumn;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source, and is associated with a name.
-   */
-  private static class NamedEntry extends UnnamedEntry {
-    private final int name;
-
-    NamedEntry(int column, int srcFile, int srcLine, int srcColumn, int name) {
-      super(column, srcFile, srcLine, srcColumn);
-      this.name = name;
-    }
-
-    @Override
-    public int getNameId() {
-      return name;
-    }
-  }
-
   public static interface EntryVisitor {
     void visit(String sourceName,
                String symbolName,
@@ -647,35 +748,30 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     FilePosition sourceStartPosition = null;
     FilePosition startPosition = null;
 
-    final int lineCount = lines.size();
-    for (int i = 0; i < lineCount; i++) {
-      ArrayList<Entry> line = lines.get(i);
-      if (line != null) {
-        final int entryCount = line.size();
-        for (int j = 0; j < entryCount; j++) {
-          Entry entry = line.get(j);
-          if (pending) {
-            FilePosition endPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-            visitor.visit(
-                sourceName,
-                symbolName,
-                sourceStartPosition,
-                startPosition,
-                endPosition);
-            pending = false;
-          }
+    for (int i = 0; i < mappedLineCount; i++) {
+      int[] line = getLineTransiently(i);
+      for (int entry = 0; entry < line.length; entry += ENTRY_SIZE) {
+        if (pending) {
+          FilePosition endPosition = new FilePosition(
+              i, line[entry + GENERATED_COLUMN]);
+          visitor.visit(
+              sourceName,
+              symbolName,
+              sourceStartPosition,
+              startPosition,
+              endPosition);
+          pending = false;
+        }
 
-          if (entry.getSourceFileId() != UNMAPPED) {
-            pending = true;
-            sourceName = sources[entry.getSourceFileId()];
-            symbolName = (entry.getNameId() != UNMAPPED)
-                ? names[entry.getNameId()] : null;
-            sourceStartPosition = new FilePosition(
-                entry.getSourceLine(), entry.getSourceColumn());
-            startPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-          }
+        if (line[entry + SOURCE_FILE_ID] != UNMAPPED) {
+          pending = true;
+          sourceName = sources[line[entry + SOURCE_FILE_ID]];
+          symbolName = (line[entry + NAME_ID] != UNMAPPED)
+              ? names[line[entry + NAME_ID]] : null;
+          sourceStartPosition = new FilePosition(
+              line[entry + SOURCE_LINE], line[entry + SOURCE_COLUMN]);
+          startPosition = new FilePosition(
+              i, line[entry + GENERATED_COLUMN]);
         }
       }
     }
@@ -21,10 +21,10 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.base.Preconditions;
 import com.google.debugging.sourcemap.SourceMapConsumerV3.EntryVisitor;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,14 +64,46 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
 
   private static final int UNMAPPED = -1;
 
+  /** The initial capacity of the mapping arrays. */
+  private static final int INITIAL_CAPACITY = 64;
 
   /**
-   * A pre-order traversal ordered list of mappings stored in this map.
+   * The mappings stored in this map, in pre-order traversal order. Each
+   * mapping is an index into the following parallel arrays, which avoids
+   * allocating objects for the many mappings of a large output file.
+   *
+   * <p>The starting and ending positions of the code in the generated source
+   * file are indexed by 0. The position of the code in the input source file
+   * is indexed by 1 for legacy reasons via the Rhino Node class.
    */
-  private final List<Mapping> mappings = new ArrayList<>();
+  private int mappingCount = 0;
+  private int[] startLines = new int[INITIAL_CAPACITY];
+  private int[] startColumns = new int[INITIAL_CAPACITY];
+  private int[] endLines = new int[INITIAL_CAPACITY];
+  private int[] endColumns = new int[INITIAL_CAPACITY];
+  private int[] originalLines = new int[INITIAL_CAPACITY];
+  private int[] originalColumns = new int[INITIAL_CAPACITY];
+
+  /** The index of each mapping's source file in {@link #sourceNames}. */
+  private int[] sourceIndexes = new int[INITIAL_CAPACITY];
 
   /**
-   * A map of source names to source name index
+   * The index of each mapping's original name in {@link #symbolNames}, or
+   * {@link #UNMAPPED} if it has none.
+   */
+  private int[] nameIndexes = new int[INITIAL_CAPACITY];
+
+  /** The distinct source names of the mappings, in the order they were added. */
+  private final List<String> sourceNames = new ArrayList<>();
+  private final Map<String, Integer> sourceNameIndexes = new HashMap<>();
+
+  /** The distinct original names of the mappings, in the order they were added. */
+  private final List<String> symbolNames = new ArrayList<>();
+  private final Map<String, Integer> symbolNameIndexes = new HashMap<>();
+
+  /**
+   * A map of source names to source name index, in the order they were first
+   * written to the source map.
    */
   private final LinkedHashMap<String, Integer> sourceFileMap =
        new LinkedHashMap<>();
@@ -83,7 +115,8 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
        new LinkedHashMap<>();
 
   /**
-   * A map of source names to source name index
+   * A map of symbol names to symbol name index, in the order they were first
+   * written to the source map.
    */
   private final LinkedHashMap<String, Integer> originalNameMap =
        new LinkedHashMap<>();
@@ -94,20 +127,21 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
   private String lastSourceFile = null;
 
   /**
-   * Cache of the last mappings source name index.
+   * Cache of the last mappings source name index in {@link #sourceNames}.
    */
   private int lastSourceFileIndex = -1;
 
   /**
-   * For validation store the last mapping added.
+   * The line offset of the current source map in the buffer being used to
+   * generate the compiled source file.
    */
-  private Mapping lastMapping;
+  private int offsetLine = 0;
 
   /**
-   * The position that the current source map is offset in the
-   * buffer being used to generated the compiled source file.
+   * The column offset of the current source map, on the first line of the
+   * buffer being used to generate the compiled source file.
    */
-  private FilePosition offsetPosition = new FilePosition(0, 0);
+  private int offsetColumn = 0;
 
   /**
    * The position that the current source map is offset in the
@@ -134,14 +168,18 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   @Override
   public void reset() {
-    mappings.clear();
-    lastMapping = null;
+    mappingCount = 0;
+    sourceNames.clear();
+    sourceNameIndexes.clear();
+    symbolNames.clear();
+    symbolNameIndexes.clear();
     sourceFileMap.clear();
     sourceFileContentMap.clear();
     originalNameMap.clear();
     lastSourceFile = null;
     lastSourceFileIndex = -1;
-    offsetPosition = new FilePosition(0, 0);
+    offsetLine = 0;
+    offsetColumn = 0;
     prefixPosition = new FilePosition(0, 0);
   }
 
@@ -193,7 +231,8 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
   public void setStartingPosition(int offsetLine, int offsetIndex) {
     checkState(offsetLine >= 0);
     checkState(offsetIndex >= 0);
-    offsetPosition = new FilePosition(offsetLine, offsetIndex);
+    this.offsetLine = offsetLine;
+    this.offsetColumn = offsetIndex;
   }
 
   /**
@@ -212,59 +251,83 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
       return;
     }
 
-    FilePosition adjustedStart = startPosition;
-    FilePosition adjustedEnd = endPosition;
-
-    if (offsetPosition.getLine() != 0
-        || offsetPosition.getColumn() != 0) {
-      // If the mapping is found on the first line, we need to offset
-      // its character position by the number of characters found on
-      // the *last* line of the source file to which the code is
-      // being generated.
-      int offsetLine = offsetPosition.getLine();
-      int startOffsetPosition = offsetPosition.getColumn();
-      int endOffsetPosition = offsetPosition.getColumn();
+    int startLine = startPosition.getLine();
+    int startColumn = startPosition.getColumn();
+    int endLine = endPosition.getLine();
+    int endColumn = endPosition.getColumn();
+
+    // If the mapping is found on the first line, we need to offset
+    // its character position by the number of characters found on
+    // the *last* line of the source file to which the code is
+    // being generated.
+    if (startLine == 0) {
+      startColumn += offsetColumn;
+    }
+    if (endLine == 0) {
+      endColumn += offsetColumn;
+    }
+    startLine += offsetLine;
+    endLine += offsetLine;
 
-      if (startPosition.getLine() > 0) {
-        startOffsetPosition = 0;
-      }
+    // Validate the mappings are in a proper order.
+    if (mappingCount > 0) {
+      int lastLine = startLines[mappingCount - 1];
+      int lastColumn = startColumns[mappingCount - 1];
+      Preconditions.checkState(startLine > lastLine
+          || (startLine == lastLine && startColumn >= lastColumn),
+          "Incorrect source mappings order, previous : (%s,%s)\n"
+          + "new : (%s,%s)",
+          lastLine, lastColumn, startLine, startColumn);
+    }
 
-      if (endPosition.getLine() > 0) {
-        endOffsetPosition = 0;
-      }
+    if (mappingCount == startLines.length) {
+      growMappings();
+    }
+    int m = mappingCount++;
+    startLines[m] = startLine;
+    startColumns[m] = startColumn;
+    endLines[m] = endLine;
+    endColumns[m] = endColumn;
+    originalLines[m] = sourceStartPosition.getLine();
+    originalColumns[m] = sourceStartPosition.getColumn();
+    sourceIndexes[m] = getSourceIndex(sourceName);
+    nameIndexes[m] = symbolName == null ? UNMAPPED : getSymbolIndex(symbolName);
+  }
 
-      adjustedStart = new FilePosition(
-          startPosition.getLine() + offsetLine,
-          startPosition.getColumn() + startOffsetPosition);
+  private void growMappings() {
+    int capacity = 2 * startLines.length;
+    startLines = Arrays.copyOf(startLines, capacity);
+    startColumns = Arrays.copyOf(startColumns, capacity);
+    endLines = Arrays.copyOf(endLines, capacity);
+    endColumns = Arrays.copyOf(endColumns, capacity);
+    originalLines = Arrays.copyOf(originalLines, capacity);
+    originalColumns = Arrays.copyOf(originalColumns, capacity);
+    sourceIndexes = Arrays.copyOf(sourceIndexes, capacity);
+    nameIndexes = Arrays.copyOf(nameIndexes, capacity);
+  }
 
-      adjustedEnd = new FilePosition(
-          endPosition.getLine() + offsetLine,
-          endPosition.getColumn() + endOffsetPosition);
+  /** Returns the index of the source name in {@link #sourceNames}, adding it if needed. */
+  private int getSourceIndex(String sourceName) {
+    if (sourceName != lastSourceFile) {
+      lastSourceFile = sourceName;
+      lastSourceFileIndex = getIndex(sourceName, sourceNames, sourceNameIndexes);
     }
+    return lastSourceFileIndex;
+  }
 
-    // Create the new mapping.
-    Mapping mapping = new Mapping();
-    mapping.sourceFile = sourceName;
-    mapping.originalPosition = sourceStartPosition;
-    mapping.originalName = symbolName;
-    mapping.startPosition = adjustedStart;
-    mapping.endPosition = adjustedEnd;
+  /** Returns the index of the symbol name in {@link #symbolNames}, adding it if needed. */
+  private int getSymbolIndex(String symbolName) {
+    return getIndex(symbolName, symbolNames, symbolNameIndexes);
+  }
 
-    // Validate the mappings are in a proper order.
-    if (lastMapping != null) {
-      int lastLine = lastMapping.startPosition.getLine();
-      int lastColumn = lastMapping.startPosition.getColumn();
-      int nextLine = mapping.startPosition.getLine();
-      int nextColumn = mapping.startPosition.getColumn();
-      Preconditions.checkState(nextLine > lastLine
-          || (nextLine == lastLine && nextColumn >= lastColumn),
-          "Incorrect source mappings order, previous : (%s,%s)\n"
-          + "new : (%s,%s)",
-          lastLine, lastColumn, nextLine, nextColumn);
+  private static int getIndex(String value, List<String> values, Map<String, Integer> indexes) {
+    Integer index = indexes.get(value);
+    if (index == null) {
+      index = values.size();
+      values.add(value);
+      indexes.put(value, index);
     }
-
-    lastMapping = mapping;
-    mappings.add(mapping);
+    return index;
   }
 
   @Override public void addSourcesContent(String source, String content) {
@@ -362,7 +425,7 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   @Override
   public void appendTo(Appendable out, String name) throws IOException {
-    int maxLine = prepMappings() + 1;
+    int maxLine = prepMappings(new boolean[mappingCount]) + 1;
 
     // Add the header fields.
     out.append("{\n");
@@ -577,20 +640,17 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
   }
 
   /**
-   * Assigns sequential ids to used mappings, and returns the last line mapped.
+   * Marks the used mappings, and returns the last line mapped.
    */
-  private int prepMappings() throws IOException {
+  private int prepMappings(boolean[] used) throws IOException {
     // Mark any unused mappings.
-    (new MappingTraversal()).traverse(new UsedMappingCheck());
+    (new MappingTraversal()).traverse(new UsedMappingCheck(used));
 
-    // Renumber used mappings and keep track of the last line.
-    int id = 0;
+    // Keep track of the last line of the used mappings.
     int maxLine = 0;
-    for (Mapping m : mappings) {
-      if (m.used) {
-        m.id = id++;
-        int endPositionLine = m.endPosition.getLine();
-        maxLine = Math.max(maxLine, endPositionLine);
+    for (int m = 0; m < mappingCount; m++) {
+      if (used[m]) {
+        maxLine = Math.max(maxLine, endLines[m]);
       }
     }
 
@@ -598,85 +658,42 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     return maxLine + prefixPosition.getLine();
   }
 
-  /**
-   * A mapping from a given position in an input source file to a given position
-   * in the generated code.
-   */
-  static class Mapping {
-    /**
-     * A unique ID for this mapping for record keeping purposes.
-     */
-    int id = UNMAPPED;
-
-    /**
-     * The source file index.
-     */
-    String sourceFile;
-
-    /**
-     * The position of the code in the input source file. Both
-     * the line number and the character index are indexed by
-     * 1 for legacy reasons via the Rhino Node class.
-     */
-    FilePosition originalPosition;
-
-    /**
-     * The starting position of the code in the generated source
-     * file which this mapping represents. Indexed by 0.
-     */
-    FilePosition startPosition;
-
-    /**
-     * The ending position of the code in the generated source
-     * file which this mapping represents. Indexed by 0.
-     */
-    FilePosition endPosition;
-
-    /**
-     * The original name of the token found at the position
-     * represented by this mapping (if any).
-     */
-    String originalName;
-
-    /**
-     * Whether the mapping is actually used by the source map.
-     */
-    boolean used = false;
-  }
-
   /**
    * Mark any visited mapping as "used".
    */
   private static class UsedMappingCheck implements MappingVisitor {
-    /**
-     * @throws IOException
-     */
+    private final boolean[] used;
+
+    UsedMappingCheck(boolean[] used) {
+      this.used = used;
+    }
+
     @Override
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
-        throws IOException {
-      if (m != null) {
-        m.used = true;
+    public void visit(int m, int line, int col, int nextLine, int nextCol) {
+      if (m != UNMAPPED) {
+        used[m] = true;
       }
     }
   }
 
   private interface MappingVisitor {
     /**
-     * @param m The mapping for the current code segment. null if the segment
-     *     is unmapped.
+     * @param m The index of the mapping for the current code segment.
+     *     {@link #UNMAPPED} if the segment is unmapped.
      * @param line The starting line for this code segment.
      * @param col The starting column for this code segment.
      * @param endLine The ending line
      * @param endCol The ending column
      * @throws IOException
      */
-    void visit(Mapping m, int line, int col, int endLine, int endCol)
+    void visit(int m, int line, int col, int endLine, int endCol)
         throws IOException;
   }
 
   /**
    * Walk the mappings and visit each segment of the mappings, unmapped
-   * segments are visited with a null mapping, unused mapping are not visited.
+   * segments are visited with {@link #UNMAPPED}, unused mapping are not
+   * visited.
    */
   private class MappingTraversal {
     // The last line and column written
@@ -691,29 +708,33 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
       // The mapping list is ordered as a pre-order traversal.  The mapping
       // positions give us enough information to rebuild the stack and this
       // allows the building of the source map in O(n) time.
-      Deque<Mapping> stack = new ArrayDeque<>();
-      for (Mapping m : mappings) {
+      int[] stack = new int[16];
+      int stackSize = 0;
+      for (int m = 0; m < mappingCount; m++) {
         // Find the closest ancestor of the current mapping:
         // An overlapping mapping is an ancestor of the current mapping, any
         // non-overlapping mappings are siblings (or cousins) and must be
         // closed in the reverse order of when they encountered.
-        while (!stack.isEmpty() && !isOverlapped(stack.peek(), m)) {
-          Mapping previous = stack.pop();
+        while (stackSize > 0 && !isOverlapped(stack[stackSize - 1], m)) {
+          int previous = stack[--stackSize];
           maybeVisit(v, previous);
         }
 
         // Any gaps between the current line position and the start of the
         // current mapping belong to the parent.
-        Mapping parent = stack.peek();
+        int parent = stackSize > 0 ? stack[stackSize - 1] : UNMAPPED;
         maybeVisitParent(v, parent, m);
 
-        stack.push(m);
+        if (stackSize == stack.length) {
+          stack = Arrays.copyOf(stack, 2 * stackSize);
+        }
+        stack[stackSize++] = m;
       }
 
       // There are no more children to be had, simply close the remaining
       // mappings in the reverse order of when they encountered.
-      while (!stack.isEmpty()) {
-        Mapping m = stack.pop();
+      while (stackSize > 0) {
+        int m = stack[--stackSize];
         maybeVisit(v, m);
       }
     }
@@ -721,16 +742,14 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     /**
      * @return The line adjusted for the prefix position.
      */
-    private int getAdjustedLine(FilePosition p) {
-      return p.getLine() + prefixPosition.getLine();
+    private int getAdjustedLine(int rawLine) {
+      return rawLine + prefixPosition.getLine();
     }
 
     /**
      * @return The column adjusted for the prefix position.
      */
-    private int getAdjustedCol(FilePosition p) {
-      int rawLine = p.getLine();
-      int rawCol = p.getColumn();
+    private int getAdjustedCol(int rawLine, int rawCol) {
       // Only the first line needs the character position adjusted.
       return (rawLine != 0)
           ? rawCol : rawCol + prefixPosition.getColumn();
@@ -739,12 +758,12 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     /**
      * @return Whether m1 ends before m2 starts.
      */
-    private boolean isOverlapped(Mapping m1, Mapping m2) {
+    private boolean isOverlapped(int m1, int m2) {
       // No need to use adjusted values here, relative positions are sufficient.
-      int l1 = m1.endPosition.getLine();
-      int l2 = m2.startPosition.getLine();
-      int c1 = m1.endPosition.getColumn();
-      int c2 = m2.startPosition.getColumn();
+      int l1 = endLines[m1];
+      int l2 = startLines[m2];
+      int c1 = endColumns[m1];
+      int c2 = startColumns[m2];
 
       return (l1 == l2 && c1 >= c2) || l1 > l2;
     }
@@ -753,9 +772,9 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
      * Write any needed entries from the current position to the end of the
      * provided mapping.
      */
-    private void maybeVisit(MappingVisitor v, Mapping m) throws IOException {
-      int nextLine = getAdjustedLine(m.endPosition);
-      int nextCol = getAdjustedCol(m.endPosition);
+    private void maybeVisit(MappingVisitor v, int m) throws IOException {
+      int nextLine = getAdjustedLine(endLines[m]);
+      int nextCol = getAdjustedCol(endLines[m], endColumns[m]);
       // If this anything remaining in this mapping beyond the
       // current line and column position, write it out now.
       if (line < nextLine || (line == nextLine && col < nextCol)) {
@@ -766,10 +785,10 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     /**
      * Write any needed entries to complete the provided mapping.
      */
-    private void maybeVisitParent(MappingVisitor v, Mapping parent, Mapping m)
+    private void maybeVisitParent(MappingVisitor v, int parent, int m)
         throws IOException {
-      int nextLine = getAdjustedLine(m.startPosition);
-      int nextCol = getAdjustedCol(m.startPosition);
+      int nextLine = getAdjustedLine(startLines[m]);
+      int nextCol = getAdjustedCol(startLines[m], startColumns[m]);
       // If the previous value is null, no mapping exists.
       checkState(line < nextLine || col <= nextCol);
       if (line < nextLine || (line == nextLine && col < nextCol)) {
@@ -781,7 +800,7 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
      * Write any entries needed between the current position the next position
      * and update the current position.
      */
-    private void visit(MappingVisitor v, Mapping m,
+    private void visit(MappingVisitor v, int m,
         int nextLine, int nextCol)
         throws IOException {
       checkState(line <= nextLine);
@@ -853,32 +872,6 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     out.append("\n}");
   }
 
-  private int getSourceId(String sourceName) {
-    if (sourceName != lastSourceFile) {
-      lastSourceFile = sourceName;
-      Integer index = sourceFileMap.get(sourceName);
-      if (index != null) {
-        lastSourceFileIndex = index;
-      } else {
-        lastSourceFileIndex = sourceFileMap.size();
-        sourceFileMap.put(sourceName, lastSourceFileIndex);
-      }
-    }
-    return lastSourceFileIndex;
-  }
-
-  private int getNameId(String symbolName) {
-    int originalNameIndex;
-    Integer index = originalNameMap.get(symbolName);
-    if (index != null) {
-      originalNameIndex = index;
-    } else {
-      originalNameIndex = originalNameMap.size();
-      originalNameMap.put(symbolName, originalNameIndex);
-    }
-    return originalNameIndex;
-  }
-
   private class LineMapper implements MappingVisitor {
     // The destination.
     private final Appendable out;
@@ -893,16 +886,65 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     private int previousSourceColumn;
     private int previousNameId;
 
+    // The ids of the sources and symbols in the written source map, indexed
+    // by their index in sourceNames and symbolNames.
+    private final int[] sourceIds;
+    private final int[] nameIds;
+
     LineMapper(Appendable out, int maxLine) {
       this.out = out;
       this.maxLine = maxLine;
+      this.sourceIds = new int[sourceNames.size()];
+      this.nameIds = new int[symbolNames.size()];
+      Arrays.fill(sourceIds, UNMAPPED);
+      Arrays.fill(nameIds, UNMAPPED);
+    }
+
+    /**
+     * Returns the id of the source in the written source map, assigning ids in
+     * the order the sources are first written.
+     */
+    private int getSourceId(int sourceIndex) {
+      int id = sourceIds[sourceIndex];
+      if (id == UNMAPPED) {
+        String sourceName = sourceNames.get(sourceIndex);
+        Integer index = sourceFileMap.get(sourceName);
+        if (index != null) {
+          id = index;
+        } else {
+          id = sourceFileMap.size();
+          sourceFileMap.put(sourceName, id);
+        }
+        sourceIds[sourceIndex] = id;
+      }
+      return id;
+    }
+
+    /**
+     * Returns the id of the symbol in the written source map, assigning ids in
+     * the order the symbols are first written.
+     */
+    private int getNameId(int nameIndex) {
+      int id = nameIds[nameIndex];
+      if (id == UNMAPPED) {
+        String symbolName = symbolNames.get(nameIndex);
+        Integer index = originalNameMap.get(symbolName);
+        if (index != null) {
+          id = index;
+        } else {
+          id = originalNameMap.size();
+          originalNameMap.put(symbolName, id);
+        }
+        nameIds[nameIndex] = id;
+      }
+      return id;
     }
 
     /**
      * As each segment is visited write out the appropriate line mapping.
      */
     @Override
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
+    public void visit(int m, int line, int col, int nextLine, int nextCol)
       throws IOException {
       if (previousLine != line) {
         previousColumn = 0;
@@ -920,7 +962,7 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
           previousLine = line;
           previousColumn = col;
         } else {
-          checkState(m == null);
+          checkState(m == UNMAPPED);
         }
       }
 
@@ -940,28 +982,28 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
      * The values are stored as relative to the last seen values for each
      * field and encoded as Base64VLQs.
      */
-    void writeEntry(Mapping m, int column) throws IOException {
+    void writeEntry(int m, int column) throws IOException {
       // The relative generated column number
       Base64VLQ.encode(out, column - previousColumn);
       previousColumn = column;
-      if (m != null) {
+      if (m != UNMAPPED) {
         // The relative source file id
-        int sourceId = getSourceId(m.sourceFile);
+        int sourceId = getSourceId(sourceIndexes[m]);
         Base64VLQ.encode(out, sourceId - previousSourceFileId);
         previousSourceFileId = sourceId;
 
         // The relative source file line and column
-        int srcline = m.originalPosition.getLine();
-        int srcColumn = m.originalPosition.getColumn();
+        int srcline = originalLines[m];
+        int srcColumn = originalColumns[m];
         Base64VLQ.encode(out, srcline - previousSourceLine);
         previousSourceLine = srcline;
 
         Base64VLQ.encode(out, srcColumn - previousSourceColumn);
         previousSourceColumn = srcColumn;
 
-        if (m.originalName != null) {
+        if (nameIndexes[m] != UNMAPPED) {
           // The relative id for the associated symbol name
-          int nameId = getNameId(m.originalName);
+          int nameId = getNameId(nameIndexes[m]);
           Base64VLQ.encode(out, (nameId - previousNameId));
           previousNameId = nameId;
         }
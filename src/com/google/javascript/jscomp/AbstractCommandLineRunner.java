@@ -33,9 +33,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
+import com.google.debugging.sourcemap.SourceMapSection;
 import com.google.gson.Gson;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import com.google.javascript.jscomp.Compiler.CodeBuilder;
 import com.google.javascript.jscomp.CompilerOptions.JsonStreamMode;
 import com.google.javascript.jscomp.CompilerOptions.OutputJs;
 import com.google.javascript.jscomp.CompilerOptions.TweakProcessing;
@@ -61,6 +63,8 @@ import java.io.PrintStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -950,8 +954,36 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     }
     checkState(compiler.getOptions().outputJs == OutputJs.NORMAL);
 
-    String code = module == null ? compiler.toSource() : compiler.toSource(module);
-    writeOutput(out, compiler, code, wrapper, codePlaceholder, escaper);
+    if (escaper != null) {
+      String code = module == null ? compiler.toSource() : compiler.toSource(module);
+      writeOutput(out, compiler, code, wrapper, codePlaceholder, escaper);
+      return;
+    }
+
+    // Write the code as it is printed, rather than building all of it in memory first.
+    int pos = wrapper.indexOf(codePlaceholder);
+    String prefix = pos > 0 ? wrapper.substring(0, pos) : "";
+    out.append(prefix);
+    if (module == null) {
+      compiler.toSource(out);
+    } else {
+      compiler.toSource(out, module);
+    }
+    if (pos != -1) {
+      int suffixStart = pos + codePlaceholder.length();
+      if (suffixStart != wrapper.length()) {
+        // Something after placeholder?
+        out.append(wrapper.substring(suffixStart));
+      }
+    }
+    // Make sure we always end output with a line feed.
+    out.append('\n');
+
+    // If we have a source map, adjust its offsets to match
+    // the code WITHIN the wrapper.
+    if (pos != -1 && compiler.getSourceMap() != null) {
+      compiler.getSourceMap().setWrapperPrefix(prefix);
+    }
   }
 
   /**
@@ -1038,6 +1070,10 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     compiler = createCompiler();
     B options = createOptions();
 
+    if (config.externsSnapshotFileName != null) {
+      compiler.setExternsSnapshot(ExternsSnapshot.load(Paths.get(config.externsSnapshotFileName)));
+    }
+
     List<SourceFile> externs = createExterns(options);
 
     List<JSModule> modules = null;
@@ -1410,6 +1446,16 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       return INVALID_MODULE_SOURCEMAP_PATTERN;
     }
 
+    // The sections of the source map index, which place each module's map at
+    // the position the module would have in the concatenation of all of them.
+    boolean createIndex =
+        !config.createSourceMapIndex.isEmpty()
+            && shouldGenerateMapPerModule(options)
+            && !isOutputInJson();
+    List<SourceMapSection> indexSections = new ArrayList<>();
+    int indexLine = 0;
+    int indexColumn = 0;
+
     for (JSModule m : modules) {
       if (isOutputInJson()) {
         this.filesToStreamOut.add(createJsonFileFromModule(m));
@@ -1423,7 +1469,24 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
           if (options.sourceMapOutputPath != null) {
             compiler.getSourceMap().reset();
           }
-          writeModuleOutput(writer, m);
+          if (createIndex) {
+            CodeBuilder moduleOutput = new CodeBuilder(writer);
+            writeModuleOutput(moduleOutput, m);
+            moduleOutput.flush();
+            indexSections.add(
+                SourceMapSection.forURL(
+                    getSourceMapIndexUrl(expandSourceMapPath(options, m)),
+                    indexLine,
+                    indexColumn));
+            if (moduleOutput.getLineIndex() > 0) {
+              indexLine += moduleOutput.getLineIndex();
+              indexColumn = moduleOutput.getColumnIndex();
+            } else {
+              indexColumn += moduleOutput.getColumnIndex();
+            }
+          } else {
+            writeModuleOutput(writer, m);
+          }
           if (options.sourceMapOutputPath != null) {
             compiler.getSourceMap().appendTo(mapFileOut, moduleFilename);
           }
@@ -1439,9 +1502,27 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     if (mapFileOut != null) {
       mapFileOut.close();
     }
+
+    if (createIndex) {
+      maybeCreateDirsForPath(config.createSourceMapIndex);
+      try (Writer out = fileNameToOutputWriter2(config.createSourceMapIndex)) {
+        compiler
+            .getSourceMap()
+            .appendIndexMapTo(out, config.createSourceMapIndex, indexSections);
+      }
+    }
     return null;
   }
 
+  /**
+   * Returns the URL of a module's source map relative to the source map index.
+   */
+  private String getSourceMapIndexUrl(String moduleSourceMapPath) {
+    Path indexDir = Paths.get(config.createSourceMapIndex).toAbsolutePath().getParent();
+    Path mapPath = Paths.get(moduleSourceMapPath).toAbsolutePath();
+    return indexDir.relativize(mapPath).toString().replace(File.separatorChar, '/');
+  }
+
   /** Given an output module, convert it to a JSONFileSpec with associated sourcemap */
   private JsonFileSpec createJsonFileFromModule(JSModule module) throws IOException {
     compiler.getSourceMap().reset();
@@ -2206,6 +2287,17 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       return saveAfterChecksFileName;
     }
 
+    private String externsSnapshotFileName = null;
+
+    /**
+     * Use the prebuilt extern ASTs from the given snapshot file instead of parsing the externs they
+     * cover. See {@link ExternsSnapshot}.
+     */
+    public CommandLineConfig setExternsSnapshotFileName(String fileName) {
+      externsSnapshotFileName = fileName;
+      return this;
+    }
+
     private final List<String> module = new ArrayList<>();
 
     /**
@@ -2380,6 +2472,19 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       return this;
     }
 
+    private String createSourceMapIndex = "";
+
+    /**
+     * If specified along with a source map per module, a source map index is
+     * also written to the specified path. It is made of sections that refer
+     * to the source map of each module, at the position the module has in
+     * the concatenation of all the module outputs, in order.
+     */
+    public CommandLineConfig setCreateSourceMapIndex(String createSourceMapIndex) {
+      this.createSourceMapIndex = createSourceMapIndex;
+      return this;
+    }
+
     private SourceMap.DetailLevel sourceMapDetailLevel =
         SourceMap.DetailLevel.ALL;
 
@@ -364,6 +364,41 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
   /** Called to indicate that the current change stamp has been used */
   abstract void incrementChangeStamp();
 
+  /**
+   * Returns the control flow graph of the given function, script or other CFG root, with edge
+   * annotations. Graphs of functions and scripts are shared by all passes and rebuilt only after a
+   * change to the root has been reported, so callers must not modify them.
+   */
+  abstract ControlFlowGraph<Node> getControlFlowGraph(Node cfgRoot);
+
+  /**
+   * Returns the estimated sizes of functions, which are shared by all passes and estimated again
+   * only after a change to the function has been reported.
+   */
+  abstract InlineCostEstimator.FunctionCostCache getFunctionCostCache();
+
+  /**
+   * Returns a global namespace of the given externs and sources. The namespace of the externs and
+   * sources of this compiler is shared by all passes until the next change to the AST is reported,
+   * so callers must not modify it without reporting a change. Other roots get a new namespace.
+   */
+  abstract GlobalNamespace getGlobalNamespace(Node externsRoot, Node root);
+
+  /**
+   * Returns the references to the variables declared in the given root, collected with an {@link
+   * Es6SyntacticScopeCreator}. The references of the sources of this compiler are shared by all
+   * passes until the next change to the AST is reported, or until a pass finishes without asking
+   * for them, so callers must not process them further. Other roots are collected anew.
+   */
+  abstract ReferenceCollectingCallback getVariableReferences(Node root);
+
+  /**
+   * Returns the references to the variables declared in the given externs and sources, like {@link
+   * #getVariableReferences(Node)}. The references of the externs and sources of this compiler are
+   * shared the same way.
+   */
+  abstract ReferenceCollectingCallback getVariableReferences(Node externsRoot, Node root);
+
   /** Returns the root of the source tree, ignoring externs */
   abstract Node getJsRoot();
 
@@ -625,4 +660,16 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
   PersistentInputStore getPersistentInputStore() {
     return persistentInputStore;
   }
+
+  private @Nullable ExternsSnapshot externsSnapshot;
+
+  /** Sets a snapshot of prebuilt extern ASTs to use instead of parsing matching externs. */
+  void setExternsSnapshot(ExternsSnapshot externsSnapshot) {
+    this.externsSnapshot = externsSnapshot;
+  }
+
+  @Nullable
+  ExternsSnapshot getExternsSnapshot() {
+    return externsSnapshot;
+  }
 }
@@ -18,8 +18,13 @@ package com.google.javascript.jscomp;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * An abstract class whose implementations run peephole optimizations:
@@ -31,6 +36,8 @@ abstract class AbstractPeepholeOptimization {
 
   protected AbstractCompiler compiler;
 
+  private NodeUtil.SideEffectMemo sideEffectMemo;
+
   /**
    * Given a node to optimize and a traversal, optimize the node. Subclasses
    * should override to provide their own peephole optimization.
@@ -42,6 +49,19 @@ abstract class AbstractPeepholeOptimization {
    */
   abstract Node optimizeSubtree(Node subtree);
 
+  private static final ImmutableSet<Token> ALL_TOKENS =
+      Sets.immutableEnumSet(EnumSet.allOf(Token.class));
+
+  /**
+   * Returns the tokens of the subtrees that {@link #optimizeSubtree} may optimize.
+   * {@link PeepholeOptimizationsPass} only hands the optimization subtrees
+   * rooted at one of these tokens. Optimizations that look at every subtree
+   * keep the default, which is all tokens.
+   */
+  Set<Token> getTokensToOptimize() {
+    return ALL_TOKENS;
+  }
+
   /**
    * Helper method for reporting an error to the compiler when applying a
    * peephole optimization.
@@ -81,19 +101,37 @@ abstract class AbstractPeepholeOptimization {
     this.compiler = compiler;
   }
 
+  /**
+   * Informs the optimization that a traversal will begin, in which it shares
+   * the results of its side-effect queries with the other optimizations of
+   * the pass.
+   */
+  final void beginTraversal(
+      AbstractCompiler compiler, NodeUtil.SideEffectMemo sideEffectMemo) {
+    this.sideEffectMemo = sideEffectMemo;
+    beginTraversal(compiler);
+  }
+
   /**
    * @return Whether the node may create new mutable state, or change existing
-   * state.
+   * state. The result is memoized until the next reported change, so
+   * optimizations must report their changes before they query again.
    */
   boolean mayEffectMutableState(Node n) {
-    return NodeUtil.mayEffectMutableState(n, compiler);
+    return sideEffectMemo == null
+        ? NodeUtil.mayEffectMutableState(n, compiler)
+        : NodeUtil.mayEffectMutableStateMemoized(n, compiler, sideEffectMemo);
   }
 
   /**
-   * @return Whether the node may have side effects when executed.
+   * @return Whether the node may have side effects when executed. The result
+   * is memoized until the next reported change, so optimizations must report
+   * their changes before they query again.
    */
   boolean mayHaveSideEffects(Node n) {
-    return NodeUtil.mayHaveSideEffects(n, compiler);
+    return sideEffectMemo == null
+        ? NodeUtil.mayHaveSideEffects(n, compiler)
+        : NodeUtil.mayHaveSideEffectsMemoized(n, compiler, sideEffectMemo);
   }
 
   /**
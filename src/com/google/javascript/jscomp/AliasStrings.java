@@ -20,6 +20,7 @@ import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -157,33 +158,37 @@ class AliasStrings extends AbstractPostOrderCallback
 
         // The current module.
         JSModule module = t.getModule();
-        if (info.numOccurrences != 1) {
-          // Check whether the current module depends on the module containing
-          // the declaration.
-          if (module != null
-              && info.moduleToContainDecl != null
-              && module != info.moduleToContainDecl) {
-            // We need to declare this string in the deepest module in the
-            // module dependency graph that both of these modules depend on.
-            module =
-                moduleGraph.getDeepestCommonDependencyInclusive(module, info.moduleToContainDecl);
-          } else {
-            // use the previously saved insertion location.
-            return;
-          }
+        if (info.numOccurrences == 1) {
+          info.moduleToContainDecl = module;
         }
-        Node varParent = moduleVarParentMap.get(module);
-        if (varParent == null) {
-          varParent = compiler.getNodeForCodeInsertion(module);
-          moduleVarParentMap.put(module, varParent);
+        if (moduleGraph != null && module != null) {
+          info.modules.set(module.getIndex());
         }
-        info.moduleToContainDecl = module;
-        info.parentForNewVarDecl = varParent;
-        info.siblingToInsertVarDeclBefore = varParent.getFirstChild();
       }
     }
   }
 
+  /**
+   * Finds where to declare the alias of a string. Without a module graph,
+   * that is the module of its first occurrence.
+   */
+  private void setDeclarationLocation(StringInfo info) {
+    if (moduleGraph != null && !info.modules.isEmpty()) {
+      // We need to declare this string in the deepest module in the module
+      // dependency graph that all of the modules using it depend on.
+      info.moduleToContainDecl =
+          moduleGraph.getDeepestCommonDependencyInclusive(info.modules);
+    }
+    JSModule module = info.moduleToContainDecl;
+    Node varParent = moduleVarParentMap.get(module);
+    if (varParent == null) {
+      varParent = compiler.getNodeForCodeInsertion(module);
+      moduleVarParentMap.put(module, varParent);
+    }
+    info.parentForNewVarDecl = varParent;
+    info.siblingToInsertVarDeclBefore = varParent.getFirstChild();
+  }
+
   /**
    * Looks up the {@link StringInfo} object for a JavaScript string. Creates
    * it if necessary.
@@ -205,6 +210,9 @@ class AliasStrings extends AbstractPostOrderCallback
       String literal = entry.getKey();
       StringInfo info = entry.getValue();
       if (shouldReplaceWithAlias(literal, info)) {
+        // No declarations have been added yet, so all of them go before the
+        // same first statement of their module, in the order of the strings.
+        setDeclarationLocation(info);
         for (StringOccurrence occurrence : info.occurrences) {
           replaceStringWithAliasName(
               occurrence, info.getVariableName(literal), info);
@@ -322,6 +330,10 @@ class AliasStrings extends AbstractPostOrderCallback
     final List<StringOccurrence> occurrences;
     int numOccurrences;
 
+    // The indices of the modules that the string occurs in, if there is a
+    // module graph.
+    final BitSet modules = new BitSet();
+
     JSModule moduleToContainDecl;
     Node parentForNewVarDecl;
     Node siblingToInsertVarDeclBefore;
@@ -25,12 +25,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
-import com.google.javascript.jscomp.graph.AdjacencyGraph;
-import com.google.javascript.jscomp.graph.Annotation;
-import com.google.javascript.jscomp.graph.GraphColoring;
-import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
-import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.SubGraph;
+import com.google.javascript.jscomp.graph.IndexedGraphColoring;
 import com.google.javascript.rhino.FunctionTypeI;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.ObjectTypeI;
@@ -38,6 +33,7 @@ import com.google.javascript.rhino.TypeI;
 import com.google.javascript.rhino.jstype.JSTypeNative;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -187,21 +183,37 @@ class AmbiguateProperties implements CompilerPass {
 
     int numRenamedPropertyNames = 0;
     int numSkippedPropertyNames = 0;
-    ArrayList<PropertyGraphNode> nodes = new ArrayList<>(propertyMap.size());
+    final List<Property> properties = new ArrayList<>(propertyMap.size());
+    List<JSTypeBitSet> relatedTypes = new ArrayList<>(propertyMap.size());
+    List<Integer> order = new ArrayList<>(propertyMap.size());
     for (Property prop : propertyMap.values()) {
       if (prop.skipAmbiguating) {
         ++numSkippedPropertyNames;
         reservedNames.add(prop.oldName);
       } else {
         ++numRenamedPropertyNames;
-        nodes.add(new PropertyGraphNode(prop));
+        order.add(properties.size());
+        properties.add(prop);
+        relatedTypes.add(prop.relatedTypes);
       }
     }
 
-    PropertyGraph graph = new PropertyGraph(nodes);
-    GraphColoring<Property, Void> coloring =
-        new GreedyGraphColoring<>(graph, FREQUENCY_COMPARATOR);
-    int numNewPropertyNames = coloring.color();
+    // Two properties interfere, and so cannot share a name, if they have a related type in
+    // common. Greedily color the most frequent properties first.
+    Collections.sort(
+        order,
+        new Comparator<Integer>() {
+          @Override
+          public int compare(Integer i1, Integer i2) {
+            return FREQUENCY_COMPARATOR.compare(properties.get(i1), properties.get(i2));
+          }
+        });
+    int[] orderArray = new int[order.size()];
+    for (int i = 0; i < orderArray.length; i++) {
+      orderArray[i] = order.get(i);
+    }
+    int[] colors = IndexedGraphColoring.colorBySharedResources(relatedTypes, orderArray);
+    int numNewPropertyNames = IndexedGraphColoring.getColorCount(colors);
 
     // Generate new names for the properties that will be renamed.
     NameGenerator nameGen =
@@ -213,10 +225,11 @@ class AmbiguateProperties implements CompilerPass {
     }
 
     // Translate the color of each Property instance to a name.
-    for (PropertyGraphNode node : graph.getNodes()) {
-      node.getValue().newName = colorMap[node.getAnnotation().hashCode()];
+    for (int i = 0; i < properties.size(); i++) {
+      Property prop = properties.get(i);
+      prop.newName = colorMap[colors[i]];
       if (renamingMap != null) {
-        renamingMap.put(node.getValue().oldName, node.getValue().newName);
+        renamingMap.put(prop.oldName, prop.newName);
       }
     }
 
@@ -325,93 +338,6 @@ class AmbiguateProperties implements CompilerPass {
     related.or(relatedBitsets.get(instanceType));
   }
 
-  class PropertyGraph implements AdjacencyGraph<Property, Void> {
-    private final ArrayList<PropertyGraphNode> nodes;
-
-    PropertyGraph(ArrayList<PropertyGraphNode> nodes) {
-      this.nodes = nodes;
-    }
-
-    @Override
-    public List<PropertyGraphNode> getNodes() {
-      return nodes;
-    }
-
-    @Override
-    public GraphNode<Property, Void> getNode(Property property) {
-      throw new RuntimeException("PropertyGraph#getNode is never called.");
-    }
-
-    @Override
-    public SubGraph<Property, Void> newSubGraph() {
-      return new PropertySubGraph();
-    }
-
-    @Override
-    public void clearNodeAnnotations() {
-      for (PropertyGraphNode node : nodes) {
-        node.setAnnotation(null);
-      }
-    }
-
-    @Override
-    public int getWeight(Property value) {
-      return value.numOccurrences;
-    }
-  }
-
-  /**
-   * A {@link SubGraph} that represents properties. The related types of
-   * the properties are used to efficiently calculate adjacency information.
-   */
-  class PropertySubGraph implements SubGraph<Property, Void> {
-    /** Types related to properties referenced in this subgraph. */
-    JSTypeBitSet relatedTypes = new JSTypeBitSet(intForType.size());
-
-    /**
-     * Returns true if prop is in an independent set from all properties in this
-     * sub graph.  That is, if none of its related types intersects with the
-     * related types for this sub graph.
-     */
-    @Override
-    public boolean isIndependentOf(Property prop) {
-      return !relatedTypes.intersects(prop.relatedTypes);
-    }
-
-    /**
-     * Adds the node to the sub graph, adding all its related types to the
-     * related types for the sub graph.
-     */
-    @Override
-    public void addNode(Property prop) {
-      relatedTypes.or(prop.relatedTypes);
-    }
-  }
-
-  static class PropertyGraphNode implements GraphNode<Property, Void> {
-    Property property;
-    protected Annotation annotation;
-
-    PropertyGraphNode(Property property) {
-      this.property = property;
-    }
-
-    @Override
-    public Property getValue() {
-      return property;
-    }
-
-    @Override
-    public Annotation getAnnotation() {
-      return annotation;
-    }
-
-    @Override
-    public void setAnnotation(Annotation data) {
-      annotation = data;
-    }
-  }
-
   private void reportInvalidRenameFunction(Node n, String functionName, String message) {
     compiler.report(
         JSError.make(
@@ -20,12 +20,13 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.graph.CompactDiGraph;
 import com.google.javascript.jscomp.graph.FixedPointGraphTraversal;
 import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
-import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.LinkedHashMap;
@@ -79,8 +80,8 @@ class AnalyzePrototypeProperties implements CompilerPass {
   //
   // then there would be a node for "scotch", a node for "age", and an edge
   // from scotch to age.
-  private final LinkedDirectedGraph<NameInfo, JSModule> symbolGraph =
-      LinkedDirectedGraph.createWithoutAnnotations();
+  private final CompactDiGraph.Builder<NameInfo, JSModule> symbolGraph =
+      CompactDiGraph.builder();
 
   // A dummy node for representing global references.
   private final NameInfo globalNode = new NameInfo("[global]");
@@ -132,8 +133,8 @@ class AnalyzePrototypeProperties implements CompilerPass {
 
     globalNode.markReference(null);
     externNode.markReference(null);
-    symbolGraph.createNode(globalNode);
-    symbolGraph.createNode(externNode);
+    symbolGraph.addNode(globalNode);
+    symbolGraph.addNode(externNode);
 
     for (String property : IMPLICITLY_USED_PROPERTIES) {
       NameInfo nameInfo = getNameInfoForName(property, PROPERTY);
@@ -159,7 +160,7 @@ class AnalyzePrototypeProperties implements CompilerPass {
 
     FixedPointGraphTraversal<NameInfo, JSModule> t =
         FixedPointGraphTraversal.newTraversal(new PropagateReferences());
-    t.computeFixedPoint(symbolGraph,
+    t.computeFixedPoint(symbolGraph.build(),
         ImmutableSet.of(externNode, globalNode));
   }
 
@@ -187,7 +188,7 @@ class AnalyzePrototypeProperties implements CompilerPass {
     } else {
       NameInfo nameInfo = new NameInfo(name);
       map.put(name, nameInfo);
-      symbolGraph.createNode(nameInfo);
+      symbolGraph.addNode(nameInfo);
       return nameInfo;
     }
   }
@@ -830,7 +831,13 @@ class AnalyzePrototypeProperties implements CompilerPass {
 
     private boolean referenced = false;
     private final Deque<Symbol> declarations = new ArrayDeque<>();
+
+    // The indices of the modules that reference this name, and the deepest
+    // module that all of them are or depend on. That module is only looked up
+    // again when it is asked for after a reference from an unrelated module.
+    private final BitSet referencingModules = new BitSet();
     private JSModule deepestCommonModuleRef = null;
+    private boolean deepestCommonModuleRefIsStale = false;
 
     // True if this property is a function that reads a variable from an
     // outer scope which isn't the global scope.
@@ -870,18 +877,21 @@ class AnalyzePrototypeProperties implements CompilerPass {
         hasChanged = true;
       }
 
-      if (moduleGraph != null) {
-        JSModule originalDeepestCommon = deepestCommonModuleRef;
-
-        if (deepestCommonModuleRef == null) {
+      if (moduleGraph != null
+          && module != null
+          && !referencingModules.get(module.getIndex())) {
+        boolean isFirstModule = referencingModules.isEmpty();
+        referencingModules.set(module.getIndex());
+        if (isFirstModule) {
           deepestCommonModuleRef = module;
-        } else {
-          deepestCommonModuleRef =
-              moduleGraph.getDeepestCommonDependencyInclusive(
-                  deepestCommonModuleRef, module);
-        }
-
-        if (originalDeepestCommon != deepestCommonModuleRef) {
+          hasChanged = true;
+        } else if (deepestCommonModuleRefIsStale
+            || (deepestCommonModuleRef != null
+                && module != deepestCommonModuleRef
+                && !moduleGraph.dependsOn(module, deepestCommonModuleRef))) {
+          // The deepest common module moves up the module graph, and all of
+          // the modules are looked up at once when it is needed.
+          deepestCommonModuleRefIsStale = true;
           hasChanged = true;
         }
       }
@@ -894,6 +904,11 @@ class AnalyzePrototypeProperties implements CompilerPass {
      * property.
      */
     JSModule getDeepestCommonModuleRef() {
+      if (deepestCommonModuleRefIsStale) {
+        deepestCommonModuleRef =
+            moduleGraph.getDeepestCommonDependencyInclusive(referencingModules);
+        deepestCommonModuleRefIsStale = false;
+      }
       return deepestCommonModuleRef;
     }
 
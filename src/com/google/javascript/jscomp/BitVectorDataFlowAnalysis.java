@@ -0,0 +1,392 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.javascript.jscomp.ControlFlowGraph.Branch;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
+import com.google.javascript.jscomp.graph.LatticeElement;
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A data flow analysis whose lattice is a bit vector and whose flow function
+ * has the form {@code out = (in - KILL) | GEN}.
+ *
+ * <p>The GEN and KILL sets of every control flow graph node are computed once
+ * per call to {@link #analyze()} by {@link #computeGenKill}, so each step of
+ * the fixed-point iteration is a few word-wide operations on the vector rather
+ * than a walk over the AST of the node.
+ *
+ * <p>Subclasses allocate the bits they need with {@link #newBit()}. Bits that
+ * are killed together (for example every definition of one variable) can be
+ * collected in a kill set with {@link #newKillSet()} and
+ * {@link #addToKillSet}. Since a kill set may still grow while the GEN and
+ * KILL sets of later nodes are computed, kill sets are only resolved to bits
+ * once every node has been visited.
+ *
+ * <p>The fixed point is computed over basic blocks: chains of nodes in which
+ * every node but the first has a single predecessor, whose only successor it
+ * is. The GEN and KILL sets of the nodes of a block are combined, so a block
+ * is flowed through in one step. Once the fixed point is reached, the states
+ * of the nodes inside each block are filled in with a single pass over it.
+ *
+ * @param <L> Lattice element type.
+ */
+abstract class BitVectorDataFlowAnalysis<L extends BitVectorDataFlowAnalysis.BitVector<L>>
+    extends DataFlowAnalysis<Node, L> {
+
+  private final Map<Node, GenKill> genKills = new HashMap<>();
+  private final List<BitSet> killSets = new ArrayList<>();
+  private int bitCount;
+
+  private final List<BasicBlock> blocks = new ArrayList<>();
+  // Maps the node that comes first in flow order to its block.
+  private final Map<DiGraphNode<Node, Branch>, BasicBlock> blocksByFirstNode = new HashMap<>();
+
+  BitVectorDataFlowAnalysis(ControlFlowGraph<Node> cfg, JoinOp<L> joinOp) {
+    super(cfg, joinOp);
+  }
+
+  /**
+   * A lattice element backed by a bit vector. Subclasses give the bits a
+   * meaning; two elements are equal if they have the same bits set.
+   */
+  abstract static class BitVector<L extends BitVector<L>> implements LatticeElement {
+    final BitSet bits;
+
+    BitVector(BitSet bits) {
+      this.bits = checkNotNull(bits);
+    }
+
+    /** Creates an element of the same type with the given bits. */
+    abstract L withBits(BitSet bits);
+
+    @Override
+    public boolean equals(Object other) {
+      return other != null
+          && other.getClass() == getClass()
+          && ((BitVector<?>) other).bits.equals(bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return bits.toString();
+    }
+  }
+
+  /** Joins bit vectors by union, for "may" analyses. */
+  static final class UnionJoin<L extends BitVector<L>> implements JoinOp<L> {
+    @Override
+    public L apply(List<L> in) {
+      BitSet bits = (BitSet) in.get(0).bits.clone();
+      for (int i = 1; i < in.size(); i++) {
+        bits.or(in.get(i).bits);
+      }
+      return in.get(0).withBits(bits);
+    }
+  }
+
+  /** Joins bit vectors by intersection, for "must" analyses. */
+  static final class IntersectionJoin<L extends BitVector<L>> implements JoinOp<L> {
+    @Override
+    public L apply(List<L> in) {
+      BitSet bits = (BitSet) in.get(0).bits.clone();
+      for (int i = 1; i < in.size(); i++) {
+        bits.and(in.get(i).bits);
+      }
+      return in.get(0).withBits(bits);
+    }
+  }
+
+  /**
+   * The GEN and KILL sets of a single control flow graph node. They are built
+   * up by a sequence of {@link #gen} and {@link #kill} calls in the order the
+   * node executes them, so a bit that is generated and later killed by the
+   * same node does not survive it.
+   */
+  final class GenKill {
+    private final BitSet gen = new BitSet();
+    private final BitSet kill = new BitSet();
+    private final BitSet killedSets = new BitSet();
+
+    /** Sets the bit in the output. */
+    void gen(int bit) {
+      gen.set(bit);
+    }
+
+    /** Clears the bit in the output. */
+    void kill(int bit) {
+      gen.clear(bit);
+      kill.set(bit);
+    }
+
+    /** Clears every bit of the given kill set in the output. */
+    void killAll(int killSet) {
+      gen.andNot(killSets.get(killSet));
+      killedSets.set(killSet);
+    }
+
+    private void resolveKillSets() {
+      for (int i = killedSets.nextSetBit(0); i >= 0; i = killedSets.nextSetBit(i + 1)) {
+        kill.or(killSets.get(i));
+      }
+    }
+  }
+
+  /**
+   * A chain of control flow graph nodes that are always flowed through one
+   * after the other, along with their combined GEN and KILL sets.
+   */
+  private static final class BasicBlock {
+    // In flow order, so the last node comes first in a backward analysis.
+    final List<DiGraphNode<Node, Branch>> nodes;
+    final BitSet gen = new BitSet();
+    final BitSet kill = new BitSet();
+
+    BasicBlock(List<DiGraphNode<Node, Branch>> nodes) {
+      this.nodes = nodes;
+    }
+
+    DiGraphNode<Node, Branch> first() {
+      return nodes.get(0);
+    }
+
+    DiGraphNode<Node, Branch> last() {
+      return nodes.get(nodes.size() - 1);
+    }
+  }
+
+  /**
+   * Records the effect of the given control flow graph node on the bit vector.
+   */
+  abstract void computeGenKill(Node cfgNode, GenKill genKill);
+
+  /**
+   * Forgets all allocated bits and kill sets. Subclasses that keep their own
+   * tables indexed by bit should clear them here, and may allocate the bits
+   * that do not belong to any node.
+   */
+  void resetBits() {
+    killSets.clear();
+    bitCount = 0;
+  }
+
+  /** Allocates a new bit. */
+  final int newBit() {
+    return bitCount++;
+  }
+
+  /** Returns the number of bits allocated so far. */
+  final int getBitCount() {
+    return bitCount;
+  }
+
+  /** Allocates a new, empty kill set. */
+  final int newKillSet() {
+    killSets.add(new BitSet());
+    return killSets.size() - 1;
+  }
+
+  final void addToKillSet(int killSet, int bit) {
+    killSets.get(killSet).set(bit);
+  }
+
+  /** Returns the bits of the given kill set. The result must not be modified. */
+  final BitSet getKillSet(int killSet) {
+    return killSets.get(killSet);
+  }
+
+  /** Computes the GEN and KILL sets of every node of the control flow graph. */
+  void computeGenKillSets() {
+    genKills.clear();
+    for (DiGraphNode<Node, Branch> node : getCfg().getDirectedGraphNodes()) {
+      if (node != getCfg().getImplicitReturn()) {
+        GenKill genKill = new GenKill();
+        computeGenKill(node.getValue(), genKill);
+        genKills.put(node.getValue(), genKill);
+      }
+    }
+    for (GenKill genKill : genKills.values()) {
+      genKill.resolveKillSets();
+    }
+  }
+
+  /**
+   * Splits the control flow graph into basic blocks and combines the GEN and
+   * KILL sets of their nodes.
+   */
+  private void computeBasicBlocks() {
+    blocks.clear();
+    blocksByFirstNode.clear();
+    Set<DiGraphNode<Node, Branch>> inBlock = new HashSet<>();
+    for (DiGraphNode<Node, Branch> node : getCfg().getDirectedGraphNodes()) {
+      if (node != getCfg().getImplicitReturn() && !continuesBlock(node)) {
+        addBasicBlock(node, inBlock);
+      }
+    }
+    // What is left are cycles that no other node leads into.
+    for (DiGraphNode<Node, Branch> node : getCfg().getDirectedGraphNodes()) {
+      if (node != getCfg().getImplicitReturn() && !inBlock.contains(node)) {
+        addBasicBlock(node, inBlock);
+      }
+    }
+  }
+
+  private void addBasicBlock(
+      DiGraphNode<Node, Branch> start, Set<DiGraphNode<Node, Branch>> inBlock) {
+    List<DiGraphNode<Node, Branch>> nodes = new ArrayList<>();
+    DiGraphNode<Node, Branch> node = start;
+    while (node != null && inBlock.add(node)) {
+      nodes.add(node);
+      List<DiGraphEdge<Node, Branch>> outEdges = node.getOutEdges();
+      node = null;
+      if (outEdges.size() == 1 && continuesBlock(outEdges.get(0).getDestination())) {
+        node = outEdges.get(0).getDestination();
+      }
+    }
+    BasicBlock block = new BasicBlock(isForward() ? nodes : Lists.reverse(nodes));
+    for (DiGraphNode<Node, Branch> n : block.nodes) {
+      GenKill genKill = genKills.get(n.getValue());
+      block.gen.andNot(genKill.kill);
+      block.gen.or(genKill.gen);
+      block.kill.or(genKill.kill);
+    }
+    blocks.add(block);
+    blocksByFirstNode.put(block.first(), block);
+  }
+
+  /**
+   * Whether the node has a single predecessor, whose only successor it is, so
+   * that it belongs to the same basic block.
+   */
+  private boolean continuesBlock(DiGraphNode<Node, Branch> node) {
+    if (node == getCfg().getEntry() || node == getCfg().getImplicitReturn()) {
+      return false;
+    }
+    List<DiGraphEdge<Node, Branch>> inEdges = node.getInEdges();
+    if (inEdges.size() != 1) {
+      return false;
+    }
+    DiGraphNode<Node, Branch> pred = inEdges.get(0).getSource();
+    return pred != node && pred.getOutEdges().size() == 1;
+  }
+
+  @Override
+  protected void initialize() {
+    resetBits();
+    computeGenKillSets();
+    computeBasicBlocks();
+    super.initialize();
+    // Only the first node of each block is flowed through.
+    orderedWorkSet.clear();
+    for (BasicBlock block : blocks) {
+      orderedWorkSet.add(block.first());
+    }
+  }
+
+  @Override
+  void computeFixedPoint(int maxSteps) {
+    int step = 0;
+    while (!orderedWorkSet.isEmpty()) {
+      if (step > maxSteps) {
+        throw new MaxIterationsExceededException(
+            "Analysis did not terminate after " + maxSteps + " iterations");
+      }
+      BasicBlock block = blocksByFirstNode.get(orderedWorkSet.removeFirst());
+      joinInputs(block.first());
+      if (flow(block)) {
+        List<DiGraphNode<Node, Branch>> nextNodes = isForward()
+            ? getCfg().getDirectedSuccNodes(block.last())
+            : getCfg().getDirectedPredNodes(block.last());
+        for (DiGraphNode<Node, Branch> nextNode : nextNodes) {
+          if (nextNode != getCfg().getImplicitReturn()) {
+            orderedWorkSet.add(nextNode);
+          }
+        }
+      }
+      step++;
+    }
+    for (BasicBlock block : blocks) {
+      flowThroughNodes(block);
+    }
+  }
+
+  /**
+   * Flows the input of the first node of the block through the whole block.
+   *
+   * @return {@code true} if the output of the last node changed.
+   */
+  private boolean flow(BasicBlock block) {
+    FlowState<L> firstState = block.first().getAnnotation();
+    FlowState<L> lastState = block.last().getAnnotation();
+    L input = isForward() ? firstState.getIn() : firstState.getOut();
+    L outputBefore = isForward() ? lastState.getOut() : lastState.getIn();
+    L output = flowThrough(input, block.gen, block.kill);
+    if (isForward()) {
+      lastState.setOut(output);
+    } else {
+      lastState.setIn(output);
+    }
+    return !outputBefore.equals(output);
+  }
+
+  /** Computes the states of the nodes of the block from its input. */
+  private void flowThroughNodes(BasicBlock block) {
+    FlowState<L> firstState = block.first().getAnnotation();
+    L value = isForward() ? firstState.getIn() : firstState.getOut();
+    for (DiGraphNode<Node, Branch> node : block.nodes) {
+      FlowState<L> state = node.getAnnotation();
+      if (isForward()) {
+        state.setIn(value);
+        value = flowThrough(node.getValue(), value);
+        state.setOut(value);
+      } else {
+        state.setOut(value);
+        value = flowThrough(node.getValue(), value);
+        state.setIn(value);
+      }
+    }
+  }
+
+  @Override
+  final L flowThrough(Node node, L input) {
+    GenKill genKill = genKills.get(node);
+    return flowThrough(input, genKill.gen, genKill.kill);
+  }
+
+  private L flowThrough(L input, BitSet gen, BitSet kill) {
+    BitSet bits = (BitSet) input.bits.clone();
+    bits.andNot(kill);
+    bits.or(gen);
+    return input.withBits(bits);
+  }
+}
@@ -27,16 +27,15 @@ import com.google.javascript.jscomp.LiveVariablesAnalysisEs6.LiveVariableLattice
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
-import com.google.javascript.jscomp.graph.GraphColoring;
-import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
-import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.LinkedUndirectedGraph;
-import com.google.javascript.jscomp.graph.UndiGraph;
+import com.google.javascript.jscomp.graph.IndexedGraphColoring;
+import com.google.javascript.jscomp.graph.IndexedGraphColoring.InterferenceMatrix;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
@@ -58,27 +57,19 @@ import javax.annotation.Nullable;
  * <p>The pass operates similar to a typical register allocator found in an
  * optimizing compiler by first computing live ranges with
  * {@link LiveVariablesAnalysis} and a variable interference graph. Then it uses
- * graph coloring in {@link GraphColoring} to determine which two variables can
- * be merge together safely.
+ * graph coloring in {@link IndexedGraphColoring} to determine which two
+ * variables can be merge together safely.
  *
  */
 class CoalesceVariableNames extends AbstractPostOrderCallback implements
     CompilerPass, ScopedCallback {
 
   private final AbstractCompiler compiler;
-  private final Deque<GraphColoring<Var, Void>> colorings;
+  private final Deque<VariableColoring> colorings;
   private final Deque<LiveVariablesAnalysisEs6> liveAnalyses;
   private final boolean usePseudoNames;
   private LiveVariablesAnalysisEs6 liveness;
 
-  private final Comparator<Var> coloringTieBreaker =
-      new Comparator<Var>() {
-        @Override
-        public int compare(Var v1, Var v2) {
-          return liveness.getVarIndex(v1.getName()) - liveness.getVarIndex(v2.getName());
-        }
-      };
-
   /**
    * @param usePseudoNames For debug purposes, when merging variable foo and bar
    * to foo, rename both variable to foo_bar.
@@ -154,15 +145,12 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     // The interference graph has the function's variables as its nodes and any interference
     // between the variables as the edges. Interference between two variables means that they are
     // alive at overlapping times, which means that their variable names cannot be coalesced.
-    UndiGraph<Var, Void> interferenceGraph =
-        computeVariableNamesInterferenceGraph(cfg, liveness.getEscapedLocals());
+    VariableInterference interference =
+        computeVariableNamesInterference(cfg, liveness.getEscapedLocals());
 
     // Color any interfering variables with different colors and any variables that can be safely
     // coalesced wih the same color.
-    GraphColoring<Var, Void> coloring =
-        new GreedyGraphColoring<>(interferenceGraph, coloringTieBreaker);
-    coloring.color();
-    colorings.push(coloring);
+    colorings.push(new VariableColoring(liveness, interference));
   }
 
   @Override
@@ -183,15 +171,15 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
 
     Var var = liveness.getAllVariables().get(n.getString());
-    GraphNode<Var, Void> vNode = colorings.peek().getGraph().getNode(var);
-    if (vNode == null) {
+    VariableColoring coloring = colorings.peek();
+    if (var == null || !coloring.isColored(var)) {
       // This is not a local.
       return;
     }
-    Var coalescedVar = colorings.peek().getPartitionSuperNode(var);
+    Var coalescedVar = coloring.getPartitionSuperVar(var);
 
     if (!usePseudoNames) {
-      if (vNode.getValue().equals(coalescedVar)) {
+      if (var.equals(coalescedVar)) {
         // The coalesced name is itself, nothing to do.
         return;
       }
@@ -214,8 +202,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       for (Var iVar : liveness.getAllVariablesInOrder()) {
         // Look for all the variables that can be merged (in the graph by now)
         // and it is merged with the current coalescedVar.
-        if (colorings.peek().getGraph().getNode(iVar) != null
-            && coalescedVar.equals(colorings.peek().getPartitionSuperNode(iVar))) {
+        if (coloring.isColored(iVar) && coalescedVar.equals(coloring.getPartitionSuperVar(iVar))) {
           allMergedNames.add(iVar.name);
         }
       }
@@ -235,7 +222,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       n.setString(pseudoName);
       compiler.reportChangeToEnclosingScope(n);
 
-      if (!vNode.getValue().equals(coalescedVar)
+      if (!var.equals(coalescedVar)
           && (NodeUtil.isNameDeclaration(parent)
               || NodeUtil.getEnclosingType(n, Token.DESTRUCTURING_LHS) != null)) {
         makeDeclarationVar(coalescedVar);
@@ -253,20 +240,24 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
    * variables are marked in different color groups, while variables that can safely be coalesced
    * are assigned the same color group.
    *
+   * <p>The variables are numbered by their index in the liveness analysis, so the variables live
+   * at a CFG node all interfere with each other in a single operation on the live set.
+   *
    * @param cfg
    * @param escaped we don't want to coalesce any escaped variables
-   * @return graph with variable nodes and edges representing variable interference
+   * @return the interference between the variables that may be coalesced
    */
-  private UndiGraph<Var, Void> computeVariableNamesInterferenceGraph(
+  private VariableInterference computeVariableNamesInterference(
       ControlFlowGraph<Node> cfg, Set<? extends Var> escaped) {
-    UndiGraph<Var, Void> interferenceGraph = LinkedUndirectedGraph.create();
-
-    // First create a node for each non-escaped variable. We add these nodes in the order in which
-    // they appear in the code because we want the names that appear earlier in the code to be used
-    // when coalescing to variables that appear later in the code.
+    // First find the variables that may be coalesced. They are numbered in the order in which they
+    // appear in the code because we want the names that appear earlier in the code to be used when
+    // coalescing to variables that appear later in the code.
     List<Var> orderedVariables = liveness.getAllVariablesInOrder();
+    VariableInterference interference = new VariableInterference(orderedVariables.size());
+    BitSet params = new BitSet();
 
-    for (Var v : orderedVariables) {
+    for (int i = 0; i < orderedVariables.size(); i++) {
+      Var v = orderedVariables.get(i);
       if (escaped.contains(v)) {
         continue;
       }
@@ -290,63 +281,46 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
         }
       }
 
-      interferenceGraph.createNode(v);
+      interference.candidates.set(i);
+      if (v.isParam()) {
+        params.set(i);
+      }
     }
 
-    // Go through each variable and try to connect them.
-    int v1Index = -1;
-    for (Var v1 : orderedVariables) {
-      v1Index++;
-
-      int v2Index = -1;
-      NEXT_VAR_PAIR:
-      for (Var v2 : orderedVariables) {
-        v2Index++;
-        // Skip duplicate pairs.
-        if (v1Index > v2Index) {
-          continue;
-        }
+    // Parameters all interfere with each other, and so do the variables that are live at the
+    // same time.
+    interference.connectAll(params);
+    List<DiGraphNode<Node, Branch>> cfgNodes = new ArrayList<>();
+    for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
+      if (cfg.isImplicitReturn(cfgNode)) {
+        continue;
+      }
+      cfgNodes.add(cfgNode);
+      FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+      interference.connectAll(state.getIn().bits);
+      interference.connectAll(state.getOut().bits);
+    }
 
-        if (!interferenceGraph.hasNode(v1) || !interferenceGraph.hasNode(v2)) {
-          // Skip nodes that were not added. They are globals and escaped
-          // locals. Also avoid merging a variable with itself.
-          continue NEXT_VAR_PAIR;
-        }
+    // Two variables that are not live at the same time may still collide *within* a CFG node,
+    // which can only happen in a CFG node that assigns one of them.
+    BitSet[] assigningCfgNodes = findAssigningCfgNodes(cfgNodes, orderedVariables.size());
+    BitSet candidates = interference.candidates;
+    for (int v1Index = candidates.nextSetBit(0);
+        v1Index >= 0;
+        v1Index = candidates.nextSetBit(v1Index + 1)) {
+      Var v1 = orderedVariables.get(v1Index);
 
-        if (v1.isParam() && v2.isParam()) {
-          interferenceGraph.connectIfNotFound(v1, null, v2);
+      NEXT_VAR_PAIR:
+      for (int v2Index = v1Index; v2Index >= 0; v2Index = candidates.nextSetBit(v2Index + 1)) {
+        if (interference.isConnected(v1Index, v2Index)) {
           continue NEXT_VAR_PAIR;
         }
+        Var v2 = orderedVariables.get(v2Index);
 
-        // Go through every CFG node in the program and look at
-        // this variable pair. If they are both live at the same
-        // time, add an edge between them and continue to the next pair.
-        NEXT_CROSS_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_CROSS_CFG_NODE;
-          }
-
-          FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
-
-          // Check the live states and add edge when possible.
-
-          if ((state.getIn().isLive(v1Index) && state.getIn().isLive(v2Index))
-              || (state.getOut().isLive(v1Index) && state.getOut().isLive(v2Index))) {
-            interferenceGraph.connectIfNotFound(v1, null, v2);
-            continue NEXT_VAR_PAIR;
-          }
-        }
-
-        // v1 and v2 might not have an edge between them! woohoo. there's
-        // one last sanity check that we have to do: we have to check
-        // if there's a collision *within* the cfg node.
-        NEXT_INTRA_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_INTRA_CFG_NODE;
-          }
-
+        BitSet cfgNodeIndices = (BitSet) assigningCfgNodes[v1Index].clone();
+        cfgNodeIndices.or(assigningCfgNodes[v2Index]);
+        for (int i = cfgNodeIndices.nextSetBit(0); i >= 0; i = cfgNodeIndices.nextSetBit(i + 1)) {
+          DiGraphNode<Node, Branch> cfgNode = cfgNodes.get(i);
           FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
           boolean v1OutLive = state.getOut().isLive(v1Index);
           boolean v2OutLive = state.getOut().isLive(v2Index);
@@ -355,13 +329,145 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
               new LiveRangeChecker(v1, v2OutLive ? null : v2),
               new LiveRangeChecker(v2, v1OutLive ? null : v1));
           checker.check(cfgNode.getValue());
-          if (checker.connectIfCrossed(interferenceGraph)) {
+          if (checker.isCrossed()) {
+            interference.connect(v1Index, v2Index);
             continue NEXT_VAR_PAIR;
           }
         }
       }
     }
-    return interferenceGraph;
+    return interference;
+  }
+
+  /**
+   * Returns, for each variable index, the indices of the given CFG nodes that assign the variable.
+   */
+  private BitSet[] findAssigningCfgNodes(List<DiGraphNode<Node, Branch>> cfgNodes, int numVars) {
+    BitSet[] assigningCfgNodes = new BitSet[numVars];
+    for (int v = 0; v < numVars; v++) {
+      assigningCfgNodes[v] = new BitSet();
+    }
+    for (int i = 0; i < cfgNodes.size(); i++) {
+      Node root = cfgNodes.get(i).getValue();
+      findAssignedVariables(root, root, i, assigningCfgNodes);
+    }
+    return assigningCfgNodes;
+  }
+
+  /** Visits the nodes that {@link CombinedLiveRangeChecker#check} visits. */
+  private void findAssignedVariables(
+      Node root, Node n, int cfgNodeIndex, BitSet[] assigningCfgNodes) {
+    if (n == root || !ControlFlowGraph.isEnteringNewCfgNode(n)) {
+      for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+        findAssignedVariables(root, c, cfgNodeIndex, assigningCfgNodes);
+      }
+      String name = LiveRangeChecker.getAssignedName(n, n.getParent());
+      if (name != null && liveness.getAllVariables().containsKey(name)) {
+        assigningCfgNodes[liveness.getVarIndex(name)].set(cfgNodeIndex);
+      }
+    }
+  }
+
+  /**
+   * The interference between the variables of a function that may be coalesced, indexed like the
+   * variables of the liveness analysis.
+   */
+  private static final class VariableInterference {
+    /** The variables that may be coalesced. Other variables never interfere. */
+    final BitSet candidates = new BitSet();
+    final InterferenceMatrix matrix;
+    /**
+     * The variables that interfere with themselves, which is the case of any variable that is ever
+     * live. They are kept apart from the matrix as they only affect the coloring order.
+     */
+    final BitSet selfInterfering = new BitSet();
+
+    VariableInterference(int numVars) {
+      this.matrix = new InterferenceMatrix(numVars);
+    }
+
+    void connectAll(BitSet variables) {
+      BitSet interfering = (BitSet) variables.clone();
+      interfering.and(candidates);
+      matrix.connectAll(interfering);
+      selfInterfering.or(interfering);
+    }
+
+    void connect(int v1, int v2) {
+      if (v1 == v2) {
+        selfInterfering.set(v1);
+      } else {
+        matrix.connect(v1, v2);
+      }
+    }
+
+    boolean isConnected(int v1, int v2) {
+      return v1 == v2 ? selfInterfering.get(v1) : matrix.isConnected(v1, v2);
+    }
+
+    /**
+     * The number of edges of a variable in the interference graph, where the edge between a
+     * variable and itself counts twice as it does in an undirected graph.
+     */
+    int getWeight(int v) {
+      return matrix.getDegree(v) + (selfInterfering.get(v) ? 2 : 0);
+    }
+  }
+
+  /**
+   * The coloring of the variables of a function. Variables with the same color are coalesced into
+   * the first of them whose partition is requested.
+   */
+  private static final class VariableColoring {
+    private final LiveVariablesAnalysisEs6 liveness;
+    /** The color of each variable, or -1 for variables that are not coalesced. */
+    private final int[] colors;
+    private final Var[] superVars;
+
+    VariableColoring(LiveVariablesAnalysisEs6 liveness, final VariableInterference interference) {
+      this.liveness = liveness;
+
+      // Greedily color the variables with the most interference first. Ties are broken by the
+      // order in which the variables appear in the code.
+      List<Integer> order = new ArrayList<>();
+      for (int v = interference.candidates.nextSetBit(0);
+          v >= 0;
+          v = interference.candidates.nextSetBit(v + 1)) {
+        order.add(v);
+      }
+      Collections.sort(
+          order,
+          new Comparator<Integer>() {
+            @Override
+            public int compare(Integer v1, Integer v2) {
+              int result = interference.getWeight(v2) - interference.getWeight(v1);
+              return result != 0 ? result : v1 - v2;
+            }
+          });
+      int[] orderArray = new int[order.size()];
+      for (int i = 0; i < orderArray.length; i++) {
+        orderArray[i] = order.get(i);
+      }
+
+      this.colors = IndexedGraphColoring.color(interference.matrix, orderArray);
+      this.superVars = new Var[IndexedGraphColoring.getColorCount(colors)];
+    }
+
+    boolean isColored(Var var) {
+      return colors[liveness.getVarIndex(var.getName())] != -1;
+    }
+
+    /**
+     * Returns the variable that represents the partition of the given variable. The first variable
+     * of a partition that is passed to this method represents the partition.
+     */
+    Var getPartitionSuperVar(Var var) {
+      int color = colors[liveness.getVarIndex(var.getName())];
+      if (superVars[color] == null) {
+        superVars[color] = var;
+      }
+      return superVars[color];
+    }
   }
 
   /**
@@ -398,14 +504,8 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       }
     }
 
-    boolean connectIfCrossed(UndiGraph<Var, Void> interferenceGraph) {
-      if (callback1.crossed || callback2.crossed) {
-        Var v1 = callback1.def;
-        Var v2 = callback2.def;
-        interferenceGraph.connectIfNotFound(v1, null, v2);
-        return true;
-      }
-      return false;
+    boolean isCrossed() {
+      return callback1.crossed || callback2.crossed;
     }
   }
 
@@ -500,21 +600,27 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
 
     static boolean isAssignTo(Var var, Node n, Node parent) {
+      return var.getName().equals(getAssignedName(n, parent));
+    }
+
+    /** Returns the name of the variable assigned by the node, or null if it is not an assign. */
+    @Nullable
+    static String getAssignedName(Node n, Node parent) {
       if (n.isName()) {
         if (parent.isParamList()) {
           // In a function declaration, the formal parameters are assigned.
-          return var.getName().equals(n.getString());
+          return n.getString();
         } else if (NodeUtil.isNameDeclaration(parent) && n.hasChildren()) {
           // If this is a VAR declaration, if the name node has a child, we are
           // assigning to that name.
-          return var.getName().equals(n.getString());
+          return n.getString();
         }
       } else if (NodeUtil.isAssignmentOp(n)) {
         // Lastly, any assignmentOP is also an assign.
         Node name = n.getFirstChild();
-        return name.isName() && var.getName().equals(name.getString());
+        return name.isName() ? name.getString() : null;
       }
-      return false; // Definitely a read.
+      return null; // Definitely a read.
     }
 
     static boolean isReadFrom(Var var, Node name) {
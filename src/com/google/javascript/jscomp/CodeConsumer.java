@@ -17,6 +17,7 @@
 package com.google.javascript.jscomp;
 
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.dtoa.DToA;
 
 /**
  * Abstracted consumer of the CodeGenerator output.
@@ -274,11 +275,63 @@ public abstract class CodeConsumer {
         }
       }
     } else {
-      addConstant(String.valueOf(x).replace(".0E", "E").replaceFirst(
-          "^(-?)0\\.", "$1."));
+      addConstant(formatNonInteger(x));
     }
   }
 
+  /**
+   * Prints a number that is not a long from its shortest round-trip digits, in plain notation
+   * without a leading zero (".001") or with an integral mantissa ("15E-8"), whichever is shorter.
+   */
+  private static String formatNonInteger(double x) {
+    // Either "ddd", "ddd.ddd", "0.000ddd", "d.ddde+N" or "d.ddde-N".
+    String s = DToA.numberToString(Math.abs(x));
+    int e = s.indexOf('e');
+    int end = e < 0 ? s.length() : e;
+    int dot = s.indexOf('.');
+    int intLength = dot < 0 || dot > end ? end : dot;
+    StringBuilder digits = new StringBuilder(end);
+    int leadingZeros = 0;
+    for (int i = 0; i < end; i++) {
+      char c = s.charAt(i);
+      if (c == '0' && digits.length() == 0) {
+        leadingZeros++;
+      } else if (c != '.') {
+        digits.append(c);
+      }
+    }
+    // Numbers below 1e21 are printed in full, with trailing zeros in their integer part.
+    int length = digits.length();
+    while (digits.charAt(length - 1) == '0') {
+      length--;
+    }
+    digits.setLength(length);
+    // The position of the decimal point relative to the first significant digit.
+    int point = intLength - leadingZeros + (e < 0 ? 0 : Integer.parseInt(s.substring(e + 1)));
+
+    StringBuilder plain = new StringBuilder(length + 8);
+    if (x < 0) {
+      plain.append('-');
+    }
+    if (point <= 0) {
+      plain.append('.');
+      for (int i = point; i < 0; i++) {
+        plain.append('0');
+      }
+      plain.append(digits);
+    } else if (point < length) {
+      plain.append(digits, 0, point).append('.').append(digits, point, length);
+    } else {
+      plain.append(digits);
+      for (int i = length; i < point; i++) {
+        plain.append('0');
+      }
+    }
+
+    String exponential = (x < 0 ? "-" : "") + digits + "E" + (point - length);
+    return exponential.length() < plain.length() ? exponential : plain.toString();
+  }
+
   void addConstant(String newcode) {
     add(newcode);
   }
@@ -25,7 +25,7 @@ import com.google.javascript.rhino.JSDocInfo.Visibility;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TokenStream;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -37,8 +37,32 @@ public class CodeGenerator {
   private static final String LT_ESCAPED = "\\x3c";
   private static final String GT_ESCAPED = "\\x3e";
 
-  // A memoizer for formatting strings as JS strings.
-  private final Map<String, String> escapedJsStrings = new HashMap<>();
+  /**
+   * The ASCII characters that {@link #strEscape} never escapes, whatever the quotes and the
+   * options. Runs of these characters are copied to the output as they are.
+   */
+  private static final boolean[] UNESCAPED_CHARS = new boolean[0x80];
+
+  static {
+    for (char c = 0x20; c < 0x7f; c++) {
+      UNESCAPED_CHARS[c] = true;
+    }
+    for (char c : "\"'`\\=&<>".toCharArray()) {
+      UNESCAPED_CHARS[c] = false;
+    }
+  }
+
+  /** The maximum number of strings in {@link #escapedJsStrings}. */
+  private static final int MAX_ESCAPED_JS_STRINGS = 2048;
+
+  // A memoizer for formatting strings as JS strings, which keeps the most recently used ones.
+  private final Map<String, String> escapedJsStrings =
+      new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_ESCAPED_JS_STRINGS;
+        }
+      };
 
   private final CodeConsumer cc;
 
@@ -1751,9 +1775,19 @@ public class CodeGenerator {
       String backslashEscape,
       boolean useSlashV,
       boolean isRegexp) {
-    StringBuilder sb = new StringBuilder(s.length() + 2);
+    StringBuilder sb = null;
+    // The start of the characters that have not been copied to sb yet.
+    int start = 0;
     for (int i = 0; i < s.length(); i++) {
       char c = s.charAt(i);
+      if (c < UNESCAPED_CHARS.length && UNESCAPED_CHARS[c]) {
+        continue;
+      }
+      if (sb == null) {
+        sb = new StringBuilder(s.length() + 16);
+      }
+      sb.append(s, start, i);
+      start = i + 1;
       switch (c) {
         case '\0': sb.append("\\x00"); break;
         case '\u000B':
@@ -1854,6 +1888,10 @@ public class CodeGenerator {
           }
       }
     }
+    if (sb == null) {
+      return s;
+    }
+    sb.append(s, start, s.length());
     return sb.toString();
   }
 
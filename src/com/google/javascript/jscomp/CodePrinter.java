@@ -52,11 +52,29 @@ public final class CodePrinter {
     private final List<Mapping> allMappings;
     private final boolean createSrcMap;
     private final SourceMap.DetailLevel sourceMapDetailLevel;
+    /**
+     * How much code to buffer before writing it to the output, if there is one. Code that may still
+     * change, such as the current line, is kept in the buffer even if it is longer than this.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 32 * 1024;
+
     protected final StringBuilder code = new StringBuilder(1024);
     protected final int lineLengthThreshold;
     protected int lineLength = 0;
     protected int lineIndex = 0;
 
+    /** Where to write finished code as it is printed, or null to keep all of it in the buffer. */
+    private Appendable output = null;
+
+    /** The first exception thrown by the output, which is rethrown by {@link #finishOutput}. */
+    private IOException outputException = null;
+
+    /** The lengths of the lines that have been written to the output. */
+    private final List<Integer> writtenLineLengths = new ArrayList<>();
+
+    /** The length of the last, unfinished, line that has been written to the output. */
+    private int writtenLineLength = 0;
+
     MappedCodePrinter(
         int lineLengthThreshold,
         boolean createSrcMap,
@@ -136,7 +154,24 @@ public final class CodePrinter {
      */
     void generateSourceMap(String code, SourceMap map) {
       if (createSrcMap) {
-        List<Integer> lineLengths = computeLineLengths(code);
+        generateSourceMap(computeLineLengths(code), map);
+      }
+    }
+
+    /**
+     * Generates the source map for code that has been written to the output.
+     *
+     * @see #setOutput
+     */
+    void generateSourceMap(SourceMap map) {
+      checkState(output != null && code.length() == 0, "Code has not been written out");
+      if (createSrcMap) {
+        generateSourceMap(writtenLineLengths, map);
+      }
+    }
+
+    private void generateSourceMap(List<Integer> lineLengths, SourceMap map) {
+      if (createSrcMap) {
         for (Mapping mapping : allMappings) {
           map.addMapping(
               mapping.node, mapping.start, adjustEndPosition(lineLengths, mapping.end));
@@ -213,6 +248,74 @@ public final class CodePrinter {
       return code.toString();
     }
 
+    /**
+     * Writes finished code to the given output as it is printed, instead of keeping all of it in
+     * the buffer. {@link #finishOutput} must be called after printing.
+     */
+    void setOutput(Appendable output) {
+      checkState(code.length() == 0, "Code has already been printed");
+      this.output = output;
+    }
+
+    /**
+     * Returns the position in the buffer of the first character that may still change. Code before
+     * it is finished and can be written to the output.
+     */
+    int getFirstMutablePosition() {
+      return code.length();
+    }
+
+    /**
+     * Called after the first {@code count} characters have been removed from the buffer, so that
+     * positions in the buffer can be adjusted.
+     */
+    void onCodeWritten(int count) {}
+
+    /**
+     * Writes finished code to the output once enough of it has been buffered. The last character
+     * always stays in the buffer, for {@link #getLastChar}.
+     */
+    protected final void maybeWriteCode() {
+      if (output != null && code.length() > OUTPUT_BUFFER_SIZE) {
+        int end = Math.min(getFirstMutablePosition(), code.length() - 1);
+        // Don't write small pieces over and over while a long line keeps the code mutable.
+        if (end > OUTPUT_BUFFER_SIZE / 2) {
+          writeCode(end);
+          onCodeWritten(end);
+        }
+      }
+    }
+
+    /** Writes all of the remaining code to the output. */
+    void finishOutput() throws IOException {
+      checkState(output != null);
+      writeCode(code.length());
+      if (outputException != null) {
+        throw outputException;
+      }
+    }
+
+    private void writeCode(int end) {
+      if (createSrcMap) {
+        for (int i = 0; i < end; i++) {
+          if (code.charAt(i) == '\n') {
+            writtenLineLengths.add(writtenLineLength);
+            writtenLineLength = 0;
+          } else {
+            writtenLineLength++;
+          }
+        }
+      }
+      if (outputException == null) {
+        try {
+          output.append(code, 0, end);
+        } catch (IOException e) {
+          outputException = e;
+        }
+      }
+      code.delete(0, end);
+    }
+
     @Override
     char getLastChar() {
       return (code.length() > 0) ? code.charAt(code.length() - 1) : '\0';
@@ -316,6 +419,7 @@ public final class CodePrinter {
         lineIndex += newlines;
         lineLength = str.length() - str.lastIndexOf('\n');
       }
+      maybeWriteCode();
     }
 
     /**
@@ -599,6 +703,7 @@ public final class CodePrinter {
         lineIndex += newlines;
         lineLength = str.length() - str.lastIndexOf('\n');
       }
+      maybeWriteCode();
     }
 
     /**
@@ -667,6 +772,23 @@ public final class CodePrinter {
       preferredBreakPosition = code.length();
     }
 
+    @Override
+    int getFirstMutablePosition() {
+      // A line may be cut at the preferred break position, which is on the current line, and at
+      // the end of a file the previous cut may be moved, which changes the previous line.
+      return prevCutPosition > 0 ? prevLineStartPosition : lineStartPosition;
+    }
+
+    @Override
+    void onCodeWritten(int count) {
+      lineStartPosition -= count;
+      preferredBreakPosition -= count;
+      if (prevCutPosition > 0) {
+        prevCutPosition -= count;
+        prevLineStartPosition -= count;
+      }
+    }
+
     @Override
     void endFile() {
       super.endFile();
@@ -820,21 +942,74 @@ public final class CodePrinter {
      * Generates the source code and returns it.
      */
     public String build() {
+      MappedCodePrinter mcp = printTo(null);
+      String code = mcp.getCode();
+      if (sourceMap != null) {
+        mcp.generateSourceMap(code, sourceMap);
+      }
+      return code;
+    }
+
+    /**
+     * Generates the source code and writes it to the given output as it is printed, so that only a
+     * small part of the code is in memory at any time. Source map offsets are the same as those of
+     * {@link #build}.
+     */
+    public void build(Appendable output) throws IOException {
+      MappedCodePrinter mcp = printTo(output);
+      mcp.finishOutput();
+      if (sourceMap != null) {
+        mcp.generateSourceMap(sourceMap);
+      }
+    }
+
+    /**
+     * Generates the source code, but leaves adding its mappings to the source map to the caller.
+     * This does not touch the source map, so it may run on any thread, and the mappings are added
+     * relative to the starting position that the source map has when the caller adds them.
+     */
+    PrintedCode buildWithDeferredSourceMap() {
+      MappedCodePrinter mcp = printTo(null);
+      return new PrintedCode(mcp, mcp.getCode());
+    }
+
+    private MappedCodePrinter printTo(Appendable output) {
       if (root == null) {
         throw new IllegalStateException(
             "Cannot build without root node being specified");
       }
 
-      return toSource(
+      return print(
           root,
           Format.fromOptions(options, outputTypes, prettyPrint),
           options,
-          sourceMap,
+          sourceMap != null,
           tagAsTypeSummary,
           tagAsExterns,
           tagAsStrict,
           lineBreak,
-          codeGeneratorFactory);
+          codeGeneratorFactory,
+          output);
+    }
+  }
+
+  /** Code printed by {@link Builder#buildWithDeferredSourceMap}. */
+  static final class PrintedCode {
+    private final MappedCodePrinter printer;
+    private final String code;
+
+    private PrintedCode(MappedCodePrinter printer, String code) {
+      this.printer = printer;
+      this.code = code;
+    }
+
+    String getCode() {
+      return code;
+    }
+
+    /** Adds the mappings of the code to the source map, if the builder had one. */
+    void generateSourceMap(SourceMap map) {
+      printer.generateSourceMap(code, map);
     }
   }
 
@@ -857,20 +1032,23 @@ public final class CodePrinter {
     }
   }
 
-  /** Converts a tree to JS code */
-  private static String toSource(
+  /**
+   * Converts a tree to JS code. The code is written to the output as it is printed if there is
+   * one, and is otherwise left in the returned printer.
+   */
+  private static MappedCodePrinter print(
       Node root,
       Format outputFormat,
       CompilerOptions options,
-      SourceMap sourceMap,
+      boolean createSourceMap,
       boolean tagAsTypeSummary,
       boolean tagAsExterns,
       boolean tagAsStrict,
       boolean lineBreak,
-      CodeGeneratorFactory codeGeneratorFactory) {
+      CodeGeneratorFactory codeGeneratorFactory,
+      Appendable output) {
     checkState(options.sourceMapDetailLevel != null);
 
-    boolean createSourceMap = (sourceMap != null);
     MappedCodePrinter mcp =
         outputFormat == Format.COMPACT
         ? new CompactCodePrinter(
@@ -883,6 +1061,9 @@ public final class CodePrinter {
             options.lineLengthThreshold,
             createSourceMap,
             options.sourceMapDetailLevel);
+    if (output != null) {
+      mcp.setOutput(output);
+    }
     CodeGenerator cg = codeGeneratorFactory.getCodeGenerator(outputFormat, mcp);
 
     if (tagAsExterns) {
@@ -897,13 +1078,6 @@ public final class CodePrinter {
 
     cg.add(root);
     mcp.endFile();
-
-    String code = mcp.getCode();
-
-    if (createSourceMap) {
-      mcp.generateSourceMap(code, sourceMap);
-    }
-
-    return code;
+    return mcp;
   }
 }
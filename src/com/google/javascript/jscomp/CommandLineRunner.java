@@ -242,6 +242,12 @@ public class CommandLineRunner extends
         hidden = true)
     private String saveAfterChecksFile = null;
 
+    @Option(name = "--externs_snapshot",
+        usage = "Filename of a prebuilt externs snapshot, as written by ExternsSnapshot. Externs "
+            + "found unchanged in the snapshot are not parsed again.",
+        hidden = true)
+    private String externsSnapshotFile = null;
+
 
     @Option(name = "--variable_renaming_report",
         usage = "File where the serialized version of the variable "
@@ -331,6 +337,14 @@ public class CommandLineRunner extends
         + "corresponds to.")
     private String createSourceMap = "";
 
+    @Option(name = "--create_source_map_index",
+        usage = "If specified along with a --create_source_map pattern that "
+        + "contains %outname%, a source map index is also output to the "
+        + "specified path. Its sections refer to the source map of each "
+        + "module, placed as if the module outputs were concatenated in "
+        + "order.")
+    private String createSourceMapIndex = "";
+
     @Option(name = "--source_map_format",
         hidden = true,
         usage = "The source map format to produce. "
@@ -670,6 +684,13 @@ public class CommandLineRunner extends
     private CompilerOptions.TracerMode tracerMode =
         CompilerOptions.TracerMode.OFF;
 
+    @Option(name = "--tracer_exact_sizes",
+        hidden = true,
+        handler = BooleanOptionHandler.class,
+        usage = "Makes --tracer_mode measure sizes by printing the whole program "
+        + "after every pass, instead of only the scripts that changed.")
+    private boolean tracerExactSizes = false;
+
     @Option(name = "--new_type_inf",
         handler = BooleanOptionHandler.class,
         usage = "Checks for type errors using the new type inference algorithm.")
@@ -867,6 +888,7 @@ public class CommandLineRunner extends
                 "Reports",
                 ImmutableList.of(
                     "create_source_map",
+                    "create_source_map_index",
                     "output_manifest",
                     "output_module_dependencies",
                     "property_renaming_report",
@@ -1567,6 +1589,7 @@ public class CommandLineRunner extends
           .setJsOutputFile(flags.jsOutputFile)
           .setSaveAfterChecksFileName(flags.saveAfterChecksFile)
           .setContinueSavedCompilationFileName(flags.continueSavedCompilationFile)
+          .setExternsSnapshotFileName(flags.externsSnapshotFile)
           .setModule(flags.module)
           .setVariableMapOutputFile(flags.variableMapOutputFile)
           .setCreateNameMapFiles(flags.createNameMapFiles)
@@ -1577,6 +1600,7 @@ public class CommandLineRunner extends
           .setModuleWrapper(flags.moduleWrapper)
           .setModuleOutputPathPrefix(flags.moduleOutputPathPrefix)
           .setCreateSourceMap(flags.createSourceMap)
+          .setCreateSourceMapIndex(flags.createSourceMapIndex)
           .setSourceMapFormat(flags.sourceMapFormat)
           .setSourceMapLocationMappings(mappings)
           .setSourceMapInputFiles(sourceMapInputs)
@@ -1777,6 +1801,7 @@ public class CommandLineRunner extends
 
     options.setPrintSourceAfterEachPass(flags.printSourceAfterEachPass);
     options.setTracerMode(flags.tracerMode);
+    options.setExactTracerSizes(flags.tracerExactSizes);
     options.setStrictModeInput(flags.strictModeInput);
     if (!flags.emitUseStrict) {
       options.setEmitUseStrict(false);
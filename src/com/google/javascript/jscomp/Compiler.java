@@ -16,8 +16,10 @@
 
 package com.google.javascript.jscomp;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 
 import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
@@ -54,6 +56,8 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TypeIRegistry;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -76,6 +80,10 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -191,6 +199,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   /** The source code map */
   private SourceMap sourceMap;
 
+  // Prints scripts on several threads, created the first time it is needed.
+  private ParallelCodePrinter parallelCodePrinter;
+
   /** The externs created from the exports.  */
   private String externExports = null;
 
@@ -246,6 +257,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   public static final DiagnosticType MOTION_ITERATIONS_ERROR =
       DiagnosticType.error("JSC_MOTION_ITERATIONS_ERROR",
           "Exceeded max number of code motion iterations: {0}");
+  public static final DiagnosticType VARIANT_COMPILATION_ERROR =
+      DiagnosticType.error("JSC_VARIANT_COMPILATION_ERROR",
+          "Compiling this variant failed: {0}");
 
   private final CompilerExecutor compilerExecutor = createCompilerExecutor();
 
@@ -277,6 +291,32 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   private final Timeline<Node> changeTimeline = new Timeline<>();
   private final Timeline<Node> deleteTimeline = new Timeline<>();
 
+  // Control flow graphs of change scope roots, along with the change time of the root when the
+  // graph was built.
+  private final Map<Node, CachedControlFlowGraph> cfgCache = new HashMap<>();
+
+  // Cached control flow graphs handed out during the current pass. The annotations their consumers
+  // left on them (e.g. data flow lattices) are stripped after the pass.
+  private final Set<ControlFlowGraph<Node>> annotatedCfgs = new HashSet<>();
+
+  private final InlineCostEstimator.FunctionCostCache functionCostCache =
+      new InlineCostEstimator.FunctionCostCache();
+
+  // The global namespace of externsRoot and jsRoot, or null if the AST changed since it was built.
+  private GlobalNamespace globalNamespace;
+
+  // The references to the variables of jsRoot, or null if the AST changed since they were
+  // collected.
+  private ReferenceCollectingCallback variableReferences;
+
+  // The references to the variables of externsRoot and jsRoot, or null if the AST changed since
+  // they were collected.
+  private ReferenceCollectingCallback externsAndSourcesVariableReferences;
+
+  // Whether the current pass asked for the shared variable references. They hold on to every scope
+  // of the program, so they are dropped after the first pass that does not use them.
+  private boolean variableReferencesUsedInPass;
+
   /**
    * Creates a Compiler that reports errors and warnings to its logger.
    */
@@ -547,8 +587,14 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
   private <T extends SourceFile> List<CompilerInput> makeExternInputs(List<T> externSources) {
     List<CompilerInput> inputs = new ArrayList<>(externSources.size());
+    ExternsSnapshot snapshot = getExternsSnapshot();
     for (SourceFile file : externSources) {
-      inputs.add(new CompilerInput(file, /* isExtern= */ true));
+      SourceAst ast = snapshot != null ? snapshot.getAst(file, options) : null;
+      if (ast != null) {
+        inputs.add(new CompilerInput(ast, /* isExtern= */ true));
+      } else {
+        inputs.add(new CompilerInput(file, /* isExtern= */ true));
+      }
     }
     return inputs;
   }
@@ -1066,6 +1112,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
     runCustomPasses(CustomPassExecutionTime.BEFORE_OPTIMIZATIONS);
     phaseOptimizer = null;
+    cfgCache.clear();
+    annotatedCfgs.clear();
+    functionCostCache.clear();
   }
 
   @Override
@@ -1144,6 +1193,12 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
   @Override
   final void afterPass(String passName) {
+    clearControlFlowGraphAnnotations();
+    if (!variableReferencesUsedInPass) {
+      variableReferences = null;
+      externsAndSourcesVariableReferences = null;
+    }
+    variableReferencesUsedInPass = false;
     if (options.printSourceAfterEachPass) {
       String currentJsSource = getCurrentJsSource();
       if (!currentJsSource.equals(this.lastJsSource)) {
@@ -1157,6 +1212,15 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     }
   }
 
+  /** Drops the annotations of the cached control flow graphs handed out since the last pass. */
+  private void clearControlFlowGraphAnnotations() {
+    for (ControlFlowGraph<Node> cfg : annotatedCfgs) {
+      cfg.clearNodeAnnotations();
+      cfg.clearEdgeAnnotations();
+    }
+    annotatedCfgs.clear();
+  }
+
   final String getCurrentJsSource() {
     SourceMap sourceMap = getSourceMap();
     if (sourceMap != null) {
@@ -1683,7 +1747,13 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     if (options.getTracerMode().isOn()) {
       PrintStream tracerOutput =
           options.getTracerOutput() == null ? this.outStream : options.getTracerOutput();
-      tracker = new PerformanceTracker(externsRoot, jsRoot, options.getTracerMode(), tracerOutput);
+      tracker =
+          new PerformanceTracker(
+              externsRoot,
+              jsRoot,
+              options.getTracerMode(),
+              options.getExactTracerSizes(),
+              tracerOutput);
       addChangeHandler(tracker.getCodeChangeHandler());
     }
   }
@@ -2260,29 +2330,45 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
    */
   @Override
   public String toSource() {
-    return runInCompilerThread(
-        new Callable<String>() {
+    CodeBuilder cb = new CodeBuilder();
+    toSource(cb);
+    return cb.toString();
+  }
+
+  /**
+   * Converts the main parse tree back to JS code, writing it to the output as it is printed
+   * instead of building the whole program in memory first.
+   */
+  public void toSource(Appendable out) throws IOException {
+    CodeBuilder cb = new CodeBuilder(out);
+    toSource(cb);
+    cb.flush();
+  }
+
+  private void toSource(final CodeBuilder cb) {
+    runInCompilerThread(
+        new Callable<Void>() {
           @Override
-          public String call() throws Exception {
+          public Void call() throws Exception {
             Tracer tracer = newTracer("toSource");
             try {
-              CodeBuilder cb = new CodeBuilder();
               if (jsRoot != null) {
-                int i = 0;
+                List<Node> scriptNodes = new ArrayList<>();
                 if (options.shouldPrintExterns()) {
                   for (Node scriptNode = externsRoot.getFirstChild();
                       scriptNode != null;
                       scriptNode = scriptNode.getNext()) {
-                    toSource(cb, i++, scriptNode);
+                    scriptNodes.add(scriptNode);
                   }
                 }
                 for (Node scriptNode = jsRoot.getFirstChild();
                     scriptNode != null;
                     scriptNode = scriptNode.getNext()) {
-                  toSource(cb, i++, scriptNode);
+                  scriptNodes.add(scriptNode);
                 }
+                toSource(cb, scriptNodes);
               }
-              return cb.toString();
+              return null;
             } finally {
               stopTracer(tracer, "toSource");
             }
@@ -2320,24 +2406,37 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
    * Converts the parse tree for a module back to JS code.
    */
   public String toSource(final JSModule module) {
-    return runInCompilerThread(new Callable<String>() {
+    CodeBuilder cb = new CodeBuilder();
+    toSource(cb, module);
+    return cb.toString();
+  }
+
+  /**
+   * Converts the parse tree for a module back to JS code, writing it to the output as it is
+   * printed.
+   */
+  public void toSource(Appendable out, JSModule module) throws IOException {
+    CodeBuilder cb = new CodeBuilder(out);
+    toSource(cb, module);
+    cb.flush();
+  }
+
+  private void toSource(final CodeBuilder cb, final JSModule module) {
+    runInCompilerThread(new Callable<Void>() {
       @Override
-      public String call() throws Exception {
+      public Void call() throws Exception {
         List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return "";
-        }
-        CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
+        List<Node> scriptNodes = new ArrayList<>(inputs.size());
+        for (CompilerInput input : inputs) {
+          Node scriptNode = input.getAstRoot(Compiler.this);
           if (scriptNode == null) {
             throw new IllegalArgumentException(
                 "Bad module: " + module.getName());
           }
-          toSource(cb, i, scriptNode);
+          scriptNodes.add(scriptNode);
         }
-        return cb.toString();
+        toSource(cb, scriptNodes);
+        return null;
       }
     });
   }
@@ -2384,6 +2483,58 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   public void toSource(final CodeBuilder cb,
                        final int inputSeqNum,
                        final Node root) {
+    toSource(cb, inputSeqNum, root, null);
+  }
+
+  /**
+   * Writes out JS code for each of the script nodes, numbering them in order. If the options allow
+   * it, several scripts are printed at once on separate threads, and their code and source mappings
+   * are then appended in order, which gives the same output as printing them one by one.
+   */
+  private void toSource(CodeBuilder cb, List<Node> scriptNodes) {
+    int numScripts = scriptNodes.size();
+    if (options.numParallelThreads <= 1 || numScripts <= 1) {
+      for (int i = 0; i < numScripts; i++) {
+        toSource(cb, i, scriptNodes.get(i));
+      }
+      return;
+    }
+
+    ParallelCodePrinter parallelPrinter = getParallelCodePrinter();
+    // Print a few scripts per thread at a time, so that the printed code of all of the scripts
+    // is never in memory at once.
+    int batchSize = 4 * options.numParallelThreads;
+    for (int start = 0; start < numScripts; start += batchSize) {
+      int end = Math.min(start + batchSize, numScripts);
+      List<CodePrinter.Builder> builders = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        builders.add(createCodePrinter(scriptNodes.get(i), sourceMap, i == 0));
+      }
+      List<CodePrinter.PrintedCode> printedCode = parallelPrinter.print(builders);
+      for (int i = start; i < end; i++) {
+        toSource(cb, i, scriptNodes.get(i), printedCode.get(i - start));
+      }
+    }
+  }
+
+  /** Returns the printer shared by all the outputs of this compiler, e.g. one per module. */
+  private synchronized ParallelCodePrinter getParallelCodePrinter() {
+    if (parallelCodePrinter == null
+        || parallelCodePrinter.getNumParallelThreads() != options.numParallelThreads) {
+      parallelCodePrinter = new ParallelCodePrinter(options.numParallelThreads);
+    }
+    return parallelCodePrinter;
+  }
+
+  /**
+   * Writes out JS code from a root node, using the given printed code for the root if it has
+   * already been printed.
+   */
+  private void toSource(
+      final CodeBuilder cb,
+      final int inputSeqNum,
+      final Node root,
+      @Nullable final CodePrinter.PrintedCode printedCode) {
     runInCompilerThread(
         new Callable<Void>() {
           @Override
@@ -2424,16 +2575,22 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
             // if LanguageMode is strict, only print 'use strict'
             // for the first input file
-            String code = toSource(root, sourceMap, inputSeqNum == 0);
-            if (!code.isEmpty()) {
-              cb.append(code);
-
+            int start = cb.getLength();
+            if (printedCode == null) {
+              toSource(root, sourceMap, inputSeqNum == 0, cb);
+            } else {
+              cb.append(printedCode.getCode());
+              if (sourceMap != null) {
+                printedCode.generateSourceMap(sourceMap);
+              }
+            }
+            int length = cb.getLength() - start;
+            if (length > 0) {
               // In order to avoid parse ambiguity when files are concatenated
               // together, all files should end in a semi-colon. Do a quick
               // heuristic check if there's an obvious semi-colon already there.
-              int length = code.length();
-              char lastChar = code.charAt(length - 1);
-              char secondLastChar = length >= 2 ? code.charAt(length - 2) : '\0';
+              char lastChar = cb.charFromEnd(0);
+              char secondLastChar = length >= 2 ? cb.charFromEnd(1) : '\0';
               boolean hasSemiColon = lastChar == ';' || (lastChar == '\n' && secondLastChar == ';');
               if (!hasSemiColon) {
                 cb.append(";");
@@ -2451,13 +2608,23 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   @Override
   public String toSource(Node n) {
     initCompilerOptionsIfTesting();
-    return toSource(n, null, true);
+    return createCodePrinter(n, null, true).build();
   }
 
   /**
-   * Generates JavaScript source code for an AST.
+   * Generates JavaScript source code for an AST and appends it to the code builder.
    */
-  private String toSource(Node n, SourceMap sourceMap, boolean firstOutput) {
+  private void toSource(Node n, SourceMap sourceMap, boolean firstOutput, CodeBuilder cb) {
+    try {
+      createCodePrinter(n, sourceMap, firstOutput).build(cb);
+    } catch (IOException e) {
+      // Output errors are kept by the code builder, which never throws when appending.
+      throw new AssertionError(e);
+    }
+  }
+
+  private CodePrinter.Builder createCodePrinter(
+      Node n, SourceMap sourceMap, boolean firstOutput) {
     CodePrinter.Builder builder = new CodePrinter.Builder(n);
     builder.setTypeRegistry(getTypeIRegistry());
     builder.setCompilerOptions(options);
@@ -2466,55 +2633,112 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     builder.setTagAsTypeSummary(
         firstOutput && !n.isFromExterns() && options.shouldGenerateTypedExterns());
     builder.setTagAsStrict(firstOutput && options.shouldEmitUseStrict());
-    return builder.build();
+    return builder;
   }
 
   /**
    * Stores a buffer of text to which more can be appended.  This is just like a
    * StringBuilder except that we also track the number of lines.
+   *
+   * <p>If it is given an output, it writes the text to it whenever enough has been
+   * buffered, and only keeps the last few characters.
    */
-  public static class CodeBuilder {
+  public static class CodeBuilder implements Appendable {
+    /** How much text to buffer before writing it to the output, if there is one. */
+    private static final int OUTPUT_BUFFER_SIZE = 32 * 1024;
+
+    /** How many characters to keep after writing to the output, for {@link #endsWith}. */
+    private static final int KEPT_SUFFIX_LENGTH = 16;
+
     private final StringBuilder sb = new StringBuilder();
+    private final Appendable out;
+    private IOException outException = null;
+    private int length = 0;
     private int lineCount = 0;
     private int colCount = 0;
     private final Set<String> uniqueLicenses = new HashSet<>();
 
+    public CodeBuilder() {
+      this.out = null;
+    }
+
+    /** Creates a code builder that writes its text to the given output. */
+    CodeBuilder(Appendable out) {
+      this.out = checkNotNull(out);
+    }
+
     /** Removes all text, but leaves the line count unchanged. */
     void reset() {
+      checkState(out == null, "Cannot reset text that has been written out");
       sb.setLength(0);
+      length = 0;
     }
 
     /** Appends the given string to the text buffer. */
     CodeBuilder append(String str) {
-      sb.append(str);
+      return append(str, 0, str.length());
+    }
+
+    @Override
+    public CodeBuilder append(CharSequence csq) {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public CodeBuilder append(CharSequence csq, int start, int end) {
+      sb.append(csq, start, end);
+      length += end - start;
 
       // Adjust the line and column information for the new text.
-      int index = -1;
-      int lastIndex = index;
-      while ((index = str.indexOf('\n', index + 1)) >= 0) {
-        ++lineCount;
-        lastIndex = index;
+      for (int i = start; i < end; i++) {
+        if (csq.charAt(i) == '\n') {
+          ++lineCount;
+          colCount = 0;
+        } else {
+          ++colCount;
+        }
       }
 
-      if (lastIndex == -1) {
-        // No new lines, append the new characters added.
-        colCount += str.length();
-      } else {
-        colCount = str.length() - (lastIndex + 1);
+      if (out != null && sb.length() > OUTPUT_BUFFER_SIZE) {
+        write(sb.length() - KEPT_SUFFIX_LENGTH);
       }
-
       return this;
     }
 
+    @Override
+    public CodeBuilder append(char c) {
+      return append(String.valueOf(c));
+    }
+
+    /** Writes all remaining text to the output, and throws if the output failed. */
+    void flush() throws IOException {
+      checkState(out != null);
+      write(sb.length());
+      if (outException != null) {
+        throw outException;
+      }
+    }
+
+    private void write(int end) {
+      if (outException == null) {
+        try {
+          out.append(sb, 0, end);
+        } catch (IOException e) {
+          outException = e;
+        }
+      }
+      sb.delete(0, end);
+    }
+
     /** Returns all text in the text buffer. */
     @Override
     public String toString() {
       return sb.toString();
     }
 
-    /** Returns the length of the text buffer. */
+    /** Returns the length of the text appended since the last reset. */
     public int getLength() {
-      return sb.length();
+      return length;
     }
 
     /** Returns the (zero-based) index of the last line in the text buffer. */
@@ -2527,9 +2751,16 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
       return colCount;
     }
 
+    /** Returns the character at the given index from the end of the text, which must exist. */
+    char charFromEnd(int index) {
+      checkState(index < Math.min(length, KEPT_SUFFIX_LENGTH));
+      return sb.charAt(sb.length() - 1 - index);
+    }
+
     /** Determines whether the text ends with the given suffix. */
     boolean endsWith(String suffix) {
-      return (sb.length() > suffix.length())
+      checkState(out == null || suffix.length() < KEPT_SUFFIX_LENGTH);
+      return (length > suffix.length())
           && suffix.equals(sb.substring(sb.length() - suffix.length()));
     }
 
@@ -2554,6 +2785,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     phaseOptimizer.consume(optimizations);
     phaseOptimizer.process(externsRoot, jsRoot);
     phaseOptimizer = null;
+    cfgCache.clear();
+    annotatedCfgs.clear();
+    functionCostCache.clear();
   }
 
   @Override
@@ -2683,6 +2917,96 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     changeStamp++;
   }
 
+  @Override
+  ControlFlowGraph<Node> getControlFlowGraph(Node cfgRoot) {
+    if (!NodeUtil.isChangeScopeRoot(cfgRoot)) {
+      return ControlFlowAnalysis.getCfg(this, cfgRoot);
+    }
+    CachedControlFlowGraph cached = cfgCache.get(cfgRoot);
+    if (cached == null || cached.changeTime != cfgRoot.getChangeTime()) {
+      cached =
+          new CachedControlFlowGraph(
+              cfgRoot.getChangeTime(), ControlFlowAnalysis.getCfg(this, cfgRoot));
+      cfgCache.put(cfgRoot, cached);
+    }
+    annotatedCfgs.add(cached.cfg);
+    return cached.cfg;
+  }
+
+  @Override
+  GlobalNamespace getGlobalNamespace(Node externs, Node root) {
+    if (externs != externsRoot || root != jsRoot) {
+      return new GlobalNamespace(this, externs, root);
+    }
+    if (globalNamespace == null) {
+      globalNamespace = new GlobalNamespace(this, externsRoot, jsRoot);
+    } else if (options.devMode != DevMode.OFF) {
+      globalNamespace.verifyMatches(new GlobalNamespace(this, externsRoot, jsRoot));
+    }
+    return globalNamespace;
+  }
+
+  @Override
+  ReferenceCollectingCallback getVariableReferences(Node root) {
+    if (root != jsRoot) {
+      return collectVariableReferences(root);
+    }
+    variableReferencesUsedInPass = true;
+    if (variableReferences == null) {
+      variableReferences = collectVariableReferences(jsRoot);
+    } else if (options.devMode != DevMode.OFF) {
+      variableReferences.verifyMatches(collectVariableReferences(jsRoot));
+    }
+    return variableReferences;
+  }
+
+  @Override
+  ReferenceCollectingCallback getVariableReferences(Node externs, Node root) {
+    if (externs != externsRoot || root != jsRoot) {
+      return collectVariableReferences(externs, root);
+    }
+    variableReferencesUsedInPass = true;
+    if (externsAndSourcesVariableReferences == null) {
+      externsAndSourcesVariableReferences = collectVariableReferences(externsRoot, jsRoot);
+    } else if (options.devMode != DevMode.OFF) {
+      externsAndSourcesVariableReferences.verifyMatches(
+          collectVariableReferences(externsRoot, jsRoot));
+    }
+    return externsAndSourcesVariableReferences;
+  }
+
+  private ReferenceCollectingCallback collectVariableReferences(Node root) {
+    ReferenceCollectingCallback references = newVariableReferenceCollector();
+    references.process(root);
+    return references;
+  }
+
+  private ReferenceCollectingCallback collectVariableReferences(Node externs, Node root) {
+    ReferenceCollectingCallback references = newVariableReferenceCollector();
+    references.process(externs, root);
+    return references;
+  }
+
+  private ReferenceCollectingCallback newVariableReferenceCollector() {
+    return new ReferenceCollectingCallback(
+        this, ReferenceCollectingCallback.DO_NOTHING_BEHAVIOR, new Es6SyntacticScopeCreator(this));
+  }
+
+  @Override
+  InlineCostEstimator.FunctionCostCache getFunctionCostCache() {
+    return functionCostCache;
+  }
+
+  private static final class CachedControlFlowGraph {
+    final int changeTime;
+    final ControlFlowGraph<Node> cfg;
+
+    CachedControlFlowGraph(int changeTime, ControlFlowGraph<Node> cfg) {
+      this.changeTime = changeTime;
+      this.cfg = cfg;
+    }
+  }
+
   private Node getChangeScopeForNode(Node n) {
     /**
      * Compiler change reporting usually occurs after the AST change has already occurred. In the
@@ -2717,6 +3041,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     // Every code change happens at a different time
     changeStamp++;
     changeTimeline.add(n);
+    globalNamespace = null;
+    variableReferences = null;
+    externsAndSourcesVariableReferences = null;
   }
 
   @Override
@@ -2740,6 +3067,11 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     n.setDeleted(true);
     changeTimeline.remove(n);
     deleteTimeline.add(n);
+    cfgCache.remove(n);
+    functionCostCache.remove(n);
+    globalNamespace = null;
+    variableReferences = null;
+    externsAndSourcesVariableReferences = null;
   }
 
   @Override
@@ -2969,7 +3301,8 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
     // JSCompiler uses 1-indexing for lineNumber and 0-indexing for columnNumber.
     // Sourcemaps use 1-indexing for both.
-    SourceMapConsumerV3 consumer = sourceMap.getSourceMap(errorManager);
+    SourceMapConsumerV3 consumer =
+        sourceMap.getSourceMap(errorManager, options.inputSourceMapCache);
     if (consumer == null) {
       return null;
     }
@@ -2980,8 +3313,7 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
     // The sourcemap will return a path relative to the sourcemap's file.
     // Translate it to one relative to our base directory.
-    SourceFile source =
-        SourceMapResolver.getRelativePath(sourceMap.getOriginalPath(), result.getOriginalFile());
+    SourceFile source = sourceMap.getOriginalSource(result.getOriginalFile());
     if (source == null) {
       return null;
     }
@@ -3341,6 +3673,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     // NOTE: If hot swap passes that use GlobalNamespace are added, we will need
     // to revisit this approach to clearing GlobalNamespaces
     runHotSwapPass(null, null, ensureDefaultPassConfig().garbageCollectChecks);
+    globalNamespace = null;
+    variableReferences = null;
+    externsAndSourcesVariableReferences = null;
 
     this.getTypeRegistry().clearNamedTypes();
     this.removeSyntheticVarsInput();
@@ -3704,6 +4039,12 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     annotationMap = checkNotNull(compilerState.annotationMap);
     inputSourceMaps = compilerState.inputSourceMaps;
     changeStamp = compilerState.changeStamp;
+    cfgCache.clear();
+    annotatedCfgs.clear();
+    functionCostCache.clear();
+    globalNamespace = null;
+    variableReferences = null;
+    externsAndSourcesVariableReferences = null;
 
     // Reapply module names to deserialized modules
     renameModules(newModules, modules);
@@ -3724,6 +4065,82 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     }
   }
 
+  /**
+   * Compiles variants of the program, e.g. for several locales (see {@link
+   * CompilerOptions#setMessageBundle}) or sets of defines, without parsing and checking it again
+   * for each of them. Each variant starts from a copy of the state of this compiler, and runs
+   * stage 2 with its own options. Up to {@code numThreads} variants are optimized at the same
+   * time, each of them on its own compiler thread.
+   *
+   * <p>The state is only serialized once, but every variant deserializes its own copy of it, which
+   * costs about as much time as serializing it. So at most {@code numThreads} copies of the AST
+   * and type registry are in memory at once, in addition to the serialized state itself.
+   *
+   * <p>{@code stage1Passes()} must be called before this method is called. Each variant must be a
+   * new compiler, with its own output stream or error manager, on which {@code initOptions()} was
+   * called with options that only differ from the options of this compiler in what stage 2 does.
+   * In particular the input and output languages must be the same, since the AST of the variants
+   * was parsed and transpiled by stage 1.
+   *
+   * <p>A variant that fails reports a {@link #VARIANT_COMPILATION_ERROR} and doesn't stop the
+   * others. The caller is responsible for calling {@code generateReport()} on each variant.
+   */
+  @GwtIncompatible("ObjectOutputStream")
+  public void stage2PassesForVariants(List<Compiler> variants, int numThreads) {
+    checkState(!hasErrors());
+    checkArgument(numThreads > 0, "Invalid number of threads: %s", numThreads);
+    for (Compiler variant : variants) {
+      checkArgument(
+          variant.options.getLanguageIn() == options.getLanguageIn()
+              && variant.options.getLanguageOut() == options.getLanguageOut(),
+          "The languages of a variant must be the same as the languages of stage 1");
+    }
+    final byte[] state;
+    try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      saveState(outputStream);
+      state = outputStream.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>(variants.size());
+    for (final Compiler variant : variants) {
+      tasks.add(
+          new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              try (ByteArrayInputStream inputStream = new ByteArrayInputStream(state)) {
+                variant.restoreState(inputStream);
+                if (!variant.hasErrors()) {
+                  variant.stage2Passes();
+                }
+                variant.performPostCompilationTasks();
+              } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                variant.report(JSError.make(VARIANT_COMPILATION_ERROR, String.valueOf(e)));
+              }
+              return null;
+            }
+          });
+    }
+
+    // Every variant runs its passes on its own compiler thread, so these threads only wait.
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, tasks.size())));
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   public void resetCompilerInput() {
     for (JSModule module : this.modules) {
       for (CompilerInput input : module.getInputs()) {
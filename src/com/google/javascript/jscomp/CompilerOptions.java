@@ -124,6 +124,14 @@ public class CompilerOptions implements Serializable {
     this.inputSourceMaps = inputSourceMaps;
   }
 
+  /**
+   * Sets a cache of parsed input sourcemaps to share with other compilations, or null to parse
+   * the input sourcemaps of this compilation on their own.
+   */
+  public void setInputSourceMapCache(InputSourceMapCache inputSourceMapCache) {
+    this.inputSourceMapCache = inputSourceMapCache;
+  }
+
   /**
    * Whether to infer consts. This should not be configurable by
    * external clients. This is a transitional flag for a new type
@@ -676,6 +684,9 @@ public class CompilerOptions implements Serializable {
   /** Input sourcemap files, indexed by the JS files they refer to */
   ImmutableMap<String, SourceMapInput> inputSourceMaps;
 
+  /** Parsed input sourcemaps shared with other compilations, if any */
+  InputSourceMapCache inputSourceMapCache;
+
   /** Give anonymous functions names for easier debugging */
   public AnonymousFunctionNamingPolicy anonymousFunctionNaming;
 
@@ -1017,6 +1028,20 @@ public class CompilerOptions implements Serializable {
     this.tracer = mode;
   }
 
+  private boolean exactTracerSizes;
+
+  boolean getExactTracerSizes() {
+    return exactTracerSizes;
+  }
+
+  /**
+   * Whether the tracer should print the whole program after every pass to measure its size,
+   * instead of only reprinting the scripts that changed and summing the sizes of all scripts.
+   */
+  public void setExactTracerSizes(boolean exactTracerSizes) {
+    this.exactTracerSizes = exactTracerSizes;
+  }
+
   private PrintStream tracerOutput;
 
   PrintStream getTracerOutput() {
@@ -1320,6 +1345,7 @@ public class CompilerOptions implements Serializable {
     replaceStringsReservedStrings = Collections.emptySet();
     propertyInvalidationErrors = new HashMap<>();
     inputSourceMaps = ImmutableMap.of();
+    inputSourceMapCache = null;
 
     // Instrumentation
     instrumentationTemplate = null;  // instrument functions
@@ -1335,6 +1361,7 @@ public class CompilerOptions implements Serializable {
     preferLineBreakAtEndOfFile = false;
     reportPath = null;
     tracer = TracerMode.OFF;
+    exactTracerSizes = false;
     colorizeErrorOutput = false;
     errorFormat = ErrorFormat.SINGLELINE;
     debugFunctionSideEffectsPath = null;
@@ -2883,6 +2910,7 @@ public class CompilerOptions implements Serializable {
             .add("environment", getEnvironment())
             .add("errorFormat", errorFormat)
             .add("errorHandler", errorHandler)
+            .add("exactTracerSizes", exactTracerSizes)
             .add("exportLocalPropertyDefinitions", exportLocalPropertyDefinitions)
             .add("exportTestFunctions", exportTestFunctions)
             .add("externExports", isExternExportsEnabled())
@@ -2912,6 +2940,7 @@ public class CompilerOptions implements Serializable {
             .add("inputAnonymousFunctionNamingMap", inputAnonymousFunctionNamingMap)
             .add("inputDelimiter", inputDelimiter)
             .add("inputPropertyMap", inputPropertyMap)
+            .add("inputSourceMapCache", inputSourceMapCache)
             .add("inputSourceMaps", inputSourceMaps)
             .add("inputVariableMap", inputVariableMap)
             .add("instrumentationTemplateFile", instrumentationTemplateFile)
@@ -19,6 +19,7 @@ package com.google.javascript.jscomp;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.javascript.jscomp.CrossModuleReferenceCollector.TopLevelStatement;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
@@ -74,6 +75,13 @@ class CrossModuleCodeMotion implements CompilerPass {
    */
   private final Map<JSModule, Node> moduleInsertionPointMap = new HashMap<>();
 
+  /**
+   * Map from module to the smallest covering subtrees within it that have been computed, keyed by
+   * the modules with immovable references. Many symbols are referenced from the same set of
+   * modules, so they can share a single query to the module graph.
+   */
+  private final Map<JSModule, Map<BitSet, JSModule>> smallestCoveringSubtrees = new HashMap<>();
+
   private final boolean parentModuleCanSeeSymbolsDeclaredInChildren;
 
   /**
@@ -379,6 +387,22 @@ class CrossModuleCodeMotion implements CompilerPass {
     }
   }
 
+  @VisibleForTesting
+  JSModule getSmallestCoveringSubtree(JSModule parentTree, BitSet dependentModules) {
+    Map<BitSet, JSModule> subtrees = smallestCoveringSubtrees.get(parentTree);
+    if (subtrees == null) {
+      subtrees = new HashMap<>();
+      smallestCoveringSubtrees.put(parentTree, subtrees);
+    }
+    JSModule subtree = subtrees.get(dependentModules);
+    if (subtree == null) {
+      subtree = graph.getSmallestCoveringSubtree(parentTree, dependentModules);
+      // Copy the key, since callers keep adding to their bit sets.
+      subtrees.put((BitSet) dependentModules.clone(), subtree);
+    }
+    return subtree;
+  }
+
   private void addGuardToInstanceofReference(Node referenceNode) {
     checkState(
         isUnguardedInstanceofReference(referenceNode),
@@ -623,7 +647,7 @@ class CrossModuleCodeMotion implements CompilerPass {
       } else if (!allStatementsCanMove()) {
         return currentModule;
       } else {
-        return graph.getSmallestCoveringSubtree(currentModule, modulesWithImmovableReferences);
+        return getSmallestCoveringSubtree(currentModule, modulesWithImmovableReferences);
       }
     }
 
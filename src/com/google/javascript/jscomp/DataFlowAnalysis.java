@@ -29,6 +29,8 @@ import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.jscomp.parsing.parser.util.format.SimpleFormat;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -36,7 +38,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * A framework to help writing static program analysis. A subclass of
@@ -90,7 +91,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
 
   private final ControlFlowGraph<N> cfg;
   final JoinOp<L> joinOp;
-  protected final Set<DiGraphNode<N, Branch>> orderedWorkSet;
+  protected final Workset<N> orderedWorkSet;
 
   /*
    * Feel free to increase this to a reasonable number if you are finding that
@@ -124,12 +125,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
   DataFlowAnalysis(ControlFlowGraph<N> targetCfg, JoinOp<L> joinOp) {
     this.cfg = targetCfg;
     this.joinOp = joinOp;
-    Comparator<DiGraphNode<N, Branch>> nodeComparator = cfg.getOptionalNodeComparator(isForward());
-    if (nodeComparator != null) {
-      this.orderedWorkSet = new TreeSet<>(nodeComparator);
-    } else {
-      this.orderedWorkSet = new LinkedHashSet<>();
-    }
+    this.orderedWorkSet = new Workset<>(cfg.getOptionalNodeComparator(isForward()));
   }
 
   /**
@@ -203,14 +199,27 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    */
   final void analyze(int maxSteps) {
     initialize();
+    computeFixedPoint(maxSteps);
+    if (isForward()) {
+      joinInputs(getCfg().getImplicitReturn());
+    }
+  }
+
+  /**
+   * Flows through the nodes of the workset, adding the nodes that depend on
+   * each changed node back to it, until it is empty.
+   *
+   * @param maxSteps Max number of iterations before the method stops and throw
+   *        a {@link MaxIterationsExceededException}.
+   */
+  void computeFixedPoint(int maxSteps) {
     int step = 0;
     while (!orderedWorkSet.isEmpty()) {
       if (step > maxSteps) {
         throw new MaxIterationsExceededException(
             "Analysis did not terminate after " + maxSteps + " iterations");
       }
-      DiGraphNode<N, Branch> curNode = orderedWorkSet.iterator().next();
-      orderedWorkSet.remove(curNode);
+      DiGraphNode<N, Branch> curNode = orderedWorkSet.removeFirst();
       joinInputs(curNode);
       if (flow(curNode)) {
         // If there is a change in the current node, we want to grab the list
@@ -226,9 +235,6 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
       }
       step++;
     }
-    if (isForward()) {
-      joinInputs(getCfg().getImplicitReturn());
-    }
   }
 
   /**
@@ -249,10 +255,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    * Initializes the work list and the control flow graph.
    */
   protected void initialize() {
-    // TODO(user): Calling clear doesn't deallocate the memory in a
-    // LinkedHashSet. Consider creating a new work set if we plan to repeatedly
-    // call analyze.
-    orderedWorkSet.clear();
+    orderedWorkSet.reset(cfg);
     for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
       node.setAnnotation(new FlowState<>(createInitialEstimateLattice(),
           createInitialEstimateLattice()));
@@ -387,6 +390,92 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
     }
   }
 
+  /**
+   * The set of nodes that still need to be flowed through.
+   *
+   * <p>If the control flow graph provides a node comparator, nodes are always removed in its order.
+   * The order is computed once per analysis and each node is mapped to its rank, so that adding and
+   * removing nodes only sets and clears bits instead of rebalancing a sorted tree. Otherwise nodes
+   * are removed in insertion order.
+   */
+  static final class Workset<N> {
+    private final Comparator<DiGraphNode<N, Branch>> comparator;
+    private final Set<DiGraphNode<N, Branch>> unordered;
+
+    private final List<DiGraphNode<N, Branch>> nodesByRank = new ArrayList<>();
+    private final Map<DiGraphNode<N, Branch>, Integer> ranks = new HashMap<>();
+    private final BitSet pending = new BitSet();
+    // No rank below this one is pending.
+    private int lowestPending;
+
+    Workset(Comparator<DiGraphNode<N, Branch>> comparator) {
+      this.comparator = comparator;
+      this.unordered = comparator == null ? new LinkedHashSet<DiGraphNode<N, Branch>>() : null;
+    }
+
+    /**
+     * Empties the workset and ranks the nodes of the graph. The implicit return is never flowed
+     * through, so it is not ranked.
+     */
+    void reset(ControlFlowGraph<N> cfg) {
+      if (comparator == null) {
+        unordered.clear();
+        return;
+      }
+      nodesByRank.clear();
+      ranks.clear();
+      pending.clear();
+      lowestPending = 0;
+      for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
+        if (node != cfg.getImplicitReturn()) {
+          nodesByRank.add(node);
+        }
+      }
+      Collections.sort(nodesByRank, comparator);
+      for (int i = 0; i < nodesByRank.size(); i++) {
+        ranks.put(nodesByRank.get(i), i);
+      }
+    }
+
+    void add(DiGraphNode<N, Branch> node) {
+      if (comparator == null) {
+        unordered.add(node);
+        return;
+      }
+      Integer rank = ranks.get(node);
+      checkNotNull(rank, "Node is not in the analyzed control flow graph: %s", node);
+      pending.set(rank);
+      lowestPending = Math.min(lowestPending, rank);
+    }
+
+    /** Empties the workset, keeping the ranks of the nodes. */
+    void clear() {
+      if (comparator == null) {
+        unordered.clear();
+        return;
+      }
+      pending.clear();
+      lowestPending = 0;
+    }
+
+    boolean isEmpty() {
+      return comparator == null ? unordered.isEmpty() : pending.isEmpty();
+    }
+
+    /** Removes and returns the node that comes first. The workset must not be empty. */
+    DiGraphNode<N, Branch> removeFirst() {
+      if (comparator == null) {
+        DiGraphNode<N, Branch> first = unordered.iterator().next();
+        unordered.remove(first);
+        return first;
+      }
+      lowestPending = pending.nextSetBit(lowestPending);
+      checkState(lowestPending >= 0, "Empty workset");
+      pending.clear(lowestPending);
+      return nodesByRank.get(lowestPending);
+    }
+  }
+
   /**
    * The exception to be thrown if the analysis has been running for a long
    * number of iterations. Chances are the analysis is not monotonic, a
@@ -404,7 +493,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
 
     @Override
     protected void initialize() {
-      orderedWorkSet.clear();
+      orderedWorkSet.reset(getCfg());
       for (DiGraphNode<N, Branch> node : getCfg().getDirectedGraphNodes()) {
         int outEdgeCount = getCfg().getOutEdges(node.getValue()).size();
         List<L> outLattices = new ArrayList<>();
@@ -2150,10 +2150,10 @@ public final class DefaultPassConfig extends PassConfig {
       return new CompilerPass() {
         @Override
         public void process(Node externs, Node jsRoot) {
-          // Create a global namespace for analysis by check passes.
+          // Get the global namespace for analysis by check passes.
           // Note that this class does all heavy computation lazily,
-          // so it's OK to create it here.
-          namespaceForChecks = new GlobalNamespace(compiler, externs, jsRoot);
+          // so it's OK to request it here.
+          namespaceForChecks = compiler.getGlobalNamespace(externs, jsRoot);
           new CheckGlobalNames(compiler, options.checkGlobalNamesLevel)
               .injectNamespace(namespaceForChecks).process(externs, jsRoot);
         }
@@ -2202,7 +2202,7 @@ public final class DefaultPassConfig extends PassConfig {
           replacements.putAll(getAdditionalReplacements(options));
           replacements.putAll(options.getDefineReplacements());
           new ProcessDefines(compiler, ImmutableMap.copyOf(replacements), !options.checksOnly)
-              .injectNamespace(namespaceForChecks).process(externs, jsRoot);
+              .process(externs, jsRoot);
         }
       };
     }
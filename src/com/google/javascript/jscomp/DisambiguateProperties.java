@@ -28,7 +28,7 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.javascript.jscomp.AbstractCompiler.LifeCycleStage;
 import com.google.javascript.jscomp.NodeTraversal.AbstractScopedCallback;
-import com.google.javascript.jscomp.graph.StandardUnionFind;
+import com.google.javascript.jscomp.graph.ArrayUnionFind;
 import com.google.javascript.jscomp.graph.UnionFind;
 import com.google.javascript.rhino.FunctionTypeI;
 import com.google.javascript.rhino.Node;
@@ -197,7 +197,7 @@ class DisambiguateProperties implements CompilerPass {
     /** Returns the types on which this field is referenced. */
     UnionFind<TypeI> getTypes() {
       if (types == null) {
-        types = new StandardUnionFind<>();
+        types = new ArrayUnionFind<>();
       }
       return types;
     }
@@ -484,7 +484,7 @@ implements NodeTraversal.Callback, HotSwapCompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    globalNamespace = new GlobalNamespace(compiler, externs, root);
+    globalNamespace = compiler.getGlobalNamespace(externs, root);
     // Might need to synthesize constructors for ambient classes in .d.ts externs
     TranspilationPasses.processTranspile(compiler, externs, this);
     TranspilationPasses.processTranspile(compiler, root, this);
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.Node;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A prebuilt snapshot of the parsed default externs.
+ *
+ * <p>The default externs are identical across compilations, yet every invocation parses them again.
+ * A snapshot stores the ASTs the parser produces for them in a binary file that is produced once at
+ * build time (see {@link #main}) and memory-mapped at startup. Each extern is only deserialized when
+ * the compiler first asks for its AST.
+ *
+ * <p>Only the parse is cached. The snapshot holds the raw AST of each extern, as {@link JsAst}
+ * returns it, and nothing that is derived from it later: {@link PrepareAst}, the type registry and
+ * the scopes are still built by every compilation, since they depend on the other inputs and on
+ * more options than the parser does. Each AST is written with its own {@link ObjectOutputStream},
+ * because a shared stream would refer back to objects written for earlier externs, and an extern
+ * could then not be decoded without decoding all of the ones before it.
+ *
+ * <p>An entry is only used if the content of the extern and the parser-relevant options match the
+ * ones the snapshot was built with; otherwise the extern is parsed as usual.
+ */
+@GwtIncompatible("java.io.ObjectInputStream")
+public final class ExternsSnapshot {
+  private static final int MAGIC = 0x4a534558;
+  private static final int VERSION = 1;
+
+  private final String optionsKey;
+  private final ByteBuffer data;
+  private final ImmutableMap<String, Entry> entries;
+
+  private static final class Entry {
+    final String contentHash;
+    final int offset;
+    final int length;
+
+    Entry(String contentHash, int offset, int length) {
+      this.contentHash = contentHash;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /** Stands in for the extern's source file in the serialized AST. */
+  private enum Placeholder {
+    SOURCE_FILE
+  }
+
+  private ExternsSnapshot(String optionsKey, ByteBuffer data, ImmutableMap<String, Entry> entries) {
+    this.optionsKey = optionsKey;
+    this.data = data;
+    this.entries = entries;
+  }
+
+  /** Memory-maps the snapshot at the given path. */
+  public static ExternsSnapshot load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return fromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Reads the snapshot index from the buffer. The ASTs themselves are decoded on demand. */
+  static ExternsSnapshot fromBuffer(ByteBuffer data) throws IOException {
+    ByteBuffer header = data.duplicate();
+    DataInputStream in = new DataInputStream(new ByteBufferInputStream(header));
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("Not an externs snapshot, or built by a different compiler version");
+    }
+    String optionsKey = in.readUTF();
+    int count = in.readInt();
+    List<String> names = new ArrayList<>(count);
+    List<String> hashes = new ArrayList<>(count);
+    int[] lengths = new int[count];
+    for (int i = 0; i < count; i++) {
+      names.add(in.readUTF());
+      hashes.add(in.readUTF());
+      lengths[i] = in.readInt();
+    }
+    int offset = header.position();
+    ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+    for (int i = 0; i < count; i++) {
+      entries.put(names.get(i), new Entry(hashes.get(i), offset, lengths[i]));
+      offset += lengths[i];
+    }
+    if (offset > data.limit()) {
+      throw new IOException("Truncated externs snapshot");
+    }
+    return new ExternsSnapshot(optionsKey, data, entries.build());
+  }
+
+  /**
+   * Parses the given externs with the given options and writes a snapshot of their ASTs. Externs
+   * that fail to parse cleanly are left out of the snapshot.
+   */
+  public static void write(List<SourceFile> externs, CompilerOptions options, OutputStream out)
+      throws IOException {
+    checkArgument(
+        !options.preservesDetailedSourceInfo(),
+        "Externs snapshots do not record comments or detailed source info");
+    Compiler compiler = new Compiler();
+    compiler.initOptions(options);
+
+    Map<String, String> hashes = new LinkedHashMap<>();
+    Map<String, byte[]> blobs = new LinkedHashMap<>();
+    for (SourceFile file : externs) {
+      file.setIsExtern(true);
+      Node root = new JsAst(file).getAstRoot(compiler);
+      if (root.getProp(Node.PARSE_RESULTS) != null) {
+        continue;
+      }
+      hashes.put(file.getName(), contentHash(file));
+      blobs.put(file.getName(), serialize(root, file));
+    }
+
+    DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+    dataOut.writeInt(MAGIC);
+    dataOut.writeInt(VERSION);
+    dataOut.writeUTF(optionsKey(options));
+    dataOut.writeInt(blobs.size());
+    for (Map.Entry<String, byte[]> blob : blobs.entrySet()) {
+      dataOut.writeUTF(blob.getKey());
+      dataOut.writeUTF(hashes.get(blob.getKey()));
+      dataOut.writeInt(blob.getValue().length);
+    }
+    for (byte[] blob : blobs.values()) {
+      dataOut.write(blob);
+    }
+    dataOut.flush();
+  }
+
+  /**
+   * Returns an AST backed by this snapshot for the given extern, or null if the snapshot does not
+   * contain an up-to-date AST for it under the given options.
+   */
+  @Nullable
+  SourceAst getAst(SourceFile file, CompilerOptions options) {
+    Entry entry = entries.get(file.getName());
+    if (entry == null
+        || options.preservesDetailedSourceInfo()
+        || !optionsKey.equals(optionsKey(options))) {
+      return null;
+    }
+    try {
+      if (!entry.contentHash.equals(contentHash(file))) {
+        return null;
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return new SnapshotAst(file, this, entry);
+  }
+
+  @VisibleForTesting
+  int size() {
+    return entries.size();
+  }
+
+  /** Captures every option that influences the parsed externs AST. */
+  private static String optionsKey(CompilerOptions options) {
+    return Joiner.on(',')
+        .join(
+            options.getLanguageIn(),
+            options.expectStrictModeInput(),
+            options.isParseJsDocDocumentation(),
+            options.canContinueAfterErrors(),
+            options.extraAnnotationNames == null
+                ? ""
+                : Joiner.on(' ').join(new TreeSet<>(options.extraAnnotationNames)));
+  }
+
+  private static String contentHash(SourceFile file) throws IOException {
+    return Hashing.murmur3_128().hashString(file.getCode(), UTF_8).toString();
+  }
+
+  private static byte[] serialize(Node root, final SourceFile file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out =
+        new ObjectOutputStream(bytes) {
+          {
+            enableReplaceObject(true);
+          }
+
+          @Override
+          protected Object replaceObject(Object obj) {
+            return obj == file ? Placeholder.SOURCE_FILE : obj;
+          }
+        }) {
+      out.writeObject(root);
+    }
+    return bytes.toByteArray();
+  }
+
+  private Node hydrate(Entry entry, final SourceFile file) {
+    ByteBuffer slice = data.duplicate();
+    slice.position(entry.offset);
+    byte[] bytes = new byte[entry.length];
+    slice.get(bytes);
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+          {
+            enableResolveObject(true);
+          }
+
+          @Override
+          protected Object resolveObject(Object obj) {
+            return obj == Placeholder.SOURCE_FILE ? file : obj;
+          }
+        }) {
+      Node root = (Node) in.readObject();
+      checkState(root.isScript(), root);
+      return root;
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Corrupt externs snapshot entry: " + file.getName(), e);
+    }
+  }
+
+  /**
+   * A {@link SourceAst} that deserializes its tree from the snapshot on first use. If it is cleared
+   * or has been serialized on its own, the extern is parsed again from source.
+   */
+  private static final class SnapshotAst implements SourceAst {
+    private static final long serialVersionUID = 1L;
+
+    private final InputId inputId;
+    private SourceFile sourceFile;
+    private Node root;
+    private final transient ExternsSnapshot snapshot;
+    private final transient Entry entry;
+
+    SnapshotAst(SourceFile sourceFile, ExternsSnapshot snapshot, Entry entry) {
+      this.inputId = new InputId(sourceFile.getName());
+      this.sourceFile = sourceFile;
+      this.snapshot = snapshot;
+      this.entry = entry;
+    }
+
+    @Override
+    public Node getAstRoot(AbstractCompiler compiler) {
+      if (root == null) {
+        if (snapshot != null) {
+          root = snapshot.hydrate(entry, sourceFile);
+        } else {
+          root = new JsAst(sourceFile).getAstRoot(compiler);
+        }
+        root.setInputId(inputId);
+      }
+      return root;
+    }
+
+    @Override
+    public void clearAst() {
+      root = null;
+    }
+
+    @Override
+    public InputId getInputId() {
+      return inputId;
+    }
+
+    @Override
+    public SourceFile getSourceFile() {
+      return sourceFile;
+    }
+
+    @Override
+    public void setSourceFile(SourceFile file) {
+      checkState(sourceFile.getName().equals(file.getName()));
+      sourceFile = file;
+    }
+  }
+
+  /** Reads from a buffer without copying it. */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, len);
+      return len;
+    }
+  }
+
+  /**
+   * Writes the snapshot for the builtin externs of an environment.
+   *
+   * <p>Usage: {@code ExternsSnapshot <environment> <output file> [<language_in>]}
+   */
+  public static void main(String[] args) throws IOException {
+    checkArgument(args.length == 2 || args.length == 3, "Usage: <env> <output> [<language_in>]");
+    CompilerOptions.Environment env = CompilerOptions.Environment.valueOf(args[0]);
+    CompilerOptions options = new CompilerOptions();
+    options.setEnvironment(env);
+    if (args.length == 3) {
+      options.setLanguageIn(CompilerOptions.LanguageMode.fromString(args[2]));
+    }
+    try (OutputStream out =
+        Files.newOutputStream(Paths.get(args[1]))) {
+      write(AbstractCommandLineRunner.getBuiltinExterns(env), options, out);
+    }
+  }
+}
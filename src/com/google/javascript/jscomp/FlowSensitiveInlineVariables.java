@@ -144,11 +144,7 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
     Es6SyntacticScopeCreator scopeCreator = (Es6SyntacticScopeCreator) t.getScopeCreator();
 
     // Compute the forward reaching definition.
-    ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, true);
-
-    // Process the body of the function.
-    cfa.process(null, functionScopeRoot);
-    cfg = cfa.getCfg();
+    cfg = compiler.getControlFlowGraph(functionScopeRoot);
 
     reachingDef = new MustBeReachingVariableDef(cfg, t.getScope(), compiler, scopeCreator);
     reachingDef.analyze();
@@ -837,7 +837,7 @@ class FunctionInjector {
   /**
    * @return Whether inlining will lower cost.
    */
-  private static boolean doesLowerCost(
+  private boolean doesLowerCost(
       Node fnNode, int callCost,
       int directInlines, int costDeltaDirect,
       int blockInlines, int costDeltaBlock,
@@ -860,7 +860,7 @@ class FunctionInjector {
     int costDelta = (directInlines * -costDeltaDirect) + (blockInlines * -costDeltaBlock);
     int threshold = (callCost + costDelta) / fnInstanceCount;
 
-    return InlineCostEstimator.getCost(fnNode, threshold + 1) <= threshold;
+    return compiler.getFunctionCostCache().isCostAtMost(fnNode, threshold);
   }
 
   /**
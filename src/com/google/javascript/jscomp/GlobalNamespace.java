@@ -174,6 +174,46 @@ class GlobalNamespace
     return nameMap;
   }
 
+  /**
+   * Checks that this namespace has the same names and references as a namespace freshly built
+   * over the same AST. A namespace that has not been generated yet trivially matches.
+   *
+   * @throws IllegalStateException if the namespaces differ, which means that a change to the AST
+   *     was not reported since this namespace was built.
+   */
+  void verifyMatches(GlobalNamespace expected) {
+    if (!generated) {
+      return;
+    }
+    Map<String, Name> expectedNames = expected.getNameIndex();
+    if (!nameMap.keySet().equals(expectedNames.keySet())) {
+      throw new IllegalStateException(
+          "Stale global namespace: names changed from "
+              + nameMap.keySet()
+              + " to "
+              + expectedNames.keySet());
+    }
+    for (Name name : nameMap.values()) {
+      List<Ref> refs = name.getRefs();
+      List<Ref> expectedRefs = expectedNames.get(name.getFullName()).getRefs();
+      boolean matches = refs.size() == expectedRefs.size();
+      for (int i = 0; matches && i < refs.size(); i++) {
+        matches =
+            refs.get(i).node == expectedRefs.get(i).node
+                && refs.get(i).type == expectedRefs.get(i).type;
+      }
+      if (!matches) {
+        throw new IllegalStateException(
+            "Stale global namespace: references to "
+                + name.getFullName()
+                + " changed from "
+                + refs
+                + " to "
+                + expectedRefs);
+      }
+    }
+  }
+
   /**
    * A simple data class that contains the information necessary to inspect
    * a node for changes to the global namespace.
@@ -21,7 +21,6 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -125,15 +124,19 @@ class GlobalVarReferenceMap implements ReferenceMap {
     }
     // TODO(bashir): If this is too slow it is not too difficult to make it
     // faster with keeping an index for variables accessed in sourceName.
-    for (ReferenceCollection collection : refMap.values()) {
+    // The collections may be shared with the compiler's variable references,
+    // so they are replaced rather than modified.
+    for (Entry<String, ReferenceCollection> entry : refMap.entrySet()) {
+      ReferenceCollection collection = entry.getValue();
       if (collection == null) {
         continue;
       }
       List<Reference> oldRefs = collection.references;
       SourceRefRange range = findSourceRefRange(oldRefs, inputId);
-      List<Reference> newRefs = new ArrayList<>(range.refsBefore());
-      newRefs.addAll(range.refsAfter());
-      collection.references = newRefs;
+      ReferenceCollection newCollection = new ReferenceCollection();
+      newCollection.references.addAll(range.refsBefore());
+      newCollection.references.addAll(range.refsAfter());
+      entry.setValue(newCollection);
     }
   }
 
@@ -214,16 +217,16 @@ class GlobalVarReferenceMap implements ReferenceMap {
    *        with.
    */
   public void updateReferencesWithGlobalScope(Scope globalScope) {
-    for (ReferenceCollection collection : refMap.values()) {
-      List<Reference> newRefs = new ArrayList<>(collection.references.size());
-      for (Reference ref : collection) {
+    for (Entry<String, ReferenceCollection> entry : refMap.entrySet()) {
+      ReferenceCollection newCollection = new ReferenceCollection();
+      for (Reference ref : entry.getValue()) {
         if (ref.getScope() != globalScope) {
-          newRefs.add(ref.cloneWithNewScope(globalScope));
+          newCollection.add(ref.cloneWithNewScope(globalScope));
         } else {
-          newRefs.add(ref);
+          newCollection.add(ref);
         }
       }
-      collection.references = newRefs;
+      entry.setValue(newCollection);
     }
   }
 
@@ -42,12 +42,7 @@ class InferConsts implements CompilerPass {
 
   @Override
   public void process(Node externs, Node js) {
-    ReferenceCollectingCallback collector =
-        new ReferenceCollectingCallback(
-            compiler,
-            ReferenceCollectingCallback.DO_NOTHING_BEHAVIOR,
-            new Es6SyntacticScopeCreator(compiler));
-    collector.process(js);
+    ReferenceCollectingCallback collector = compiler.getVariableReferences(js);
 
     for (Var v : collector.getAllSymbols()) {
       considerVar(v, collector.getReferences(v));
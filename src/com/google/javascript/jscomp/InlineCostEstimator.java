@@ -17,6 +17,10 @@
 package com.google.javascript.jscomp;
 
 import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * For use with CodeGenerator to determine the cost of generated code.
@@ -48,6 +52,101 @@ class InlineCostEstimator {
     return estimator.getCost();
   }
 
+  /**
+   * Remembers the estimated sizes of functions across passes. An estimate is
+   * reused as long as no change has been reported to the function or to any
+   * function nested in it, which are the change scopes that cover the code the
+   * estimate was computed from.
+   */
+  static final class FunctionCostCache {
+    private final Map<Node, CachedCost> costs = new HashMap<>();
+    private int lookupCount = 0;
+    private int estimateCount = 0;
+
+    /**
+     * Returns whether the estimated size of the function is at most the given
+     * threshold, estimating it only if the cached estimate does not decide it.
+     */
+    boolean isCostAtMost(Node fnNode, int threshold) {
+      lookupCount++;
+      CachedCost cached = costs.get(fnNode);
+      if (cached == null || !cached.isValid()) {
+        cached = new CachedCost(fnNode);
+        costs.put(fnNode, cached);
+      } else if (cached.isExact || cached.cost > threshold) {
+        return cached.cost <= threshold;
+      }
+
+      estimateCount++;
+      int cost = getCost(fnNode, threshold + 1);
+      if (cost <= threshold) {
+        cached.cost = cost;
+        cached.isExact = true;
+        return true;
+      }
+      // The estimator stopped early, so the cost is only known to be at least this much.
+      cached.cost = Math.max(cached.cost, cost);
+      return false;
+    }
+
+    /** Returns the number of size queries answered. */
+    int getLookupCount() {
+      return lookupCount;
+    }
+
+    /** Returns the number of size queries that had to estimate the function. */
+    int getEstimateCount() {
+      return estimateCount;
+    }
+
+    void remove(Node fnNode) {
+      costs.remove(fnNode);
+    }
+
+    void clear() {
+      costs.clear();
+    }
+  }
+
+  private static final class CachedCost {
+    final Node fnNode;
+    final int changeTime;
+    /** The functions nested in the function, and their change times. */
+    final List<Node> nestedFunctions = new ArrayList<>();
+    final List<Integer> nestedChangeTimes = new ArrayList<>();
+    /** The estimated cost if it is exact, and otherwise a lower bound on it. */
+    int cost = 0;
+    boolean isExact = false;
+
+    CachedCost(Node fnNode) {
+      this.fnNode = fnNode;
+      this.changeTime = fnNode.getChangeTime();
+      addNestedFunctions(fnNode);
+    }
+
+    private void addNestedFunctions(Node n) {
+      for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+        if (c.isFunction()) {
+          nestedFunctions.add(c);
+          nestedChangeTimes.add(c.getChangeTime());
+        }
+        addNestedFunctions(c);
+      }
+    }
+
+    boolean isValid() {
+      if (fnNode.getChangeTime() != changeTime) {
+        return false;
+      }
+      for (int i = 0; i < nestedFunctions.size(); i++) {
+        if (nestedFunctions.get(i).getChangeTime() != nestedChangeTimes.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   /**
    * Code consumer that estimates compiled size by assuming names are
    * shortened and all whitespace is stripped.
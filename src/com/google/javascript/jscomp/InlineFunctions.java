@@ -38,6 +38,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Inlines functions that are divided into two types: "direct call node replacement" (aka "direct")
@@ -55,6 +57,8 @@ import java.util.Set;
  */
 class InlineFunctions implements CompilerPass {
 
+  private static final Logger logger = Logger.getLogger(InlineFunctions.class.getName());
+
   // TODO(nicksantos): This needs to be completely rewritten to use scopes
   // to do variable lookups. Right now, it assumes that all functions are
   // uniquely named variables. There's currently a stopgap scope-check
@@ -141,6 +145,15 @@ class InlineFunctions implements CompilerPass {
       return; // Nothing left to do.
     }
     resolveInlineConflicts();
+    if (logger.isLoggable(Level.FINE)) {
+      InlineCostEstimator.FunctionCostCache costs = compiler.getFunctionCostCache();
+      logger.fine(
+          "Estimated the size of functions for "
+              + costs.getEstimateCount()
+              + " of "
+              + costs.getLookupCount()
+              + " cost queries so far");
+    }
     decomposeExpressions();
     NodeTraversal.traverseEs6(compiler, root, new CallVisitor(fns, anonFns, new Inline(injector)));
 
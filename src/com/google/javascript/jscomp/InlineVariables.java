@@ -22,7 +22,7 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.javascript.jscomp.CodingConvention.SubclassRelationship;
-import com.google.javascript.jscomp.ReferenceCollectingCallback.Behavior;
+import com.google.javascript.jscomp.ReferenceCollectingCallback.ScopeBehavior;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.TypeI;
 import java.util.HashMap;
@@ -79,13 +79,11 @@ class InlineVariables implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    ReferenceCollectingCallback callback =
-        new ReferenceCollectingCallback(
-            compiler,
-            new InliningBehavior(),
-            new Es6SyntacticScopeCreator(compiler),
-            getFilterForMode());
-    callback.process(externs, root);
+    // The references are only read while inlining, so the compiler's shared references can be
+    // used. Inlining reports its changes, which makes the compiler drop them afterwards.
+    compiler
+        .getVariableReferences(externs, root)
+        .replayScopeExits(new InliningBehavior(getFilterForMode()));
   }
 
   private Predicate<Var> getFilterForMode() {
@@ -141,7 +139,12 @@ class InlineVariables implements CompilerPass {
    * scope, inspects all variables in that scope, and inlines any
    * that we can.
    */
-  private class InliningBehavior implements Behavior {
+  private class InliningBehavior implements ScopeBehavior {
+
+    /**
+     * Only variables that match the filter for the mode are considered.
+     */
+    private final Predicate<Var> varFilter;
 
     /**
      * A list of variables that should not be inlined, because their
@@ -156,20 +159,31 @@ class InlineVariables implements CompilerPass {
      */
     final Map<Node, AliasCandidate> aliasCandidates = new HashMap<>();
 
+    InliningBehavior(Predicate<Var> varFilter) {
+      this.varFilter = varFilter;
+    }
+
     @Override
-    public void afterExitScope(NodeTraversal t, ReferenceMap referenceMap) {
-      collectAliasCandidates(t, referenceMap);
-      doInlinesForScope(t, referenceMap);
+    public void afterExitScope(Scope scope, final ReferenceMap referenceMap) {
+      ReferenceMap filteredReferenceMap =
+          new ReferenceMap() {
+            @Override
+            public ReferenceCollection getReferences(Var var) {
+              return varFilter.apply(var) ? referenceMap.getReferences(var) : null;
+            }
+          };
+      collectAliasCandidates(scope, filteredReferenceMap);
+      doInlinesForScope(scope, filteredReferenceMap);
     }
 
     /**
      * If any of the variables are well-defined and alias other variables,
      * mark them as aliasing candidates.
      */
-    private void collectAliasCandidates(NodeTraversal t,
+    private void collectAliasCandidates(Scope scope,
         ReferenceMap referenceMap) {
       if (mode != Mode.CONSTANTS_ONLY) {
-        for (Var v : t.getScope().getVarIterable()) {
+        for (Var v : scope.getVarIterable()) {
           ReferenceCollection referenceInfo = referenceMap.getReferences(v);
 
           // NOTE(nicksantos): Don't handle variables that are never used.
@@ -193,10 +207,10 @@ class InlineVariables implements CompilerPass {
      * For all variables in this scope, see if they are only used once.
      * If it looks safe to do so, inline them.
      */
-    private void doInlinesForScope(NodeTraversal t, ReferenceMap referenceMap) {
+    private void doInlinesForScope(Scope scope, ReferenceMap referenceMap) {
       boolean maybeModifiedArguments =
-          maybeEscapedOrModifiedArguments(t.getScope(), referenceMap);
-      for (Var v : t.getScope().getVarIterable()) {
+          maybeEscapedOrModifiedArguments(scope, referenceMap);
+      for (Var v : scope.getVarIterable()) {
         ReferenceCollection referenceInfo = referenceMap.getReferences(v);
 
         // referenceInfo will be null if we're in constants-only mode
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed input source maps that several compilations may share, e.g. in a long-running process
+ * that compiles the same libraries many times. Set it with {@link
+ * CompilerOptions#setInputSourceMapCache} on the options of each compilation that should use it.
+ *
+ * <p>Source maps are keyed by a hash of their contents, and the least recently used ones are
+ * dropped once the contents of the source maps that are kept add up to more than the maximum
+ * size. The consumers are frozen, so they can't be parsed again by anyone they are shared with.
+ */
+public final class InputSourceMapCache {
+  private final long maxSize;
+  private long size = 0;
+
+  private final LinkedHashMap<ContentKey, Entry> sourceMaps = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * @param maxSize the maximum total length, in characters, of the source maps that are kept
+   */
+  public InputSourceMapCache(long maxSize) {
+    checkArgument(maxSize >= 0, "Negative maximum size: %s", maxSize);
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the parsed source map with these contents, parsing it if it isn't in the cache yet.
+   */
+  SourceMapConsumerV3 parse(String contents) throws SourceMapParseException {
+    ContentKey key = new ContentKey(contents);
+    synchronized (this) {
+      Entry entry = sourceMaps.get(key);
+      if (entry != null) {
+        return entry.consumer;
+      }
+    }
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(contents);
+    consumer.freeze();
+    synchronized (this) {
+      Entry entry = sourceMaps.get(key);
+      if (entry != null) {
+        // Another compilation parsed it in the meantime.
+        return entry.consumer;
+      }
+      if (contents.length() <= maxSize) {
+        sourceMaps.put(key, new Entry(consumer, contents.length()));
+        size += contents.length();
+        evict();
+      }
+    }
+    return consumer;
+  }
+
+  /** Drops all the source maps. */
+  public synchronized void clear() {
+    sourceMaps.clear();
+    size = 0;
+  }
+
+  private void evict() {
+    Iterator<Entry> it = sourceMaps.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().size;
+      it.remove();
+    }
+  }
+
+  private static final class Entry {
+    final SourceMapConsumerV3 consumer;
+    final int size;
+
+    Entry(SourceMapConsumerV3 consumer, int size) {
+      this.consumer = consumer;
+      this.size = size;
+    }
+  }
+
+  /**
+   * A 64-bit FNV-1a hash of the contents, along with their length and String hash code, so that
+   * keys can be compared without keeping the contents.
+   */
+  private static final class ContentKey {
+    private final long fnvHash;
+    private final int stringHash;
+    private final int length;
+
+    ContentKey(String contents) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < contents.length(); i++) {
+        hash ^= contents.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      this.fnvHash = hash;
+      this.stringHash = contents.hashCode();
+      this.length = contents.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ContentKey)) {
+        return false;
+      }
+      ContentKey that = (ContentKey) o;
+      return fnvHash == that.fnvHash && stringHash == that.stringHash && length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (fnvHash ^ (fnvHash >>> 32));
+    }
+  }
+}
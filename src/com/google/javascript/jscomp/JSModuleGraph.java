@@ -41,8 +41,6 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -59,10 +57,26 @@ public final class JSModuleGraph implements Serializable {
   private final JSModule[] modules;
 
   /**
-   * selfPlusTransitiveDeps[i] = indices of all modules that modules[i] depends on, including
-   * itself.
+   * treeParent[i] = index of the deepest direct dependency of modules[i], or -1 if it has none.
+   *
+   * <p>Keeping only these edges turns the dependency graph into a spanning forest, which is what
+   * the interval labels below and the common dependency queries are built on.
    */
-  private final BitSet[] selfPlusTransitiveDeps;
+  private final int[] treeParent;
+
+  /** postorder[i] = position of modules[i] in a postorder walk of the spanning forest. */
+  private final int[] postorder;
+
+  /**
+   * selfPlusTransitiveDependents[i] = postorder positions of all modules that depend on
+   * modules[i], including itself, as sorted disjoint inclusive ranges {@code {start0, end0, start1,
+   * end1, ...}}.
+   *
+   * <p>The dependents reached through tree edges alone always form a single range, so only
+   * dependents reached through edges left out of the spanning forest add ranges. For graphs that
+   * are mostly trees this takes far less space than a bit set of dependencies per module.
+   */
+  private final int[][] selfPlusTransitiveDependents;
 
   /**
    * subtreeSize[i] = Number of modules that transitively depend on modules[i], including itself.
@@ -70,21 +84,17 @@ public final class JSModuleGraph implements Serializable {
   private final int[] subtreeSize;
 
   /**
-   * Lists of modules at each depth. <code>modulesByDepth.get(3)</code> is a list of the modules at
-   * depth 3, for example.
+   * Answers lowest common ancestor queries in the spanning forest, or null if some module has more
+   * than one direct dependency or there is more than one root, in which case the forest does not
+   * describe all dependencies.
    */
-  private final List<List<JSModule>> modulesByDepth;
+  private final TreeAncestors treeAncestors;
 
   /**
-   * dependencyMap is a cache of dependencies that makes the dependsOn function faster. Each map
-   * entry associates a starting JSModule with the set of JSModules that are transitively dependent
-   * on the starting module.
-   *
-   * <p>If the cache returns null, then the entry hasn't been filled in for that module.
-   *
-   * <p>NOTE: JSModule has identity semantics so this map implementation is safe
+   * Lists of modules at each depth. <code>modulesByDepth.get(3)</code> is a list of the modules at
+   * depth 3, for example.
    */
-  private final Map<JSModule, Set<JSModule>> dependencyMap = new IdentityHashMap<>();
+  private final List<List<JSModule>> modulesByDepth;
 
   /** Creates a module graph from a list of modules in dependency order. */
   public JSModuleGraph(JSModule[] modulesInDepOrder) {
@@ -109,12 +119,26 @@ public final class JSModuleGraph implements Serializable {
     // O(n*m)
     modulesByDepth = initModulesByDepth();
 
-    // Determine transitive deps for all modules.
-    // O(n*m * log(n)) (probably a bit better than that)
-    selfPlusTransitiveDeps = initTransitiveDepsBitSets();
+    // Pick a spanning forest and number its modules in postorder.
+    // O(n + m)
+    treeParent = initTreeParents();
+    int[] treeChildren = new int[modules.length];
+    int[] treeChildrenStart = initTreeChildren(treeChildren);
+    postorder = initPostorder(treeChildren, treeChildrenStart);
 
-    // O(n*m)
+    // Determine transitive dependents for all modules.
+    // O(m * k * log(m * k)), where k is the number of ranges per module.
+    selfPlusTransitiveDependents = initTransitiveDependents();
+
+    // O(n * k)
     subtreeSize = initSubtreeSize();
+
+    // O(n * log(n))
+    treeAncestors =
+        isTree()
+            ? new TreeAncestors(
+                getRootModule().getIndex(), treeChildren, treeChildrenStart, getDepths())
+            : null;
   }
 
   private List<List<JSModule>> initModulesByDepth() {
@@ -143,38 +167,200 @@ public final class JSModuleGraph implements Serializable {
     return tmpModulesByDepth;
   }
 
-  private BitSet[] initTransitiveDepsBitSets() {
-    BitSet[] array = new BitSet[modules.length];
+  private int[] initTreeParents() {
+    int[] parents = new int[modules.length];
     for (int moduleIndex = 0; moduleIndex < modules.length; ++moduleIndex) {
-      final JSModule module = modules[moduleIndex];
-      BitSet selfPlusTransitiveDeps = new BitSet(moduleIndex + 1);
-      array[moduleIndex] = selfPlusTransitiveDeps;
-      selfPlusTransitiveDeps.set(moduleIndex);
-      // O(moduleIndex * log64(moduleIndex))
-      for (JSModule dep : module.getDependencies()) {
-        // Add this dependency and all of its dependencies to the current module.
-        // O(log64(moduleIndex))
-        selfPlusTransitiveDeps.or(array[dep.getIndex()]);
+      int parent = -1;
+      for (JSModule dep : modules[moduleIndex].getDependencies()) {
+        // Prefer the deepest dependency, and the latest one to break ties, since it has the
+        // most dependencies of its own.
+        if (parent == -1
+            || dep.getDepth() > modules[parent].getDepth()
+            || (dep.getDepth() == modules[parent].getDepth() && dep.getIndex() > parent)) {
+          parent = dep.getIndex();
+        }
+      }
+      parents[moduleIndex] = parent;
+    }
+    return parents;
+  }
+
+  /**
+   * Fills {@code children} with the indices of the tree children of each module, grouped by
+   * parent, and returns the start of each group. The group of modules[i] ends where the group of
+   * modules[i + 1] starts.
+   */
+  private int[] initTreeChildren(int[] children) {
+    int[] start = new int[modules.length + 1];
+    for (int parent : treeParent) {
+      if (parent != -1) {
+        start[parent + 1]++;
+      }
+    }
+    for (int i = 0; i < modules.length; ++i) {
+      start[i + 1] += start[i];
+    }
+    int[] next = Arrays.copyOf(start, modules.length);
+    for (int moduleIndex = 0; moduleIndex < modules.length; ++moduleIndex) {
+      int parent = treeParent[moduleIndex];
+      if (parent != -1) {
+        children[next[parent]++] = moduleIndex;
+      }
+    }
+    return start;
+  }
+
+  private int[] initPostorder(int[] children, int[] childrenStart) {
+    int[] positions = new int[modules.length];
+    int position = 0;
+    // Walk the trees without recursion, since they may be tens of thousands of modules deep.
+    int[] stack = new int[modules.length];
+    int[] nextChild = new int[modules.length];
+    for (int root = 0; root < modules.length; ++root) {
+      if (treeParent[root] != -1) {
+        continue;
       }
+      int top = 0;
+      stack[0] = root;
+      nextChild[root] = childrenStart[root];
+      while (top >= 0) {
+        int moduleIndex = stack[top];
+        if (nextChild[moduleIndex] < childrenStart[moduleIndex + 1]) {
+          int child = children[nextChild[moduleIndex]++];
+          stack[++top] = child;
+          nextChild[child] = childrenStart[child];
+        } else {
+          positions[moduleIndex] = position++;
+          top--;
+        }
+      }
+    }
+    return positions;
+  }
+
+  private int[][] initTransitiveDependents() {
+    // The number of modules in the tree rooted at each module, including itself. Tree children
+    // always come after their parent in dependency order.
+    int[] treeSize = new int[modules.length];
+    for (int moduleIndex = modules.length - 1; moduleIndex >= 0; --moduleIndex) {
+      treeSize[moduleIndex]++;
+      if (treeParent[moduleIndex] != -1) {
+        treeSize[treeParent[moduleIndex]] += treeSize[moduleIndex];
+      }
+    }
+
+    ListMultimap<Integer, Integer> directDependents = LinkedListMultimap.create();
+    for (int moduleIndex = 0; moduleIndex < modules.length; ++moduleIndex) {
+      for (JSModule dep : modules[moduleIndex].getDependencies()) {
+        directDependents.put(dep.getIndex(), moduleIndex);
+      }
+    }
+
+    int[][] array = new int[modules.length][];
+    long[] ranges = new long[8];
+    // Dependents always come after the modules they depend on, so visit the modules backwards.
+    for (int moduleIndex = modules.length - 1; moduleIndex >= 0; --moduleIndex) {
+      // The modules in the tree rooted at this one are its dependents through tree edges. Any
+      // other dependents are in ranges of its direct dependents that fall outside of the tree.
+      int treeEnd = postorder[moduleIndex];
+      int treeStart = treeEnd - treeSize[moduleIndex] + 1;
+      ranges[0] = packPair(treeStart, treeEnd);
+      int rangeCount = 1;
+      for (int dependent : directDependents.get(moduleIndex)) {
+        int[] dependentRanges = array[dependent];
+        for (int i = 0; i < dependentRanges.length; i += 2) {
+          int start = dependentRanges[i];
+          int end = dependentRanges[i + 1];
+          if (start < treeStart || end > treeEnd) {
+            if (rangeCount == ranges.length) {
+              ranges = Arrays.copyOf(ranges, 2 * rangeCount);
+            }
+            ranges[rangeCount++] = packPair(start, end);
+          }
+        }
+      }
+      array[moduleIndex] = mergeRanges(ranges, rangeCount);
     }
     return array;
   }
 
+  /** Packs two non-negative ints into a long that sorts by the first and then the second. */
+  private static long packPair(int first, int second) {
+    return ((long) first << 32) | second;
+  }
+
+  /** Sorts the packed ranges and merges the ones that overlap or touch. */
+  private static int[] mergeRanges(long[] ranges, int rangeCount) {
+    Arrays.sort(ranges, 0, rangeCount);
+    int[] merged = new int[2 * rangeCount];
+    int length = 0;
+    for (int i = 0; i < rangeCount; i++) {
+      long range = ranges[i];
+      int start = (int) (range >>> 32);
+      int end = (int) range;
+      if (length > 0 && start <= merged[length - 1] + 1) {
+        merged[length - 1] = Math.max(merged[length - 1], end);
+      } else {
+        merged[length++] = start;
+        merged[length++] = end;
+      }
+    }
+    return Arrays.copyOf(merged, length);
+  }
+
   private int[] initSubtreeSize() {
     int[] subtreeSize = new int[modules.length];
-    for (int dependentIndex = 0; dependentIndex < modules.length; ++dependentIndex) {
-      BitSet dependencies = selfPlusTransitiveDeps[dependentIndex];
-      // Iterating backward through the bitset is slightly more efficient, since it avoids
-      // considering later modules, which this one cannot depend on.
-      for (int requiredIndex = dependentIndex;
-          requiredIndex >= 0;
-          requiredIndex = dependencies.previousSetBit(requiredIndex - 1)) {
-        subtreeSize[requiredIndex] += 1; // Count dependent in required module's subtree.
+    for (int moduleIndex = 0; moduleIndex < modules.length; ++moduleIndex) {
+      int[] ranges = selfPlusTransitiveDependents[moduleIndex];
+      for (int i = 0; i < ranges.length; i += 2) {
+        subtreeSize[moduleIndex] += ranges[i + 1] - ranges[i] + 1;
       }
     }
     return subtreeSize;
   }
 
+  /** Whether the spanning forest is a single tree that contains every dependency edge. */
+  private boolean isTree() {
+    if (modules.length == 0 || modulesByDepth.get(0).size() != 1) {
+      return false;
+    }
+    for (JSModule module : modules) {
+      if (module.getDependencies().size() > 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] getDepths() {
+    int[] depths = new int[modules.length];
+    for (int moduleIndex = 0; moduleIndex < modules.length; ++moduleIndex) {
+      depths[moduleIndex] = modules[moduleIndex].getDepth();
+    }
+    return depths;
+  }
+
+  /**
+   * Whether the module at {@code dependentIndex} is the module at {@code dependencyIndex} or
+   * depends on it.
+   */
+  private boolean isSelfOrDependent(int dependentIndex, int dependencyIndex) {
+    int[] ranges = selfPlusTransitiveDependents[dependencyIndex];
+    int position = postorder[dependentIndex];
+    // Binary search for the last range that starts at or before the position.
+    int low = 0;
+    int high = ranges.length / 2 - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (ranges[2 * mid] <= position) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return ranges[2 * low] <= position && position <= ranges[2 * low + 1];
+  }
+
   /**
    * This only exists as a temprorary workaround.
    * @deprecated Fix the tests that use this.
@@ -259,7 +445,7 @@ public final class JSModuleGraph implements Serializable {
    * module never depends on itself, as that dependency would be cyclic.
    */
   public boolean dependsOn(JSModule src, JSModule m) {
-    return src != m && selfPlusTransitiveDeps[src.getIndex()].get(m.getIndex());
+    return src != m && isSelfOrDependent(src.getIndex(), m.getIndex());
   }
 
   /**
@@ -278,44 +464,92 @@ public final class JSModuleGraph implements Serializable {
   public JSModule getSmallestCoveringSubtree(JSModule parentTree, BitSet dependentModules) {
     checkState(!dependentModules.isEmpty());
 
-    // Candidate modules are those that all of the given dependent modules depend on, including
-    // themselves. The dependent module with the smallest index might be our answer, if all
-    // the other modules depend on it.
-    int minDependentModuleIndex = modules.length;
-    final BitSet candidates = new BitSet(modules.length);
-    candidates.set(0, modules.length, true);
-    for (int dependentIndex = dependentModules.nextSetBit(0);
-        dependentIndex >= 0;
-        dependentIndex = dependentModules.nextSetBit(dependentIndex + 1)) {
-      minDependentModuleIndex = Math.min(minDependentModuleIndex, dependentIndex);
-      candidates.and(selfPlusTransitiveDeps[dependentIndex]);
+    int parentTreeIndex = parentTree.getIndex();
+    if (treeAncestors != null) {
+      // The common dependencies are the ancestors of the lowest common ancestor. It is the
+      // smallest of them, and if it isn't a subtree of parentTree, none of them are.
+      int ancestorIndex = treeAncestors.getLowestCommonAncestor(dependentModules);
+      return isSelfOrDependent(ancestorIndex, parentTreeIndex)
+          ? modules[ancestorIndex]
+          : parentTree;
     }
-    checkState(
-        !candidates.isEmpty(), "No common dependency found for %s", dependentModules);
 
-    // All candidates must have an index <= the smallest dependent module index.
-    // Work backwards through the candidates starting with the dependent module with the smallest
-    // index. For each candidate, we'll remove all of the modules it depends on from consideration,
-    // since they must all have larger subtrees than the one we're considering.
-    int parentTreeIndex = parentTree.getIndex();
+    // Candidate modules are those that all of the given dependent modules depend on, including
+    // themselves. The dependent module with the smallest index is either one of them or depends on
+    // all of them. Only the nearest ones can be the answer: the dependencies of a candidate have
+    // more dependents, and they are only a subtree of parentTree if the candidate is too.
+    BitSet candidates =
+        getNearestCommonDependencies(dependentModules.nextSetBit(0), dependentModules, true);
     // default to parent tree if we don't find anything better
     int bestCandidateIndex = parentTreeIndex;
-    for (int candidateIndex = candidates.previousSetBit(minDependentModuleIndex);
+    for (int candidateIndex = candidates.nextSetBit(0);
         candidateIndex >= 0;
-        candidateIndex = candidates.previousSetBit(candidateIndex - 1)) {
-
-      BitSet candidatePlusTransitiveDeps = selfPlusTransitiveDeps[candidateIndex];
-      if (candidatePlusTransitiveDeps.get(parentTreeIndex)) {
-        // candidate is a subtree of parentTree
-        candidates.andNot(candidatePlusTransitiveDeps);
-        if (subtreeSize[candidateIndex] < subtreeSize[bestCandidateIndex]) {
+        candidateIndex = candidates.nextSetBit(candidateIndex + 1)) {
+      if (isSelfOrDependent(candidateIndex, parentTreeIndex)) {
+        // candidate is a subtree of parentTree. Break ties in favor of the later module.
+        int size = subtreeSize[candidateIndex];
+        int bestSize = subtreeSize[bestCandidateIndex];
+        if (size < bestSize
+            || (size == bestSize
+                && bestCandidateIndex != parentTreeIndex
+                && candidateIndex > bestCandidateIndex)) {
           bestCandidateIndex = candidateIndex;
         }
       } // eliminate candidates that are not a subtree of parentTree
     }
+    checkState(!candidates.isEmpty(), "No common dependency found for %s", dependentModules);
     return modules[bestCandidateIndex];
   }
 
+  /**
+   * Walks up the dependencies of the module at {@code startIndex} and returns the indices of the
+   * first common dependencies of {@code dependentModules} on each path. The walk doesn't go past
+   * them, since their own dependencies are common dependencies as well. Each module is visited at
+   * most once.
+   *
+   * @param inclusive whether the dependent modules themselves count as common dependencies
+   */
+  private BitSet getNearestCommonDependencies(
+      int startIndex, BitSet dependentModules, boolean inclusive) {
+    BitSet nearest = new BitSet();
+    BitSet visited = new BitSet();
+    int[] stack = new int[8];
+    int top = 0;
+    stack[top++] = startIndex;
+    visited.set(startIndex);
+    while (top > 0) {
+      int moduleIndex = stack[--top];
+      if ((inclusive || !dependentModules.get(moduleIndex))
+          && isCommonDependency(moduleIndex, dependentModules)) {
+        nearest.set(moduleIndex);
+        continue;
+      }
+      for (JSModule dep : modules[moduleIndex].getDependencies()) {
+        int depIndex = dep.getIndex();
+        if (!visited.get(depIndex)) {
+          visited.set(depIndex);
+          if (top == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * top);
+          }
+          stack[top++] = depIndex;
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /** Whether all of the given modules are the candidate module or depend on it. */
+  private boolean isCommonDependency(int candidateIndex, BitSet dependentModules) {
+    for (int dependentIndex = dependentModules.nextSetBit(0);
+        dependentIndex >= 0;
+        dependentIndex = dependentModules.nextSetBit(dependentIndex + 1)) {
+      if (!isSelfOrDependent(dependentIndex, candidateIndex)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Finds the deepest common dependency of two modules, not including the two
    * modules themselves.
@@ -326,22 +560,38 @@ public final class JSModuleGraph implements Serializable {
    *     they have no common dependencies
    */
   JSModule getDeepestCommonDependency(JSModule m1, JSModule m2) {
-    int m1Depth = m1.getDepth();
-    int m2Depth = m2.getDepth();
-    // According our definition of depth, the result must have a strictly
-    // smaller depth than either m1 or m2.
-    for (int depth = Math.min(m1Depth, m2Depth) - 1; depth >= 0; depth--) {
-      List<JSModule> modulesAtDepth = modulesByDepth.get(depth);
-      // Look at the modules at this depth in reverse order, so that we use the
-      // original ordering of the modules to break ties (later meaning deeper).
-      for (int i = modulesAtDepth.size() - 1; i >= 0; i--) {
-        JSModule m = modulesAtDepth.get(i);
-        if (dependsOn(m1, m) && dependsOn(m2, m)) {
-          return m;
-        }
+    if (treeAncestors != null) {
+      // Every module has at most one dependency, so the answer is the lowest common ancestor,
+      // excluding the two modules themselves.
+      int ancestorIndex = treeAncestors.getLowestCommonAncestor(m1.getIndex(), m2.getIndex());
+      if (ancestorIndex == m1.getIndex() || ancestorIndex == m2.getIndex()) {
+        ancestorIndex = treeParent[ancestorIndex];
+      }
+      return ancestorIndex == -1 ? null : modules[ancestorIndex];
+    }
+    BitSet dependentModules = new BitSet();
+    dependentModules.set(m1.getIndex());
+    dependentModules.set(m2.getIndex());
+    // Dependencies are shallower than the modules that depend on them, so the deepest common
+    // dependency is one of the nearest ones.
+    return getDeepest(getNearestCommonDependencies(m1.getIndex(), dependentModules, false));
+  }
+
+  /**
+   * Returns the deepest of the given modules, or null if there are none. Uses the original ordering
+   * of the modules to break ties (later meaning deeper).
+   */
+  private JSModule getDeepest(BitSet moduleIndices) {
+    JSModule deepest = null;
+    for (int moduleIndex = moduleIndices.nextSetBit(0);
+        moduleIndex >= 0;
+        moduleIndex = moduleIndices.nextSetBit(moduleIndex + 1)) {
+      JSModule m = modules[moduleIndex];
+      if (deepest == null || m.getDepth() >= deepest.getDepth()) {
+        deepest = m;
       }
     }
-    return null;
+    return deepest;
   }
 
   /**
@@ -367,12 +617,29 @@ public final class JSModuleGraph implements Serializable {
   /** Returns the deepest common dependency of the given modules. */
   public JSModule getDeepestCommonDependencyInclusive(
       Collection<JSModule> modules) {
-    Iterator<JSModule> iter = modules.iterator();
-    JSModule dep = iter.next();
-    while (iter.hasNext()) {
-      dep = getDeepestCommonDependencyInclusive(dep, iter.next());
+    BitSet moduleIndices = new BitSet();
+    for (JSModule m : modules) {
+      moduleIndices.set(m.getIndex());
     }
-    return dep;
+    return getDeepestCommonDependencyInclusive(moduleIndices);
+  }
+
+  /**
+   * Finds the deepest common dependency of all of the given modules at once, including the modules
+   * themselves. On trees, this is a single range query over the Euler tour, however many modules
+   * there are.
+   *
+   * @param moduleIndices indices of the modules, at least one
+   * @return The deepest module that all of the given modules are or depend on, or null if there
+   *     is none
+   */
+  public JSModule getDeepestCommonDependencyInclusive(BitSet moduleIndices) {
+    checkState(!moduleIndices.isEmpty());
+    if (treeAncestors != null) {
+      return modules[treeAncestors.getLowestCommonAncestor(moduleIndices)];
+    }
+    return getDeepest(
+        getNearestCommonDependencies(moduleIndices.nextSetBit(0), moduleIndices, true));
   }
 
   /**
@@ -385,17 +652,7 @@ public final class JSModuleGraph implements Serializable {
    */
   @VisibleForTesting
   List<JSModule> getTransitiveDepsDeepestFirst(JSModule m) {
-    return InverseDepthComparator.INSTANCE.sortedCopy(getTransitiveDeps(m));
-  }
-
-  /** Returns the transitive dependencies of the module. */
-  private Set<JSModule> getTransitiveDeps(JSModule m) {
-    Set<JSModule> deps = dependencyMap.get(m);
-    if (deps == null) {
-      deps = m.getAllDependencies();
-      dependencyMap.put(m, deps);
-    }
-    return deps;
+    return InverseDepthComparator.INSTANCE.sortedCopy(m.getAllDependencies());
   }
 
   /**
@@ -633,6 +890,97 @@ public final class JSModuleGraph implements Serializable {
     return graphViz;
   }
 
+  /**
+   * Finds lowest common ancestors in a tree in constant time, by looking up the shallowest module
+   * between the first visits of the two modules in an Euler tour of the tree.
+   */
+  private static final class TreeAncestors implements Serializable {
+    /** The modules in the order of an Euler tour, which visits a parent again after each child. */
+    private final int[] tour;
+
+    /** firstVisit[i] = the position of the first visit of modules[i] in the tour. */
+    private final int[] firstVisit;
+
+    private final int[] depths;
+
+    /**
+     * shallowest[k][i] = the shallowest module in the 2^k positions of the tour starting at i.
+     * Every range of the tour is covered by two of these.
+     */
+    private final int[][] shallowest;
+
+    TreeAncestors(int root, int[] children, int[] childrenStart, int[] depths) {
+      int moduleCount = depths.length;
+      this.depths = depths;
+      this.tour = new int[2 * moduleCount - 1];
+      this.firstVisit = new int[moduleCount];
+      int length = 0;
+      int[] stack = new int[moduleCount];
+      int[] nextChild = new int[moduleCount];
+      int top = 0;
+      stack[0] = root;
+      nextChild[root] = childrenStart[root];
+      firstVisit[root] = length;
+      tour[length++] = root;
+      while (top >= 0) {
+        int moduleIndex = stack[top];
+        if (nextChild[moduleIndex] < childrenStart[moduleIndex + 1]) {
+          int child = children[nextChild[moduleIndex]++];
+          stack[++top] = child;
+          nextChild[child] = childrenStart[child];
+          firstVisit[child] = length;
+          tour[length++] = child;
+        } else if (--top >= 0) {
+          tour[length++] = stack[top];
+        }
+      }
+
+      int levels = 32 - Integer.numberOfLeadingZeros(tour.length);
+      this.shallowest = new int[levels][];
+      shallowest[0] = tour;
+      for (int k = 1; k < levels; k++) {
+        int[] previous = shallowest[k - 1];
+        int half = 1 << (k - 1);
+        int[] current = new int[tour.length - (1 << k) + 1];
+        for (int i = 0; i < current.length; i++) {
+          current[i] = shallower(previous[i], previous[i + half]);
+        }
+        shallowest[k] = current;
+      }
+    }
+
+    int getLowestCommonAncestor(int moduleIndex1, int moduleIndex2) {
+      return getShallowestInTour(
+          Math.min(firstVisit[moduleIndex1], firstVisit[moduleIndex2]),
+          Math.max(firstVisit[moduleIndex1], firstVisit[moduleIndex2]));
+    }
+
+    /**
+     * The lowest common ancestor of a set of modules is the shallowest module between the first
+     * and the last of their first visits.
+     */
+    int getLowestCommonAncestor(BitSet moduleIndices) {
+      int start = tour.length;
+      int end = -1;
+      for (int moduleIndex = moduleIndices.nextSetBit(0);
+          moduleIndex >= 0;
+          moduleIndex = moduleIndices.nextSetBit(moduleIndex + 1)) {
+        start = Math.min(start, firstVisit[moduleIndex]);
+        end = Math.max(end, firstVisit[moduleIndex]);
+      }
+      return getShallowestInTour(start, end);
+    }
+
+    private int getShallowestInTour(int start, int end) {
+      int k = 31 - Integer.numberOfLeadingZeros(end - start + 1);
+      return shallower(shallowest[k][start], shallowest[k][end - (1 << k) + 1]);
+    }
+
+    private int shallower(int moduleIndex1, int moduleIndex2) {
+      return depths[moduleIndex1] <= depths[moduleIndex2] ? moduleIndex1 : moduleIndex2;
+    }
+  }
+
   /**
    * A module depth comparator that considers a deeper module to be "less than"
    * a shallower module. Uses module names to consistently break ties.
@@ -15,11 +15,9 @@
  */
 package com.google.javascript.jscomp;
 
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
-import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -46,63 +44,37 @@ import javax.annotation.Nullable;
  * @author simranarora@google.com (Simran Arora)
  */
 class LiveVariablesAnalysisEs6
-    extends DataFlowAnalysis<Node, LiveVariablesAnalysisEs6.LiveVariableLattice> {
+    extends BitVectorDataFlowAnalysis<LiveVariablesAnalysisEs6.LiveVariableLattice> {
 
   static final int MAX_VARIABLES_TO_ANALYZE = 100;
 
   public static final String ARGUMENT_ARRAY_ALIAS = "arguments";
 
-  private static class LiveVariableJoinOp implements JoinOp<LiveVariableLattice> {
-    @Override
-    public LiveVariableLattice apply(List<LiveVariableLattice> in) {
-      LiveVariableLattice result = new LiveVariableLattice(in.get(0));
-      for (int i = 1; i < in.size(); i++) {
-        result.liveSet.or(in.get(i).liveSet);
-      }
-      return result;
-    }
-  }
-
   /**
    * The lattice that stores the liveness of all local variables at a given point in the program.
    * The whole lattice is the power set of all local variables and a variable is live if it is in
    * the set.
    */
-  static class LiveVariableLattice implements LatticeElement {
-    private final BitSet liveSet;
-
+  static class LiveVariableLattice extends BitVector<LiveVariableLattice> {
     /** @param numVars Number of all local variables. */
     private LiveVariableLattice(int numVars) {
-      this.liveSet = new BitSet(numVars);
+      super(new BitSet(numVars));
     }
 
-    private LiveVariableLattice(LiveVariableLattice other) {
-      checkNotNull(other);
-      this.liveSet = (BitSet) other.liveSet.clone();
+    private LiveVariableLattice(BitSet liveSet) {
+      super(liveSet);
     }
 
     @Override
-    public boolean equals(Object other) {
-      checkNotNull(other);
-      return (other instanceof LiveVariableLattice)
-          && this.liveSet.equals(((LiveVariableLattice) other).liveSet);
+    LiveVariableLattice withBits(BitSet bits) {
+      return new LiveVariableLattice(bits);
     }
 
     // There is only a version of this function with index since var.index will
     // return the wrong one. Use an instantiation of
     // LiveVariablesAnalysisEs6 and getVarIndex(var) to get the right index.
     public boolean isLive(int index) {
-      return liveSet.get(index);
-    }
-
-    @Override
-    public String toString() {
-      return liveSet.toString();
-    }
-
-    @Override
-    public int hashCode() {
-      return liveSet.hashCode();
+      return bits.get(index);
     }
   }
 
@@ -144,7 +116,7 @@ class LiveVariablesAnalysisEs6
       @Nullable Scope jsScopeChild,
       AbstractCompiler compiler,
       Es6SyntacticScopeCreator scopeCreator) {
-    super(cfg, new LiveVariableJoinOp());
+    super(cfg, new UnionJoin<LiveVariableLattice>());
     checkState(jsScope.isFunctionScope(), jsScope);
 
     this.jsScope = jsScope;
@@ -206,9 +178,20 @@ class LiveVariablesAnalysisEs6
   }
 
   @Override
-  LiveVariableLattice flowThrough(Node node, LiveVariableLattice input) {
-    final BitSet gen = new BitSet(input.liveSet.size());
-    final BitSet kill = new BitSet(input.liveSet.size());
+  void computeGenKillSets() {
+    // Reading "arguments" escapes the parameters, which changes the GEN and
+    // KILL sets of nodes that were already visited.
+    int escapedCount = escaped.size();
+    super.computeGenKillSets();
+    if (escaped.size() != escapedCount) {
+      super.computeGenKillSets();
+    }
+  }
+
+  @Override
+  void computeGenKill(Node node, GenKill genKill) {
+    final BitSet gen = new BitSet(orderedVars.size());
+    final BitSet kill = new BitSet(orderedVars.size());
 
     // Make kills conditional if the node can end abruptly by an exception.
     boolean conditional = false;
@@ -219,11 +202,13 @@ class LiveVariablesAnalysisEs6
       }
     }
     computeGenKill(node, gen, kill, conditional);
-    LiveVariableLattice result = new LiveVariableLattice(input);
     // L_in = L_out - Kill + Gen
-    result.liveSet.andNot(kill);
-    result.liveSet.or(gen);
-    return result;
+    for (int i = kill.nextSetBit(0); i >= 0; i = kill.nextSetBit(i + 1)) {
+      genKill.kill(i);
+    }
+    for (int i = gen.nextSetBit(0); i >= 0; i = gen.nextSetBit(i + 1)) {
+      genKill.gen(i);
+    }
   }
 
   /**
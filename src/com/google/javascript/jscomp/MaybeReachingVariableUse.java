@@ -19,15 +19,14 @@ package com.google.javascript.jscomp;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,28 +44,42 @@ import java.util.Set;
  *
  */
 class MaybeReachingVariableUse extends
-    DataFlowAnalysis<Node, MaybeReachingVariableUse.ReachingUses> {
+    BitVectorDataFlowAnalysis<MaybeReachingVariableUse.ReachingUses> {
 
-  // The scope of the function that we are analyzing.
-  private final Set<Var> escaped;
-  private final Map<String, Var> allVarsInFn;
-  private final List<Var> orderedVars;
+  // Maps the name of each local variable that did not escape to a dense index,
+  // in the order in which the variables are declared.
+  private final Map<String, Integer> localVarIndices = new HashMap<>();
+
+  // Each bit stands for a use of a variable at a control flow graph node. The
+  // kill set of a variable holds all of its uses.
+  private int[] killSetOfVar;
+  private final List<Node> useNodes = new ArrayList<>();
+
+  // The last use bit of each variable. Bits are allocated one node at a time,
+  // so it is a use at the current node if it is not below firstBitOfNode.
+  private int[] lastUseBitOfVar;
+  private int firstBitOfNode;
 
   MaybeReachingVariableUse(
       ControlFlowGraph<Node> cfg,
       Scope jsScope,
       AbstractCompiler compiler,
       Es6SyntacticScopeCreator scopeCreator) {
-    super(cfg, new ReachingUsesJoinOp());
-    this.escaped = new HashSet<>();
-    this.allVarsInFn = new HashMap<>();
-    this.orderedVars = new ArrayList<>();
+    super(cfg, new UnionJoin<ReachingUses>());
+    Set<Var> escaped = new HashSet<>();
+    Map<String, Var> allVarsInFn = new HashMap<>();
+    List<Var> orderedVars = new ArrayList<>();
 
     // TODO(user): Maybe compute it somewhere else and re-use the escape
     // local set here.
     computeEscapedEs6(jsScope.getParent(), escaped, compiler, scopeCreator);
     NodeUtil.getAllVarsDeclaredInFunction(
         allVarsInFn, orderedVars, compiler, scopeCreator, jsScope.getParent());
+    for (Var var : orderedVars) {
+      if (allVarsInFn.get(var.getName()) == var && !escaped.contains(var)) {
+        localVarIndices.put(var.getName(), localVarIndices.size());
+      }
+    }
   }
 
   /**
@@ -91,50 +104,23 @@ class MaybeReachingVariableUse extends
    * N_7: print(A);
    *
    * At N_3, reads of A in {N_4, N_5} are said to be upward exposed.
+   *
+   * <p>Every pair of a variable and a node that reads it is given a bit, so
+   * the product lattice is a single bit vector. The join is a simple union
+   * because of the "may be" nature of the analysis.
    */
-  static final class ReachingUses implements LatticeElement {
-    final Multimap<Var, Node> mayUseMap;
-
-    public ReachingUses() {
-      mayUseMap = HashMultimap.create();
+  static final class ReachingUses extends BitVector<ReachingUses> {
+    ReachingUses() {
+      super(new BitSet());
     }
 
-    /**
-     * Copy constructor.
-     *
-     * @param other The constructed object is a replicated copy of this element.
-     */
-    public ReachingUses(ReachingUses other) {
-      mayUseMap = MultimapBuilder.hashKeys().hashSetValues().build(other.mayUseMap);
+    private ReachingUses(BitSet bits) {
+      super(bits);
     }
 
     @Override
-    public boolean equals(Object other) {
-      return (other instanceof ReachingUses) &&
-          ((ReachingUses) other).mayUseMap.equals(this.mayUseMap);
-    }
-
-    @Override
-    public int hashCode() {
-      return mayUseMap.hashCode();
-    }
-  }
-
-  /**
-   * The join is a simple union because of the "may be" nature of the analysis.
-   *
-   * Consider: A = 1; if (x) { A = 2 }; alert(A);
-   *
-   * The read of A "may be" exposed to A = 1 in the beginning.
-   */
-  private static class ReachingUsesJoinOp implements JoinOp<ReachingUses> {
-    @Override
-    public ReachingUses apply(List<ReachingUses> from) {
-      ReachingUses result = new ReachingUses();
-      for (ReachingUses uses : from) {
-        result.mayUseMap.putAll(uses.mayUseMap);
-      }
-      return result;
+    ReachingUses withBits(BitSet bits) {
+      return new ReachingUses(bits);
     }
   }
 
@@ -154,16 +140,26 @@ class MaybeReachingVariableUse extends
   }
 
   @Override
-  ReachingUses flowThrough(Node n, ReachingUses input) {
-    ReachingUses output = new ReachingUses(input);
+  void resetBits() {
+    super.resetBits();
+    int varCount = localVarIndices.size();
+    killSetOfVar = new int[varCount];
+    for (int i = 0; i < varCount; i++) {
+      killSetOfVar[i] = newKillSet();
+    }
+    lastUseBitOfVar = new int[varCount];
+    Arrays.fill(lastUseBitOfVar, -1);
+    useNodes.clear();
+  }
 
+  @Override
+  void computeGenKill(Node n, GenKill genKill) {
     // If there's an ON_EX edge, this cfgNode may or may not get executed.
     // We can express this concisely by just pretending this happens in
     // a conditional.
     boolean conditional = hasExceptionHandler(n);
-    computeMayUse(n, n, output, conditional);
-
-    return output;
+    firstBitOfNode = getBitCount();
+    computeMayUse(n, n, genKill, conditional);
   }
 
   private boolean hasExceptionHandler(Node cfgNode) {
@@ -177,7 +173,7 @@ class MaybeReachingVariableUse extends
   }
 
   private void computeMayUse(
-      Node n, Node cfgNode, ReachingUses output, boolean conditional) {
+      Node n, Node cfgNode, GenKill output, boolean conditional) {
     switch (n.getToken()) {
 
       case BLOCK:
@@ -267,13 +263,10 @@ class MaybeReachingVariableUse extends
    * exposed lattice. Do nothing if the variable name is one of the escaped
    * variable.
    */
-  private void addToUseIfLocal(String name, Node node, ReachingUses use) {
-    Var var = allVarsInFn.get(name);
-    if (var == null) {
-      return;
-    }
-    if (!escaped.contains(var)) {
-      use.mayUseMap.put(var, node);
+  private void addToUseIfLocal(String name, Node node, GenKill use) {
+    Integer var = localVarIndices.get(name);
+    if (var != null) {
+      use.gen(getUseBit(var, node));
     }
   }
 
@@ -282,14 +275,22 @@ class MaybeReachingVariableUse extends
    * exposed lattice. Do nothing if the variable name is one of the escaped
    * variable.
    */
-  private void removeFromUseIfLocal(String name, ReachingUses use) {
-    Var var = allVarsInFn.get(name);
-    if (var == null) {
-      return;
+  private void removeFromUseIfLocal(String name, GenKill use) {
+    Integer var = localVarIndices.get(name);
+    if (var != null) {
+      use.killAll(killSetOfVar[var]);
     }
-    if (!escaped.contains(var)) {
-      use.mayUseMap.removeAll(var);
+  }
+
+  private int getUseBit(int var, Node node) {
+    int bit = lastUseBitOfVar[var];
+    if (bit < firstBitOfNode) {
+      bit = newBit();
+      lastUseBitOfVar[var] = bit;
+      useNodes.add(node);
+      addToKillSet(killSetOfVar[var], bit);
     }
+    return bit;
   }
 
   /**
@@ -306,6 +307,16 @@ class MaybeReachingVariableUse extends
     GraphNode<Node, Branch> n = getCfg().getNode(defNode);
     checkNotNull(n);
     FlowState<ReachingUses> state = n.getAnnotation();
-    return state.getOut().mayUseMap.get(allVarsInFn.get(name));
+    Integer var = localVarIndices.get(name);
+    if (var == null) {
+      return ImmutableList.of();
+    }
+    BitSet uses = (BitSet) state.getOut().bits.clone();
+    uses.and(getKillSet(killSetOfVar[var]));
+    ImmutableList.Builder<Node> result = ImmutableList.builder();
+    for (int i = uses.nextSetBit(0); i >= 0; i = uses.nextSetBit(i + 1)) {
+      result.add(useNodes.get(i));
+    }
+    return result.build();
   }
 }
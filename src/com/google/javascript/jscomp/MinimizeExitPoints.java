@@ -19,10 +19,13 @@ package com.google.javascript.jscomp;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.TernaryValue;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -43,6 +46,16 @@ class MinimizeExitPoints extends AbstractPeepholeOptimization {
     return new PeepholeOptimizationsPass(compiler, this.getClass().getSimpleName(), this);
   }
 
+  private static final ImmutableSet<Token> TOKENS_TO_OPTIMIZE =
+      Sets.immutableEnumSet(
+          Token.LABEL, Token.FOR, Token.FOR_IN, Token.FOR_OF, Token.WHILE, Token.DO, Token.BLOCK,
+          Token.SWITCH);
+
+  @Override
+  Set<Token> getTokensToOptimize() {
+    return TOKENS_TO_OPTIMIZE;
+  }
+
   @Override
   Node optimizeSubtree(Node n) {
     switch (n.getToken()) {
@@ -22,15 +22,13 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.javascript.jscomp.ControlFlowGraph.AbstractCfgNodeTraversalCallback;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -43,7 +41,7 @@ import javax.annotation.Nullable;
  *
  */
 final class MustBeReachingVariableDef extends
-    DataFlowAnalysis<Node, MustBeReachingVariableDef.MustDef> {
+    BitVectorDataFlowAnalysis<MustBeReachingVariableDef.MustDef> {
 
   // The scope of the function that we are analyzing.
   private final AbstractCompiler compiler;
@@ -51,12 +49,21 @@ final class MustBeReachingVariableDef extends
   private final Map<String, Var> allVarsInFn;
   private final List<Var> orderedVars;
 
+  // Each bit stands for one definition of a variable, except for one extra
+  // bit per variable that marks it as TOP. The definitions of a variable and
+  // its TOP bit form its kill set. The definitions that read a variable form
+  // its dependents kill set.
+  private final List<Definition> definitions = new ArrayList<>();
+  private final Map<Var, Integer> defKillSets = new HashMap<>();
+  private final Map<Var, Integer> dependentKillSets = new HashMap<>();
+  private final BitSet entryDefs = new BitSet();
+
   MustBeReachingVariableDef(
       ControlFlowGraph<Node> cfg,
       Scope jsScope,
       AbstractCompiler compiler,
       Es6SyntacticScopeCreator scopeCreator) {
-    super(cfg, new MustDefJoin());
+    super(cfg, new IntersectionJoin<MustDef>());
     this.compiler = compiler;
     this.escaped = new HashSet<>();
     this.allVarsInFn = new HashMap<>();
@@ -119,90 +126,20 @@ final class MustBeReachingVariableDef extends
    *      \    |   |      /
    *          (BOTTOM)
    *
+   * <p>The product lattice is stored as a single bit vector that has a bit for
+   * every definition and a TOP bit for every variable. A variable is TOP if its
+   * TOP bit is set, N if only the bit of definition N is set and BOTTOM if none
+   * of its bits are set. All bits set is TOP for every variable, and the join
+   * is the intersection of the bits.
    */
-  static final class MustDef implements LatticeElement {
-
-    // TODO(user): Use bit vector instead of maps might get better
-    // performance. Change it after this is tested to be fully functional.
-
-    // When a Var "A" = "TOP", "A" does not exist in reachingDef's keySet.
-    // When a Var "A" = Node N, "A" maps to that node.
-    // When a Var "A" = "BOTTOM", "A" maps to null.
-    final Map<Var, Definition> reachingDef;
-
-    public MustDef() {
-      reachingDef = new HashMap<>();
-    }
-
-    public MustDef(Collection<Var> vars) {
-      this();
-      for (Var var : vars) {
-        reachingDef.put(var, new Definition(var.scope.getRootNode()));
-      }
-    }
-
-    /**
-     * Copy constructor.
-     *
-     * @param other The constructed object is a replicated copy of this element.
-     */
-    public MustDef(MustDef other) {
-      reachingDef = new HashMap<>(other.reachingDef);
+  static final class MustDef extends BitVector<MustDef> {
+    MustDef(BitSet bits) {
+      super(bits);
     }
 
     @Override
-    public boolean equals(Object other) {
-      return (other instanceof MustDef) &&
-          ((MustDef) other).reachingDef.equals(this.reachingDef);
-    }
-
-    @Override
-    public int hashCode() {
-      return reachingDef.hashCode();
-    }
-  }
-
-  private static class MustDefJoin extends JoinOp.BinaryJoinOp<MustDef> {
-    @Override
-    public MustDef apply(MustDef a, MustDef b) {
-      MustDef result = new MustDef();
-      Map<Var, Definition> resultMap = result.reachingDef;
-
-      // Take the join of all variables that are not TOP in this.
-      for (Map.Entry<Var, Definition> varEntry : a.reachingDef.entrySet()) {
-        Var var = varEntry.getKey();
-        Definition aDef = varEntry.getValue();
-
-        if (aDef == null) {
-          // "a" is BOTTOM implies that the variable has more than one possible
-          // definition. We set the join of this to be BOTTOM regardless of what
-          // "b" might be.
-          resultMap.put(var, null);
-          continue;
-        }
-
-        if (b.reachingDef.containsKey(var)) {
-          Definition bDef = b.reachingDef.get(var);
-
-          if (aDef.equals(bDef)) {
-            resultMap.put(var, aDef);
-          } else {
-            resultMap.put(var, null);
-          }
-        } else {
-          resultMap.put(var, aDef);
-        }
-      }
-
-      // Take the join of all variables that are not TOP in other but it is TOP
-      // in this.
-      for (Map.Entry<Var, Definition> entry : b.reachingDef.entrySet()) {
-        Var var = entry.getKey();
-        if (!a.reachingDef.containsKey(var)) {
-          resultMap.put(var, entry.getValue());
-        }
-      }
-      return result;
+    MustDef withBits(BitSet bits) {
+      return new MustDef(bits);
     }
   }
 
@@ -213,24 +150,50 @@ final class MustBeReachingVariableDef extends
 
   @Override
   MustDef createEntryLattice() {
-    return new MustDef(allVarsInFn.values());
+    return new MustDef((BitSet) entryDefs.clone());
   }
 
   @Override
   MustDef createInitialEstimateLattice() {
-    return new MustDef();
+    BitSet bits = new BitSet(getBitCount());
+    bits.set(0, getBitCount());
+    return new MustDef(bits);
+  }
+
+  @Override
+  void resetBits() {
+    super.resetBits();
+    definitions.clear();
+    defKillSets.clear();
+    dependentKillSets.clear();
+    entryDefs.clear();
+    for (Var var : allVarsInFn.values()) {
+      int defs = newKillSet();
+      defKillSets.put(var, defs);
+      dependentKillSets.put(var, newKillSet());
+      addToKillSet(defs, newDefinitionBit(null));
+      int entryDef = newDefinitionBit(new Definition(var.scope.getRootNode()));
+      addToKillSet(defs, entryDef);
+      entryDefs.set(entryDef);
+    }
   }
 
   @Override
-  MustDef flowThrough(Node n, MustDef input) {
-    // TODO(user): We are doing a straight copy from input to output. There
-    // might be some opportunities to cut down overhead.
-    MustDef output = new MustDef(input);
+  void computeGenKill(Node n, GenKill genKill) {
     // TODO(user): This must know about ON_EX edges but it should handle
     // it better than what we did in liveness. Because we are in a forward mode,
     // we can used the branched forward analysis.
-    computeMustDef(n, n, output, false);
-    return output;
+    computeMustDef(n, n, genKill, false);
+  }
+
+  /**
+   * Allocates the bit of a definition, or the TOP bit of a variable if
+   * {@code definition} is null.
+   */
+  private int newDefinitionBit(@Nullable Definition definition) {
+    int bit = newBit();
+    definitions.add(definition);
+    return bit;
   }
 
   /**
@@ -239,7 +202,7 @@ final class MustBeReachingVariableDef extends
    * @param conditional true if the definition is not always executed.
    */
   private void computeMustDef(
-      Node n, Node cfgNode, MustDef output, boolean conditional) {
+      Node n, Node cfgNode, GenKill output, boolean conditional) {
     switch (n.getToken()) {
 
       case BLOCK:
@@ -347,7 +310,7 @@ final class MustBeReachingVariableDef extends
    *     {@code null} if this is a conditional define.
    */
   private void addToDefIfLocal(String name, @Nullable Node node,
-      @Nullable Node rValue, MustDef def) {
+      @Nullable Node rValue, GenKill def) {
     Var var = allVarsInFn.get(name);
 
     // var might be null because the variable might be defined in the extern
@@ -356,48 +319,33 @@ final class MustBeReachingVariableDef extends
       return;
     }
 
-    for (Var other : def.reachingDef.keySet()) {
-      Definition otherDef = def.reachingDef.get(other);
-      if (otherDef == null) {
-        continue;
-      }
-      if (otherDef.depends.contains(var)) {
-        def.reachingDef.put(other, null);
-      }
-    }
+    def.killAll(dependentKillSets.get(var));
 
     if (!escaped.contains(var)) {
-      if (node == null) {
-        def.reachingDef.put(var, null);
-      } else {
+      def.killAll(defKillSets.get(var));
+      if (node != null) {
         Definition definition = new Definition(node);
         if (rValue != null) {
           computeDependence(definition, rValue);
         }
-        def.reachingDef.put(var, definition);
+        int bit = newDefinitionBit(definition);
+        addToKillSet(defKillSets.get(var), bit);
+        for (Var dep : definition.depends) {
+          addToKillSet(dependentKillSets.get(dep), bit);
+        }
+        def.gen(bit);
       }
     }
   }
 
-  private void escapeParameters(MustDef output) {
+  private void escapeParameters(GenKill output) {
     for (Var v : allVarsInFn.values()) {
       if (isParameter(v)) {
         // Assume we no longer know where the parameter comes from
         // anymore.
-        output.reachingDef.put(v, null);
-      }
-    }
-
-    // Also, assume we no longer know anything that depends on a parameter.
-    for (Entry<Var, Definition> pair : output.reachingDef.entrySet()) {
-      Definition value = pair.getValue();
-      if (value == null) {
-        continue;
-      }
-      for (Var dep : value.depends) {
-        if (isParameter(dep)) {
-          output.reachingDef.put(pair.getKey(), null);
-        }
+        output.killAll(defKillSets.get(v));
+        // Also, assume we no longer know anything that depends on a parameter.
+        output.killAll(dependentKillSets.get(v));
       }
     }
   }
@@ -441,7 +389,17 @@ final class MustBeReachingVariableDef extends
     checkArgument(getCfg().hasNode(useNode));
     GraphNode<Node, Branch> n = getCfg().getNode(useNode);
     FlowState<MustDef> state = n.getAnnotation();
-    return state.getIn().reachingDef.get(allVarsInFn.get(name));
+    Integer defs = defKillSets.get(allVarsInFn.get(name));
+    if (defs == null) {
+      return null;
+    }
+    BitSet reaching = (BitSet) state.getIn().bits.clone();
+    reaching.and(getKillSet(defs));
+    if (reaching.cardinality() != 1) {
+      return null;
+    }
+    // This is null if the variable is TOP.
+    return definitions.get(reaching.nextSetBit(0));
   }
 
   Node getDefNode(String name, Node useNode) {
@@ -25,8 +25,8 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -94,7 +94,7 @@ public class NTIWorkset {
     List<DiGraphNode<Node, ControlFlowGraph.Branch>> build() {
       ntiWorkset = new ArrayList<>();
       workset = new ArrayDeque<>();
-      seen = new LinkedHashSet<>();
+      seen = new HashSet<>();
       workset.push(cfg.getEntry());
       while (!workset.isEmpty()) {
         processGraphNode();
@@ -49,6 +49,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -1084,7 +1085,7 @@ public final class NodeUtil {
   }
 
   static boolean mayEffectMutableState(Node n, AbstractCompiler compiler) {
-    return checkForStateChangeHelper(n, true, compiler);
+    return checkForStateChangeHelper(n, true, compiler, null);
   }
 
   /**
@@ -1097,7 +1098,80 @@ public final class NodeUtil {
   }
 
   public static boolean mayHaveSideEffects(Node n, AbstractCompiler compiler) {
-    return checkForStateChangeHelper(n, false, compiler);
+    return checkForStateChangeHelper(n, false, compiler, null);
+  }
+
+  /**
+   * Same as {@link #mayEffectMutableState(Node, AbstractCompiler)}, but remembers the results for
+   * the nodes of the subtree in the given memo until the change stamp of the compiler moves.
+   */
+  static boolean mayEffectMutableStateMemoized(
+      Node n, AbstractCompiler compiler, SideEffectMemo memo) {
+    memo.forgetIfChanged(compiler);
+    return checkForStateChange(n, true, compiler, memo);
+  }
+
+  /**
+   * Same as {@link #mayHaveSideEffects(Node, AbstractCompiler)}, but remembers the results for the
+   * nodes of the subtree in the given memo until the change stamp of the compiler moves.
+   */
+  static boolean mayHaveSideEffectsMemoized(
+      Node n, AbstractCompiler compiler, SideEffectMemo memo) {
+    memo.forgetIfChanged(compiler);
+    return checkForStateChange(n, false, compiler, memo);
+  }
+
+  /**
+   * Results of side-effect queries remembered by a pass. All of them are forgotten as soon as the
+   * change stamp of the compiler moves, so the pass must report every change to the AST before it
+   * queries again.
+   */
+  static final class SideEffectMemo {
+    // For each node, and for each of the two queries, whether the result is known and the result
+    // itself.
+    private static final int SIDE_EFFECTS_KNOWN = 1;
+    private static final int MUTABLE_STATE_KNOWN = 4;
+
+    private final Map<Node, Integer> results = new HashMap<>();
+    private int changeStamp = -1;
+
+    private void forgetIfChanged(AbstractCompiler compiler) {
+      if (compiler.getChangeStamp() != changeStamp) {
+        results.clear();
+        changeStamp = compiler.getChangeStamp();
+      }
+    }
+
+    /** Forgets all results, so that they no longer keep their nodes alive. */
+    void clear() {
+      results.clear();
+      changeStamp = -1;
+    }
+  }
+
+  /**
+   * Returns the remembered result of the query for the node, and otherwise computes and remembers
+   * it. A null memo remembers nothing.
+   */
+  private static boolean checkForStateChange(
+      Node n,
+      boolean checkForNewObjects,
+      AbstractCompiler compiler,
+      @Nullable SideEffectMemo memo) {
+    if (memo == null) {
+      return checkForStateChangeHelper(n, checkForNewObjects, compiler, null);
+    }
+    int knownBit =
+        checkForNewObjects ? SideEffectMemo.MUTABLE_STATE_KNOWN : SideEffectMemo.SIDE_EFFECTS_KNOWN;
+    int valueBit = knownBit << 1;
+    Integer remembered = memo.results.get(n);
+    int bits = remembered == null ? 0 : remembered;
+    if ((bits & knownBit) != 0) {
+      return (bits & valueBit) != 0;
+    }
+    boolean result = checkForStateChangeHelper(n, checkForNewObjects, compiler, memo);
+    memo.results.put(n, bits | knownBit | (result ? valueBit : 0));
+    return result;
   }
 
   /**
@@ -1107,7 +1181,10 @@ public final class NodeUtil {
    * that they have no side effects.
    */
   private static boolean checkForStateChangeHelper(
-      Node n, boolean checkForNewObjects, AbstractCompiler compiler) {
+      Node n,
+      boolean checkForNewObjects,
+      AbstractCompiler compiler,
+      @Nullable SideEffectMemo memo) {
     // Rather than id which ops may have side effects, id the ones
     // that we know to be safe
     switch (n.getToken()) {
@@ -1124,7 +1201,7 @@ public final class NodeUtil {
         }
         for (Node key = n.getFirstChild(); key != null; key = key.getNext()) {
           for (Node c = key.getFirstChild(); c != null; c = c.getNext()) {
-            if (checkForStateChangeHelper(c, checkForNewObjects, compiler)) {
+            if (checkForStateChange(c, checkForNewObjects, compiler, memo)) {
               return true;
             }
           }
@@ -1156,14 +1233,15 @@ public final class NodeUtil {
       case CLASS:
         return checkForNewObjects || isClassDeclaration(n)
             // Check the extends clause for side effects.
-            || checkForStateChangeHelper(n.getSecondChild(), checkForNewObjects, compiler)
+            || checkForStateChange(n.getSecondChild(), checkForNewObjects, compiler, memo)
             // Check for class members that are computed properties with side effects.
-            || checkForStateChangeHelper(n.getLastChild(), checkForNewObjects, compiler);
+            || checkForStateChange(n.getLastChild(), checkForNewObjects, compiler, memo);
 
       case CLASS_MEMBERS:
         for (Node member = n.getFirstChild(); member != null; member = member.getNext()) {
           if (member.isComputedProp()
-              && checkForStateChangeHelper(member.getFirstChild(), checkForNewObjects, compiler)) {
+              && checkForStateChange(
+                  member.getFirstChild(), checkForNewObjects, compiler, memo)) {
             return true;
           }
         }
@@ -1233,8 +1311,8 @@ public final class NodeUtil {
           // a) The RHS has side effects, or
           // b) The LHS has side effects, or
           // c) A name on the LHS will exist beyond the life of this statement.
-          if (checkForStateChangeHelper(n.getFirstChild(), checkForNewObjects, compiler)
-              || checkForStateChangeHelper(n.getLastChild(), checkForNewObjects, compiler)) {
+          if (checkForStateChange(n.getFirstChild(), checkForNewObjects, compiler, memo)
+              || checkForStateChange(n.getLastChild(), checkForNewObjects, compiler, memo)) {
             return true;
           }
 
@@ -1270,7 +1348,7 @@ public final class NodeUtil {
     }
 
     for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
-      if (checkForStateChangeHelper(c, checkForNewObjects, compiler)) {
+      if (checkForStateChange(c, checkForNewObjects, compiler, memo)) {
         return true;
       }
     }
@@ -17,6 +17,7 @@
 package com.google.javascript.jscomp;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.GwtIncompatible;
 
@@ -34,8 +35,13 @@ final class OutputCharsetEncoder {
 
   private final CharsetEncoder encoder;
 
+  // UTF-8 can encode every char except the halves of surrogate pairs, so it
+  // does not need the (much slower) CharsetEncoder.
+  private final boolean isUtf8;
+
   OutputCharsetEncoder(Charset outputCharset) {
-    if (outputCharset == null || outputCharset == US_ASCII) {
+    this.isUtf8 = UTF_8.equals(outputCharset);
+    if (outputCharset == null || outputCharset == US_ASCII || isUtf8) {
       // If we want our default (pretending to be UTF-8, but escaping anything
       // outside of straight ASCII), then don't use the encoder, but
       // just special-case the code.  This keeps the normal path through
@@ -47,6 +53,9 @@ final class OutputCharsetEncoder {
   }
 
   boolean canEncode(char c) {
+    if (isUtf8) {
+      return !Character.isSurrogate(c);
+    }
     return encoder != null && encoder.canEncode(c);
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.javascript.jscomp.CodePrinter.PrintedCode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A helper class to print the code of many ASTs using multiple threads. Each AST is printed into
+ * its own buffer, and its source mappings are only added to the source map when the caller
+ * concatenates the results, so the output is the same as if they had been printed one after
+ * another.
+ *
+ * <p>A compiler keeps one printer for all of its outputs. Its threads stop after being idle for a
+ * while, so it doesn't need to be shut down.
+ */
+class ParallelCodePrinter {
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 10;
+
+  private final int numParallelThreads;
+  private final ThreadPoolExecutor poolExecutor;
+  private final ListeningExecutorService executorService;
+
+  ParallelCodePrinter(int numParallelThreads) {
+    this.numParallelThreads = numParallelThreads;
+    ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t =
+              new Thread(
+                  null, r, "jscompiler-ParallelCodePrinter", CompilerExecutor.COMPILER_STACK_SIZE);
+          t.setDaemon(true);  // Do not prevent the JVM from exiting.
+          return t;
+        }
+    };
+    poolExecutor = new ThreadPoolExecutor(
+        numParallelThreads,
+        numParallelThreads,
+        IDLE_THREAD_TIMEOUT_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        threadFactory);
+    poolExecutor.allowCoreThreadTimeOut(true);
+    executorService = MoreExecutors.listeningDecorator(poolExecutor);
+  }
+
+  /**
+   * Prints the code of each of the builders, which must already be fully configured, and returns
+   * the results in the same order.
+   */
+  List<PrintedCode> print(List<CodePrinter.Builder> builders) {
+    List<ListenableFuture<PrintedCode>> futureList = new ArrayList<>(builders.size());
+    for (final CodePrinter.Builder builder : builders) {
+      futureList.add(executorService.submit(new Callable<PrintedCode>() {
+        @Override
+        public PrintedCode call() {
+          return builder.buildWithDeferredSourceMap();
+        }
+      }));
+    }
+
+    try {
+      return Futures.allAsList(futureList).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  int getNumParallelThreads() {
+    return numParallelThreads;
+  }
+}
@@ -18,8 +18,12 @@ package com.google.javascript.jscomp;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+import java.util.Set;
 
 /**
  * A pass that looks for assignments to properties of an object or array
@@ -32,6 +36,15 @@ import com.google.javascript.rhino.Node;
  */
 final class PeepholeCollectPropertyAssignments extends AbstractPeepholeOptimization {
 
+  private static final ImmutableSet<Token> TOKENS_TO_OPTIMIZE =
+      Sets.immutableEnumSet(
+          Token.SCRIPT, Token.BLOCK);
+
+  @Override
+  Set<Token> getTokensToOptimize() {
+    return TOKENS_TO_OPTIMIZE;
+  }
+
   @Override
   Node optimizeSubtree(Node subtree) {
     if (!subtree.isScript() && !subtree.isNormalBlock()) {
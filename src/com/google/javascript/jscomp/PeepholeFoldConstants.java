@@ -19,11 +19,14 @@ package com.google.javascript.jscomp;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.NodeUtil.ValueType;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.TernaryValue;
+import java.util.Set;
 
 /**
  * Peephole optimization to fold constants (e.g. x + 1 + 7 --> x + 8).
@@ -70,6 +73,22 @@ class PeepholeFoldConstants extends AbstractPeepholeOptimization {
     this.shouldUseTypes = shouldUseTypes;
   }
 
+  private static final ImmutableSet<Token> TOKENS_TO_OPTIMIZE =
+      Sets.immutableEnumSet(
+          Token.CALL, Token.NEW, Token.TYPEOF, Token.NOT, Token.POS, Token.NEG, Token.BITNOT,
+          Token.VOID, Token.GETPROP, Token.GETELEM, Token.INSTANCEOF, Token.AND, Token.OR,
+          Token.LSH, Token.RSH, Token.URSH, Token.ASSIGN, Token.ASSIGN_BITOR, Token.ASSIGN_BITXOR,
+          Token.ASSIGN_BITAND, Token.ASSIGN_LSH, Token.ASSIGN_RSH, Token.ASSIGN_URSH,
+          Token.ASSIGN_ADD, Token.ASSIGN_SUB, Token.ASSIGN_MUL, Token.ASSIGN_DIV, Token.ASSIGN_MOD,
+          Token.ADD, Token.SUB, Token.DIV, Token.MOD, Token.MUL, Token.BITAND, Token.BITOR,
+          Token.BITXOR, Token.LT, Token.GT, Token.LE, Token.GE, Token.EQ, Token.NE, Token.SHEQ,
+          Token.SHNE);
+
+  @Override
+  Set<Token> getTokensToOptimize() {
+    return TOKENS_TO_OPTIMIZE;
+  }
+
   @Override
   Node optimizeSubtree(Node subtree) {
     switch (subtree.getToken()) {
@@ -21,12 +21,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.MinimizedCondition.MeasuredNode;
 import com.google.javascript.jscomp.MinimizedCondition.MinimizationStyle;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.TernaryValue;
+import java.util.Set;
 
 /**
  * A peephole optimization that minimizes conditional expressions
@@ -54,6 +57,16 @@ class PeepholeMinimizeConditions
     this.late = late;
   }
 
+  private static final ImmutableSet<Token> TOKENS_TO_OPTIMIZE =
+      Sets.immutableEnumSet(
+          Token.THROW, Token.RETURN, Token.NOT, Token.IF, Token.EXPR_RESULT, Token.HOOK,
+          Token.WHILE, Token.DO, Token.FOR, Token.BLOCK);
+
+  @Override
+  Set<Token> getTokensToOptimize() {
+    return TOKENS_TO_OPTIMIZE;
+  }
+
   /**
    * Tries to apply our various peephole minimizations on the passed in node.
    */
@@ -16,11 +16,16 @@
 
 package com.google.javascript.jscomp;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A compiler pass to run various peephole optimizations (e.g. constant folding,
@@ -30,11 +35,30 @@ import java.util.List;
  */
 class PeepholeOptimizationsPass implements CompilerPass {
 
+  private static final Logger logger =
+      Logger.getLogger(PeepholeOptimizationsPass.class.getName());
+
   private final AbstractCompiler compiler;
   private final String passName;
   private final List<AbstractPeepholeOptimization> peepholeOptimizations;
   private boolean retraverseOnChange;
 
+  /**
+   * For each token, indexed by ordinal, a bit mask of the indices of the
+   * optimizations that optimize subtrees rooted at that token.
+   */
+  private final long[] optimizationsByToken;
+
+  /** For each optimization, the number of times it reported a change. */
+  private final int[] hitCounts;
+
+  /**
+   * The results of the side-effect queries of all the optimizations. They
+   * are forgotten whenever an optimization reports a change, and at the end
+   * of the pass.
+   */
+  private final NodeUtil.SideEffectMemo sideEffectMemo = new NodeUtil.SideEffectMemo();
+
   /** Creates a peephole optimization pass that runs the given optimizations. */
   PeepholeOptimizationsPass(
       AbstractCompiler compiler, String passName, AbstractPeepholeOptimization... optimizations) {
@@ -49,6 +73,14 @@ class PeepholeOptimizationsPass implements CompilerPass {
     this.passName = passName;
     this.peepholeOptimizations = optimizations;
     this.retraverseOnChange = true;
+    checkArgument(optimizations.size() <= Long.SIZE, "Too many peephole optimizations");
+    this.optimizationsByToken = new long[Token.values().length];
+    for (int i = 0; i < optimizations.size(); i++) {
+      for (Token token : optimizations.get(i).getTokensToOptimize()) {
+        optimizationsByToken[token.ordinal()] |= 1L << i;
+      }
+    }
+    this.hitCounts = new int[optimizations.size()];
   }
 
   @VisibleForTesting
@@ -72,17 +104,51 @@ class PeepholeOptimizationsPass implements CompilerPass {
         break;
       }
     }
+    sideEffectMemo.clear();
+
+    if (logger.isLoggable(Level.FINE)) {
+      StringBuilder sb = new StringBuilder(passName).append(" changes:");
+      for (int i = 0; i < hitCounts.length; i++) {
+        sb.append(' ')
+            .append(peepholeOptimizations.get(i).getClass().getSimpleName())
+            .append('=')
+            .append(hitCounts[i]);
+      }
+      logger.fine(sb.toString());
+    }
+  }
+
+  /** Returns the number of times the optimization reported a change in this pass. */
+  @VisibleForTesting
+  int getHitCount(AbstractPeepholeOptimization optimization) {
+    int index = peepholeOptimizations.indexOf(optimization);
+    checkArgument(index != -1, "Unknown optimization %s", optimization);
+    return hitCounts[index];
   }
 
   private class PeepCallback extends AbstractPostOrderCallback {
     @Override
     public void visit(NodeTraversal t, Node n, Node parent) {
       Node currentNode = n;
-      for (AbstractPeepholeOptimization optim : peepholeOptimizations) {
-        currentNode = optim.optimizeSubtree(currentNode);
+      Token token = n.getToken();
+      long pending = optimizationsByToken[token.ordinal()];
+      while (pending != 0) {
+        int i = Long.numberOfTrailingZeros(pending);
+        int changeStamp = compiler.getChangeStamp();
+        currentNode = peepholeOptimizations.get(i).optimizeSubtree(currentNode);
+        if (compiler.getChangeStamp() != changeStamp) {
+          hitCounts[i]++;
+        }
         if (currentNode == null) {
           return;
         }
+        // The remaining optimizations are the ones after this one, but a
+        // replacement with a different token may be optimized by others.
+        if (currentNode.getToken() != token) {
+          token = currentNode.getToken();
+          pending = optimizationsByToken[token.ordinal()];
+        }
+        pending &= -2L << i;
       }
     }
   }
@@ -90,7 +156,7 @@ class PeepholeOptimizationsPass implements CompilerPass {
   /** Make sure that all the optimizations have the current compiler so they can report errors. */
   private void beginTraversal() {
     for (AbstractPeepholeOptimization optimization : peepholeOptimizations) {
-      optimization.beginTraversal(compiler);
+      optimization.beginTraversal(compiler, sideEffectMemo);
     }
   }
 }
@@ -21,11 +21,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * Just to fold known methods when they are called with constants.
@@ -47,6 +51,13 @@ class PeepholeReplaceKnownMethods extends AbstractPeepholeOptimization {
     this.useTypes = useTypes;
   }
 
+  private static final ImmutableSet<Token> TOKENS_TO_OPTIMIZE = Sets.immutableEnumSet(Token.CALL);
+
+  @Override
+  Set<Token> getTokensToOptimize() {
+    return TOKENS_TO_OPTIMIZE;
+  }
+
   @Override
   Node optimizeSubtree(Node subtree) {
     if (subtree.isCall()){
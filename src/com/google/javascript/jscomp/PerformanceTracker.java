@@ -52,6 +52,8 @@ public final class PerformanceTracker {
 
   private final TracerMode mode;
 
+  private final PerformanceTrackerCodeSizeEstimator.ProgramSizes programSizes;
+
   // Keeps track of AST changes and computes code size estimation
   // if there is any.
   private final RecentChange codeChange = new RecentChange();
@@ -96,12 +98,27 @@ public final class PerformanceTracker {
   private final List<Stats> log = new ArrayList<>();
 
   PerformanceTracker(Node externsRoot, Node jsRoot, TracerMode mode, PrintStream printStream) {
+    this(externsRoot, jsRoot, mode, false, printStream);
+  }
+
+  /**
+   * @param exactSizes whether to print the whole program after every changing pass, instead of
+   *     only the scripts that changed
+   */
+  PerformanceTracker(
+      Node externsRoot,
+      Node jsRoot,
+      TracerMode mode,
+      boolean exactSizes,
+      PrintStream printStream) {
     checkArgument(mode != TracerMode.OFF, "PerformanceTracker can't work without tracer data.");
     this.startTime = System.currentTimeMillis();
     this.externsRoot = externsRoot;
     this.jsRoot = jsRoot;
     this.output = printStream == null ? System.out : printStream;
     this.mode = mode;
+    this.programSizes =
+        new PerformanceTrackerCodeSizeEstimator.ProgramSizes(tracksGzSize(), exactSizes);
   }
 
   CodeChangeHandler getCodeChangeHandler() {
@@ -132,11 +149,10 @@ public final class PerformanceTracker {
     if (!tracksSize()) {
       return;
     }
-    PerformanceTrackerCodeSizeEstimator estimator =
-        PerformanceTrackerCodeSizeEstimator.estimate(this.jsRoot, tracksGzSize());
-    this.initCodeSize = this.codeSize = estimator.getCodeSize();
+    this.programSizes.update(this.jsRoot);
+    this.initCodeSize = this.codeSize = this.programSizes.getCodeSize();
     if (tracksGzSize()) {
-      this.initGzCodeSize = this.gzCodeSize = estimator.getZippedCodeSize();
+      this.initGzCodeSize = this.gzCodeSize = this.programSizes.getZippedCodeSize();
     }
   }
 
@@ -176,11 +192,11 @@ public final class PerformanceTracker {
     if (!tracksSize()) {
       return;
     }
-    PerformanceTrackerCodeSizeEstimator estimator =
-        PerformanceTrackerCodeSizeEstimator.estimate(this.jsRoot, tracksGzSize());
-    logStats.size = this.initCodeSize = this.codeSize = estimator.getCodeSize();
+    this.programSizes.update(this.jsRoot);
+    logStats.size = this.initCodeSize = this.codeSize = this.programSizes.getCodeSize();
     if (tracksGzSize()) {
-      logStats.gzSize = this.initGzCodeSize = this.gzCodeSize = estimator.getZippedCodeSize();
+      logStats.gzSize =
+          this.initGzCodeSize = this.gzCodeSize = this.programSizes.getZippedCodeSize();
     }
   }
 
@@ -191,13 +207,12 @@ public final class PerformanceTracker {
     if (!tracksSize()) {
       return;
     }
-    PerformanceTrackerCodeSizeEstimator estimator =
-        PerformanceTrackerCodeSizeEstimator.estimate(this.jsRoot, tracksGzSize());
-    newSize = estimator.getCodeSize();
+    this.programSizes.update(this.jsRoot);
+    newSize = this.programSizes.getCodeSize();
     logStats.diff = this.codeSize - newSize;
     this.codeSize = logStats.size = newSize;
     if (tracksGzSize()) {
-      newSize = estimator.getZippedCodeSize();
+      newSize = this.programSizes.getZippedCodeSize();
       logStats.gzDiff = this.gzCodeSize - newSize;
       this.gzCodeSize = logStats.gzSize = newSize;
     }
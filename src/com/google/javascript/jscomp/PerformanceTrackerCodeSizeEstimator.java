@@ -21,6 +21,8 @@ import com.google.javascript.rhino.Node;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 /** A class to get a raw and gzip'ed size estimate; it doesn't generate code. */
@@ -91,4 +93,83 @@ final class PerformanceTrackerCodeSizeEstimator extends CodeConsumer {
       return 0;
     }
   }
+
+  /**
+   * Keeps estimating the size of a program as it changes. Unless sizes are exact, it estimates
+   * them script by script, and only reprints the scripts that changed since the last estimate. The
+   * gzipped size is then the sum of the gzipped sizes of the scripts, which is a bit more than the
+   * gzipped size of the whole program, since every script pays for its own gzip header and starts
+   * with an empty dictionary.
+   */
+  static final class ProgramSizes {
+    private final boolean trackGzSize;
+    private final boolean exact;
+    private Map<Node, ScriptSize> scriptSizes = new HashMap<>();
+    private int codeSize = 0;
+    private int zippedCodeSize = 0;
+
+    ProgramSizes(boolean trackGzSize, boolean exact) {
+      this.trackGzSize = trackGzSize;
+      this.exact = exact;
+    }
+
+    void update(Node jsRoot) {
+      if (exact) {
+        PerformanceTrackerCodeSizeEstimator estimator = estimate(jsRoot, trackGzSize);
+        codeSize = estimator.getCodeSize();
+        zippedCodeSize = estimator.getZippedCodeSize();
+        return;
+      }
+      Map<Node, ScriptSize> newScriptSizes = new HashMap<>();
+      codeSize = 0;
+      zippedCodeSize = 0;
+      for (Node script : jsRoot.children()) {
+        int changeTime = getLastChangeTime(script);
+        ScriptSize scriptSize = scriptSizes.get(script);
+        if (scriptSize == null || scriptSize.changeTime != changeTime) {
+          PerformanceTrackerCodeSizeEstimator estimator = estimate(script, trackGzSize);
+          scriptSize =
+              new ScriptSize(
+                  changeTime, estimator.getCodeSize(), estimator.getZippedCodeSize());
+        }
+        newScriptSizes.put(script, scriptSize);
+        codeSize += scriptSize.codeSize;
+        zippedCodeSize += scriptSize.zippedCodeSize;
+      }
+      // Drops the scripts that were removed, so that they can be garbage collected.
+      scriptSizes = newScriptSizes;
+    }
+
+    int getCodeSize() {
+      return codeSize;
+    }
+
+    int getZippedCodeSize() {
+      return zippedCodeSize;
+    }
+
+    /**
+     * Returns the latest change time of the script and of the functions in it. Change times only
+     * increase, so it is different whenever a change was reported to any of these scopes.
+     */
+    private static int getLastChangeTime(Node n) {
+      int changeTime = NodeUtil.isChangeScopeRoot(n) ? n.getChangeTime() : 0;
+      for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+        changeTime = Math.max(changeTime, getLastChangeTime(child));
+      }
+      return changeTime;
+    }
+  }
+
+  private static final class ScriptSize {
+    final int changeTime;
+    final int codeSize;
+    final int zippedCodeSize;
+
+    ScriptSize(int changeTime, int codeSize, int zippedCodeSize) {
+      this.changeTime = changeTime;
+      this.codeSize = codeSize;
+      this.zippedCodeSize = zippedCodeSize;
+    }
+  }
 }
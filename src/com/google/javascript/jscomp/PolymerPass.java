@@ -88,7 +88,7 @@ final class PolymerPass extends AbstractPostOrderCallback implements HotSwapComp
       compiler.ensureLibraryInjected("util/reflectobject", false);
     }
 
-    globalNames = new GlobalNamespace(compiler, externs, root);
+    globalNames = compiler.getGlobalNamespace(externs, root);
 
     hotSwapScript(root, null);
   }
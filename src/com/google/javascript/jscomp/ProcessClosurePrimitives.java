@@ -30,6 +30,7 @@ import com.google.javascript.rhino.JSTypeExpression;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -1305,9 +1306,14 @@ class ProcessClosurePrimitives extends AbstractPostOrderCallback
     // The candidate definition.
     private Node candidateDefinition = null;
 
-    // The minimum module where the provide must appear.
+    // The minimum module where the provide must appear. When there is a
+    // module graph, it is only known once replace() is called.
     private JSModule minimumModule = null;
 
+    // The indices of the modules of the provides and the definition, which
+    // the minimum module must be a common dependency of.
+    private final BitSet moduleIndices = new BitSet();
+
     // The replacement declaration.
     private Node replacementNode = null;
 
@@ -1361,11 +1367,14 @@ class ProcessClosurePrimitives extends AbstractPostOrderCallback
     }
 
     private void updateMinimumModule(JSModule newModule) {
-      if (minimumModule == null) {
+      if (moduleGraph != null) {
+        // The deepest common dependency of all of the modules is found with
+        // a single query in replace().
+        if (newModule != null) {
+          moduleIndices.set(newModule.getIndex());
+        }
+      } else if (minimumModule == null) {
         minimumModule = newModule;
-      } else if (moduleGraph != null) {
-        minimumModule = moduleGraph.getDeepestCommonDependencyInclusive(
-            minimumModule, newModule);
       } else {
         // If there is no module graph, then there must be exactly one
         // module in the program.
@@ -1381,6 +1390,9 @@ class ProcessClosurePrimitives extends AbstractPostOrderCallback
      * that definition becomes a declaration.
      */
     void replace() {
+      if (!moduleIndices.isEmpty()) {
+        minimumModule = moduleGraph.getDeepestCommonDependencyInclusive(moduleIndices);
+      }
       if (firstNode == null) {
         // Don't touch the base case ('goog').
         replacementNode = candidateDefinition;
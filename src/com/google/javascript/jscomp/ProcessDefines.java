@@ -174,6 +174,8 @@ class ProcessDefines implements CompilerPass {
    */
   Map<String, DefineInfo> collectDefines(Node externs, Node root) {
     if (namespace == null) {
+      // Assignments to defines are removed from the namespace along with the
+      // AST, so this pass builds its own instead of sharing the compiler's.
       namespace = new GlobalNamespace(compiler, externs, root);
     }
 
@@ -32,10 +32,8 @@ import com.google.common.io.Files;
 import com.google.javascript.jscomp.CodingConvention.Cache;
 import com.google.javascript.jscomp.DefinitionsRemover.Definition;
 import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
-import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
-import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
+import com.google.javascript.jscomp.graph.CompactDiGraph;
+import com.google.javascript.jscomp.graph.StronglyConnectedComponents;
 import com.google.javascript.rhino.FunctionTypeI;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
@@ -95,8 +93,9 @@ class PureFunctionIdentifier implements CompilerPass {
   // List of all function call sites; used to iterate in markPureFunctionCalls.
   private final List<Node> allFunctionCalls;
 
-  private final LinkedDirectedGraph<FunctionInformation, CallSitePropagationInfo> sideEffectGraph =
-      LinkedDirectedGraph.createWithoutAnnotations();
+  // Edges go from callees to callers.
+  private final CompactDiGraph.Builder<FunctionInformation, CallSitePropagationInfo>
+      sideEffectGraph = CompactDiGraph.builder();
 
   // Externs and ast tree root, for use in getDebugReport.  These two
   // fields are null until process is called.
@@ -295,7 +294,7 @@ class PureFunctionIdentifier implements CompilerPass {
     unknownDefinitionFunction.setTaintsGlobalState();
     unknownDefinitionFunction.setFunctionThrows();
     unknownDefinitionFunction.setTaintsReturn();
-    unknownDefinitionFunction.graphNode = sideEffectGraph.createNode(unknownDefinitionFunction);
+    unknownDefinitionFunction.graphIndex = sideEffectGraph.addNode(unknownDefinitionFunction);
     for (DefinitionSite site : definitionProvider.getDefinitionSites()) {
       Definition definition = site.definition;
       if (definition.getLValue() != null) {
@@ -334,7 +333,7 @@ class PureFunctionIdentifier implements CompilerPass {
       if (functionInfo == null) {
         // Need to create a function info node.
         functionInfo = new FunctionInformation();
-        functionInfo.graphNode = sideEffectGraph.createNode(functionInfo);
+        functionInfo.graphIndex = sideEffectGraph.addNode(functionInfo);
         // Keep track of this so that later functions of the same name can point to the same
         // FunctionInformation.
         functionInfoByName.put(name, functionInfo);
@@ -348,23 +347,39 @@ class PureFunctionIdentifier implements CompilerPass {
   }
 
   /**
-   * Propagate side effect information by building a graph based on call site information stored in
-   * FunctionInformation and the DefinitionProvider and then running GraphReachability to determine
-   * the set of functions that have side effects.
+   * Propagate side effect information along the graph built from the call site information stored
+   * in FunctionInformation and the DefinitionProvider.
+   *
+   * <p>The strongly connected components of the graph are visited in topological order, so every
+   * callee outside of a component is final by the time the component is visited. Only components
+   * with recursive calls need more than one pass over their incoming edges.
    */
   private void propagateSideEffects() {
-    // Propagate side effect information to a fixed point.
-    FixedPointGraphTraversal.newTraversal(
-            new EdgeCallback<FunctionInformation, CallSitePropagationInfo>() {
-              @Override
-              public boolean traverseEdge(
-                  FunctionInformation source,
-                  CallSitePropagationInfo edge,
-                  FunctionInformation destination) {
-                return edge.propagate(source, destination);
-              }
-            })
-        .computeFixedPoint(sideEffectGraph);
+    CompactDiGraph<FunctionInformation, CallSitePropagationInfo> graph = sideEffectGraph.build();
+    StronglyConnectedComponents components = StronglyConnectedComponents.compute(graph);
+    for (int c = 0; c < components.getComponentCount(); c++) {
+      boolean firstPass = true;
+      boolean changed;
+      do {
+        changed = false;
+        for (int p = components.getComponentStart(c); p < components.getComponentEnd(c); p++) {
+          int caller = components.getNodeAt(p);
+          for (int i = graph.getInEdgeStart(caller); i < graph.getInEdgeEnd(caller); i++) {
+            int edge = graph.getInEdgeAt(i);
+            int callee = graph.getSource(edge);
+            // Edges from earlier components only need to be followed once.
+            if (firstPass || components.getComponentOf(callee) == c) {
+              changed |=
+                  graph
+                      .getEdgeValue(edge)
+                      .propagate(
+                          graph.getNodeAt(callee).getValue(), graph.getNodeAt(caller).getValue());
+            }
+          }
+        }
+        firstPass = false;
+      } while (changed);
+    }
   }
 
   /** Set no side effect property at pure-function call sites. */
@@ -455,7 +470,7 @@ class PureFunctionIdentifier implements CompilerPass {
           // {@link buildGraph}. For example, an anonymous function.
           FunctionInformation functionInfo = new FunctionInformation();
           functionSideEffectMap.put(node, functionInfo);
-          functionInfo.graphNode = sideEffectGraph.createNode(functionInfo);
+          functionInfo.graphIndex = sideEffectGraph.addNode(functionInfo);
         }
       }
       return true;
@@ -677,7 +692,7 @@ class PureFunctionIdentifier implements CompilerPass {
 
       for (FunctionInformation sideEffectNode : possibleSideEffects) {
         CallSitePropagationInfo edge = CallSitePropagationInfo.computePropagationType(node);
-        sideEffectGraph.connect(sideEffectNode.graphNode, edge, sideEffectInfo.graphNode);
+        sideEffectGraph.connectByIndex(sideEffectNode.graphIndex, edge, sideEffectInfo.graphIndex);
       }
     }
   }
@@ -796,7 +811,7 @@ class PureFunctionIdentifier implements CompilerPass {
    * function's body.
    */
   private static class FunctionInformation {
-    DiGraphNode<FunctionInformation, CallSitePropagationInfo> graphNode;
+    int graphIndex;
     private int bitmask = 0;
 
     // Side effect types:
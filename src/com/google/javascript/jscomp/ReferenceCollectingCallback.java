@@ -51,6 +51,11 @@ public final class ReferenceCollectingCallback
   private final Map<Var, ReferenceCollection> referenceMap =
        new LinkedHashMap<>();
 
+  /**
+   * The scopes the traversal exited, in order.
+   */
+  private final List<Scope> exitedScopes = new ArrayList<>();
+
   /**
    * The stack of basic blocks and scopes the current traversal is in.
    */
@@ -163,6 +168,59 @@ public final class ReferenceCollectingCallback
     return referenceMap.get(v);
   }
 
+  /**
+   * Calls the behavior for each scope the traversal exited, in the same order, with all of the
+   * collected references. A variable is only referenced from within its scope, so the variables of
+   * each scope have the same references as when the traversal exited it. This lets passes that only
+   * read the references run their per-scope logic over a shared collection.
+   */
+  void replayScopeExits(ScopeBehavior scopeBehavior) {
+    ReferenceMap references = new ReferenceMapWrapper(referenceMap);
+    for (Scope scope : exitedScopes) {
+      scopeBehavior.afterExitScope(scope, references);
+    }
+  }
+
+  /**
+   * Checks that this callback collected the same variables and references as a callback that
+   * freshly processed the same AST. Variables are compared by their declaring name node, since
+   * Var objects differ between traversals.
+   *
+   * @throws IllegalStateException if the references differ, which means that a change to the AST
+   *     was not reported since this callback processed it.
+   */
+  void verifyMatches(ReferenceCollectingCallback expected) {
+    List<Var> vars = new ArrayList<>(referenceMap.keySet());
+    List<Var> expectedVars = new ArrayList<>(expected.referenceMap.keySet());
+    boolean matches = vars.size() == expectedVars.size();
+    for (int i = 0; matches && i < vars.size(); i++) {
+      matches =
+          vars.get(i).getName().equals(expectedVars.get(i).getName())
+              && vars.get(i).getNameNode() == expectedVars.get(i).getNameNode();
+    }
+    if (!matches) {
+      throw new IllegalStateException(
+          "Stale variable references: variables changed from " + vars + " to " + expectedVars);
+    }
+    for (int i = 0; i < vars.size(); i++) {
+      List<Reference> refs = referenceMap.get(vars.get(i)).references;
+      List<Reference> expectedRefs = expected.referenceMap.get(expectedVars.get(i)).references;
+      matches = refs.size() == expectedRefs.size();
+      for (int j = 0; matches && j < refs.size(); j++) {
+        matches = refs.get(j).getNode() == expectedRefs.get(j).getNode();
+      }
+      if (!matches) {
+        throw new IllegalStateException(
+            "Stale variable references: references to "
+                + vars.get(i).getName()
+                + " changed from "
+                + refs
+                + " to "
+                + expectedRefs);
+      }
+    }
+  }
+
   /**
    * For each node, update the block stack and reference collection
    * as appropriate.
@@ -254,6 +312,7 @@ public final class ReferenceCollectingCallback
     if (t.isHoistScope()) {
       pop(blockStack);
     }
+    exitedScopes.add(t.getScope());
     behavior.afterExitScope(t, new ReferenceMapWrapper(referenceMap));
   }
 
@@ -387,6 +446,16 @@ public final class ReferenceCollectingCallback
     void afterExitScope(NodeTraversal t, ReferenceMap referenceMap);
   }
 
+  /**
+   * Per-scope behavior for {@link #replayScopeExits}.
+   */
+  interface ScopeBehavior {
+    /**
+     * Called for each scope, in the order the traversal exited them.
+     */
+    void afterExitScope(Scope scope, ReferenceMap referenceMap);
+  }
+
   static final Behavior DO_NOTHING_BEHAVIOR = new Behavior() {
     @Override
     public void afterExitScope(NodeTraversal t, ReferenceMap referenceMap) {}
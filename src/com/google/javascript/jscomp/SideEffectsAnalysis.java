@@ -952,12 +952,7 @@ import java.util.Set;
     public void mapUses(Node root) {
       referencesByNameNode = new HashMap<>();
 
-      ReferenceCollectingCallback callback =
-          new ReferenceCollectingCallback(
-              compiler,
-              ReferenceCollectingCallback.DO_NOTHING_BEHAVIOR,
-              new Es6SyntacticScopeCreator(compiler));
-      callback.process(root);
+      ReferenceCollectingCallback callback = compiler.getVariableReferences(root);
 
       for (Var variable : callback.getAllSymbols()) {
         ReferenceCollection referenceCollection =
@@ -21,6 +21,7 @@ import com.google.debugging.sourcemap.FilePosition;
 import com.google.debugging.sourcemap.SourceMapFormat;
 import com.google.debugging.sourcemap.SourceMapGenerator;
 import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
+import com.google.debugging.sourcemap.SourceMapSection;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.javascript.rhino.Node;
 import java.io.IOException;
@@ -226,6 +227,15 @@ public final class SourceMap {
     generator.appendTo(out, fixupSourceLocation(name));
   }
 
+  /**
+   * Appends an index map, made of the given sections, for a generated file that is the
+   * concatenation of other generated files. The mappings of this source map are not used.
+   */
+  public void appendIndexMapTo(Appendable out, String name, List<SourceMapSection> sections)
+      throws IOException {
+    generator.appendIndexMapTo(out, fixupSourceLocation(name), sections);
+  }
+
   public void reset() {
     generator.reset();
     sourceLocationFixupCache.clear();
@@ -16,10 +16,12 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Optional;
 import com.google.debugging.sourcemap.SourceMapConsumerV3;
 import com.google.debugging.sourcemap.SourceMapParseException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
 /**
@@ -31,6 +33,8 @@ public final class SourceMapInput implements Serializable {
   // have cached = false.
   private transient volatile SourceMapConsumerV3 parsedSourceMap = null;
   private transient volatile boolean cached = false;
+  // The files the sources of the source map refer to, resolved once per source.
+  private transient volatile ConcurrentHashMap<String, Optional<SourceFile>> originalSources;
 
   static final DiagnosticType SOURCEMAP_RESOLVE_FAILED =
       DiagnosticType.warning("SOURCEMAP_RESOLVE_FAILED", "Failed to resolve sourcemap: {0}");
@@ -46,16 +50,30 @@ public final class SourceMapInput implements Serializable {
    * Gets the source map, reading from disk and parsing if necessary. Returns null if the sourcemap
    * cannot be resolved or is malformed.
    */
-  public synchronized @Nullable SourceMapConsumerV3 getSourceMap(ErrorManager errorManager) {
+  public @Nullable SourceMapConsumerV3 getSourceMap(ErrorManager errorManager) {
+    return getSourceMap(errorManager, null);
+  }
+
+  /**
+   * Gets the source map, reading from disk and parsing if necessary, or from the cache if it holds
+   * a source map with the same contents. Returns null if the sourcemap cannot be resolved or is
+   * malformed.
+   */
+  synchronized @Nullable SourceMapConsumerV3 getSourceMap(
+      ErrorManager errorManager, @Nullable InputSourceMapCache cache) {
     if (!cached) {
       // Avoid re-reading or reparsing files.
       cached = true;
       String sourceMapPath = sourceFile.getOriginalPath();
       try {
         String sourceMapContents = sourceFile.getCode();
-        SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
-        consumer.parse(sourceMapContents);
-        parsedSourceMap = consumer;
+        if (cache != null) {
+          parsedSourceMap = cache.parse(sourceMapContents);
+        } else {
+          SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+          consumer.parse(sourceMapContents);
+          parsedSourceMap = consumer;
+        }
       } catch (IOException e) {
         JSError error = JSError.make(SourceMapInput.SOURCEMAP_RESOLVE_FAILED, sourceMapPath);
         errorManager.report(error.getDefaultLevel(), error);
@@ -67,6 +85,31 @@ public final class SourceMapInput implements Serializable {
     return parsedSourceMap;
   }
 
+  /**
+   * Gets the file that a source listed in this sourcemap refers to, which is relative to the
+   * sourcemap's file. Returns null if it cannot be resolved.
+   */
+  @Nullable
+  SourceFile getOriginalSource(String originalFile) {
+    ConcurrentHashMap<String, Optional<SourceFile>> resolved = originalSources;
+    if (resolved == null) {
+      synchronized (this) {
+        if (originalSources == null) {
+          originalSources = new ConcurrentHashMap<>();
+        }
+        resolved = originalSources;
+      }
+    }
+    Optional<SourceFile> source = resolved.get(originalFile);
+    if (source == null) {
+      source =
+          Optional.fromNullable(
+              SourceMapResolver.getRelativePath(sourceFile.getOriginalPath(), originalFile));
+      resolved.putIfAbsent(originalFile, source);
+    }
+    return source.orNull();
+  }
+
   /**
    * Gets the original location of this sourcemap file on disk.
    */
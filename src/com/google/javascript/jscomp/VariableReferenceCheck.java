@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.NodeTraversal.AbstractShallowCallback;
 import com.google.javascript.jscomp.ReferenceCollectingCallback.Behavior;
+import com.google.javascript.jscomp.ReferenceCollectingCallback.ScopeBehavior;
 import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
@@ -109,9 +110,9 @@ class VariableReferenceCheck implements HotSwapCompilerPass {
   @Override
   public void process(Node externs, Node root) {
     if (shouldProcess(root)) {
-      new ReferenceCollectingCallback(
-              compiler, new ReferenceCheckingBehavior(), new Es6SyntacticScopeCreator(compiler))
-          .process(externs, root);
+      compiler
+          .getVariableReferences(externs, root)
+          .replayScopeExits(new ReferenceCheckingBehavior());
     }
   }
 
@@ -130,7 +131,7 @@ class VariableReferenceCheck implements HotSwapCompilerPass {
    * Behavior that checks variables for redeclaration or early references
    * just after they go out of scope.
    */
-  private class ReferenceCheckingBehavior implements Behavior {
+  private class ReferenceCheckingBehavior implements Behavior, ScopeBehavior {
 
     private final Set<String> varsInFunctionBody;
 
@@ -140,12 +141,17 @@ class VariableReferenceCheck implements HotSwapCompilerPass {
 
     @Override
     public void afterExitScope(NodeTraversal t, ReferenceMap referenceMap) {
+      afterExitScope(t.getScope(), referenceMap);
+    }
+
+    @Override
+    public void afterExitScope(Scope scope, ReferenceMap referenceMap) {
       // TODO(johnlenz): do this only for ides
-      if (t.inGlobalScope()) {
+      if (scope.isGlobal()) {
         // Update global scope reference lists when we are done with it.
         compiler.updateGlobalVarReferences(
             ((ReferenceCollectingCallback.ReferenceMapWrapper) referenceMap).getRawReferenceMap(),
-            t.getScopeRoot());
+            scope.getRootNode());
         referenceMap = compiler.getGlobalVarReferences();
       }
 
@@ -154,7 +160,6 @@ class VariableReferenceCheck implements HotSwapCompilerPass {
       // all global variables. This should be fixed.
 
       // Check all vars after finishing a scope
-      Scope scope = t.getScope();
       if (scope.isFunctionBlockScope()) {
         varsInFunctionBody.clear();
         for (Var v : scope.getVarIterable()) {
@@ -102,11 +102,7 @@ class VariableVisibilityAnalysis implements CompilerPass {
    */
   @Override
   public void process(Node externs, Node root) {
-    ReferenceCollectingCallback callback =
-      new ReferenceCollectingCallback(compiler,
-          ReferenceCollectingCallback.DO_NOTHING_BEHAVIOR, new Es6SyntacticScopeCreator(compiler));
-
-    callback.process(root);
+    ReferenceCollectingCallback callback = compiler.getVariableReferences(root);
 
     for (Var variable : callback.getAllSymbols()) {
       ReferenceCollection referenceCollection =
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A Union-Find implementation that numbers the elements densely in insertion
+ * order and keeps the forest in int arrays.
+ *
+ * <p>This class implements Union-Find with union by rank and path halving.
+ * Unlike {@link StandardUnionFind} it does not allocate an object per
+ * element, and looking up an element costs a single hash map access, after
+ * which the walk to the root only touches arrays.
+ *
+ * <p>The representatives, and the order of {@link #elements} and {@link
+ * #allEquivalenceClasses}, are the same as those of a {@link
+ * StandardUnionFind} that saw the same sequence of operations.
+ *
+ * @param <E> element type
+ */
+@GwtCompatible
+public final class ArrayUnionFind<E> implements UnionFind<E> {
+
+  private final Map<E, Integer> indices = new LinkedHashMap<>();
+  private final List<E> elements = new ArrayList<>();
+
+  /** The parent of each element; roots are their own parent. */
+  private int[] parent = new int[8];
+
+  /** For roots, a bound on the depth of the tree. */
+  private int[] rank = new int[8];
+
+  /** For roots, the number of elements in the tree. */
+  private int[] size = new int[8];
+
+  /** For roots, the index of the representative element of the class. */
+  private int[] representative = new int[8];
+
+  /** Creates an empty UnionFind structure. */
+  public ArrayUnionFind() {}
+
+  @Override
+  public void add(@Nullable E e) {
+    indexOrAdd(e);
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public E union(@Nullable E a, @Nullable E b) {
+    int rootA = findRoot(indexOrAdd(a));
+    int rootB = findRoot(indexOrAdd(b));
+    if (rootA == rootB) {
+      return elements.get(representative[rootA]);
+    }
+    // Prefer a's representative, to preserve insertion order.
+    if (rank[rootA] >= rank[rootB]) {
+      parent[rootB] = rootA;
+      size[rootA] += size[rootB];
+      if (rank[rootA] == rank[rootB]) {
+        rank[rootA]++;
+      }
+      return elements.get(representative[rootA]);
+    }
+    parent[rootA] = rootB;
+    size[rootB] += size[rootA];
+    representative[rootB] = representative[rootA];
+    return elements.get(representative[rootB]);
+  }
+
+  @Override
+  public E find(@Nullable E e) {
+    return elements.get(representative[findRoot(indexOf(e))]);
+  }
+
+  @Override
+  public boolean areEquivalent(@Nullable E a, @Nullable E b) {
+    return findRoot(indexOf(a)) == findRoot(indexOf(b));
+  }
+
+  @Override
+  public Set<E> elements() {
+    return Collections.unmodifiableSet(indices.keySet());
+  }
+
+  @Override
+  public Collection<Set<E>> allEquivalenceClasses() {
+    int count = elements.size();
+    // The position of each class in the result, indexed by root.
+    int[] classOfRoot = new int[count];
+    Arrays.fill(classOfRoot, -1);
+    List<ImmutableSet.Builder<E>> builders = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int root = findRoot(i);
+      if (classOfRoot[root] == -1) {
+        classOfRoot[root] = builders.size();
+        builders.add(ImmutableSet.<E>builder());
+      }
+      builders.get(classOfRoot[root]).add(elements.get(i));
+    }
+    ImmutableList.Builder<Set<E>> result = ImmutableList.builder();
+    for (ImmutableSet.Builder<E> builder : builders) {
+      result.add(builder.build());
+    }
+    return result.build();
+  }
+
+  @Override
+  public Set<E> findAll(@Nullable final E value) {
+    final int index = indexOf(value);
+    return new AbstractSet<E>() {
+      @Override
+      public boolean contains(Object o) {
+        Integer other = indices.get(o);
+        return other != null && findRoot(other) == findRoot(index);
+      }
+
+      @Override
+      public Iterator<E> iterator() {
+        return new Iterator<E>() {
+          private final int root = findRoot(index);
+          private int next = advance(0);
+
+          private int advance(int from) {
+            int i = from;
+            while (i < elements.size() && findRoot(i) != root) {
+              i++;
+            }
+            return i;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next < elements.size();
+          }
+
+          @Override
+          public E next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            E result = elements.get(next);
+            next = advance(next + 1);
+            return result;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ArrayUnionFind.this.size[findRoot(index)];
+      }
+    };
+  }
+
+  private int indexOf(E e) {
+    Integer index = indices.get(e);
+    checkArgument(index != null, "Element does not exist: %s", e);
+    return index;
+  }
+
+  private int indexOrAdd(E e) {
+    Integer index = indices.get(e);
+    if (index != null) {
+      return index;
+    }
+    int i = elements.size();
+    if (i == parent.length) {
+      int capacity = 2 * i;
+      parent = Arrays.copyOf(parent, capacity);
+      rank = Arrays.copyOf(rank, capacity);
+      size = Arrays.copyOf(size, capacity);
+      representative = Arrays.copyOf(representative, capacity);
+    }
+    indices.put(e, i);
+    elements.add(e);
+    parent[i] = i;
+    size[i] = 1;
+    representative[i] = i;
+    return i;
+  }
+
+  /** Finds the root of the element, making every other node on the way point to its grandparent. */
+  private int findRoot(int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+}
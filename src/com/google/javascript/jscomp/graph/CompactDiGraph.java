@@ -0,0 +1,609 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable directed graph that stores its edges in compressed sparse row
+ * form.
+ * <p>
+ * Nodes are numbered from 0 in the order they were added. The out edges of
+ * node {@code i} are the edge ids {@code outStart[i]} up to
+ * {@code outStart[i + 1]}, and edge {@code e} goes to node
+ * {@code target[e]}. The in edges are stored the same way as a permutation of
+ * the edge ids. Apart from one small object per node, the structure of the
+ * graph lives in a handful of int arrays, which take much less memory than
+ * the per node lists and per edge objects of {@link LinkedDirectedGraph}.
+ * Edge objects are only created when they are asked for.
+ * <p>
+ * The int based accessors such as {@link #getOutEdgeStart} and
+ * {@link #getTarget} let traversals walk the graph without allocating.
+ * Graphs are created with a {@link Builder} or copied from another graph with
+ * {@link #copyOf}. Node and edge annotations are supported.
+ *
+ * @param <N> Value type that the graph node stores.
+ * @param <E> Value type that the graph edge stores.
+ */
+public final class CompactDiGraph<N, E> extends DiGraph<N, E> {
+  private final Map<N, CompactNode<N, E>> nodesByValue;
+  private final CompactNode<N, E>[] nodes;
+
+  private final int[] outStart;
+  private final int[] source;
+  private final int[] target;
+  private final Object[] edgeValues;
+
+  private final int[] inStart;
+  // The ids of the in edges of every node, in the order they were added.
+  private final int[] inEdges;
+
+  private Annotation[] edgeAnnotations;
+
+  private CompactDiGraph(List<N> nodeValues, int[] edgeSource, int[] edgeTarget,
+      List<E> edgeValueList) {
+    int nodeCount = nodeValues.size();
+    int edgeCount = edgeValueList.size();
+
+    @SuppressWarnings("unchecked")
+    CompactNode<N, E>[] nodeArray = new CompactNode[nodeCount];
+    this.nodes = nodeArray;
+    this.nodesByValue = new HashMap<>(nodeCount * 2);
+    for (int i = 0; i < nodeCount; i++) {
+      nodes[i] = new CompactNode<>(this, i, nodeValues.get(i));
+      nodesByValue.put(nodeValues.get(i), nodes[i]);
+    }
+
+    // Counting sort of the edges by source, and of the in edges by target.
+    // Both are stable, so edges keep the order in which they were added.
+    this.outStart = new int[nodeCount + 1];
+    this.inStart = new int[nodeCount + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      outStart[edgeSource[e] + 1]++;
+      inStart[edgeTarget[e] + 1]++;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      outStart[i + 1] += outStart[i];
+      inStart[i + 1] += inStart[i];
+    }
+
+    this.source = new int[edgeCount];
+    this.target = new int[edgeCount];
+    this.edgeValues = new Object[edgeCount];
+    this.inEdges = new int[edgeCount];
+    int[] nextOut = Arrays.copyOf(outStart, nodeCount);
+    int[] nextIn = Arrays.copyOf(inStart, nodeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      int id = nextOut[edgeSource[e]]++;
+      source[id] = edgeSource[e];
+      target[id] = edgeTarget[e];
+      edgeValues[id] = edgeValueList.get(e);
+      inEdges[nextIn[edgeTarget[e]]++] = id;
+    }
+  }
+
+  public static <N, E> Builder<N, E> builder() {
+    return new Builder<>();
+  }
+
+  /** Returns an immutable copy of the given graph, with the same node and edge order. */
+  public static <N, E> CompactDiGraph<N, E> copyOf(DiGraph<N, E> graph) {
+    Builder<N, E> builder = new Builder<>();
+    for (DiGraphNode<N, E> node : graph.getDirectedGraphNodes()) {
+      builder.addNode(node.getValue());
+    }
+    for (DiGraphNode<N, E> node : graph.getDirectedGraphNodes()) {
+      for (DiGraphEdge<N, E> edge : node.getOutEdges()) {
+        builder.connect(node.getValue(), edge.getValue(), edge.getDestination().getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Collects the nodes and edges of a {@link CompactDiGraph}.
+   */
+  public static final class Builder<N, E> {
+    private final Map<N, Integer> indices = new HashMap<>();
+    private final List<N> nodeValues = new ArrayList<>();
+    private int[] edgeSource = new int[16];
+    private int[] edgeTarget = new int[16];
+    private final List<E> edgeValues = new ArrayList<>();
+
+    private Builder() {}
+
+    /**
+     * Adds a node with the given value, unless there is one already.
+     *
+     * @return The index of the node.
+     */
+    public int addNode(N value) {
+      Integer index = indices.get(value);
+      if (index == null) {
+        index = nodeValues.size();
+        indices.put(value, index);
+        nodeValues.add(value);
+      }
+      return index;
+    }
+
+    /** Adds an edge between two nodes, adding the nodes if necessary. */
+    public Builder<N, E> connect(N srcValue, E edgeValue, N destValue) {
+      return connectByIndex(addNode(srcValue), edgeValue, addNode(destValue));
+    }
+
+    /** Adds an edge between two nodes given by their indices. */
+    public Builder<N, E> connectByIndex(int src, E edgeValue, int dest) {
+      checkElementIndex(src, nodeValues.size());
+      checkElementIndex(dest, nodeValues.size());
+      int edge = edgeValues.size();
+      if (edge == edgeSource.length) {
+        edgeSource = Arrays.copyOf(edgeSource, edge * 2);
+        edgeTarget = Arrays.copyOf(edgeTarget, edge * 2);
+      }
+      edgeSource[edge] = src;
+      edgeTarget[edge] = dest;
+      edgeValues.add(edgeValue);
+      return this;
+    }
+
+    public CompactDiGraph<N, E> build() {
+      return new CompactDiGraph<>(nodeValues, edgeSource, edgeTarget, edgeValues);
+    }
+  }
+
+  /** Returns the number of nodes. */
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  /** Returns the number of edges. */
+  public int getEdgeCount() {
+    return target.length;
+  }
+
+  /** Returns the index of the node with the given value, or -1 if there is none. */
+  public int getNodeIndex(N value) {
+    CompactNode<N, E> node = nodesByValue.get(value);
+    return node == null ? -1 : node.index;
+  }
+
+  /** Returns the index of a node of this graph. */
+  public int getIndexOf(DiGraphNode<N, E> node) {
+    checkArgument(node instanceof CompactNode && ((CompactNode<N, E>) node).graph == this, node);
+    return ((CompactNode<N, E>) node).index;
+  }
+
+  public DiGraphNode<N, E> getNodeAt(int index) {
+    return nodes[index];
+  }
+
+  /** Returns the id of the first out edge of the node. */
+  public int getOutEdgeStart(int node) {
+    return outStart[node];
+  }
+
+  /** Returns the id after the last out edge of the node. */
+  public int getOutEdgeEnd(int node) {
+    return outStart[node + 1];
+  }
+
+  /** Returns the position of the first in edge of the node, see {@link #getInEdgeAt}. */
+  public int getInEdgeStart(int node) {
+    return inStart[node];
+  }
+
+  /** Returns the position after the last in edge of the node. */
+  public int getInEdgeEnd(int node) {
+    return inStart[node + 1];
+  }
+
+  /** Returns the id of the in edge at the given position. */
+  public int getInEdgeAt(int position) {
+    return inEdges[position];
+  }
+
+  /** Returns the index of the source node of the edge. */
+  public int getSource(int edge) {
+    return source[edge];
+  }
+
+  /** Returns the index of the destination node of the edge. */
+  public int getTarget(int edge) {
+    return target[edge];
+  }
+
+  @SuppressWarnings("unchecked")
+  public E getEdgeValue(int edge) {
+    return (E) edgeValues[edge];
+  }
+
+  @Override
+  public Iterable<DiGraphNode<N, E>> getDirectedGraphNodes() {
+    return Collections.<DiGraphNode<N, E>>unmodifiableList(Arrays.asList(nodes));
+  }
+
+  @Override
+  public Collection<DiGraphNode<N, E>> getNodes() {
+    return Collections.<DiGraphNode<N, E>>unmodifiableList(Arrays.asList(nodes));
+  }
+
+  @Override
+  public DiGraphNode<N, E> getDirectedGraphNode(N nodeValue) {
+    return nodesByValue.get(nodeValue);
+  }
+
+  @Override
+  public GraphNode<N, E> getNode(N nodeValue) {
+    return nodesByValue.get(nodeValue);
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getOutEdges(N nodeValue) {
+    return this.<DiGraphNode<N, E>>getNodeOrFail(nodeValue).getOutEdges();
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getInEdges(N nodeValue) {
+    return this.<DiGraphNode<N, E>>getNodeOrFail(nodeValue).getInEdges();
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(DiGraphNode<N, E> n) {
+    int index = getIndexOf(n);
+    List<DiGraphNode<N, E>> result = new ArrayList<>(inStart[index + 1] - inStart[index]);
+    for (int i = inStart[index]; i < inStart[index + 1]; i++) {
+      result.add(nodes[source[inEdges[i]]]);
+    }
+    return result;
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(DiGraphNode<N, E> n) {
+    int index = getIndexOf(n);
+    List<DiGraphNode<N, E>> result = new ArrayList<>(outStart[index + 1] - outStart[index]);
+    for (int e = outStart[index]; e < outStart[index + 1]; e++) {
+      result.add(nodes[target[e]]);
+    }
+    return result;
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(N nodeValue) {
+    return getDirectedPredNodes(nodesByValue.get(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(N nodeValue) {
+    return getDirectedSuccNodes(nodesByValue.get(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getDirectedGraphEdges(N n1, N n2) {
+    int src = getNodeIndexOrFail(n1);
+    int dest = getNodeIndexOrFail(n2);
+    List<DiGraphEdge<N, E>> result = new ArrayList<>();
+    for (int e = outStart[src]; e < outStart[src + 1]; e++) {
+      if (target[e] == dest) {
+        result.add(new CompactEdge<>(this, e));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getEdges(N n1, N n2) {
+    List<DiGraphEdge<N, E>> result = new ArrayList<>(getDirectedGraphEdges(n1, n2));
+    result.addAll(getDirectedGraphEdges(n2, n1));
+    return result;
+  }
+
+  @Override
+  public GraphEdge<N, E> getFirstEdge(N n1, N n2) {
+    int first = findEdge(getNodeIndexOrFail(n1), getNodeIndexOrFail(n2), false, null);
+    if (first == -1) {
+      first = findEdge(getNodeIndexOrFail(n2), getNodeIndexOrFail(n1), false, null);
+    }
+    return first == -1 ? null : new CompactEdge<>(this, first);
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getEdges() {
+    return new EdgeList<>(this, 0, getEdgeCount());
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, N n2) {
+    return findEdge(getNodeIndexOrFail(n1), getNodeIndexOrFail(n2), false, null) != -1;
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, E edgeValue, N n2) {
+    return findEdge(getNodeIndexOrFail(n1), getNodeIndexOrFail(n2), true, edgeValue) != -1;
+  }
+
+  private int findEdge(int src, int dest, boolean matchValue, E edgeValue) {
+    for (int e = outStart[src]; e < outStart[src + 1]; e++) {
+      if (target[e] == dest && (!matchValue || equal(edgeValues[e], edgeValue))) {
+        return e;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private int getNodeIndexOrFail(N value) {
+    int index = getNodeIndex(value);
+    if (index == -1) {
+      throw new IllegalArgumentException(value + " does not exist in graph");
+    }
+    return index;
+  }
+
+  @Override
+  public List<GraphNode<N, E>> getNeighborNodes(N value) {
+    int index = getNodeIndexOrFail(value);
+    List<GraphNode<N, E>> result = new ArrayList<>(getDegree(index));
+    for (int i = inStart[index]; i < inStart[index + 1]; i++) {
+      result.add(nodes[source[inEdges[i]]]);
+    }
+    for (int e = outStart[index]; e < outStart[index + 1]; e++) {
+      result.add(nodes[target[e]]);
+    }
+    return result;
+  }
+
+  @Override
+  public int getNodeDegree(N value) {
+    return getDegree(getNodeIndexOrFail(value));
+  }
+
+  private int getDegree(int index) {
+    return inStart[index + 1] - inStart[index] + outStart[index + 1] - outStart[index];
+  }
+
+  @Override
+  public SubGraph<N, E> newSubGraph() {
+    return new SimpleSubGraph<>(this);
+  }
+
+  /**
+   * Returns the existing node for the value. New nodes cannot be added to an
+   * immutable graph.
+   */
+  @Override
+  public DiGraphNode<N, E> createDirectedGraphNode(N nodeValue) {
+    DiGraphNode<N, E> node = nodesByValue.get(nodeValue);
+    if (node == null) {
+      throw new UnsupportedOperationException("CompactDiGraph is immutable");
+    }
+    return node;
+  }
+
+  @Override
+  public DiGraphNode<N, E> createNode(N value) {
+    return createDirectedGraphNode(value);
+  }
+
+  @Override
+  public void connect(N n1, E edge, N n2) {
+    throw new UnsupportedOperationException("CompactDiGraph is immutable");
+  }
+
+  @Override
+  public void disconnect(N n1, N n2) {
+    throw new UnsupportedOperationException("CompactDiGraph is immutable");
+  }
+
+  @Override
+  public void disconnectInDirection(N n1, N n2) {
+    throw new UnsupportedOperationException("CompactDiGraph is immutable");
+  }
+
+  @SuppressWarnings("unchecked")
+  private <A extends Annotation> A getEdgeAnnotation(int edge) {
+    return edgeAnnotations == null ? null : (A) edgeAnnotations[edge];
+  }
+
+  private void setEdgeAnnotation(int edge, Annotation data) {
+    if (edgeAnnotations == null) {
+      if (data == null) {
+        return;
+      }
+      edgeAnnotations = new Annotation[getEdgeCount()];
+    }
+    edgeAnnotations[edge] = data;
+  }
+
+  private static final class CompactNode<N, E> implements DiGraphNode<N, E> {
+    final CompactDiGraph<N, E> graph;
+    final int index;
+    final N value;
+    Annotation annotation;
+
+    CompactNode(CompactDiGraph<N, E> graph, int index, N value) {
+      this.graph = graph;
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public N getValue() {
+      return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Annotation> A getAnnotation() {
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      annotation = data;
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getOutEdges() {
+      return new EdgeList<>(graph, graph.outStart[index], graph.outStart[index + 1]);
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getInEdges() {
+      return new InEdgeList<>(graph, graph.inStart[index], graph.inStart[index + 1]);
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(value);
+    }
+  }
+
+  /** A view of an edge. Views of the same edge are equal. */
+  private static final class CompactEdge<N, E> implements DiGraphEdge<N, E> {
+    final CompactDiGraph<N, E> graph;
+    final int id;
+
+    CompactEdge(CompactDiGraph<N, E> graph, int id) {
+      this.graph = graph;
+      this.id = id;
+    }
+
+    @Override
+    public E getValue() {
+      return graph.getEdgeValue(id);
+    }
+
+    @Override
+    public DiGraphNode<N, E> getSource() {
+      return graph.nodes[graph.source[id]];
+    }
+
+    @Override
+    public DiGraphNode<N, E> getDestination() {
+      return graph.nodes[graph.target[id]];
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeA() {
+      return getSource();
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeB() {
+      return getDestination();
+    }
+
+    @Override
+    public void setSource(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException("CompactDiGraph is immutable");
+    }
+
+    @Override
+    public void setDestination(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException("CompactDiGraph is immutable");
+    }
+
+    @Override
+    public <A extends Annotation> A getAnnotation() {
+      return graph.getEdgeAnnotation(id);
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      graph.setEdgeAnnotation(id, data);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CompactEdge
+          && ((CompactEdge<?, ?>) o).graph == graph
+          && ((CompactEdge<?, ?>) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+
+    @Override
+    public String toString() {
+      return getSource() + " -> " + getValue() + " -> " + getDestination();
+    }
+  }
+
+  /** The edges with ids from {@code start} up to {@code end}. */
+  private static final class EdgeList<N, E> extends AbstractList<DiGraphEdge<N, E>> {
+    private final CompactDiGraph<N, E> graph;
+    private final int start;
+    private final int end;
+
+    EdgeList(CompactDiGraph<N, E> graph, int start, int end) {
+      this.graph = graph;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public DiGraphEdge<N, E> get(int i) {
+      checkElementIndex(i, size());
+      return new CompactEdge<>(graph, start + i);
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  /** The in edges stored from position {@code start} up to {@code end}. */
+  private static final class InEdgeList<N, E> extends AbstractList<DiGraphEdge<N, E>> {
+    private final CompactDiGraph<N, E> graph;
+    private final int start;
+    private final int end;
+
+    InEdgeList(CompactDiGraph<N, E> graph, int start, int end) {
+      this.graph = graph;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public DiGraphEdge<N, E> get(int i) {
+      checkElementIndex(i, size());
+      return new CompactEdge<>(graph, graph.inEdges[start + i]);
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+}
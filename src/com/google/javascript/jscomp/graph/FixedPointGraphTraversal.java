@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -89,6 +90,10 @@ public final class FixedPointGraphTraversal<N, E> {
    * @param entrySet The nodes to begin traversing from.
    */
   public void computeFixedPoint(DiGraph<N, E> graph, Set<N> entrySet) {
+    if (graph instanceof CompactDiGraph) {
+      computeFixedPoint((CompactDiGraph<N, E>) graph, entrySet);
+      return;
+    }
     int cycleCount = 0;
     long nodeCount = graph.getNodes().size();
 
@@ -124,6 +129,50 @@ public final class FixedPointGraphTraversal<N, E> {
     checkState(cycleCount != maxIterations, NON_HALTING_ERROR_MSG);
   }
 
+  /**
+   * Same as the generic version, but walks the int arrays of the graph with a
+   * queue of node indices. Nodes are visited in the same order.
+   */
+  private void computeFixedPoint(CompactDiGraph<N, E> graph, Set<N> entrySet) {
+    int nodeCount = graph.getNodeCount();
+    long maxIterations = Math.max((long) nodeCount * nodeCount * nodeCount, 100);
+
+    // A FIFO queue without duplicates, like the LinkedHashSet above. It never
+    // holds more than nodeCount entries.
+    int[] queue = new int[Math.max(nodeCount, 1)];
+    BitSet queued = new BitSet(nodeCount);
+    int head = 0;
+    int size = 0;
+    for (N n : entrySet) {
+      int index = graph.getNodeIndex(n);
+      if (!queued.get(index)) {
+        queued.set(index);
+        queue[(head + size++) % queue.length] = index;
+      }
+    }
+
+    long cycleCount = 0;
+    for (; size > 0 && cycleCount < maxIterations; cycleCount++) {
+      int source = queue[head];
+      head = (head + 1) % queue.length;
+      size--;
+      queued.clear(source);
+
+      N sourceValue = graph.getNodeAt(source).getValue();
+      for (int e = graph.getOutEdgeStart(source); e < graph.getOutEdgeEnd(source); e++) {
+        int dest = graph.getTarget(e);
+        if (callback.traverseEdge(sourceValue, graph.getEdgeValue(e),
+                graph.getNodeAt(dest).getValue())
+            && !queued.get(dest)) {
+          queued.set(dest);
+          queue[(head + size++) % queue.length] = dest;
+        }
+      }
+    }
+
+    checkState(cycleCount != maxIterations, NON_HALTING_ERROR_MSG);
+  }
+
   /** Edge callback */
   public static interface EdgeCallback<Node, Edge> {
     /**
@@ -58,16 +58,48 @@ public final class GraphReachability<N, E> implements EdgeCallback<N, E> {
   public void compute(N entry) {
     graph.clearNodeAnnotations();
     graph.getNode(entry).setAnnotation(REACHABLE);
-    FixedPointGraphTraversal.newTraversal(this)
-        .computeFixedPoint(graph, entry);
+    propagate(entry);
   }
 
   public void recompute(N reachableNode) {
     GraphNode<N, E> newReachable = graph.getNode(reachableNode);
     checkState(newReachable.getAnnotation() != REACHABLE);
     newReachable.setAnnotation(REACHABLE);
-    FixedPointGraphTraversal.newTraversal(this)
-        .computeFixedPoint(graph, reachableNode);
+    propagate(reachableNode);
+  }
+
+  private void propagate(N reachableNode) {
+    if (graph instanceof CompactDiGraph) {
+      propagate((CompactDiGraph<N, E>) graph, reachableNode);
+    } else {
+      FixedPointGraphTraversal.newTraversal(this)
+          .computeFixedPoint(graph, reachableNode);
+    }
+  }
+
+  /** Marks the nodes reachable from the given one with a depth first walk over node indices. */
+  private void propagate(CompactDiGraph<N, E> compactGraph, N reachableNode) {
+    int[] stack = new int[compactGraph.getNodeCount()];
+    int size = 0;
+    stack[size++] = compactGraph.getNodeIndex(reachableNode);
+    while (size > 0) {
+      int source = stack[--size];
+      for (int e = compactGraph.getOutEdgeStart(source);
+          e < compactGraph.getOutEdgeEnd(source);
+          e++) {
+        GraphNode<N, E> destNode = compactGraph.getNodeAt(compactGraph.getTarget(e));
+        if (destNode.getAnnotation() != REACHABLE
+            && (edgePredicate == null
+                || edgePredicate.apply(
+                    new EdgeTuple<>(
+                        compactGraph.getNodeAt(source).getValue(),
+                        compactGraph.getEdgeValue(e),
+                        destNode.getValue())))) {
+          destNode.setAnnotation(REACHABLE);
+          stack[size++] = compactGraph.getTarget(e);
+        }
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Greedy coloring of graphs whose nodes are numbered from 0 to {@code n - 1}.
+ *
+ * <p>The nodes are colored one at a time in a given order, and each node gets
+ * the smallest color that no interfering node colored before it has. This
+ * gives the same colors as {@link GraphColoring.GreedyGraphColoring} when the
+ * order is the one it sorts the nodes into, without building a {@link
+ * SubGraph} for every color.
+ *
+ * <p>Two representations of the interference are supported:
+ *
+ * <ul>
+ *   <li>An {@link InterferenceMatrix}, which stores the edges as one packed
+ *       bit row per node. This suits small, dense graphs such as the variables
+ *       of a function.
+ *   <li>A set of resources per node, where two nodes interfere if and only if
+ *       they share a resource. The edges are never materialized; instead the
+ *       colors already used by each resource are tracked, so coloring a node
+ *       costs time proportional to the number of its resources.
+ * </ul>
+ */
+public final class IndexedGraphColoring {
+
+  private IndexedGraphColoring() {}
+
+  /** A symmetric interference relation over the nodes {@code 0..n-1}. */
+  public static final class InterferenceMatrix {
+    private final int nodeCount;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public InterferenceMatrix(int nodeCount) {
+      this.nodeCount = nodeCount;
+      this.wordsPerRow = (nodeCount + 63) >>> 6;
+      this.words = new long[nodeCount * wordsPerRow];
+    }
+
+    public int getNodeCount() {
+      return nodeCount;
+    }
+
+    /** Records that the two nodes interfere. A node never interferes with itself. */
+    public void connect(int a, int b) {
+      if (a != b) {
+        set(a, b);
+        set(b, a);
+      }
+    }
+
+    /**
+     * Records that every two distinct nodes of the given set interfere with
+     * each other. This is the common case of a set of values that are all
+     * alive at the same point.
+     */
+    public void connectAll(BitSet nodes) {
+      checkArgument(nodes.length() <= nodeCount, nodes);
+      long[] row = nodes.toLongArray();
+      for (int a = nodes.nextSetBit(0); a >= 0; a = nodes.nextSetBit(a + 1)) {
+        int offset = a * wordsPerRow;
+        for (int w = 0; w < row.length; w++) {
+          words[offset + w] |= row[w];
+        }
+        words[offset + (a >>> 6)] &= ~(1L << a);
+      }
+    }
+
+    public boolean isConnected(int a, int b) {
+      return (words[a * wordsPerRow + (b >>> 6)] & (1L << b)) != 0;
+    }
+
+    /** Returns the number of nodes that interfere with the given node. */
+    public int getDegree(int node) {
+      int degree = 0;
+      int offset = node * wordsPerRow;
+      for (int w = 0; w < wordsPerRow; w++) {
+        degree += Long.bitCount(words[offset + w]);
+      }
+      return degree;
+    }
+
+    private void set(int a, int b) {
+      words[a * wordsPerRow + (b >>> 6)] |= 1L << b;
+    }
+  }
+
+  /**
+   * Colors the nodes of the matrix in the given order.
+   *
+   * @param order The nodes to color, from first to last. Nodes that are not in
+   *     the order are left uncolored and do not constrain the others.
+   * @return The color of each node, or -1 for the nodes not in the order.
+   */
+  public static int[] color(InterferenceMatrix matrix, int[] order) {
+    int[] colors = newUncolored(matrix.nodeCount);
+    BitSet used = new BitSet();
+    for (int node : order) {
+      checkArgument(colors[node] == -1, "Node %s is colored twice", node);
+      used.clear();
+      int offset = node * matrix.wordsPerRow;
+      for (int w = 0; w < matrix.wordsPerRow; w++) {
+        long word = matrix.words[offset + w];
+        while (word != 0) {
+          int neighbor = (w << 6) + Long.numberOfTrailingZeros(word);
+          word &= word - 1;
+          if (colors[neighbor] != -1) {
+            used.set(colors[neighbor]);
+          }
+        }
+      }
+      colors[node] = used.nextClearBit(0);
+    }
+    return colors;
+  }
+
+  /**
+   * Colors nodes that interfere when they share a resource, in the given order.
+   *
+   * @param resources The resources of each node, indexed by node.
+   * @param order The nodes to color, from first to last. Nodes that are not in
+   *     the order are left uncolored and do not constrain the others.
+   * @return The color of each node, or -1 for the nodes not in the order.
+   */
+  public static int[] colorBySharedResources(List<? extends BitSet> resources, int[] order) {
+    int[] colors = newUncolored(resources.size());
+    // The colors of the nodes colored so far that use each resource.
+    BitSet[] colorsOfResource = new BitSet[0];
+    BitSet used = new BitSet();
+    for (int node : order) {
+      checkArgument(colors[node] == -1, "Node %s is colored twice", node);
+      BitSet nodeResources = resources.get(node);
+      used.clear();
+      for (int r = nodeResources.nextSetBit(0); r >= 0; r = nodeResources.nextSetBit(r + 1)) {
+        if (r < colorsOfResource.length && colorsOfResource[r] != null) {
+          used.or(colorsOfResource[r]);
+        }
+      }
+      int color = used.nextClearBit(0);
+      colors[node] = color;
+
+      if (nodeResources.length() > colorsOfResource.length) {
+        colorsOfResource =
+            Arrays.copyOf(
+                colorsOfResource, Math.max(nodeResources.length(), 2 * colorsOfResource.length));
+      }
+      for (int r = nodeResources.nextSetBit(0); r >= 0; r = nodeResources.nextSetBit(r + 1)) {
+        if (colorsOfResource[r] == null) {
+          colorsOfResource[r] = new BitSet();
+        }
+        colorsOfResource[r].set(color);
+      }
+    }
+    return colors;
+  }
+
+  /** Returns the number of colors used, that is one more than the largest color. */
+  public static int getColorCount(int[] colors) {
+    int max = -1;
+    for (int color : colors) {
+      max = Math.max(max, color);
+    }
+    return max + 1;
+  }
+
+  private static int[] newUncolored(int nodeCount) {
+    int[] colors = new int[nodeCount];
+    Arrays.fill(colors, -1);
+    return colors;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of a {@link CompactDiGraph}, computed with
+ * Tarjan's algorithm in time linear in the size of the graph.
+ *
+ * <p>Components are numbered in topological order: if there is an edge from a
+ * node of component {@code a} to a node of a different component {@code b},
+ * then {@code a < b}. A problem that propagates values along the edges can
+ * therefore visit each component once, in order, and only needs to iterate to
+ * a fixed point within the components that contain a cycle.
+ */
+public final class StronglyConnectedComponents {
+
+  /** The component of each node. */
+  private final int[] componentOf;
+
+  /** The nodes of component {@code c} are at {@code [componentStart[c], componentStart[c+1])}. */
+  private final int[] componentStart;
+
+  /** The nodes, grouped by component and in increasing index order within a component. */
+  private final int[] nodes;
+
+  private StronglyConnectedComponents(int[] componentOf, int componentCount) {
+    this.componentOf = componentOf;
+    this.componentStart = new int[componentCount + 1];
+    for (int component : componentOf) {
+      componentStart[component + 1]++;
+    }
+    for (int c = 0; c < componentCount; c++) {
+      componentStart[c + 1] += componentStart[c];
+    }
+    this.nodes = new int[componentOf.length];
+    int[] next = Arrays.copyOf(componentStart, componentCount);
+    for (int node = 0; node < componentOf.length; node++) {
+      nodes[next[componentOf[node]]++] = node;
+    }
+  }
+
+  public static StronglyConnectedComponents compute(CompactDiGraph<?, ?> graph) {
+    int nodeCount = graph.getNodeCount();
+    int[] index = new int[nodeCount];
+    int[] lowLink = new int[nodeCount];
+    int[] componentOf = new int[nodeCount];
+    boolean[] onStack = new boolean[nodeCount];
+    int[] stack = new int[nodeCount];
+    int stackSize = 0;
+    // The explicit call stack of the depth first search, with the next out edge to visit.
+    int[] callStack = new int[nodeCount];
+    int[] nextEdge = new int[nodeCount];
+    int depth = 0;
+    int nextIndex = 0;
+    int completed = 0;
+
+    Arrays.fill(index, -1);
+    for (int root = 0; root < nodeCount; root++) {
+      if (index[root] != -1) {
+        continue;
+      }
+      index[root] = lowLink[root] = nextIndex++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      callStack[depth] = root;
+      nextEdge[depth++] = graph.getOutEdgeStart(root);
+
+      while (depth > 0) {
+        int node = callStack[depth - 1];
+        int edge = nextEdge[depth - 1];
+        if (edge < graph.getOutEdgeEnd(node)) {
+          nextEdge[depth - 1]++;
+          int target = graph.getTarget(edge);
+          if (index[target] == -1) {
+            index[target] = lowLink[target] = nextIndex++;
+            stack[stackSize++] = target;
+            onStack[target] = true;
+            callStack[depth] = target;
+            nextEdge[depth++] = graph.getOutEdgeStart(target);
+          } else if (onStack[target]) {
+            lowLink[node] = Math.min(lowLink[node], index[target]);
+          }
+          continue;
+        }
+
+        depth--;
+        if (depth > 0) {
+          int parent = callStack[depth - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+        }
+        if (lowLink[node] == index[node]) {
+          int member;
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            componentOf[member] = completed;
+          } while (member != node);
+          completed++;
+        }
+      }
+    }
+
+    // Tarjan's algorithm completes the components in reverse topological order.
+    for (int node = 0; node < nodeCount; node++) {
+      componentOf[node] = completed - 1 - componentOf[node];
+    }
+    return new StronglyConnectedComponents(componentOf, completed);
+  }
+
+  /** Returns the number of components. */
+  public int getComponentCount() {
+    return componentStart.length - 1;
+  }
+
+  /** Returns the component of the node with the given index. */
+  public int getComponentOf(int node) {
+    return componentOf[node];
+  }
+
+  /** Returns the position of the first node of the component, see {@link #getNodeAt}. */
+  public int getComponentStart(int component) {
+    return componentStart[component];
+  }
+
+  /** Returns the position after the last node of the component. */
+  public int getComponentEnd(int component) {
+    return componentStart[component + 1];
+  }
+
+  /** Returns the index of the node at the given position. */
+  public int getNodeAt(int position) {
+    return nodes[position];
+  }
+}
@@ -59,6 +59,7 @@
 package com.google.javascript.rhino.dtoa;
 
 import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import java.math.BigInteger;
@@ -1187,6 +1188,15 @@ public class DToA {
     if (value < 0) return "-" + numberToString(-value);
     if (Double.isInfinite(value)) return "Infinity";
 
+    return ShortestDToA.numberToString(value);
+  }
+
+  /**
+   * Converts a finite, positive double with David Gay's algorithm. It gives the same results as
+   * {@link ShortestDToA}, which is much faster, and is only kept to check that it does.
+   */
+  @VisibleForTesting
+  static String numberToStringWithBigIntegers(double value) {
     StringBuilder buffer = new StringBuilder();
     DToA.JS_dtostr(buffer, DToA.DTOSTR_STANDARD, 0, value);
     return buffer.toString();
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.rhino.dtoa;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.math.BigInteger;
+
+/**
+ * Finds the shortest decimal representation of a double that reads back as the same double,
+ * picking the closest one (and then the even one) when there are several, as ECMAScript's
+ * Number::toString does.
+ *
+ * <p>This is the Ryu algorithm (Ulf Adams, "Ryu: fast float-to-string conversion", PLDI 2018).
+ * Unlike {@link DToA}'s port of David Gay's dtoa, it only needs fixed-width arithmetic, using
+ * 128-bit approximations of powers of five that are computed once when the class is loaded.
+ */
+@GwtIncompatible("Only used by DToA")
+final class ShortestDToA {
+
+  private static final int MANTISSA_BITS = 52;
+  private static final int EXPONENT_BITS = 11;
+  private static final int BIAS = 1023;
+
+  private static final int POW5_BITCOUNT = 125;
+  private static final int POW5_INV_BITCOUNT = 125;
+  private static final int POW5_TABLE_SIZE = 326;
+  private static final int POW5_INV_TABLE_SIZE = 292;
+
+  // 5^i, scaled to POW5_BITCOUNT bits, split into its high and low 64 bits.
+  private static final long[] POW5_HI = new long[POW5_TABLE_SIZE];
+  private static final long[] POW5_LO = new long[POW5_TABLE_SIZE];
+  // 2^k / 5^i, rounded up and scaled to POW5_INV_BITCOUNT bits, split the same way.
+  private static final long[] POW5_INV_HI = new long[POW5_INV_TABLE_SIZE];
+  private static final long[] POW5_INV_LO = new long[POW5_INV_TABLE_SIZE];
+
+  static {
+    for (int i = 0; i < Math.max(POW5_TABLE_SIZE, POW5_INV_TABLE_SIZE); i++) {
+      BigInteger pow = BigInteger.valueOf(5).pow(i);
+      int pow5len = pow.bitLength();
+      if (i < POW5_TABLE_SIZE) {
+        int shift = pow5len - POW5_BITCOUNT;
+        BigInteger scaled = shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+        POW5_LO[i] = scaled.longValue();
+        POW5_HI[i] = scaled.shiftRight(64).longValue();
+      }
+      if (i < POW5_INV_TABLE_SIZE) {
+        BigInteger inv =
+            BigInteger.ONE.shiftLeft(pow5len - 1 + POW5_INV_BITCOUNT).divide(pow).add(BigInteger.ONE);
+        POW5_INV_LO[i] = inv.longValue();
+        POW5_INV_HI[i] = inv.shiftRight(64).longValue();
+      }
+    }
+  }
+
+  private ShortestDToA() {}
+
+  /**
+   * Returns the ECMAScript Number::toString representation of a finite, positive double.
+   */
+  static String numberToString(double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    long ieeeMantissa = bits & ((1L << MANTISSA_BITS) - 1);
+    int ieeeExponent = (int) (bits >>> MANTISSA_BITS) & ((1 << EXPONENT_BITS) - 1);
+
+    int e2;
+    long m2;
+    if (ieeeExponent == 0) {
+      e2 = 1 - BIAS - MANTISSA_BITS - 2;
+      m2 = ieeeMantissa;
+    } else {
+      e2 = ieeeExponent - BIAS - MANTISSA_BITS - 2;
+      m2 = (1L << MANTISSA_BITS) | ieeeMantissa;
+    }
+    // Halfway points round to the even mantissa, so they are part of its interval.
+    boolean acceptBounds = (m2 & 1) == 0;
+
+    // The interval of decimal representations that read back as this double is (mm, mp) in units
+    // of 2^e2, with mv the double itself. The lower bound is closer when this is a power of two.
+    long mv = 4 * m2;
+    int mmShift = (ieeeMantissa != 0 || ieeeExponent <= 1) ? 1 : 0;
+
+    // Convert the interval to a power of ten, keeping track of whether anything non-zero was
+    // truncated from the lower bound and the double itself.
+    long vr;
+    long vp;
+    long vm;
+    int e10;
+    boolean vmIsTrailingZeros = false;
+    boolean vrIsTrailingZeros = false;
+    if (e2 >= 0) {
+      int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+      e10 = q;
+      int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+      int i = -e2 + q + k;
+      vr = mulShift(mv, POW5_INV_HI[q], POW5_INV_LO[q], i);
+      vp = mulShift(mv + 2, POW5_INV_HI[q], POW5_INV_LO[q], i);
+      vm = mulShift(mv - 1 - mmShift, POW5_INV_HI[q], POW5_INV_LO[q], i);
+      if (q <= 21) {
+        // At most one of mp, mv and mm can be a multiple of 5.
+        if (mv % 5 == 0) {
+          vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+        } else if (acceptBounds) {
+          vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+        } else if (multipleOfPowerOf5(mv + 2, q)) {
+          vp--;
+        }
+      }
+    } else {
+      int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+      e10 = q + e2;
+      int i = -e2 - q;
+      int k = pow5bits(i) - POW5_BITCOUNT;
+      int j = q - k;
+      vr = mulShift(mv, POW5_HI[i], POW5_LO[i], j);
+      vp = mulShift(mv + 2, POW5_HI[i], POW5_LO[i], j);
+      vm = mulShift(mv - 1 - mmShift, POW5_HI[i], POW5_LO[i], j);
+      if (q <= 1) {
+        // mv has at least two trailing zero bits, and mm has one exactly when mmShift is 1.
+        vrIsTrailingZeros = true;
+        if (acceptBounds) {
+          vmIsTrailingZeros = mmShift == 1;
+        } else {
+          // mp = mv + 2 has at least one trailing zero bit.
+          vp--;
+        }
+      } else if (q < 63) {
+        vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+      }
+    }
+
+    // Remove digits while the interval still contains a representation, rounding the double to
+    // the closest one that is left.
+    int removed = 0;
+    int lastRemovedDigit = 0;
+    long output;
+    if (vmIsTrailingZeros || vrIsTrailingZeros) {
+      while (vp / 10 > vm / 10) {
+        vmIsTrailingZeros &= vm % 10 == 0;
+        vrIsTrailingZeros &= lastRemovedDigit == 0;
+        lastRemovedDigit = (int) (vr % 10);
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      if (vmIsTrailingZeros) {
+        while (vm % 10 == 0) {
+          vrIsTrailingZeros &= lastRemovedDigit == 0;
+          lastRemovedDigit = (int) (vr % 10);
+          vr /= 10;
+          vp /= 10;
+          vm /= 10;
+          removed++;
+        }
+      }
+      if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+        // The double is exactly halfway between two representations; round to even.
+        lastRemovedDigit = 4;
+      }
+      boolean roundUp =
+          (vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5;
+      output = vr + (roundUp ? 1 : 0);
+    } else {
+      boolean roundUp = false;
+      while (vp / 10 > vm / 10) {
+        roundUp = vr % 10 >= 5;
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      output = vr + (vr == vm || roundUp ? 1 : 0);
+    }
+    return format(output, e10 + removed);
+  }
+
+  /** Formats {@code digits * 10^exponent} the way Number::toString does. */
+  private static String format(long digits, int exponent) {
+    String s = Long.toString(digits);
+    int k = s.length();
+    // The position of the decimal point relative to the first digit.
+    int n = exponent + k;
+    StringBuilder sb = new StringBuilder(k + 8);
+    if (k <= n && n <= 21) {
+      sb.append(s);
+      for (int i = k; i < n; i++) {
+        sb.append('0');
+      }
+    } else if (0 < n && n <= 21) {
+      sb.append(s, 0, n).append('.').append(s, n, k);
+    } else if (-6 < n && n <= 0) {
+      sb.append("0.");
+      for (int i = n; i < 0; i++) {
+        sb.append('0');
+      }
+      sb.append(s);
+    } else {
+      sb.append(s.charAt(0));
+      if (k > 1) {
+        sb.append('.').append(s, 1, k);
+      }
+      sb.append('e').append(n - 1 >= 0 ? '+' : '-').append(Math.abs(n - 1));
+    }
+    return sb.toString();
+  }
+
+  /** Returns ceil(log2(5^e)), or 1 when e is 0. */
+  private static int pow5bits(int e) {
+    return ((e * 1217359) >>> 19) + 1;
+  }
+
+  /** Returns floor(log10(2^e)). */
+  private static int log10Pow2(int e) {
+    return (e * 78913) >>> 18;
+  }
+
+  /** Returns floor(log10(5^e)). */
+  private static int log10Pow5(int e) {
+    return (e * 732923) >>> 20;
+  }
+
+  private static boolean multipleOfPowerOf5(long value, int p) {
+    int count = 0;
+    while (value % 5 == 0 && count < p) {
+      value /= 5;
+      count++;
+    }
+    return count >= p;
+  }
+
+  /**
+   * Returns {@code (m * (hi * 2^64 + lo)) >> j} for a 55-bit {@code m} and {@code j >= 64}, the
+   * 128-bit products being computed from unsigned 64-bit halves.
+   */
+  private static long mulShift(long m, long hi, long lo, int j) {
+    long high1 = multiplyHighUnsigned(m, lo);
+    long lo2 = m * hi;
+    long hi2 = multiplyHighUnsigned(m, hi);
+    long sumLo = lo2 + high1;
+    long sumHi = hi2 + (Long.compareUnsigned(sumLo, lo2) < 0 ? 1 : 0);
+    int shift = j - 64;
+    return shift == 0 ? sumLo : (sumLo >>> shift) | (sumHi << (64 - shift));
+  }
+
+  /** Returns the high 64 bits of the unsigned 128-bit product of {@code a} and {@code b}. */
+  private static long multiplyHighUnsigned(long a, long b) {
+    long aLo = a & 0xffffffffL;
+    long aHi = a >>> 32;
+    long bLo = b & 0xffffffffL;
+    long bHi = b >>> 32;
+    long loLo = aLo * bLo;
+    long hiLo = aHi * bLo;
+    long loHi = aLo * bHi;
+    long cross = (loLo >>> 32) + (hiLo & 0xffffffffL) + (loHi & 0xffffffffL);
+    return aHi * bHi + (hiLo >>> 32) + (loHi >>> 32) + (cross >>> 32);
+  }
+}
@@ -18,6 +18,7 @@ package com.google.debugging.sourcemap;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
@@ -115,4 +116,70 @@ public final class SourceMapConsumerV3Test extends TestCase {
     assertThat(((JsonElement) exts.get("x_org_int")).getAsInt()).isEqualTo(2);
     assertThat(((JsonArray) exts.get("x_org_array")).size()).isEqualTo(0);
   }
+
+  private static final String MULTILINE_SOURCE_MAP = "{\n" +
+      "\"version\":3,\n" +
+      "\"file\":\"testcode\",\n" +
+      "\"lineCount\":4,\n" +
+      "\"mappings\":\"AAAAA;;ACAAC,EAAEA;A\",\n" +
+      "\"sources\":[\"a.js\",\"b.js\"],\n" +
+      "\"names\":[\"x\",\"y\"]\n" +
+      "}\n";
+
+  public void testMappingsAcrossLines() throws Exception {
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(MULTILINE_SOURCE_MAP);
+
+    // The relative values of a line depend on the previous lines, so look the
+    // lines up out of order.
+    assertThat(consumer.getMappingForLine(4, 1)).isNull();
+    assertMapping(consumer.getMappingForLine(3, 3), "b.js", 1, 3, "y");
+    assertMapping(consumer.getMappingForLine(3, 1), "b.js", 1, 1, "y");
+    // An empty line has the mapping of the end of the previous line.
+    assertMapping(consumer.getMappingForLine(2, 1), "a.js", 1, 1, "x");
+    assertMapping(consumer.getMappingForLine(1, 5), "a.js", 1, 1, "x");
+    assertThat(consumer.getMappingForLine(5, 1)).isNull();
+  }
+
+  public void testReverseMapping() throws Exception {
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(MULTILINE_SOURCE_MAP);
+
+    assertThat(consumer.getReverseMapping("b.js", 0, 1))
+        .containsExactly(
+            OriginalMapping.newBuilder().setLineNumber(2).setColumnPosition(0).build(),
+            OriginalMapping.newBuilder().setLineNumber(2).setColumnPosition(2).build())
+        .inOrder();
+    assertThat(consumer.getReverseMapping("a.js", 0, 1))
+        .containsExactly(
+            OriginalMapping.newBuilder().setLineNumber(0).setColumnPosition(0).build());
+    assertThat(consumer.getReverseMapping("a.js", 1, 1)).isEmpty();
+    assertThat(consumer.getReverseMapping("c.js", 0, 1)).isEmpty();
+  }
+
+  public void testInvalidEntryIsReportedByParse() throws Exception {
+    String sourceMap =  "{\n" +
+                        "\"version\":3,\n" +
+                        "\"file\":\"testcode\",\n" +
+                        "\"lineCount\":2,\n" +
+                        "\"mappings\":\"AAAA;AA;\",\n" +
+                        "\"sources\":[\"testcode\"],\n" +
+                        "\"names\":[]\n" +
+                        "}\n";
+
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    try {
+      consumer.parse(sourceMap);
+      fail("Expected SourceMapParseException");
+    } catch (SourceMapParseException expected) {
+    }
+  }
+
+  private static void assertMapping(
+      OriginalMapping mapping, String file, int line, int column, String identifier) {
+    assertThat(mapping.getOriginalFile()).isEqualTo(file);
+    assertThat(mapping.getLineNumber()).isEqualTo(line);
+    assertThat(mapping.getColumnPosition()).isEqualTo(column);
+    assertThat(mapping.getIdentifier()).isEqualTo(identifier);
+  }
 }
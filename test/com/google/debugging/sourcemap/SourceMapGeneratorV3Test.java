@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
 import com.google.debugging.sourcemap.SourceMapGeneratorV3.ExtensionMergeAction;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -616,6 +617,51 @@ public final class SourceMapGeneratorV3Test extends SourceMapTestCase {
     assertThat(mapping.get("sourceRoot").getAsString()).isEqualTo("http://url/path");
   }
 
+  public void testSourcesAndNamesAreListedInWrittenOrder() throws Exception {
+    SourceMapGeneratorV3 mapper = new SourceMapGeneratorV3();
+    // The first mapping is entirely covered by the second, so it is not written.
+    mapper.addMapping(
+        "a.js", "outer", new FilePosition(1, 1), new FilePosition(0, 0), new FilePosition(0, 10));
+    mapper.addMapping(
+        "b.js", "inner", new FilePosition(2, 1), new FilePosition(0, 0), new FilePosition(0, 10));
+    mapper.addMapping(
+        "c.js", null, new FilePosition(3, 1), new FilePosition(1, 0), new FilePosition(1, 5));
+    mapper.addMapping(
+        "b.js", "inner", new FilePosition(4, 1), new FilePosition(1, 5), new FilePosition(1, 8));
+
+    StringBuilder out = new StringBuilder();
+    mapper.appendTo(out, "out.js");
+    JsonObject mapping = parseJsonObject(out.toString());
+    assertThat(mapping.get("sources").toString()).isEqualTo("[\"b.js\",\"c.js\"]");
+    assertThat(mapping.get("names").toString()).isEqualTo("[\"inner\"]");
+    assertThat(mapping.get("mappings").getAsString()).isEqualTo("AAECA,U;ACCA,KDCAA;");
+  }
+
+  public void testManyMappings() throws Exception {
+    SourceMapGeneratorV3 mapper = new SourceMapGeneratorV3();
+    int count = 1000;
+    for (int i = 0; i < count; i++) {
+      mapper.addMapping(
+          "file" + (i % 7) + ".js",
+          (i % 3 == 0) ? "name" + i : null,
+          new FilePosition(i + 1, i % 5),
+          new FilePosition(i, 2),
+          new FilePosition(i, 12));
+    }
+
+    StringBuilder out = new StringBuilder();
+    mapper.appendTo(out, "out.js");
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(out.toString());
+    for (int i = 0; i < count; i++) {
+      OriginalMapping original = consumer.getMappingForLine(i + 1, 5);
+      assertThat(original.getOriginalFile()).isEqualTo("file" + (i % 7) + ".js");
+      assertThat(original.getLineNumber()).isEqualTo(i + 2);
+      assertThat(original.getColumnPosition()).isEqualTo(i % 5 + 1);
+      assertThat(original.getIdentifier()).isEqualTo((i % 3 == 0) ? "name" + i : "");
+    }
+  }
+
   FilePosition count(String js) {
     int line = 0;
     int column = 0;
@@ -17,6 +17,7 @@
 package com.google.javascript.jscomp;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
@@ -1774,6 +1775,16 @@ public final class CodePrinterTest extends CodePrinterTestBase {
     assertPrintNumber("-.01", -0.01);
     assertPrintNumber(".01", 0.01);
     assertPrintNumber("1.01", 1.01);
+
+    assertPrintNumber(".002", 0.002);
+    assertPrintNumber("15E-8", 1.5e-7);
+    assertPrintNumber("1234E-7", 0.0001234);
+    assertPrintNumber("-1234E-7", -0.0001234);
+    assertPrintNumber(".30000000000000004", 0.1 + 0.2);
+    assertPrintNumber("123456.789", 123456.789);
+    assertPrintNumber("5E-324", Double.MIN_VALUE);
+    assertPrintNumber("1130384483901222E5", 1.130384483901222E20);
+    assertPrintNumber("1E300", 1e300);
   }
 
   public void testBiggerThanMaxLongNumericLiterals() {
@@ -2257,6 +2268,46 @@ public final class CodePrinterTest extends CodePrinterTestBase {
     assertPrintSame("var x=/\\u2029/");
   }
 
+  public void testStringEscapesBetweenUnescapedRuns() {
+    assertPrintSame("var x=\"abc\"");
+    assertPrintSame("var x=\"\\nabc\\tdef\\u00e9\"");
+    assertPrintSame("var x=\"a\\\\b<c>d\"");
+    assertPrintSame("var x=/a=b&c<d>e/");
+
+    trustedStrings = false;
+    assertPrint("var x=\"a<b>c=d&e\"", "var x=\"a\\x3cb\\x3ec\\x3dd\\x26e\"");
+  }
+
+  public void testUtf8OutputCharset() {
+    CompilerOptions options = newCompilerOptions(new CompilerOptionBuilder() {
+      @Override void setOptions(CompilerOptions options) {
+        options.setOutputCharset(UTF_8);
+      }
+    });
+    // Surrogate pairs are still escaped.
+    assertEquals(
+        "var x=\"a\u00e9\\ud83d\\ude00\"",
+        parsePrint("var x='a\u00e9\ud83d\ude00'", options));
+  }
+
+  public void testManyRepeatedStrings() {
+    // More distinct strings than the escaped string cache holds.
+    StringBuilder js = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < 3000; i++) {
+        js.append("f('s").append(i).append("\\n');");
+        expected.append("f(\"s").append(i).append("\\n\");");
+      }
+    }
+    String printed = parsePrint(js.toString(), newCompilerOptions(new CompilerOptionBuilder() {
+      @Override void setOptions(CompilerOptions options) {}
+    }));
+    // Ignore the line breaks, the newlines in the strings are escaped.
+    expected.setLength(expected.length() - 1);
+    assertEquals(expected.toString(), printed.replace("\n", ""));
+  }
+
   public void testRegexp_escape() {
     assertPrintSame("/\\bword\\b/");
     assertPrintSame("/Java\\BScript/");
@@ -2891,4 +2942,48 @@ public final class CodePrinterTest extends CodePrinterTestBase {
             .setLineBreak(true)
             .build());
   }
+
+  public void testBuildToOutputMatchesBuild() throws Exception {
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      js.append("function f" + i + "(a) { return a + " + i + "; }\n");
+      js.append("var x" + i + " = f" + i + "(1), y" + i + " = 'y" + i + "';\n");
+    }
+    Node root = parse(js.toString());
+
+    CompilerOptions options = new CompilerOptions();
+    options.setLineLengthThreshold(100);
+    options.setPreferLineBreakAtEndOfFile(true);
+    assertBuildToOutputMatchesBuild(root, options);
+
+    options.setLineBreak(true);
+    assertBuildToOutputMatchesBuild(root, options);
+
+    options.setPrettyPrint(true);
+    assertBuildToOutputMatchesBuild(root, options);
+  }
+
+  private static void assertBuildToOutputMatchesBuild(Node root, CompilerOptions options)
+      throws Exception {
+    SourceMap expectedMap = SourceMap.Format.V3.getInstance();
+    String expected =
+        new CodePrinter.Builder(root)
+            .setCompilerOptions(options)
+            .setSourceMap(expectedMap)
+            .build();
+
+    SourceMap actualMap = SourceMap.Format.V3.getInstance();
+    StringBuilder actual = new StringBuilder();
+    new CodePrinter.Builder(root)
+        .setCompilerOptions(options)
+        .setSourceMap(actualMap)
+        .build(actual);
+
+    assertThat(actual.toString()).isEqualTo(expected);
+    StringBuilder expectedMapJson = new StringBuilder();
+    expectedMap.appendTo(expectedMapJson, "out.js");
+    StringBuilder actualMapJson = new StringBuilder();
+    actualMap.appendTo(actualMapJson, "out.js");
+    assertThat(actualMapJson.toString()).isEqualTo(expectedMapJson.toString());
+  }
 }
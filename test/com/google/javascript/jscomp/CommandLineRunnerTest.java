@@ -31,6 +31,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.FlagEntry;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.FlagUsageException;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.JsSourceType;
@@ -1011,6 +1014,50 @@ public final class CommandLineRunnerTest extends TestCase {
         AbstractCommandLineRunner.INVALID_MODULE_SOURCEMAP_PATTERN);
   }
 
+  public void testSourceMapIndex() throws IOException {
+    File outputDir = java.nio.file.Files.createTempDirectory("jscomp").toFile();
+    File index = new File(outputDir, "foo_index.map");
+    compile("", createSourceMapIndexArgs(outputDir, "--create_source_map=%outname%.map"));
+
+    JsonArray sections =
+        new JsonParser()
+            .parse(Files.toString(index, UTF_8))
+            .getAsJsonObject()
+            .getAsJsonArray("sections");
+    assertThat(sections.size()).isEqualTo(2);
+    assertSourceMapIndexSection(sections.get(0).getAsJsonObject(), "foo_m0.js.map", 0, 0);
+    assertSourceMapIndexSection(sections.get(1).getAsJsonObject(), "foo_m1.js.map", 1, 0);
+  }
+
+  public void testSourceMapIndexRequiresMapPerModule() throws IOException {
+    File outputDir = java.nio.file.Files.createTempDirectory("jscomp").toFile();
+    compile("", createSourceMapIndexArgs(outputDir));
+    assertThat(new File(outputDir, "foo_index.map").exists()).isFalse();
+  }
+
+  private static List<String> createSourceMapIndexArgs(File outputDir, String... extraArgs)
+      throws IOException {
+    List<String> args = new ArrayList<>();
+    args.add("--js=" + createJsFile("module0", "var x = 3;").getValue());
+    args.add("--js=" + createJsFile("module1", "var y = 5;").getValue());
+    args.add("--module=m0:1");
+    args.add("--module=m1:1:m0");
+    args.add("--module_output_path_prefix=" + new File(outputDir, "foo_").getPath());
+    args.add("--create_source_map_index=" + new File(outputDir, "foo_index.map").getPath());
+    for (String arg : extraArgs) {
+      args.add(arg);
+    }
+    return args;
+  }
+
+  private static void assertSourceMapIndexSection(
+      JsonObject section, String url, int line, int column) {
+    assertThat(section.get("url").getAsString()).isEqualTo(url);
+    JsonObject offset = section.getAsJsonObject("offset");
+    assertThat(offset.get("line").getAsInt()).isEqualTo(line);
+    assertThat(offset.get("column").getAsInt()).isEqualTo(column);
+  }
+
   public void testSourceMapFormat1() {
     args.add("--js_output_file");
     args.add("/path/to/out.js");
@@ -29,6 +29,9 @@ import com.google.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.jscomp.deps.ModuleLoader;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
+import com.google.javascript.jscomp.graph.GraphReachability;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
@@ -40,6 +43,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -88,6 +92,55 @@ public final class CompilerTest extends TestCase {
     assertEquals(6, cb.getColumnIndex());
   }
 
+  public void testToSourceInParallelMatchesSerial() throws Exception {
+    List<SourceFile> inputs = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      inputs.add(
+          SourceFile.fromCode(
+              "in" + i + ".js",
+              "/** @license L" + (i % 3) + " */\nfunction f" + i + "(a) {\n  return a + " + i
+                  + ";\n}\nalert(f" + i + "(1))"));
+    }
+    String[] expected = compileToSourceAndSourceMap(inputs, 1);
+    String[] actual = compileToSourceAndSourceMap(inputs, 4);
+    assertThat(actual[0]).isEqualTo(expected[0]);
+    assertThat(actual[1]).isEqualTo(expected[1]);
+  }
+
+  private static String[] compileToSourceAndSourceMap(
+      List<SourceFile> inputs, int numParallelThreads) throws Exception {
+    CompilerOptions options = new CompilerOptions();
+    options.setPrintInputDelimiter(true);
+    options.setSourceMapOutputPath("out.js.map");
+    options.setNumParallelThreads(numParallelThreads);
+    Compiler compiler = new Compiler();
+    compiler.compile(ImmutableList.<SourceFile>of(), inputs, options);
+    String code = compiler.toSource();
+    StringBuilder sourceMap = new StringBuilder();
+    compiler.getSourceMap().appendTo(sourceMap, "out.js");
+    return new String[] {code, sourceMap.toString()};
+  }
+
+  public void testToSourceWritesToOutput() throws Exception {
+    StringBuilder js = new StringBuilder("/** @license Foo */\n");
+    for (int i = 0; i < 3000; i++) {
+      js.append("var x" + i + " = 'x" + i + "';\n");
+    }
+    CompilerOptions options = new CompilerOptions();
+    options.setPrintInputDelimiter(true);
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        ImmutableList.<SourceFile>of(),
+        ImmutableList.of(
+            SourceFile.fromCode("a.js", js.toString()), SourceFile.fromCode("b.js", "a()")),
+        options);
+
+    StringBuilder out = new StringBuilder();
+    compiler.toSource(out);
+    assertThat(out.toString()).isEqualTo(compiler.toSource());
+    assertThat(out.toString()).endsWith("// Input 1\na();");
+  }
+
   public void testCyclicalDependencyInInputs() {
     List<SourceFile> inputs = ImmutableList.of(
         SourceFile.fromCode(
@@ -185,6 +238,32 @@ public final class CompilerTest extends TestCase {
     assertEquals("<div ng-show='foo()'>", compiler.getSourceLine(origSourceName, 1));
   }
 
+  public void testInputSourceMapsAreSharedAcrossCompilations() throws Exception {
+    FilePosition originalSourcePosition = new FilePosition(17, 25);
+    SourceMapInput first =
+        sourcemap("first/example.srcmap", "source.ts", originalSourcePosition);
+    SourceMapInput second =
+        sourcemap("second/example.srcmap", "source.ts", originalSourcePosition);
+
+    InputSourceMapCache cache = new InputSourceMapCache(1 << 20);
+
+    SourceMapConsumerV3 consumer = first.getSourceMap(null, cache);
+    assertThat(consumer).isNotNull();
+    assertThat(second.getSourceMap(null, cache)).isSameAs(consumer);
+    assertThat(
+            sourcemap("third/example.srcmap", "source.ts", originalSourcePosition)
+                .getSourceMap(null))
+        .isNotSameAs(consumer);
+
+    // The sources are still resolved relative to each source map.
+    assertThat(first.getOriginalSource("source.ts").getName())
+        .isEqualTo(normalize("first/source.ts"));
+    assertThat(second.getOriginalSource("source.ts").getName())
+        .isEqualTo(normalize("second/source.ts"));
+    assertThat(first.getOriginalSource("source.ts"))
+        .isSameAs(first.getOriginalSource("source.ts"));
+  }
+
   private SourceMapInput sourcemap(String sourceMapPath, String originalSource,
       FilePosition originalSourcePosition) throws Exception {
     SourceMapGeneratorV3 sourceMap = new SourceMapGeneratorV3();
@@ -1145,6 +1224,78 @@ public final class CompilerTest extends TestCase {
 
   }
 
+  public void testStage2PassesForVariants() {
+    List<SourceFile> externs =
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var console = {};"));
+    List<SourceFile> inputs =
+        ImmutableList.of(
+            SourceFile.fromCode(
+                "input.js",
+                LINE_JOINER.join(
+                    "/** @define {boolean} */ var DEBUG = true;",
+                    "console.log(DEBUG);")));
+    Compiler compiler = new Compiler();
+    compiler.init(externs, inputs, createVariantOptions());
+    compiler.parseForCompilation();
+    compiler.stage1Passes();
+
+    CompilerOptions releaseOptions = createVariantOptions();
+    releaseOptions.setDefineToBooleanLiteral("DEBUG", false);
+    Compiler debug = createVariant(createVariantOptions());
+    Compiler release = createVariant(releaseOptions);
+    compiler.stage2PassesForVariants(ImmutableList.of(debug, release), 2);
+
+    // The late peephole optimizations of each variant turned the define into !0 or !1.
+    assertThat(debug.getResult().success).isTrue();
+    assertThat(debug.toSource()).isEqualTo("var DEBUG=!0;console.log(DEBUG);");
+    assertThat(release.getResult().success).isTrue();
+    assertThat(release.toSource()).isEqualTo("var DEBUG=!1;console.log(DEBUG);");
+    // The state of the original compiler is left alone.
+    assertThat(compiler.toSource()).isEqualTo("var DEBUG=true;console.log(DEBUG);");
+  }
+
+  public void testStage2PassesForVariantsWithFailingVariant() {
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "")),
+        ImmutableList.of(SourceFile.fromCode("input.js", "var x = 1 + 2;")),
+        createVariantOptions());
+    compiler.parseForCompilation();
+    compiler.stage1Passes();
+
+    Compiler failing =
+        new Compiler(new PrintStream(new ByteArrayOutputStream())) {
+          @Override
+          public void stage2Passes() {
+            throw new IllegalStateException("Variant failure");
+          }
+        };
+    failing.initOptions(createVariantOptions());
+    Compiler succeeding = createVariant(createVariantOptions());
+    compiler.stage2PassesForVariants(ImmutableList.of(failing, succeeding), 1);
+
+    assertThat(failing.getResult().success).isFalse();
+    assertThat(failing.getErrors()).hasLength(1);
+    assertThat(failing.getErrors()[0].getType()).isEqualTo(Compiler.VARIANT_COMPILATION_ERROR);
+    assertThat(failing.getErrors()[0].description).contains("Variant failure");
+    assertThat(succeeding.getResult().success).isTrue();
+    assertThat(succeeding.toSource()).isEqualTo("var x=3;");
+  }
+
+  private static Compiler createVariant(CompilerOptions options) {
+    Compiler variant = new Compiler(new PrintStream(new ByteArrayOutputStream()));
+    variant.initOptions(options);
+    return variant;
+  }
+
+  private static CompilerOptions createVariantOptions() {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(options);
+    options.setLanguageOut(LanguageMode.ECMASCRIPT5);
+    options.setEmitUseStrict(false);
+    return options;
+  }
+
   public void testExternsDependencyPruning() {
     List<SourceFile> inputs =
         ImmutableList.of(
@@ -1376,6 +1527,178 @@ public final class CompilerTest extends TestCase {
     assertThat(compiler.getDeletedScopeNodesForPass("FunctionInliner")).isEmpty();
   }
 
+  public void testGetControlFlowGraph_reusedUntilScopeChanges() {
+    Compiler compiler = new Compiler();
+    Node function1 = IR.function(IR.name("foo"), IR.paramList(), IR.block());
+    Node function2 = IR.function(IR.name("bar"), IR.paramList(), IR.block());
+    Node script = IR.script(function1, function2);
+    IR.root(script);
+
+    ControlFlowGraph<Node> cfg1 = compiler.getControlFlowGraph(function1);
+    ControlFlowGraph<Node> cfg2 = compiler.getControlFlowGraph(function2);
+    ControlFlowGraph<Node> scriptCfg = compiler.getControlFlowGraph(script);
+    assertThat(compiler.getControlFlowGraph(function1)).isSameAs(cfg1);
+
+    // A change to function1 only invalidates its own graph.
+    function1.getLastChild().addChildToBack(IR.returnNode());
+    compiler.reportChangeToChangeScope(function1);
+    assertThat(compiler.getControlFlowGraph(function1)).isNotSameAs(cfg1);
+    assertThat(compiler.getControlFlowGraph(function1).getNodes())
+        .hasSize(cfg1.getNodes().size() + 1);
+    assertThat(compiler.getControlFlowGraph(function2)).isSameAs(cfg2);
+    assertThat(compiler.getControlFlowGraph(script)).isSameAs(scriptCfg);
+  }
+
+  public void testGetControlFlowGraph_annotationsClearedAfterPass() {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    Node function = IR.function(IR.name("foo"), IR.paramList(), IR.block(IR.returnNode()));
+    IR.root(IR.script(function));
+
+    ControlFlowGraph<Node> cfg = compiler.getControlFlowGraph(function);
+    new GraphReachability<>(cfg).compute(cfg.getEntry().getValue());
+    cfg.getEdges().get(0).setAnnotation(GraphReachability.REACHABLE);
+    assertThat(cfg.getEntry().getAnnotation()).isNotNull();
+
+    compiler.afterPass("pass");
+    assertThat(compiler.getControlFlowGraph(function)).isSameAs(cfg);
+    for (DiGraphNode<Node, ControlFlowGraph.Branch> node : cfg.getDirectedGraphNodes()) {
+      assertThat(node.getAnnotation()).isNull();
+    }
+    for (DiGraphEdge<Node, ControlFlowGraph.Branch> edge : cfg.getEdges()) {
+      assertThat(edge.getAnnotation()).isNull();
+    }
+  }
+
+  public void testGetGlobalNamespace_reusedUntilChange() {
+    CompilerOptions options = new CompilerOptions();
+    options.setDevMode(CompilerOptions.DevMode.START_AND_END);
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var window;")),
+        ImmutableList.of(SourceFile.fromCode("input.js", "var a = {}; a.b = 1;")),
+        options);
+    compiler.parse();
+    Node externs = compiler.getExternsRoot();
+    Node js = compiler.getJsRoot();
+
+    GlobalNamespace namespace = compiler.getGlobalNamespace(externs, js);
+    assertThat(namespace.getNameIndex().keySet()).containsExactly("window", "a", "a.b");
+    assertThat(compiler.getGlobalNamespace(externs, js)).isSameAs(namespace);
+    assertThat(compiler.getGlobalNamespace(null, js)).isNotSameAs(namespace);
+
+    // A reported change invalidates the shared namespace.
+    Node script = js.getFirstChild();
+    script.addChildToBack(IR.exprResult(IR.name("a")));
+    compiler.reportChangeToChangeScope(script);
+    GlobalNamespace rebuilt = compiler.getGlobalNamespace(externs, js);
+    assertThat(rebuilt).isNotSameAs(namespace);
+    assertThat(rebuilt.getSlot("a").getRefs()).hasSize(2);
+
+    // In dev mode, an unreported change is detected on reuse.
+    script.addChildToBack(IR.exprResult(IR.name("a")));
+    try {
+      compiler.getGlobalNamespace(externs, js);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("Stale global namespace");
+    }
+  }
+
+  public void testGetVariableReferences_reusedUntilChange() {
+    CompilerOptions options = new CompilerOptions();
+    options.setDevMode(CompilerOptions.DevMode.START_AND_END);
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var window;")),
+        ImmutableList.of(SourceFile.fromCode("input.js", "var a = 1; function f() { a; }")),
+        options);
+    compiler.parse();
+    Node js = compiler.getJsRoot();
+
+    ReferenceCollectingCallback references = compiler.getVariableReferences(js);
+    List<String> names = new ArrayList<>();
+    for (Var v : references.getAllSymbols()) {
+      names.add(v.getName());
+    }
+    assertThat(names).containsExactly("a", "f").inOrder();
+    assertThat(compiler.getVariableReferences(js)).isSameAs(references);
+    Node script = js.getFirstChild();
+    assertThat(compiler.getVariableReferences(script)).isNotSameAs(references);
+
+    // A reported change invalidates the shared references.
+    script.addChildToBack(IR.exprResult(IR.name("a")));
+    compiler.reportChangeToChangeScope(script);
+    ReferenceCollectingCallback rebuilt = compiler.getVariableReferences(js);
+    assertThat(rebuilt).isNotSameAs(references);
+    Var a = rebuilt.getAllSymbols().iterator().next();
+    assertThat(rebuilt.getReferences(a).references).hasSize(3);
+
+    // In dev mode, an unreported change is detected on reuse.
+    script.addChildToBack(IR.exprResult(IR.name("a")));
+    try {
+      compiler.getVariableReferences(js);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("Stale variable references");
+    }
+  }
+
+  public void testGetVariableReferences_droppedAfterPassWithoutUse() {
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var window;")),
+        ImmutableList.of(SourceFile.fromCode("input.js", "var a = 1; function f() { a; }")),
+        new CompilerOptions());
+    compiler.parse();
+    Node externs = compiler.getExternsRoot();
+    Node js = compiler.getJsRoot();
+
+    // The references survive the passes that ask for them.
+    ReferenceCollectingCallback references = compiler.getVariableReferences(js);
+    ReferenceCollectingCallback withExterns = compiler.getVariableReferences(externs, js);
+    compiler.afterPass("consumer");
+    assertThat(compiler.getVariableReferences(js)).isSameAs(references);
+    compiler.afterPass("consumer");
+
+    // Both are dropped after a pass that does not use them.
+    compiler.afterPass("other");
+    assertThat(compiler.getVariableReferences(js)).isNotSameAs(references);
+    assertThat(compiler.getVariableReferences(externs, js)).isNotSameAs(withExterns);
+  }
+
+  public void testGetVariableReferencesWithExterns_replaysScopeExits() {
+    Compiler compiler = new Compiler();
+    compiler.init(
+        ImmutableList.of(SourceFile.fromCode("externs.js", "var window;")),
+        ImmutableList.of(
+            SourceFile.fromCode("input.js", "var a = window; function f() { var b = a; }")),
+        new CompilerOptions());
+    compiler.parse();
+    Node externs = compiler.getExternsRoot();
+    Node js = compiler.getJsRoot();
+
+    ReferenceCollectingCallback references = compiler.getVariableReferences(externs, js);
+    assertThat(compiler.getVariableReferences(externs, js)).isSameAs(references);
+    assertThat(compiler.getVariableReferences(js)).isNotSameAs(references);
+
+    final List<String> scopeVars = new ArrayList<>();
+    references.replayScopeExits(
+        new ReferenceCollectingCallback.ScopeBehavior() {
+          @Override
+          public void afterExitScope(Scope scope, ReferenceMap referenceMap) {
+            for (Var v : scope.getVarIterable()) {
+              scopeVars.add(v.getName() + ":" + referenceMap.getReferences(v).references.size());
+            }
+          }
+        });
+    // The function block is exited first, then the function and the global scope.
+    assertThat(scopeVars).containsExactly("b:1", "window:2", "a:2", "f:1").inOrder();
+
+    compiler.reportChangeToChangeScope(js.getFirstChild());
+    assertThat(compiler.getVariableReferences(externs, js)).isNotSameAs(references);
+  }
+
   public void testAddIndexProvider_ThenGetIndex() {
     Compiler compiler = new Compiler();
 
@@ -16,6 +16,10 @@
 
 package com.google.javascript.jscomp;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.BitSet;
+
 /**
  * Tests for {@link CrossModuleCodeMotion}.
  *
@@ -1520,4 +1524,39 @@ public final class CrossModuleCodeMotionTest extends CompilerTestCase {
             "function f() { return A; } f(); function f2() { return B; }"
         });
   }
+
+  public void testSmallestCoveringSubtreesAreRemembered() {
+    //    m0
+    //   /  \
+    //  m1  m2
+    //   \  /
+    //    m3
+    JSModule[] modules = createModules("", "", "", "");
+    modules[1].addDependency(modules[0]);
+    modules[2].addDependency(modules[0]);
+    modules[3].addDependency(modules[1]);
+    modules[3].addDependency(modules[2]);
+    CrossModuleCodeMotion pass =
+        new CrossModuleCodeMotion(new Compiler(), new JSModuleGraph(modules), false);
+
+    BitSet dependents = new BitSet();
+    dependents.set(3);
+    assertThat(pass.getSmallestCoveringSubtree(modules[0], dependents)).isSameAs(modules[3]);
+
+    // The bit set is copied when it is remembered, so adding to it asks again.
+    dependents.set(1);
+    assertThat(pass.getSmallestCoveringSubtree(modules[0], dependents)).isSameAs(modules[1]);
+    BitSet sameDependents = new BitSet();
+    sameDependents.set(1);
+    sameDependents.set(3);
+    assertThat(pass.getSmallestCoveringSubtree(modules[0], sameDependents)).isSameAs(modules[1]);
+    dependents.set(2);
+    assertThat(pass.getSmallestCoveringSubtree(modules[0], dependents)).isSameAs(modules[0]);
+
+    // Each parent tree has its own answers.
+    BitSet onlyM3 = new BitSet();
+    onlyM3.set(3);
+    assertThat(pass.getSmallestCoveringSubtree(modules[2], onlyM3)).isSameAs(modules[3]);
+    assertThat(pass.getSmallestCoveringSubtree(modules[1], sameDependents)).isSameAs(modules[1]);
+  }
 }
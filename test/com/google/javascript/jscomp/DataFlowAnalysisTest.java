@@ -27,6 +27,7 @@ import com.google.javascript.jscomp.DataFlowAnalysis.BranchedFlowState;
 import com.google.javascript.jscomp.DataFlowAnalysis.BranchedForwardDataFlowAnalysis;
 import com.google.javascript.jscomp.DataFlowAnalysis.FlowState;
 import com.google.javascript.jscomp.DataFlowAnalysis.MaxIterationsExceededException;
+import com.google.javascript.jscomp.DataFlowAnalysis.Workset;
 import com.google.javascript.jscomp.JoinOp.BinaryJoinOp;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.jscomp.graph.GraphNode;
@@ -952,6 +953,58 @@ public final class DataFlowAnalysisTest extends TestCase {
     }
   }
 
+  public void testWorksetRemovesNodesInComparatorOrder() {
+    Variable a = new Variable("a");
+    ControlFlowGraph<Instruction> cfg = null;
+    List<Instruction> instructions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Instruction inst = newAssignNumberToVariableInstruction(a, i);
+      inst.order = 4 - i;
+      if (cfg == null) {
+        cfg = new ControlFlowGraph<>(inst, true, true);
+      }
+      cfg.createNode(inst);
+      instructions.add(inst);
+    }
+
+    Workset<Instruction> workset = new Workset<>(comparingInt(arg -> arg.getValue().order));
+    workset.reset(cfg);
+    assertThat(workset.isEmpty()).isTrue();
+
+    for (Instruction inst : instructions) {
+      workset.add(cfg.getDirectedGraphNode(inst));
+    }
+    workset.add(cfg.getDirectedGraphNode(instructions.get(0)));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(4));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(3));
+
+    // Re-adding a node that comes before the ones left moves it to the front again.
+    workset.add(cfg.getDirectedGraphNode(instructions.get(4)));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(4));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(2));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(1));
+    assertThat(workset.removeFirst().getValue()).isSameAs(instructions.get(0));
+    assertThat(workset.isEmpty()).isTrue();
+  }
+
+  public void testWorksetWithoutComparatorIsInsertionOrdered() {
+    Variable a = new Variable("a");
+    Instruction inst1 = newAssignNumberToVariableInstruction(a, 1);
+    Instruction inst2 = newAssignNumberToVariableInstruction(a, 2);
+    ControlFlowGraph<Instruction> cfg = new ControlFlowGraph<>(inst1, true, true);
+    cfg.createNode(inst1);
+    cfg.createNode(inst2);
+
+    Workset<Instruction> workset = new Workset<>(null);
+    workset.reset(cfg);
+    workset.add(cfg.getDirectedGraphNode(inst2));
+    workset.add(cfg.getDirectedGraphNode(inst1));
+    workset.add(cfg.getDirectedGraphNode(inst2));
+    assertThat(workset.removeFirst().getValue()).isSameAs(inst2);
+    assertThat(workset.removeFirst().getValue()).isSameAs(inst1);
+    assertThat(workset.isEmpty()).isTrue();
+  }
+
   static void verifyInHas(GraphNode<Instruction, Branch> node, Variable var,
       Integer constant) {
     FlowState<ConstPropLatticeElement> fState = node.getAnnotation();
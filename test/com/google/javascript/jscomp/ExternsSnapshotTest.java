@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.rhino.Node;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+
+/** Tests for {@link ExternsSnapshot}. */
+public final class ExternsSnapshotTest extends TestCase {
+  private static final String EXTERNS =
+      "/** @const */ var ns = {};\n"
+      + "/** @param {number} x\n @return {string} */ ns.f = function(x) {};\n"
+      + "/** @constructor */ function Foo() {}\n";
+
+  private CompilerOptions options;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    options = new CompilerOptions();
+    options.setLanguageIn(LanguageMode.ECMASCRIPT_2015);
+  }
+
+  private ExternsSnapshot snapshotOf(SourceFile... externs) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ExternsSnapshot.write(ImmutableList.copyOf(externs), options, out);
+    return ExternsSnapshot.fromBuffer(ByteBuffer.wrap(out.toByteArray()));
+  }
+
+  public void testRoundTrip() throws Exception {
+    ExternsSnapshot snapshot = snapshotOf(SourceFile.fromCode("externs.js", EXTERNS));
+    assertThat(snapshot.size()).isEqualTo(1);
+
+    SourceFile file = SourceFile.fromCode("externs.js", EXTERNS);
+    file.setIsExtern(true);
+    SourceAst ast = snapshot.getAst(file, options);
+    assertThat(ast).isNotNull();
+
+    Compiler compiler = new Compiler();
+    compiler.initOptions(options);
+    Node hydrated = ast.getAstRoot(compiler);
+    Node parsed = new JsAst(file).getAstRoot(compiler);
+    assertNull(parsed.checkTreeEquals(hydrated));
+    assertThat(hydrated.getStaticSourceFile()).isSameAs(file);
+    assertThat(hydrated.getFirstChild().getStaticSourceFile()).isSameAs(file);
+    assertThat(hydrated.getInputId()).isEqualTo(ast.getInputId());
+    assertThat(ast.getAstRoot(compiler)).isSameAs(hydrated);
+  }
+
+  public void testChangedExternIsNotUsed() throws Exception {
+    ExternsSnapshot snapshot = snapshotOf(SourceFile.fromCode("externs.js", EXTERNS));
+    SourceFile changed = SourceFile.fromCode("externs.js", EXTERNS + "var x;");
+    assertThat(snapshot.getAst(changed, options)).isNull();
+  }
+
+  public void testUnknownExternIsNotUsed() throws Exception {
+    ExternsSnapshot snapshot = snapshotOf(SourceFile.fromCode("externs.js", EXTERNS));
+    assertThat(snapshot.getAst(SourceFile.fromCode("other.js", EXTERNS), options)).isNull();
+  }
+
+  public void testDifferentOptionsAreNotUsed() throws Exception {
+    ExternsSnapshot snapshot = snapshotOf(SourceFile.fromCode("externs.js", EXTERNS));
+    options.setLanguageIn(LanguageMode.ECMASCRIPT5);
+    assertThat(snapshot.getAst(SourceFile.fromCode("externs.js", EXTERNS), options)).isNull();
+  }
+
+  public void testExternWithParseErrorIsSkipped() throws Exception {
+    ExternsSnapshot snapshot =
+        snapshotOf(
+            SourceFile.fromCode("externs.js", EXTERNS), SourceFile.fromCode("bad.js", "var = ;"));
+    assertThat(snapshot.size()).isEqualTo(1);
+  }
+
+  public void testCompileWithSnapshot() throws Exception {
+    ExternsSnapshot snapshot = snapshotOf(SourceFile.fromCode("externs.js", EXTERNS));
+
+    Compiler compiler = new Compiler();
+    compiler.setExternsSnapshot(snapshot);
+    options.setCheckTypes(true);
+    Result result =
+        compiler.compile(
+            ImmutableList.of(SourceFile.fromCode("externs.js", EXTERNS)),
+            ImmutableList.of(SourceFile.fromCode("in.js", "var s = ns.f(1); new Foo();")),
+            options);
+    assertThat(result.success).isTrue();
+    assertThat(compiler.getWarnings()).isEmpty();
+  }
+}
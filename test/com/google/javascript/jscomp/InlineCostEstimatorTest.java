@@ -73,4 +73,29 @@ public final class InlineCostEstimatorTest extends TestCase {
     // cost estimate should be the same as the length of the example string.
     assertThat(cost(source)).isEqualTo(example.length());
   }
+
+  public void testFunctionCostCache() {
+    Node fn = parse("function f(a) { return function() { return a + 1; }; }").getFirstChild();
+    Node inner = fn.getLastChild().getFirstChild().getFirstChild();
+    assertTrue(inner.isFunction());
+    int cost = InlineCostEstimator.getCost(fn);
+
+    InlineCostEstimator.FunctionCostCache cache = new InlineCostEstimator.FunctionCostCache();
+    // An estimate that stops early is kept as a lower bound.
+    assertFalse(cache.isCostAtMost(fn, 3));
+    assertFalse(cache.isCostAtMost(fn, 2));
+    assertThat(cache.getEstimateCount()).isEqualTo(1);
+
+    // An exact estimate answers every threshold.
+    assertTrue(cache.isCostAtMost(fn, cost));
+    assertFalse(cache.isCostAtMost(fn, cost - 1));
+    assertTrue(cache.isCostAtMost(fn, cost + 10));
+    assertThat(cache.getEstimateCount()).isEqualTo(2);
+    assertThat(cache.getLookupCount()).isEqualTo(5);
+
+    // A change to a nested function invalidates the estimate.
+    inner.setChangeTime(inner.getChangeTime() + 1);
+    assertTrue(cache.isCostAtMost(fn, cost));
+    assertThat(cache.getEstimateCount()).isEqualTo(3);
+  }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+import junit.framework.TestCase;
+
+public final class InputSourceMapCacheTest extends TestCase {
+
+  public void testSameContentsAreParsedOnce() throws Exception {
+    InputSourceMapCache cache = new InputSourceMapCache(1 << 20);
+    SourceMapConsumerV3 consumer = cache.parse(sourceMap("a.ts"));
+    assertThat(cache.parse(sourceMap("a.ts"))).isSameAs(consumer);
+    assertThat(cache.parse(sourceMap("b.ts"))).isNotSameAs(consumer);
+  }
+
+  public void testLeastRecentlyUsedSourceMapsAreDropped() throws Exception {
+    String a = sourceMap("a.ts");
+    String b = sourceMap("b.ts");
+    String c = sourceMap("c.ts");
+    InputSourceMapCache cache = new InputSourceMapCache(a.length() + b.length());
+    SourceMapConsumerV3 consumerA = cache.parse(a);
+    SourceMapConsumerV3 consumerB = cache.parse(b);
+    assertThat(cache.parse(a)).isSameAs(consumerA);
+
+    cache.parse(c);
+    assertThat(cache.parse(a)).isSameAs(consumerA);
+    assertThat(cache.parse(b)).isNotSameAs(consumerB);
+  }
+
+  public void testSourceMapsLargerThanTheCacheAreNotKept() throws Exception {
+    String a = sourceMap("a.ts");
+    InputSourceMapCache cache = new InputSourceMapCache(a.length() - 1);
+    assertThat(cache.parse(a)).isNotSameAs(cache.parse(a));
+  }
+
+  public void testClear() throws Exception {
+    InputSourceMapCache cache = new InputSourceMapCache(1 << 20);
+    SourceMapConsumerV3 consumer = cache.parse(sourceMap("a.ts"));
+    cache.clear();
+    assertThat(cache.parse(sourceMap("a.ts"))).isNotSameAs(consumer);
+  }
+
+  public void testSharedSourceMapsCannotBeParsedAgain() throws Exception {
+    InputSourceMapCache cache = new InputSourceMapCache(1 << 20);
+    SourceMapConsumerV3 consumer = cache.parse(sourceMap("a.ts"));
+    try {
+      consumer.parse(sourceMap("b.ts"));
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static String sourceMap(String originalSource) throws Exception {
+    SourceMapGeneratorV3 sourceMap = new SourceMapGeneratorV3();
+    sourceMap.addMapping(originalSource, null, new FilePosition(1, 1),
+        new FilePosition(1, 1), new FilePosition(1, 10));
+    StringBuilder output = new StringBuilder();
+    sourceMap.appendTo(output, "unused.js");
+    return output.toString();
+  }
+}
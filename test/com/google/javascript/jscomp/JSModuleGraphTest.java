@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -183,6 +184,137 @@ public final class JSModuleGraphTest extends TestCase {
     assertSmallestCoveringSubtree(F, A, F, F);
   }
 
+  /** The graph queries must agree with a brute force computation on random graphs. */
+  public void testRandomGraphsMatchBruteForce() {
+    Random random = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      // Every other graph is a tree, for which common dependencies are looked up differently.
+      int maxDependencies = round % 2 == 0 ? 1 : 3;
+      JSModule[] modules = createRandomModules(random, 60, maxDependencies);
+      JSModuleGraph graph = new JSModuleGraph(modules);
+      BitSet[] selfPlusDeps = new BitSet[modules.length];
+      for (int i = 0; i < modules.length; i++) {
+        selfPlusDeps[i] = new BitSet();
+        selfPlusDeps[i].set(i);
+        for (JSModule dep : modules[i].getDependencies()) {
+          selfPlusDeps[i].or(selfPlusDeps[dep.getIndex()]);
+        }
+      }
+
+      for (JSModule m1 : modules) {
+        for (JSModule m2 : modules) {
+          assertThat(graph.dependsOn(m1, m2))
+              .isEqualTo(m1 != m2 && selfPlusDeps[m1.getIndex()].get(m2.getIndex()));
+
+          JSModule deepest = null;
+          for (JSModule m : modules) {
+            if (m != m1
+                && m != m2
+                && selfPlusDeps[m1.getIndex()].get(m.getIndex())
+                && selfPlusDeps[m2.getIndex()].get(m.getIndex())
+                && (deepest == null || m.getDepth() >= deepest.getDepth())) {
+              deepest = m;
+            }
+          }
+          assertWithMessage("Deepest common dependency of %s and %s", m1, m2)
+              .that(graph.getDeepestCommonDependency(m1, m2))
+              .isSameAs(deepest);
+        }
+      }
+
+      for (int i = 0; i < 100; i++) {
+        BitSet dependents = new BitSet();
+        for (int j = random.nextInt(3); j >= 0; j--) {
+          dependents.set(random.nextInt(modules.length));
+        }
+        JSModule parentTree = modules[random.nextInt(modules.length)];
+        // The smallest subtree of parentTree that contains all of the dependents, preferring
+        // later modules.
+        JSModule expected = parentTree;
+        int expectedSize = countDependents(selfPlusDeps, parentTree.getIndex());
+        for (JSModule candidate : modules) {
+          int candidateIndex = candidate.getIndex();
+          if (!selfPlusDeps[candidateIndex].get(parentTree.getIndex())) {
+            continue;
+          }
+          boolean coversDependents = true;
+          for (int d = dependents.nextSetBit(0); d >= 0; d = dependents.nextSetBit(d + 1)) {
+            coversDependents &= selfPlusDeps[d].get(candidateIndex);
+          }
+          int size = countDependents(selfPlusDeps, candidateIndex);
+          if (coversDependents && size <= expectedSize && candidate != parentTree) {
+            expected = candidate;
+            expectedSize = size;
+          }
+        }
+        assertSmallestCoveringSubtree(expected, graph, parentTree, dependents);
+      }
+
+      for (int i = 0; i < 100; i++) {
+        BitSet dependents = new BitSet();
+        for (int j = random.nextInt(6); j >= 0; j--) {
+          dependents.set(random.nextInt(modules.length));
+        }
+        // The deepest module that all of the dependents are or depend on, preferring later
+        // modules.
+        JSModule deepest = null;
+        for (JSModule m : modules) {
+          boolean isCommonDependency = true;
+          for (int d = dependents.nextSetBit(0); d >= 0; d = dependents.nextSetBit(d + 1)) {
+            isCommonDependency &= selfPlusDeps[d].get(m.getIndex());
+          }
+          if (isCommonDependency && (deepest == null || m.getDepth() >= deepest.getDepth())) {
+            deepest = m;
+          }
+        }
+        assertWithMessage("Deepest common dependency of %s", dependents)
+            .that(graph.getDeepestCommonDependencyInclusive(dependents))
+            .isSameAs(deepest);
+      }
+    }
+  }
+
+  public void testLargeTree() {
+    JSModule[] modules = createRandomModules(new Random(42), 50000, 1);
+    JSModuleGraph graph = new JSModuleGraph(modules);
+    JSModule root = modules[0];
+    for (int i = 1; i < modules.length; i++) {
+      JSModule m = modules[i];
+      JSModule parent = m.getDependencies().get(0);
+      assertTrue(graph.dependsOn(m, root));
+      assertFalse(graph.dependsOn(parent, m));
+      assertThat(graph.getDeepestCommonDependencyInclusive(m, parent)).isSameAs(parent);
+      assertThat(graph.getDeepestCommonDependency(m, parent))
+          .isSameAs(parent == root ? null : parent.getDependencies().get(0));
+    }
+  }
+
+  public void testLongChainWithShortcuts() {
+    // Deep enough that walking the graph recursively would overflow the stack.
+    JSModule[] modules = new JSModule[50000];
+    for (int i = 0; i < modules.length; i++) {
+      modules[i] = new JSModule("m" + i);
+      if (i > 0) {
+        modules[i].addDependency(modules[i - 1]);
+      }
+      if (i > 1 && i % 1000 == 0) {
+        modules[i].addDependency(modules[i / 2]);
+      }
+    }
+    JSModuleGraph graph = new JSModuleGraph(modules);
+    JSModule first = modules[0];
+    JSModule last = modules[modules.length - 1];
+    assertTrue(graph.dependsOn(last, first));
+    assertFalse(graph.dependsOn(first, last));
+    assertThat(graph.getDeepestCommonDependency(last, modules[30000])).isSameAs(modules[29999]);
+
+    BitSet dependents = new BitSet();
+    dependents.set(40000);
+    dependents.set(45000);
+    assertSmallestCoveringSubtree(modules[40000], graph, first, dependents);
+    assertSmallestCoveringSubtree(last, graph, last, dependents);
+  }
+
   public void testGetTransitiveDepsDeepestFirst() {
     assertTransitiveDepsDeepestFirst(A);
     assertTransitiveDepsDeepestFirst(B, A);
@@ -450,6 +582,34 @@ public final class JSModuleGraphTest extends TestCase {
     }
   }
 
+  /**
+   * Creates modules in dependency order, where each module after the first depends on between one
+   * and maxDependencies earlier modules.
+   */
+  private static JSModule[] createRandomModules(
+      Random random, int moduleCount, int maxDependencies) {
+    JSModule[] modules = new JSModule[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      modules[i] = new JSModule("m" + i);
+      if (i > 0) {
+        for (int j = random.nextInt(maxDependencies); j >= 0; j--) {
+          modules[i].addDependency(modules[random.nextInt(i)]);
+        }
+      }
+    }
+    return modules;
+  }
+
+  private static int countDependents(BitSet[] selfPlusDeps, int moduleIndex) {
+    int count = 0;
+    for (BitSet deps : selfPlusDeps) {
+      if (deps.get(moduleIndex)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   private void assertInputs(JSModule module, String... sourceNames) {
     assertEquals(ImmutableList.copyOf(sourceNames), sourceNames(module.getInputs()));
   }
@@ -68,6 +68,12 @@ public final class MaybeReachingVariableUseTest extends TestCase {
     assertMatch("D:var x=1; for(;;)  { U:x }");
   }
 
+  public void testStraightLineInLoops() {
+    assertMatch("D:var x=1; while(a) { foo(); U:x; x=2; bar(); }");
+    assertMatch("var x=0; while(a) { foo(); D:x=1; bar(); U:x; baz(); }");
+    assertNotMatch("D:var x=1; while(a) { x=2; foo(); U:x; }");
+  }
+
   public void testConditional() {
     assertMatch("var x=0; var y; D:(x=1)&&y; U:x");
     assertMatch("var x=0; var y; D:y&&(x=1); U:x");
@@ -66,6 +66,11 @@ public final class MustBeReachingVariableDefTest extends TestCase {
     assertMatch("D:var x=1; for(;;)  { U:x }");
   }
 
+  public void testStraightLineInLoops() {
+    assertMatch("var x=0; while(a) { foo(); D:x=1; bar(); U:x; baz(); }");
+    assertNotMatch("D:var x=1; while(a) { foo(); U:x; x=2; bar(); }");
+  }
+
   public void testConditional() {
     assertMatch("var x=0,y; D:(x=1)&&y; U:x");
     assertNotMatch("var x=0,y; D:y&&(x=1); U:x");
@@ -155,6 +160,17 @@ public final class MustBeReachingVariableDefTest extends TestCase {
     assertNotMatch("param1=1; var x; D:x=param1; var y=arguments; U:x");
   }
 
+  public void testDependentsInSameInstruction() {
+    assertMatch("var y=1; var x; D:y=2,x=y; U:x");
+    assertNotMatch("var y=1; var x; D:x=y,y=2; U:x");
+    assertNotMatch("var y=1; var x; D:x=y; y++; U:x");
+  }
+
+  public void testUnreachableUse() {
+    computeDefUse("D:var x=1; return; U:x");
+    assertNull(defUse.getDefNode("x", use));
+  }
+
   /**
    * The use of x at U: is the definition of x at D:.
    */
@@ -554,6 +554,32 @@ public final class NodeUtilTest extends TestCase {
     assertSideEffect(true, "export {x};");
   }
 
+  public void testMayHaveSideEffectsMemoized() {
+    Compiler compiler = new Compiler();
+    compiler.initCompilerOptionsIfTesting();
+    NodeUtil.SideEffectMemo memo = new NodeUtil.SideEffectMemo();
+    Node script = parse("[a, [b, c]];");
+    Node expr = script.getFirstChild();
+    Node inner = expr.getFirstChild().getLastChild();
+    assertFalse(NodeUtil.mayHaveSideEffectsMemoized(expr, compiler, memo));
+    assertTrue(NodeUtil.mayEffectMutableStateMemoized(expr, compiler, memo));
+
+    // The results are remembered until the change stamp moves.
+    inner.addChildToBack(IR.inc(IR.name("i"), false));
+    assertFalse(NodeUtil.mayHaveSideEffectsMemoized(expr, compiler, memo));
+    assertTrue(NodeUtil.mayHaveSideEffects(expr, compiler));
+
+    compiler.incrementChangeStamp();
+    assertTrue(NodeUtil.mayHaveSideEffectsMemoized(expr, compiler, memo));
+    assertTrue(NodeUtil.mayHaveSideEffectsMemoized(inner, compiler, memo));
+    assertFalse(NodeUtil.mayHaveSideEffectsMemoized(inner.getFirstChild(), compiler, memo));
+
+    // A cleared memo computes the results again.
+    inner.removeChild(inner.getLastChild());
+    memo.clear();
+    assertFalse(NodeUtil.mayHaveSideEffectsMemoized(expr, compiler, memo));
+  }
+
   public void testObjectMethodSideEffects() {
     // "toString" and "valueOf" are assumed to be side-effect free
     assertSideEffect(false, "o.toString()");
@@ -19,9 +19,11 @@ package com.google.javascript.jscomp;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -33,11 +35,16 @@ import java.util.Set;
 public final class PeepholeOptimizationsPassTest extends CompilerTestCase {
 
   private ImmutableList<AbstractPeepholeOptimization> currentPeepholePasses;
+  private PeepholeOptimizationsPass lastPass;
 
   @Override
   protected CompilerPass getProcessor(final Compiler compiler) {
-    return new PeepholeOptimizationsPass(
-        compiler, getName(), currentPeepholePasses.toArray(new AbstractPeepholeOptimization[0]));
+    lastPass =
+        new PeepholeOptimizationsPass(
+            compiler,
+            getName(),
+            currentPeepholePasses.toArray(new AbstractPeepholeOptimization[0]));
+    return lastPass;
   }
 
   @Override
@@ -244,4 +251,77 @@ public final class PeepholeOptimizationsPassTest extends CompilerTestCase {
 
     test("var y; var z;", "var z;");
   }
+
+  /** A peephole optimization that logs the subtrees with the given tokens that it is handed. */
+  private static class LogTokens extends AbstractPeepholeOptimization {
+    private final Set<Token> tokens;
+    private final List<String> log;
+
+    LogTokens(List<String> log, Token... tokens) {
+      this.log = log;
+      this.tokens = Sets.immutableEnumSet(Arrays.asList(tokens));
+    }
+
+    @Override
+    Set<Token> getTokensToOptimize() {
+      return tokens;
+    }
+
+    @Override
+    public Node optimizeSubtree(Node node) {
+      log.add(node.getToken() + (node.isName() ? " " + node.getString() : ""));
+      return node;
+    }
+  }
+
+  public void testOnlyDeclaredTokensAreOptimized() {
+    List<String> log = new ArrayList<>();
+    currentPeepholePasses = ImmutableList.<AbstractPeepholeOptimization>of(
+        new LogTokens(log, Token.VAR, Token.CALL));
+
+    testSame("var x = f(y); g();");
+    assertThat(log).containsExactly("CALL", "VAR", "CALL").inOrder();
+  }
+
+  public void testReplacementIsOptimizedByItsToken() {
+    List<String> numbers = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    currentPeepholePasses = ImmutableList.of(
+        new RenameYToZero(),
+        new LogTokens(numbers, Token.NUMBER),
+        new LogTokens(names, Token.NAME));
+
+    test("var x = y;", "var x = 0;");
+    // The replaced name is only handed to the optimization of numbers. The
+    // second traversal checks for the fixed point.
+    assertThat(numbers).containsExactly("NUMBER", "NUMBER");
+    assertThat(names).containsExactly("NAME x", "NAME x");
+  }
+
+  public void testHitCounts() {
+    AbstractPeepholeOptimization removeX = new RemoveNodesNamedXOptimization();
+    AbstractPeepholeOptimization renameY = new RenameYToX();
+    currentPeepholePasses = ImmutableList.of(removeX, renameY);
+
+    test("var x,y,z;", "var z;");
+    assertThat(lastPass.getHitCount(removeX)).isEqualTo(2);
+    assertThat(lastPass.getHitCount(renameY)).isEqualTo(1);
+  }
+
+  /**
+   * A peephole optimization that replaces a name node named "y" with the
+   * number 0.
+   */
+  private static class RenameYToZero extends AbstractPeepholeOptimization {
+    @Override
+    public Node optimizeSubtree(Node node) {
+      if (node.isName() && "y".equals(node.getString())) {
+        Node replacement = Node.newNumber(0);
+        node.replaceWith(replacement);
+        compiler.reportChangeToEnclosingScope(replacement);
+        return replacement;
+      }
+      return node;
+    }
+  }
 }
@@ -22,6 +22,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.javascript.jscomp.CompilerOptions.TracerMode;
 import com.google.javascript.jscomp.PerformanceTracker.Stats;
+import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import java.io.ByteArrayOutputStream;
@@ -102,6 +103,53 @@ public final class PerformanceTrackerTest extends TestCase {
     assertEquals(0, st.changes);
   }
 
+  public void testOnlyChangedScriptsAreReprinted() {
+    Compiler compiler = new Compiler();
+    Node script1 = compiler.parseSyntheticCode("a.js", "var a = 1;");
+    Node script2 = compiler.parseSyntheticCode("b.js", "function f() { return 'b'; }");
+    Node jsRoot = IR.root(script1, script2);
+    int script1Size = PerformanceTrackerCodeSizeEstimator.estimate(script1, false).getCodeSize();
+    int script2Size = PerformanceTrackerCodeSizeEstimator.estimate(script2, false).getCodeSize();
+    PerformanceTracker tracker =
+        new PerformanceTracker(emptyExternRoot, jsRoot, TracerMode.ALL, null);
+    CodeChangeHandler handler = tracker.getCodeChangeHandler();
+
+    tracker.recordPassStart(PassNames.PARSE_INPUTS, true);
+    tracker.recordPassStop(PassNames.PARSE_INPUTS, 0);
+
+    // A change that isn't reported doesn't get measured.
+    script1.getFirstChild().getFirstChild().setString("abc");
+
+    tracker.recordPassStart("removeReturnValue", true);
+    Node function = script2.getFirstChild();
+    function.getLastChild().getFirstChild().removeChildren();
+    compiler.reportChangeToChangeScope(function);
+    handler.reportChange();
+    tracker.recordPassStop("removeReturnValue", 0);
+
+    int newScript2Size =
+        PerformanceTrackerCodeSizeEstimator.estimate(script2, false).getCodeSize();
+    assertEquals(script1Size + newScript2Size, tracker.getSize());
+    assertEquals(script2Size - newScript2Size, tracker.getStats().get("removeReturnValue").diff);
+  }
+
+  public void testExactSizes() {
+    Compiler compiler = new Compiler();
+    Node script1 = compiler.parseSyntheticCode("a.js", "var a = 1;");
+    Node script2 = compiler.parseSyntheticCode("b.js", "var b = 2;");
+    Node jsRoot = IR.root(script1, script2);
+    PerformanceTracker tracker =
+        new PerformanceTracker(emptyExternRoot, jsRoot, TracerMode.ALL, true, null);
+
+    tracker.recordPassStart(PassNames.PARSE_INPUTS, true);
+    tracker.recordPassStop(PassNames.PARSE_INPUTS, 0);
+
+    PerformanceTrackerCodeSizeEstimator estimator =
+        PerformanceTrackerCodeSizeEstimator.estimate(jsRoot, true);
+    assertEquals(estimator.getCodeSize(), tracker.getSize());
+    assertEquals(estimator.getZippedCodeSize(), tracker.getGzSize());
+  }
+
   public void testOutputFormat() {
     ByteArrayOutputStream output = new ByteArrayOutputStream();
     try (PrintStream outstream = new PrintStream(output)) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/** Tests for {@link ArrayUnionFind}. */
+public final class ArrayUnionFindTest extends TestCase {
+  private ArrayUnionFind<String> union;
+
+  @Override
+  protected void setUp() {
+    union = new ArrayUnionFind<>();
+  }
+
+  public void testEmpty() {
+    assertThat(union.allEquivalenceClasses()).isEmpty();
+    assertThat(union.elements()).isEmpty();
+  }
+
+  public void testUnionAndFind() {
+    union.union("A", "B");
+    union.union("C", "D");
+    union.add("E");
+    assertThat(union.find("B")).isEqualTo("A");
+    assertThat(union.find("D")).isEqualTo("C");
+    assertTrue(union.areEquivalent("A", "B"));
+    assertFalse(union.areEquivalent("A", "C"));
+
+    union.union("D", "B");
+    assertThat(union.find("A")).isEqualTo("C");
+    assertTrue(union.areEquivalent("A", "D"));
+    assertThat(union.elements()).containsExactly("A", "B", "C", "D", "E").inOrder();
+    assertThat(union.allEquivalenceClasses())
+        .containsExactly(ImmutableSet.of("A", "B", "C", "D"), ImmutableSet.of("E"))
+        .inOrder();
+  }
+
+  public void testFindAll() {
+    union.union("A", "B");
+    union.union("C", "D");
+    Set<String> aSet = union.findAll("A");
+    assertThat(aSet).containsExactly("A", "B").inOrder();
+    assertThat(aSet).doesNotContain("C");
+    assertThat(aSet).doesNotContain("Z");
+
+    // The set is a live view.
+    union.union("B", "C");
+    assertThat(aSet).hasSize(4);
+    assertThat(aSet).containsExactly("A", "B", "C", "D").inOrder();
+  }
+
+  public void testFindUnknownElement() {
+    try {
+      union.find("Z");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testElementsIsUnmodifiable() {
+    union.add("A");
+    try {
+      union.elements().remove("A");
+      fail("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  /** The results must be the same as those of {@link StandardUnionFind}. */
+  public void testMatchesStandardUnionFind() {
+    Random random = new Random(42);
+    StandardUnionFind<Integer> expected = new StandardUnionFind<>();
+    ArrayUnionFind<Integer> actual = new ArrayUnionFind<>();
+    for (int i = 0; i < 2000; i++) {
+      int a = random.nextInt(500);
+      int b = random.nextInt(500);
+      if (random.nextInt(4) == 0) {
+        expected.add(a);
+        actual.add(a);
+      } else {
+        assertThat(actual.union(a, b)).isEqualTo(expected.union(a, b));
+      }
+    }
+    assertThat(actual.elements()).containsExactlyElementsIn(expected.elements()).inOrder();
+    for (Integer e : expected.elements()) {
+      assertThat(actual.find(e)).isEqualTo(expected.find(e));
+      assertThat(actual.findAll(e)).containsExactlyElementsIn(expected.findAll(e));
+    }
+    assertThat(actual.allEquivalenceClasses())
+        .containsExactlyElementsIn(expected.allEquivalenceClasses())
+        .inOrder();
+  }
+}
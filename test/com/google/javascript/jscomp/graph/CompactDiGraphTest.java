@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
+import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/** Tests for {@link CompactDiGraph}. */
+public final class CompactDiGraphTest extends TestCase {
+
+  private static CompactDiGraph<String, String> diamond() {
+    return CompactDiGraph.<String, String>builder()
+        .connect("A", "a->c", "C")
+        .connect("A", "a->b", "B")
+        .connect("B", "b->d", "D")
+        .connect("C", "c->d", "D")
+        .build();
+  }
+
+  private static List<String> values(Iterable<? extends GraphNode<String, String>> nodes) {
+    List<String> result = new ArrayList<>();
+    for (GraphNode<String, String> node : nodes) {
+      result.add(node.getValue());
+    }
+    return result;
+  }
+
+  private static List<String> edgeValues(List<DiGraphEdge<String, String>> edges) {
+    List<String> result = new ArrayList<>();
+    for (DiGraphEdge<String, String> edge : edges) {
+      result.add(edge.getValue());
+    }
+    return result;
+  }
+
+  public void testNodesAndEdgesKeepInsertionOrder() {
+    CompactDiGraph<String, String> graph = diamond();
+    assertThat(values(graph.getDirectedGraphNodes())).containsExactly("A", "C", "B", "D").inOrder();
+    assertThat(graph.getNodeCount()).isEqualTo(4);
+    assertThat(graph.getEdgeCount()).isEqualTo(4);
+    assertThat(edgeValues(graph.getOutEdges("A"))).containsExactly("a->c", "a->b").inOrder();
+    assertThat(edgeValues(graph.getInEdges("D"))).containsExactly("b->d", "c->d").inOrder();
+    assertThat(values(graph.getDirectedSuccNodes("A"))).containsExactly("C", "B").inOrder();
+    assertThat(values(graph.getDirectedPredNodes("D"))).containsExactly("B", "C").inOrder();
+    assertThat(graph.getNodeDegree("B")).isEqualTo(2);
+  }
+
+  public void testConnectivity() {
+    CompactDiGraph<String, String> graph = diamond();
+    assertTrue(graph.isConnectedInDirection("A", "B"));
+    assertFalse(graph.isConnectedInDirection("B", "A"));
+    assertTrue(graph.isConnected("B", "A"));
+    assertTrue(graph.isConnectedInDirection("A", "a->b", "B"));
+    assertFalse(graph.isConnectedInDirection("A", "a->c", "B"));
+    assertThat(graph.getFirstEdge("D", "C").getValue()).isEqualTo("c->d");
+    assertNull(graph.getFirstEdge("B", "C"));
+    assertNull(graph.getNode("E"));
+    assertThat(graph.getNodeIndex("E")).isEqualTo(-1);
+  }
+
+  public void testIntAccessors() {
+    CompactDiGraph<String, String> graph = diamond();
+    int a = graph.getNodeIndex("A");
+    List<String> targets = new ArrayList<>();
+    for (int e = graph.getOutEdgeStart(a); e < graph.getOutEdgeEnd(a); e++) {
+      assertThat(graph.getSource(e)).isEqualTo(a);
+      targets.add(graph.getNodeAt(graph.getTarget(e)).getValue());
+    }
+    assertThat(targets).containsExactly("C", "B").inOrder();
+
+    int d = graph.getNodeIndex("D");
+    List<String> sources = new ArrayList<>();
+    for (int i = graph.getInEdgeStart(d); i < graph.getInEdgeEnd(d); i++) {
+      sources.add(graph.getNodeAt(graph.getSource(graph.getInEdgeAt(i))).getValue());
+    }
+    assertThat(sources).containsExactly("B", "C").inOrder();
+  }
+
+  public void testAnnotations() {
+    CompactDiGraph<String, String> graph = diamond();
+    Annotation annotation = new Annotation() {};
+    graph.getNode("B").setAnnotation(annotation);
+    graph.getOutEdges("A").get(1).setAnnotation(annotation);
+    assertSame(annotation, graph.getNode("B").getAnnotation());
+    assertSame(annotation, graph.getFirstEdge("A", "B").getAnnotation());
+
+    graph.pushNodeAnnotations();
+    graph.pushEdgeAnnotations();
+    assertNull(graph.getNode("B").getAnnotation());
+    assertNull(graph.getFirstEdge("A", "B").getAnnotation());
+    graph.popNodeAnnotations();
+    graph.popEdgeAnnotations();
+    assertSame(annotation, graph.getNode("B").getAnnotation());
+    assertSame(annotation, graph.getFirstEdge("A", "B").getAnnotation());
+  }
+
+  public void testCopyOf() {
+    LinkedDirectedGraph<String, String> linked = LinkedDirectedGraph.create();
+    linked.createNode("X");
+    linked.createNode("Y");
+    linked.createNode("Z");
+    linked.connect("Y", "y->x", "X");
+    linked.connect("X", "x->z", "Z");
+    linked.connect("X", "x->y", "Y");
+
+    CompactDiGraph<String, String> graph = CompactDiGraph.copyOf(linked);
+    assertThat(values(graph.getNodes())).containsExactly("X", "Y", "Z").inOrder();
+    for (DiGraphNode<String, String> node : linked.getDirectedGraphNodes()) {
+      assertThat(edgeValues(graph.getOutEdges(node.getValue())))
+          .isEqualTo(edgeValues(node.getOutEdges()));
+      assertThat(edgeValues(graph.getInEdges(node.getValue())))
+          .isEqualTo(edgeValues(node.getInEdges()));
+    }
+  }
+
+  public void testImmutable() {
+    CompactDiGraph<String, String> graph = diamond();
+    assertSame(graph.getNode("A"), graph.createNode("A"));
+    try {
+      graph.createNode("E");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      graph.connect("A", "a->d", "D");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testReachability() {
+    CompactDiGraph<String, String> graph =
+        CompactDiGraph.<String, String>builder()
+            .connect("A", "x", "B")
+            .connect("B", "x", "A")
+            .connect("C", "x", "D")
+            .connect("B", "blocked", "E")
+            .build();
+    GraphReachability<String, String> reachability =
+        new GraphReachability<>(
+            graph,
+            new com.google.common.base.Predicate<GraphReachability.EdgeTuple<String, String>>() {
+              @Override
+              public boolean apply(GraphReachability.EdgeTuple<String, String> input) {
+                return !input.edge.equals("blocked");
+              }
+            });
+    reachability.compute("A");
+    assertSame(GraphReachability.REACHABLE, graph.getNode("A").getAnnotation());
+    assertSame(GraphReachability.REACHABLE, graph.getNode("B").getAnnotation());
+    assertNull(graph.getNode("C").getAnnotation());
+    assertNull(graph.getNode("D").getAnnotation());
+    assertNull(graph.getNode("E").getAnnotation());
+    reachability.recompute("C");
+    assertSame(GraphReachability.REACHABLE, graph.getNode("D").getAnnotation());
+  }
+
+  public void testFixedPointTraversalVisitsInSameOrderAsLinkedGraph() {
+    LinkedDirectedGraph<String, String> linked = LinkedDirectedGraph.create();
+    for (String node : new String[] {"A", "B", "C", "D"}) {
+      linked.createNode(node);
+    }
+    linked.connect("A", "1", "B");
+    linked.connect("A", "2", "C");
+    linked.connect("B", "3", "D");
+    linked.connect("C", "4", "D");
+    linked.connect("D", "5", "A");
+
+    assertThat(traverse(CompactDiGraph.copyOf(linked))).isEqualTo(traverse(linked));
+  }
+
+  /** Records the edges traversed while counting down a budget per node. */
+  private static List<String> traverse(DiGraph<String, String> graph) {
+    final List<String> traversed = new ArrayList<>();
+    FixedPointGraphTraversal.newTraversal(
+            new EdgeCallback<String, String>() {
+              @Override
+              public boolean traverseEdge(String source, String e, String destination) {
+                traversed.add(e);
+                return traversed.size() < 12;
+              }
+            })
+        .computeFixedPoint(graph, ImmutableSet.of("A", "C"));
+    return traversed;
+  }
+}
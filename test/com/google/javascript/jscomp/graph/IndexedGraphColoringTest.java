@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
+import com.google.javascript.jscomp.graph.IndexedGraphColoring.InterferenceMatrix;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/** Tests for {@link IndexedGraphColoring}. */
+public final class IndexedGraphColoringTest extends TestCase {
+
+  public void testMatrix() {
+    InterferenceMatrix matrix = new InterferenceMatrix(4);
+    matrix.connect(0, 2);
+    matrix.connect(1, 2);
+    matrix.connect(1, 3);
+    matrix.connect(3, 3);
+    assertTrue(matrix.isConnected(2, 0));
+    assertFalse(matrix.isConnected(0, 1));
+    assertFalse(matrix.isConnected(3, 3));
+    assertThat(matrix.getDegree(1)).isEqualTo(2);
+
+    int[] colors = IndexedGraphColoring.color(matrix, new int[] {0, 1, 2, 3});
+    assertThat(colors).asList().containsExactly(0, 0, 1, 1).inOrder();
+    assertThat(IndexedGraphColoring.getColorCount(colors)).isEqualTo(2);
+  }
+
+  public void testNodesNotInOrderAreUncolored() {
+    InterferenceMatrix matrix = new InterferenceMatrix(3);
+    matrix.connect(0, 1);
+    matrix.connect(1, 2);
+    int[] colors = IndexedGraphColoring.color(matrix, new int[] {2, 0});
+    assertThat(colors).asList().containsExactly(0, -1, 0).inOrder();
+  }
+
+  public void testConnectAll() {
+    InterferenceMatrix matrix = new InterferenceMatrix(70);
+    BitSet live = new BitSet();
+    live.set(1);
+    live.set(64);
+    live.set(69);
+    matrix.connectAll(live);
+    assertTrue(matrix.isConnected(1, 69));
+    assertTrue(matrix.isConnected(64, 1));
+    assertFalse(matrix.isConnected(64, 64));
+    assertThat(matrix.getDegree(69)).isEqualTo(2);
+    assertThat(matrix.getDegree(0)).isEqualTo(0);
+  }
+
+  public void testSharedResources() {
+    BitSet a = new BitSet();
+    a.set(0);
+    BitSet b = new BitSet();
+    b.set(1);
+    BitSet c = new BitSet();
+    c.set(0);
+    c.set(100);
+    BitSet d = new BitSet();
+    d.set(100);
+    int[] colors =
+        IndexedGraphColoring.colorBySharedResources(
+            ImmutableList.of(a, b, c, d), new int[] {0, 1, 2, 3});
+    assertThat(colors).asList().containsExactly(0, 0, 1, 0).inOrder();
+  }
+
+  /** The greedy coloring must agree with {@link GreedyGraphColoring} given the same order. */
+  public void testMatchesGreedyGraphColoring() {
+    Random random = new Random(42);
+    int nodeCount = 60;
+    Graph<Integer, Void> graph = LinkedUndirectedGraph.create();
+    final InterferenceMatrix matrix = new InterferenceMatrix(nodeCount);
+    for (int i = 0; i < nodeCount; i++) {
+      graph.createNode(i);
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      for (int j = i + 1; j < nodeCount; j++) {
+        if (random.nextInt(5) == 0) {
+          graph.connect(i, null, j);
+          matrix.connect(i, j);
+        }
+      }
+    }
+    GraphColoring<Integer, Void> coloring =
+        new GreedyGraphColoring<>(
+            graph,
+            new Comparator<Integer>() {
+              @Override
+              public int compare(Integer i1, Integer i2) {
+                return i1 - i2;
+              }
+            });
+    int colorCount = coloring.color();
+
+    Integer[] sorted = new Integer[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(
+        sorted,
+        new Comparator<Integer>() {
+          @Override
+          public int compare(Integer i1, Integer i2) {
+            int result = matrix.getDegree(i2) - matrix.getDegree(i1);
+            return result != 0 ? result : i1 - i2;
+          }
+        });
+    int[] order = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      order[i] = sorted[i];
+    }
+    int[] colors = IndexedGraphColoring.color(matrix, order);
+
+    assertThat(IndexedGraphColoring.getColorCount(colors)).isEqualTo(colorCount);
+    for (int i = 0; i < nodeCount; i++) {
+      assertThat(colors[i]).isEqualTo(graph.getNode(i).getAnnotation().hashCode());
+    }
+  }
+}
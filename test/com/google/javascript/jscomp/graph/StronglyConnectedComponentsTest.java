@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/** Tests for {@link StronglyConnectedComponents}. */
+public final class StronglyConnectedComponentsTest extends TestCase {
+
+  public void testEmptyGraph() {
+    StronglyConnectedComponents components =
+        StronglyConnectedComponents.compute(CompactDiGraph.<String, String>builder().build());
+    assertThat(components.getComponentCount()).isEqualTo(0);
+  }
+
+  public void testComponentsInTopologicalOrder() {
+    CompactDiGraph<String, String> graph =
+        CompactDiGraph.<String, String>builder()
+            .connect("D", "", "E")
+            .connect("B", "", "C")
+            .connect("C", "", "B")
+            .connect("A", "", "B")
+            .connect("C", "", "D")
+            .connect("E", "", "E")
+            .build();
+    StronglyConnectedComponents components = StronglyConnectedComponents.compute(graph);
+
+    assertThat(components.getComponentCount()).isEqualTo(4);
+    assertThat(members(graph, components, "A")).containsExactly("A");
+    assertThat(members(graph, components, "B")).containsExactly("B", "C").inOrder();
+    assertThat(members(graph, components, "D")).containsExactly("D");
+    assertThat(members(graph, components, "E")).containsExactly("E");
+    for (int e = 0; e < graph.getEdgeCount(); e++) {
+      assertThat(components.getComponentOf(graph.getSource(e)))
+          .isAtMost(components.getComponentOf(graph.getTarget(e)));
+    }
+  }
+
+  public void testLongChainAndCycle() {
+    CompactDiGraph.Builder<Integer, String> builder = CompactDiGraph.builder();
+    int length = 100000;
+    for (int i = 0; i < length - 1; i++) {
+      builder.connect(i, "", i + 1);
+    }
+    CompactDiGraph<Integer, String> chain = builder.build();
+    StronglyConnectedComponents components = StronglyConnectedComponents.compute(chain);
+    assertThat(components.getComponentCount()).isEqualTo(length);
+    assertThat(components.getComponentOf(0)).isEqualTo(0);
+    assertThat(components.getComponentOf(length - 1)).isEqualTo(length - 1);
+
+    builder.connect(length - 1, "", 0);
+    components = StronglyConnectedComponents.compute(builder.build());
+    assertThat(components.getComponentCount()).isEqualTo(1);
+    assertThat(components.getComponentEnd(0)).isEqualTo(length);
+  }
+
+  private static List<String> members(
+      CompactDiGraph<String, String> graph,
+      StronglyConnectedComponents components,
+      String value) {
+    int component = components.getComponentOf(graph.getNodeIndex(value));
+    List<String> result = new ArrayList<>();
+    for (int p = components.getComponentStart(component);
+        p < components.getComponentEnd(component);
+        p++) {
+      result.add(graph.getNodeAt(components.getNodeAt(p)).getValue());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.rhino.dtoa;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+public final class DToATest extends TestCase {
+
+  public void testNumberToString() {
+    assertThat(DToA.numberToString(0.0)).isEqualTo("0");
+    assertThat(DToA.numberToString(-0.0)).isEqualTo("0");
+    assertThat(DToA.numberToString(Double.NaN)).isEqualTo("NaN");
+    assertThat(DToA.numberToString(Double.NEGATIVE_INFINITY)).isEqualTo("-Infinity");
+    assertThat(DToA.numberToString(1)).isEqualTo("1");
+    assertThat(DToA.numberToString(-1.5)).isEqualTo("-1.5");
+    assertThat(DToA.numberToString(0.1)).isEqualTo("0.1");
+    assertThat(DToA.numberToString(0.1 + 0.2)).isEqualTo("0.30000000000000004");
+    assertThat(DToA.numberToString(123e-20)).isEqualTo("1.23e-18");
+    assertThat(DToA.numberToString(0.000001)).isEqualTo("0.000001");
+    assertThat(DToA.numberToString(0.0000001)).isEqualTo("1e-7");
+    assertThat(DToA.numberToString(1e21)).isEqualTo("1e+21");
+    assertThat(DToA.numberToString(123456789012345680000.0)).isEqualTo("123456789012345680000");
+    assertThat(DToA.numberToString(Double.MAX_VALUE)).isEqualTo("1.7976931348623157e+308");
+    assertThat(DToA.numberToString(Double.MIN_NORMAL)).isEqualTo("2.2250738585072014e-308");
+    // Java 8's Double.toString prints these as 4.9E-324 and 9.999999999999999E22.
+    assertThat(DToA.numberToString(Double.MIN_VALUE)).isEqualTo("5e-324");
+    assertThat(DToA.numberToString(1e23)).isEqualTo("1e+23");
+  }
+
+  public void testSubnormalNumbersRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong() & 0xfffffffffffffL);
+      if (value != 0) {
+        assertThat(Double.parseDouble(DToA.numberToString(value))).isEqualTo(value);
+      }
+    }
+  }
+
+  public void testMatchesBigIntegerConversion() {
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      assertMatchesBigIntegerConversion(Double.longBitsToDouble(random.nextLong()));
+      assertMatchesBigIntegerConversion(random.nextInt(1000000) / Math.pow(10, random.nextInt(12)));
+      assertMatchesBigIntegerConversion(random.nextInt() * Math.pow(10, random.nextInt(40) - 20));
+      assertMatchesBigIntegerConversion(random.nextLong());
+      double powerOfTwo = Math.scalb(1.0, random.nextInt(2046) - 1022);
+      assertMatchesBigIntegerConversion(powerOfTwo);
+      assertMatchesBigIntegerConversion(Math.nextUp(powerOfTwo));
+      assertMatchesBigIntegerConversion(Math.nextDown(powerOfTwo));
+    }
+    for (int exponent = -307; exponent <= 308; exponent++) {
+      double powerOfTen = Double.parseDouble("1e" + exponent);
+      assertMatchesBigIntegerConversion(powerOfTen);
+      assertMatchesBigIntegerConversion(Math.nextUp(powerOfTen));
+      assertMatchesBigIntegerConversion(Math.nextDown(powerOfTen));
+    }
+  }
+
+  private static void assertMatchesBigIntegerConversion(double value) {
+    value = Math.abs(value);
+    // The BigInteger conversion does not handle subnormal numbers.
+    if (value >= Double.MIN_NORMAL && !Double.isInfinite(value) && !Double.isNaN(value)) {
+      assertThat(DToA.numberToString(value))
+          .isEqualTo(DToA.numberToStringWithBigIntegers(value));
+    }
+  }
+}